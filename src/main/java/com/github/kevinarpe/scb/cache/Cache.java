@@ -26,4 +26,16 @@ public interface Cache<TKey, TValue> {
      *         throws by mapping function when key is unmapped
      */
     TValue get(TKey key);
+
+    /**
+     * Estimates heap retained by this cache, excluding keys and values.  Keys and values are owned by the caller, and
+     * may be shared, so only the caller can size them.
+     * <p>
+     * The estimate is computed from structural parameters, e.g., entry count and table length, using
+     * {@link com.github.kevinarpe.scb.memory.JvmMemoryLayout}.  Nothing is measured, so this is cheap enough for
+     * periodic monitoring.
+     *
+     * @return estimated size in bytes
+     */
+    long estimatedRetainedBytes();
 }
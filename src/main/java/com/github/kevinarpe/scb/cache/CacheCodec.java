@@ -0,0 +1,39 @@
+package com.github.kevinarpe.scb.cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Converts cache keys or values to and from bytes, e.g., to store them outside the Java heap.
+ * <p>
+ * Implementations must be deterministic: Equal objects must encode to equal bytes, because encoded keys are compared
+ * and hashed as bytes.  This must also hold across processes.  Thus, do not depend on {@link Object#hashCode()} or
+ * identity.
+ *
+ * @param <T>
+ *        type of key or value
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see StringCacheCodec
+ * @see LongCacheCodec
+ * @see SharedMemoryCacheImp
+ */
+@ThreadSafe
+public interface CacheCodec<T> {
+
+    /**
+     * @param value
+     *        never {@code null}
+     *
+     * @return new array that is owned by caller
+     */
+    byte[] encode(T value);
+
+    /**
+     * @param byteArr
+     *        must not be modified
+     *
+     * @return never {@code null}
+     */
+    T decode(byte[] byteArr, int offset, int length);
+}
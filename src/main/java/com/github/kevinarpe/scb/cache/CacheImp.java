@@ -1,5 +1,7 @@
 package com.github.kevinarpe.scb.cache;
 
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.LinkedHashMap;
@@ -70,6 +72,11 @@ implements Cache<TKey, TValue> {
         }
     }
 
+    // This object, the wrapper for 'getFunc', the lock wrapper, and StampedLock (5 refs + long + int)
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(3, 0) + JvmMemoryLayout.objectBytes(1, 0) + JvmMemoryLayout.objectBytes(1, 0)
+            + JvmMemoryLayout.objectBytes(5, Long.BYTES + Integer.BYTES);
+
     private final Function<TKey, TValue> getFunc;
     private final _IStampedLock stampedLock;
     private final LinkedHashMap<TKey, TValue> cacheLinkedHashMap;
@@ -133,4 +140,17 @@ implements Cache<TKey, TValue> {
             stampedLock.unlock(unlockStamp);
         }
     }
+
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final long readLockStamp = stampedLock.readLock();
+        try {
+            final long x = FIXED_RETAINED_BYTES + JvmMemoryLayout.linkedHashMapBytes(cacheLinkedHashMap.size());
+            return x;
+        }
+        finally {
+            stampedLock.unlockRead(readLockStamp);
+        }
+    }
 }
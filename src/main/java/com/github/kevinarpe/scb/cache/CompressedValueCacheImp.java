@@ -0,0 +1,152 @@
+package com.github.kevinarpe.scb.cache;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * This implementation stores values encoded, usually by {@link CompressingCacheCodec}, so large text values, e.g.,
+ * JSON, use much less heap.  Like {@link ConcurrentHashMapCacheImp}, it calls
+ * {@link ConcurrentHashMap#computeIfAbsent(Object, Function)}.
+ * <p>
+ * Each hit decodes the value, so it returns a new object.  Thus, the value type should be immutable.  To keep hot reads
+ * fast, an optional hot set holds decoded values for the most recently used keys.  A hot hit does not decode nor
+ * allocate.  The hot set is small and guarded by one lock, so keep its capacity to the true working set.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see ConcurrentHashMapCacheImp
+ * @see CompressingCacheCodec
+ */
+@ThreadSafe
+public final class CompressedValueCacheImp<TKey, TValue>
+implements Cache<TKey, TValue> {
+
+    private static final class _HotSet<TKey, TValue>
+    extends LinkedHashMap<TKey, TValue> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private _HotSet(final int maxSize) {
+            // Intentional: The table is sized for maxSize + 1 (before eldest is removed), so it never grows.
+            super(JvmMemoryLayout.hashTableLength(1 + maxSize), 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TKey, TValue> eldest) {
+
+            final boolean x = (size() > maxSize);
+            return x;
+        }
+    }
+
+    // This object, the wrapper for 'getFunc', the encode function, and AtomicLong
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(6, 0) + JvmMemoryLayout.objectBytes(1, 0) + JvmMemoryLayout.objectBytes(1, 0)
+            + JvmMemoryLayout.objectBytes(0, Long.BYTES);
+
+    private final Function<TKey, TValue> getFunc;
+    private final CacheCodec<TValue> valueCodec;
+    private final Function<TKey, byte[]> encodeFunc;
+    private final ConcurrentHashMap<TKey, byte[]> cacheConcurrentHashMap;
+    private final _HotSet<TKey, TValue> hotSet;
+    // Sum of sizes of all encoded arrays
+    private final AtomicLong encodedRetainedBytes;
+
+    /**
+     * @param valueCodec
+     *        usually {@link CompressingCacheCodec}
+     *
+     * @param hotSetCapacity
+     *        maximum number of decoded values to keep.  Zero disables the hot set.
+     */
+    public CompressedValueCacheImp(final CacheCodec<TValue> valueCodec,
+                                   final int hotSetCapacity,
+                                   final Function<TKey, TValue> getFunc) {
+
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        if (hotSetCapacity < 0) {
+            throw new IllegalArgumentException("Argument 'hotSetCapacity' must be non-negative: " + hotSetCapacity);
+        }
+        Objects.requireNonNull(getFunc);
+
+        this.getFunc = (TKey key) -> {
+            @Nullable
+            final TValue value = getFunc.apply(key);
+            if (null == value) {
+                // Intentional: Add key to exception message for easier debugging.  :)
+                throw new NullPointerException("Key [" + key + "] maps to a null value");
+            }
+            return value;
+        };
+        this.encodeFunc = this::_encode;
+        this.cacheConcurrentHashMap = new ConcurrentHashMap<>();
+        this.hotSet = new _HotSet<>(hotSetCapacity);
+        this.encodedRetainedBytes = new AtomicLong(0);
+    }
+
+    private byte[] _encode(final TKey key) {
+
+        final TValue value = getFunc.apply(key);
+        final byte[] x = valueCodec.encode(value);
+        encodedRetainedBytes.addAndGet(JvmMemoryLayout.arrayBytes(x.length, Byte.BYTES));
+        return x;
+    }
+
+    @Override
+    public TValue get(TKey key) {
+
+        Objects.requireNonNull(key);
+
+        final boolean isHotSetEnabled = (hotSet.maxSize > 0);
+        if (isHotSetEnabled) {
+            synchronized (hotSet) {
+                @Nullable
+                final TValue nullableValue = hotSet.get(key);
+                if (null != nullableValue) {
+                    return nullableValue;
+                }
+            }
+        }
+        final byte[] byteArr = cacheConcurrentHashMap.computeIfAbsent(key, encodeFunc);
+        final TValue value = valueCodec.decode(byteArr, 0, byteArr.length);
+        if (isHotSetEnabled) {
+            synchronized (hotSet) {
+                hotSet.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Unlike other caches, this includes encoded values, because they are owned by this cache.  Decoded values in the
+     * hot set are excluded, as keys.
+     */
+    // Intentional: No lock for the map.  Size is a moment-in-time estimate, which is good enough for monitoring.
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final int size = (int) Math.min(Integer.MAX_VALUE, cacheConcurrentHashMap.mappingCount());
+        final int hotSetSize;
+        synchronized (hotSet) {
+            hotSetSize = hotSet.size();
+        }
+        final int hotSetTableLength = (0 == hotSetSize) ? 0 : JvmMemoryLayout.hashTableLength(1 + hotSet.maxSize);
+        final long x = FIXED_RETAINED_BYTES
+            + JvmMemoryLayout.concurrentHashMapBytes(size)
+            + encodedRetainedBytes.get()
+            // _HotSet adds one int field: 'maxSize'
+            + JvmMemoryLayout.linkedHashMapBytes(hotSetSize, hotSetTableLength, Integer.BYTES);
+        return x;
+    }
+}
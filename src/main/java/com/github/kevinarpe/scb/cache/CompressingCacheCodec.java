@@ -0,0 +1,138 @@
+package com.github.kevinarpe.scb.cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+
+/**
+ * Decorates another codec: Encoded values that are at least {@link #minCompressBytes()} are compressed by
+ * {@link LzCompressor}.  Smaller values, and values that do not shrink, are stored as-is.  Thus, values are never more
+ * than one byte larger than the decorated codec.
+ * <p>
+ * Encoded format: [flag: 1 byte], then either: [raw bytes], or [decompressed length: 4 bytes][compressed bytes].
+ * <p>
+ * Output is deterministic, so this may also be used by {@link SharedMemoryCacheImp}.
+ *
+ * @param <T>
+ *        type of value
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see CompressedValueCacheImp
+ */
+@ThreadSafe
+public final class CompressingCacheCodec<T>
+implements CacheCodec<T> {
+
+    /**
+     * Intentional: Small values rarely shrink enough to pay for decompression.
+     */
+    public static final int DEFAULT_MIN_COMPRESS_BYTES = 256;
+
+    private static final byte RAW_FLAG = 0;
+    private static final byte COMPRESSED_FLAG = 1;
+    // [flag: 1 byte][decompressed length: 4 bytes]
+    private static final int COMPRESSED_HEADER_SIZE_BYTES = 1 + Integer.BYTES;
+
+    private final CacheCodec<T> codec;
+    private final int minCompressBytes;
+
+    public CompressingCacheCodec(CacheCodec<T> codec) {
+
+        this(codec, DEFAULT_MIN_COMPRESS_BYTES);
+    }
+
+    /**
+     * @param codec
+     *        decorated codec, e.g., {@link StringCacheCodec#INSTANCE}
+     *
+     * @param minCompressBytes
+     *        encoded values smaller than this are not compressed
+     */
+    public CompressingCacheCodec(final CacheCodec<T> codec, final int minCompressBytes) {
+
+        this.codec = Objects.requireNonNull(codec);
+        if (minCompressBytes < 0) {
+            throw new IllegalArgumentException("Argument 'minCompressBytes' must be non-negative: " + minCompressBytes);
+        }
+        this.minCompressBytes = minCompressBytes;
+    }
+
+    public int minCompressBytes() {
+        return minCompressBytes;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+
+        final byte[] rawByteArr = codec.encode(value);
+        if (rawByteArr.length >= minCompressBytes) {
+
+            final byte[] compressedByteArr = LzCompressor.compress(rawByteArr, 0, rawByteArr.length);
+            if (COMPRESSED_HEADER_SIZE_BYTES + compressedByteArr.length < 1 + rawByteArr.length) {
+
+                final byte[] x = new byte[COMPRESSED_HEADER_SIZE_BYTES + compressedByteArr.length];
+                x[0] = COMPRESSED_FLAG;
+                _putInt(x, 1, rawByteArr.length);
+                System.arraycopy(compressedByteArr, 0, x, COMPRESSED_HEADER_SIZE_BYTES, compressedByteArr.length);
+                return x;
+            }
+        }
+        final byte[] x = new byte[1 + rawByteArr.length];
+        x[0] = RAW_FLAG;
+        System.arraycopy(rawByteArr, 0, x, 1, rawByteArr.length);
+        return x;
+    }
+
+    @Override
+    public T decode(byte[] byteArr, int offset, int length) {
+
+        if (length < 1) {
+            throw new IllegalArgumentException("Argument 'length' must be positive: " + length);
+        }
+        final byte flag = byteArr[offset];
+        if (RAW_FLAG == flag) {
+            final T x = codec.decode(byteArr, 1 + offset, length - 1);
+            return x;
+        }
+        if (COMPRESSED_FLAG != flag) {
+            throw new IllegalArgumentException("Unknown flag: " + flag);
+        }
+        if (length < COMPRESSED_HEADER_SIZE_BYTES) {
+            throw new IllegalArgumentException(
+                "Argument 'length' must be at least " + COMPRESSED_HEADER_SIZE_BYTES + ": " + length);
+        }
+        final int decompressedLength = _getInt(byteArr, 1 + offset);
+        final byte[] rawByteArr =
+            LzCompressor.decompress(byteArr, offset + COMPRESSED_HEADER_SIZE_BYTES,
+                length - COMPRESSED_HEADER_SIZE_BYTES, decompressedLength);
+        final T x = codec.decode(rawByteArr, 0, rawByteArr.length);
+        return x;
+    }
+
+    /**
+     * @return true if {@link #encode(Object)} compressed these bytes
+     */
+    public static boolean isCompressed(final byte[] byteArr) {
+
+        final boolean x = (byteArr.length > 0 && COMPRESSED_FLAG == byteArr[0]);
+        return x;
+    }
+
+    // Big-endian
+    private static void _putInt(final byte[] byteArr, final int index, final int value) {
+
+        byteArr[index] = (byte) (value >>> 24);
+        byteArr[index + 1] = (byte) (value >>> 16);
+        byteArr[index + 2] = (byte) (value >>> 8);
+        byteArr[index + 3] = (byte) value;
+    }
+
+    private static int _getInt(final byte[] byteArr, final int index) {
+
+        final int x = ((byteArr[index] & 0xFF) << 24)
+            | ((byteArr[index + 1] & 0xFF) << 16)
+            | ((byteArr[index + 2] & 0xFF) << 8)
+            | (byteArr[index + 3] & 0xFF);
+        return x;
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.kevinarpe.scb.cache;
 
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Objects;
@@ -24,6 +26,10 @@ import java.util.function.Function;
 public final class ConcurrentHashMapCacheImp<TKey, TValue>
 implements Cache<TKey, TValue> {
 
+    // This object and the wrapper for 'getFunc'
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(2, 0) + JvmMemoryLayout.objectBytes(1, 0);
+
     private final Function<TKey, TValue> getFunc;
     private final ConcurrentHashMap<TKey, TValue> cacheConcurrentHashMap;
 
@@ -50,4 +56,13 @@ implements Cache<TKey, TValue> {
         final TValue value = cacheConcurrentHashMap.computeIfAbsent(key, getFunc);
         return value;
     }
+
+    // Intentional: No lock.  Size is a moment-in-time estimate, which is good enough for monitoring.
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final int size = (int) Math.min(Integer.MAX_VALUE, cacheConcurrentHashMap.mappingCount());
+        final long x = FIXED_RETAINED_BYTES + JvmMemoryLayout.concurrentHashMapBytes(size);
+        return x;
+    }
 }
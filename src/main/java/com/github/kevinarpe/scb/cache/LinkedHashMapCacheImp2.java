@@ -1,5 +1,7 @@
 package com.github.kevinarpe.scb.cache;
 
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.LinkedHashMap;
@@ -24,6 +26,10 @@ import java.util.function.Function;
 public final class LinkedHashMapCacheImp2<TKey, TValue>
 implements Cache<TKey, TValue> {
 
+    // This object and the wrapper for 'getFunc'
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(2, 0) + JvmMemoryLayout.objectBytes(1, 0);
+
     private final Function<TKey, TValue> getFunc;
     private final LinkedHashMap<TKey, TValue> cacheLinkedHashMap;
 
@@ -61,4 +67,13 @@ implements Cache<TKey, TValue> {
             }
         }
     }
+
+    @Override
+    public long estimatedRetainedBytes() {
+
+        synchronized (cacheLinkedHashMap) {
+            final long x = FIXED_RETAINED_BYTES + JvmMemoryLayout.linkedHashMapBytes(cacheLinkedHashMap.size());
+            return x;
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package com.github.kevinarpe.scb.cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Encodes {@link Long} as eight bytes, big-endian.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+@ThreadSafe
+public final class LongCacheCodec
+implements CacheCodec<Long> {
+
+    public static final LongCacheCodec INSTANCE = new LongCacheCodec();
+
+    private LongCacheCodec() {
+        // Empty
+    }
+
+    @Override
+    public byte[] encode(Long value) {
+
+        final long x = value;
+        final byte[] byteArr = new byte[Long.BYTES];
+        for (int i = Long.BYTES - 1; i >= 0; --i) {
+            byteArr[i] = (byte) (x >>> (8 * (Long.BYTES - 1 - i)));
+        }
+        return byteArr;
+    }
+
+    @Override
+    public Long decode(byte[] byteArr, int offset, int length) {
+
+        if (Long.BYTES != length) {
+            throw new IllegalArgumentException("Argument 'length' must be " + Long.BYTES + ": " + length);
+        }
+        long x = 0;
+        for (int i = 0; i < Long.BYTES; ++i) {
+            x = (x << 8) | (byteArr[offset + i] & 0xFF);
+        }
+        return x;
+    }
+}
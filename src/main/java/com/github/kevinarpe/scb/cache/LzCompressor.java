@@ -0,0 +1,254 @@
+package com.github.kevinarpe.scb.cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+/**
+ * Small, fast LZ77 compressor in pure Java.  The block format is similar to LZ4: Sequences of literal bytes, each
+ * followed by a back-reference into the last 64 KiB of output.  The ratio is lower than DEFLATE, but decompression is
+ * much faster, so this is a good fit for cached values that are read often.
+ * <p>
+ * Sequence format:
+ * <ul>
+ *     <li>Token: one byte.  High four bits: literal count.  Low four bits: match length minus
+ *     {@link #MIN_MATCH_LENGTH}.  If either is 15, then more bytes follow with the remainder: Each is added, and 255
+ *     means another byte follows.</li>
+ *     <li>Literal count bytes</li>
+ *     <li>Match offset: two bytes, little-endian.  The last sequence has no offset nor match.</li>
+ * </ul>
+ * <p>
+ * Compressed bytes do not include the decompressed length.  The caller must store it.
+ * <p>
+ * Output is deterministic: The same input always compresses to the same bytes.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see CompressingCacheCodec
+ */
+@ThreadSafe
+public final class LzCompressor {
+
+    public static final int MIN_MATCH_LENGTH = 4;
+
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+    private static final int NIBBLE_MAX = 15;
+    // Intentional: Search faster in data that does not compress.  Larger is faster, but may miss matches.
+    private static final int SKIP_STRENGTH = 6;
+
+    private LzCompressor() {
+        // Empty
+    }
+
+    /**
+     * @return worst case size of {@link #compress(byte[], int, int)}
+     */
+    public static int maxCompressedLength(final int length) {
+
+        if (length < 0) {
+            throw new IllegalArgumentException("Argument 'length' must be non-negative: " + length);
+        }
+        final int x = length + (length / 255) + 16;
+        return x;
+    }
+
+    /**
+     * Time complexity: O(n)
+     *
+     * @return new array with compressed bytes
+     */
+    public static byte[] compress(final byte[] byteArr, final int offset, final int length) {
+
+        _checkRange(byteArr, offset, length);
+
+        final byte[] outArr = new byte[maxCompressedLength(length)];
+        // Each value is (position - offset + 1), so zero means empty.
+        final int[] hashTableArr = new int[1 << HASH_BITS];
+        final int endIndex = offset + length;
+        final int matchEndIndex = endIndex - MIN_MATCH_LENGTH;
+        int outIndex = 0;
+        int anchorIndex = offset;
+        int index = offset;
+        while (index <= matchEndIndex) {
+
+            final int sequence = _readInt(byteArr, index);
+            final int hash = _hash(sequence);
+            final int matchIndex = hashTableArr[hash] - 1 + offset;
+            hashTableArr[hash] = index - offset + 1;
+
+            if (matchIndex < offset || index - matchIndex > MAX_OFFSET || sequence != _readInt(byteArr, matchIndex)) {
+                index += 1 + ((index - anchorIndex) >>> SKIP_STRENGTH);
+                continue;
+            }
+            int matchLength = MIN_MATCH_LENGTH;
+            while (index + matchLength < endIndex
+                   && byteArr[matchIndex + matchLength] == byteArr[index + matchLength]) {
+                ++matchLength;
+            }
+            final int tokenIndex = outIndex;
+            outIndex = _writeSequence(byteArr, anchorIndex, index - anchorIndex, outArr, outIndex);
+            outArr[tokenIndex] |= (byte) Math.min(NIBBLE_MAX, matchLength - MIN_MATCH_LENGTH);
+            final int matchOffset = index - matchIndex;
+            outArr[outIndex++] = (byte) matchOffset;
+            outArr[outIndex++] = (byte) (matchOffset >>> 8);
+            if (matchLength - MIN_MATCH_LENGTH >= NIBBLE_MAX) {
+                outIndex = _writeExtraLength(matchLength - MIN_MATCH_LENGTH - NIBBLE_MAX, outArr, outIndex);
+            }
+            index += matchLength;
+            anchorIndex = index;
+        }
+        // Intentional: The last sequence has only literals.
+        outIndex = _writeSequence(byteArr, anchorIndex, endIndex - anchorIndex, outArr, outIndex);
+        final byte[] x = Arrays.copyOf(outArr, outIndex);
+        return x;
+    }
+
+    /**
+     * Time complexity: O(n)
+     *
+     * @param decompressedLength
+     *        exact length before compression
+     *
+     * @return new array with decompressed bytes
+     *
+     * @throws IllegalArgumentException
+     *         if compressed bytes are invalid, or do not decompress to {@code decompressedLength} bytes
+     */
+    public static byte[] decompress(final byte[] byteArr,
+                                    final int offset,
+                                    final int length,
+                                    final int decompressedLength) {
+
+        _checkRange(byteArr, offset, length);
+        if (decompressedLength < 0) {
+            throw new IllegalArgumentException(
+                "Argument 'decompressedLength' must be non-negative: " + decompressedLength);
+        }
+        final byte[] outArr = new byte[decompressedLength];
+        final int endIndex = offset + length;
+        int index = offset;
+        int outIndex = 0;
+        while (index < endIndex) {
+
+            final int token = byteArr[index++] & 0xFF;
+            int literalCount = token >>> 4;
+            if (NIBBLE_MAX == literalCount) {
+                final long extra = _readExtraLength(byteArr, index, endIndex);
+                index += (int) (extra >>> 32);
+                literalCount += (int) extra;
+            }
+            if (literalCount > endIndex - index || literalCount > decompressedLength - outIndex) {
+                throw new IllegalArgumentException("Invalid compressed bytes: Literal count is too large: "
+                    + literalCount);
+            }
+            System.arraycopy(byteArr, index, outArr, outIndex, literalCount);
+            index += literalCount;
+            outIndex += literalCount;
+            if (index == endIndex) {
+                break;
+            }
+            if (endIndex - index < 2) {
+                throw new IllegalArgumentException("Invalid compressed bytes: Missing match offset");
+            }
+            final int matchOffset = (byteArr[index] & 0xFF) | ((byteArr[index + 1] & 0xFF) << 8);
+            index += 2;
+            int matchLength = MIN_MATCH_LENGTH + (token & NIBBLE_MAX);
+            if (NIBBLE_MAX == (token & NIBBLE_MAX)) {
+                final long extra = _readExtraLength(byteArr, index, endIndex);
+                index += (int) (extra >>> 32);
+                matchLength += (int) extra;
+            }
+            if (0 == matchOffset || matchOffset > outIndex || matchLength > decompressedLength - outIndex) {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid compressed bytes: Match offset %d and length %d at output index %d",
+                    matchOffset, matchLength, outIndex));
+            }
+            // Intentional: Copy one byte at a time.  The match may overlap output, e.g., runs of one byte.
+            final int matchIndex = outIndex - matchOffset;
+            for (int i = 0; i < matchLength; ++i) {
+                outArr[outIndex + i] = outArr[matchIndex + i];
+            }
+            outIndex += matchLength;
+        }
+        if (outIndex != decompressedLength) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid compressed bytes: Expected %d decompressed bytes, but found %d",
+                decompressedLength, outIndex));
+        }
+        return outArr;
+    }
+
+    private static void _checkRange(final byte[] byteArr, final int offset, final int length) {
+
+        if (offset < 0 || length < 0 || offset > byteArr.length - length) {
+            throw new IndexOutOfBoundsException(String.format(
+                "Arguments 'offset' (%d) and 'length' (%d) are out of bounds: Array length: %d",
+                offset, length, byteArr.length));
+        }
+    }
+
+    private static int _readInt(final byte[] byteArr, final int index) {
+
+        final int x = (byteArr[index] & 0xFF)
+            | ((byteArr[index + 1] & 0xFF) << 8)
+            | ((byteArr[index + 2] & 0xFF) << 16)
+            | ((byteArr[index + 3] & 0xFF) << 24);
+        return x;
+    }
+
+    // Knuth multiplicative hash
+    private static int _hash(final int sequence) {
+
+        final int x = (sequence * 0x9E3779B1) >>> (Integer.SIZE - HASH_BITS);
+        return x;
+    }
+
+    // Writes token, with match length of zero, then literals.
+    private static int _writeSequence(final byte[] byteArr,
+                                      final int literalIndex,
+                                      final int literalCount,
+                                      final byte[] outArr,
+                                      int outIndex) {
+
+        outArr[outIndex++] = (byte) (Math.min(NIBBLE_MAX, literalCount) << 4);
+        if (literalCount >= NIBBLE_MAX) {
+            outIndex = _writeExtraLength(literalCount - NIBBLE_MAX, outArr, outIndex);
+        }
+        System.arraycopy(byteArr, literalIndex, outArr, outIndex, literalCount);
+        outIndex += literalCount;
+        return outIndex;
+    }
+
+    private static int _writeExtraLength(int remainder, final byte[] outArr, int outIndex) {
+
+        while (remainder >= 255) {
+            outArr[outIndex++] = (byte) 255;
+            remainder -= 255;
+        }
+        outArr[outIndex++] = (byte) remainder;
+        return outIndex;
+    }
+
+    /**
+     * @return high 32 bits: number of bytes read; low 32 bits: sum
+     */
+    private static long _readExtraLength(final byte[] byteArr, final int index, final int endIndex) {
+
+        int i = index;
+        int sum = 0;
+        int b;
+        do {
+            if (i >= endIndex) {
+                throw new IllegalArgumentException("Invalid compressed bytes: Missing length byte");
+            }
+            b = byteArr[i++] & 0xFF;
+            sum += b;
+            if (sum < 0) {
+                throw new IllegalArgumentException("Invalid compressed bytes: Length is too large");
+            }
+        }
+        while (255 == b);
+        final long x = ((long) (i - index) << 32) | sum;
+        return x;
+    }
+}
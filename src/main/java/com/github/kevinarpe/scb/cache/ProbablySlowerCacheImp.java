@@ -1,5 +1,7 @@
 package com.github.kevinarpe.scb.cache;
 
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.LinkedHashMap;
@@ -22,6 +24,13 @@ import java.util.function.Function;
 public final class ProbablySlowerCacheImp<TKey, TValue>
 implements Cache<TKey, TValue> {
 
+    // This object, the wrapper for 'getFunc', and ReentrantReadWriteLock with its sync (6 refs + 2 ints), read lock,
+    // write lock, and thread-local hold counter
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(4, 0) + JvmMemoryLayout.objectBytes(1, 0)
+            + JvmMemoryLayout.objectBytes(3, 0) + JvmMemoryLayout.objectBytes(6, 2 * Integer.BYTES)
+            + 2 * JvmMemoryLayout.objectBytes(1, 0) + JvmMemoryLayout.objectBytes(0, Integer.BYTES);
+
     private final IsFairLock isFairLock;
     private final Function<TKey, TValue> getFunc;
     private final ReentrantReadWriteLock readWriteLock;
@@ -94,4 +103,17 @@ implements Cache<TKey, TValue> {
             }
         }
     }
+
+    @Override
+    public long estimatedRetainedBytes() {
+
+        readWriteLock.readLock().lock();
+        try {
+            final long x = FIXED_RETAINED_BYTES + JvmMemoryLayout.linkedHashMapBytes(cacheLinkedHashMap.size());
+            return x;
+        }
+        finally {
+            readWriteLock.readLock().unlock();
+        }
+    }
 }
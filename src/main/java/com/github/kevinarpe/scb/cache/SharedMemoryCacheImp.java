@@ -0,0 +1,472 @@
+package com.github.kevinarpe.scb.cache;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * This implementation stores keys and values in a memory-mapped file, so many processes on one host can share one
+ * cache.  The mapping function is called at most once for each key across <i>all</i> processes that use the file.
+ * Thus, reference data is loaded (and stored) once per host, instead of once per process.
+ * <p>
+ * File layout:
+ * <ul>
+ *     <li>Header: magic, version, slot count, data capacity, entry count, and end of data</li>
+ *     <li>Hash index: open addressing with linear probing.  Each slot is one {@code long}: 32-bit key hash and 32-bit
+ *     entry position.  Zero means empty.</li>
+ *     <li>Data: entries are appended: [key length: 4 bytes][value length: 4 bytes][key bytes][value bytes]</li>
+ * </ul>
+ * <p>
+ * Reads are lock-free.  An entry is written before its slot, and slots are written with release semantics, then read
+ * with acquire semantics.  Entries and slots are never changed or removed after they are published.  Thus, a reader in
+ * any process sees a complete entry or an empty slot.
+ * <p>
+ * Writes are serialised by a file lock, so they are coordinated across processes.  On miss, the index is checked again
+ * after the lock is acquired.  If another process loaded the key in the meantime, its value is used.  Like
+ * {@link CacheImp}, the mapping function is called while holding the lock.
+ * <p>
+ * Capacity is fixed when the file is created.  There is no eviction.  The file is not deleted on close, so it may be
+ * reused by later processes.  If the file already exists, its capacity is used, and constructor arguments for capacity
+ * are ignored.
+ * <p>
+ * Keys and values are encoded by a {@link CacheCodec}.  Each hit decodes the value, so it returns a new object.  Thus,
+ * the value type should be immutable.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see CacheImp
+ */
+@ThreadSafe
+public final class SharedMemoryCacheImp<TKey, TValue>
+implements Cache<TKey, TValue>, Closeable {
+
+    public static final int DEFAULT_MAX_ENTRY_COUNT = 64 * 1024;
+    public static final int DEFAULT_DATA_CAPACITY_BYTES = 64 * 1024 * 1024;
+
+    private static final int MAGIC = 0x53434d43;  // "SCMC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAGIC_POSITION = 0;
+    private static final int VERSION_POSITION = 4;
+    private static final int SLOT_COUNT_POSITION = 8;
+    private static final int DATA_CAPACITY_POSITION = 12;
+    private static final int ENTRY_COUNT_POSITION = 16;
+    private static final int DATA_END_POSITION = 20;
+    // Intentional: Reserve space for future fields.  Slots must be aligned to 8 bytes for atomic access.
+    private static final int HEADER_SIZE_BYTES = 64;
+    private static final int SLOT_SIZE_BYTES = Long.BYTES;
+    // [key length: 4 bytes][value length: 4 bytes]
+    private static final int ENTRY_HEADER_SIZE_BYTES = Integer.BYTES + Integer.BYTES;
+    private static final long EMPTY_SLOT = 0;
+
+    private static final VarHandle LONG_VAR_HANDLE =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    // Intentional: A file lock is held by the whole process, so threads (and instances) in one process must also be
+    // serialised by a lock that is shared by path.  Entries are never removed, but there is one per distinct file.
+    private static final ConcurrentHashMap<Path, ReentrantLock> FILE_PATH_TO_PROCESS_LOCK_MAP =
+        new ConcurrentHashMap<>();
+
+    // This object (7 refs + 2 ints + boolean), the wrapper for 'getFunc', and the MappedByteBuffer (5 refs + 5 ints +
+    // long + 4 booleans).  Intentional: The file channel is not included.
+    private static final long FIXED_RETAINED_BYTES =
+        JvmMemoryLayout.objectBytes(7, 2 * Integer.BYTES + 1) + JvmMemoryLayout.objectBytes(1, 0)
+            + JvmMemoryLayout.objectBytes(5, 5 * Integer.BYTES + Long.BYTES + 4);
+
+    private final CacheCodec<TKey> keyCodec;
+    private final CacheCodec<TValue> valueCodec;
+    private final Function<TKey, TValue> getFunc;
+    private final ReentrantLock processLock;
+    private final FileChannel fileChannel;
+    private final MappedByteBuffer buffer;
+    private final Path filePath;
+    private final int slotCount;
+    private final int fileSizeBytes;
+    private volatile boolean isClosed;
+
+    public SharedMemoryCacheImp(Path filePath,
+                                CacheCodec<TKey> keyCodec,
+                                CacheCodec<TValue> valueCodec,
+                                Function<TKey, TValue> getFunc)
+    throws IOException {
+
+        this(filePath, DEFAULT_MAX_ENTRY_COUNT, DEFAULT_DATA_CAPACITY_BYTES, keyCodec, valueCodec, getFunc);
+    }
+
+    /**
+     * @param filePath
+     *        shared file.  Created if it does not exist.
+     *
+     * @param maxEntryCount
+     *        maximum number of keys.  Ignored if the file exists.
+     *
+     * @param dataCapacityBytes
+     *        maximum total size of all encoded keys and values, including eight bytes per entry.  Ignored if the file
+     *        exists.
+     *
+     * @throws IOException
+     *         if the file cannot be mapped, or if it exists, but is not a cache file
+     */
+    public SharedMemoryCacheImp(final Path filePath,
+                                final int maxEntryCount,
+                                final int dataCapacityBytes,
+                                final CacheCodec<TKey> keyCodec,
+                                final CacheCodec<TValue> valueCodec,
+                                final Function<TKey, TValue> getFunc)
+    throws IOException {
+
+        Objects.requireNonNull(filePath);
+        if (maxEntryCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxEntryCount' must be positive: " + maxEntryCount);
+        }
+        if (dataCapacityBytes <= 0) {
+            throw new IllegalArgumentException("Argument 'dataCapacityBytes' must be positive: " + dataCapacityBytes);
+        }
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+        this.valueCodec = Objects.requireNonNull(valueCodec);
+        Objects.requireNonNull(getFunc);
+
+        this.getFunc = (TKey key) -> {
+            @Nullable
+            final TValue value = getFunc.apply(key);
+            if (null == value) {
+                // Intentional: Add key to exception message for easier debugging.  :)
+                throw new NullPointerException("Key [" + key + "] maps to a null value");
+            }
+            return value;
+        };
+        this.filePath = filePath;
+        this.fileChannel =
+            FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.processLock =
+                FILE_PATH_TO_PROCESS_LOCK_MAP.computeIfAbsent(filePath.toRealPath(), path -> new ReentrantLock());
+
+            final long newSlotCount = _slotCount(maxEntryCount);
+            final long newFileSizeBytes = HEADER_SIZE_BYTES + newSlotCount * SLOT_SIZE_BYTES + dataCapacityBytes;
+            if (newFileSizeBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format(
+                    "Arguments 'maxEntryCount' (%d) and 'dataCapacityBytes' (%d) are too large: Max file size: %d",
+                    maxEntryCount, dataCapacityBytes, Integer.MAX_VALUE));
+            }
+            this.buffer = _mapAndInit((int) newSlotCount, dataCapacityBytes, (int) newFileSizeBytes);
+            this.slotCount = buffer.getInt(SLOT_COUNT_POSITION);
+            this.fileSizeBytes = buffer.capacity();
+        }
+        catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+        this.isClosed = false;
+    }
+
+    // Intentional: Load factor is at most 0.5, so probe sequences are short.
+    private static long _slotCount(final int maxEntryCount) {
+
+        long x = 16;
+        while (x < 2L * maxEntryCount) {
+            x <<= 1;
+        }
+        return x;
+    }
+
+    private MappedByteBuffer _mapAndInit(final int newSlotCount,
+                                         final int newDataCapacityBytes,
+                                         final int newFileSizeBytes)
+    throws IOException {
+
+        processLock.lock();
+        try {
+            final FileLock fileLock = fileChannel.lock();
+            try {
+                final MappedByteBuffer x =
+                    _mapAndInitWhileLocked(newSlotCount, newDataCapacityBytes, newFileSizeBytes);
+                return x;
+            }
+            finally {
+                fileLock.release();
+            }
+        }
+        finally {
+            processLock.unlock();
+        }
+    }
+
+    // Caller must hold both locks.
+    private MappedByteBuffer _mapAndInitWhileLocked(final int newSlotCount,
+                                                    final int newDataCapacityBytes,
+                                                    final int newFileSizeBytes)
+    throws IOException {
+
+        final long existingFileSizeBytes = fileChannel.size();
+        if (0 == existingFileSizeBytes) {
+
+            final MappedByteBuffer x = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, newFileSizeBytes);
+            x.putInt(VERSION_POSITION, FORMAT_VERSION);
+            x.putInt(SLOT_COUNT_POSITION, newSlotCount);
+            x.putInt(DATA_CAPACITY_POSITION, newDataCapacityBytes);
+            x.putInt(ENTRY_COUNT_POSITION, 0);
+            x.putInt(DATA_END_POSITION, HEADER_SIZE_BYTES + newSlotCount * SLOT_SIZE_BYTES);
+            // Intentional: Magic is written last.  If we crash before this line, the file is rejected later.
+            x.putInt(MAGIC_POSITION, MAGIC);
+            x.force();
+            return x;
+        }
+        if (existingFileSizeBytes < HEADER_SIZE_BYTES || existingFileSizeBytes > Integer.MAX_VALUE) {
+            throw new IOException(
+                "Invalid cache file: Unexpected size: " + existingFileSizeBytes + ": " + filePath);
+        }
+        final MappedByteBuffer x = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, existingFileSizeBytes);
+        final int magic = x.getInt(MAGIC_POSITION);
+        final int version = x.getInt(VERSION_POSITION);
+        if (MAGIC != magic || FORMAT_VERSION != version) {
+            throw new IOException("Invalid cache file: " + filePath);
+        }
+        final long slotCount = x.getInt(SLOT_COUNT_POSITION);
+        final long dataCapacityBytes = x.getInt(DATA_CAPACITY_POSITION);
+        if (HEADER_SIZE_BYTES + slotCount * SLOT_SIZE_BYTES + dataCapacityBytes != existingFileSizeBytes) {
+            throw new IOException("Invalid cache file: Header does not match size: " + filePath);
+        }
+        return x;
+    }
+
+    // Intentional: Arrays.hashCode() is specified, so it is the same in all processes.  Then mix, so linear probing
+    // works well for keys that differ only in the last bytes.
+    private static int _hash(final byte[] keyByteArr) {
+
+        int x = Arrays.hashCode(keyByteArr);
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    @Override
+    public TValue get(TKey key) {
+
+        Objects.requireNonNull(key);
+        _checkNotClosed();
+
+        final byte[] keyByteArr = keyCodec.encode(key);
+        final int hash = _hash(keyByteArr);
+        final int slotIndex = _findSlotIndex(keyByteArr, hash);
+        // Intentional: Without a lock, another process may fill an empty slot with a different key after we find it.
+        // Thus, check the key again.
+        final long slot = _getSlotAcquire(slotIndex);
+        if (_isMatch(slot, hash, keyByteArr)) {
+            final TValue x = _decodeValue(slot, keyByteArr.length);
+            return x;
+        }
+        final TValue x = _getSlow(key, keyByteArr, hash);
+        return x;
+    }
+
+    private TValue _getSlow(final TKey key, final byte[] keyByteArr, final int hash) {
+
+        processLock.lock();
+        try {
+            final FileLock fileLock = _lockFile();
+            try {
+                // Intentional: Another thread or process may have loaded this key after our lock-free read.
+                final int slotIndex = _findSlotIndex(keyByteArr, hash);
+                final long slot = _getSlotAcquire(slotIndex);
+                if (EMPTY_SLOT != slot) {
+                    final TValue x = _decodeValue(slot, keyByteArr.length);
+                    return x;
+                }
+                final TValue value = getFunc.apply(key);
+                final byte[] valueByteArr = valueCodec.encode(value);
+                _append(slotIndex, hash, keyByteArr, valueByteArr);
+                return value;
+            }
+            finally {
+                _releaseFile(fileLock);
+            }
+        }
+        finally {
+            processLock.unlock();
+        }
+    }
+
+    private FileLock _lockFile() {
+
+        try {
+            final FileLock x = fileChannel.lock();
+            return x;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to lock cache file: " + filePath, e);
+        }
+    }
+
+    private void _releaseFile(final FileLock fileLock) {
+
+        try {
+            fileLock.release();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to unlock cache file: " + filePath, e);
+        }
+    }
+
+    // Caller must hold both locks.
+    private void _append(final int slotIndex, final int hash, final byte[] keyByteArr, final byte[] valueByteArr) {
+
+        final int entryCount = buffer.getInt(ENTRY_COUNT_POSITION);
+        // Intentional: Keep load factor at most 0.5.
+        if (entryCount >= slotCount / 2) {
+            throw new IllegalStateException(
+                "Cache file is full: Max entry count: " + (slotCount / 2) + ": " + filePath);
+        }
+        final int entryPosition = buffer.getInt(DATA_END_POSITION);
+        final long nextDataEnd =
+            (long) entryPosition + ENTRY_HEADER_SIZE_BYTES + keyByteArr.length + valueByteArr.length;
+        if (nextDataEnd > fileSizeBytes) {
+            throw new IllegalStateException(String.format(
+                "Cache file is full: Need %d bytes, but only %d remain: %s",
+                nextDataEnd - entryPosition, fileSizeBytes - entryPosition, filePath));
+        }
+        buffer.putInt(entryPosition, keyByteArr.length);
+        buffer.putInt(entryPosition + Integer.BYTES, valueByteArr.length);
+        final ByteBuffer dup = buffer.duplicate();
+        dup.position(entryPosition + ENTRY_HEADER_SIZE_BYTES);
+        dup.put(keyByteArr);
+        dup.put(valueByteArr);
+        buffer.putInt(DATA_END_POSITION, (int) nextDataEnd);
+        buffer.putInt(ENTRY_COUNT_POSITION, 1 + entryCount);
+        // Intentional: Publish last.  Release semantics, so readers never see the slot before the entry.
+        final long slot = ((long) hash << 32) | (entryPosition & 0xFFFF_FFFFL);
+        LONG_VAR_HANDLE.setRelease(buffer, _slotPosition(slotIndex), slot);
+    }
+
+    /**
+     * Time complexity: O(1) expected
+     *
+     * @return index of slot with matching key, or index of first empty slot
+     */
+    private int _findSlotIndex(final byte[] keyByteArr, final int hash) {
+
+        final int mask = slotCount - 1;
+        int slotIndex = hash & mask;
+        for (int i = 0; i < slotCount; ++i) {
+
+            final long slot = _getSlotAcquire(slotIndex);
+            if (EMPTY_SLOT == slot) {
+                return slotIndex;
+            }
+            if (_isMatch(slot, hash, keyByteArr)) {
+                return slotIndex;
+            }
+            slotIndex = (1 + slotIndex) & mask;
+        }
+        // Intentional: Impossible, because load factor is at most 0.5.
+        throw new IllegalStateException("Cache file index is full: " + filePath);
+    }
+
+    private long _getSlotAcquire(final int slotIndex) {
+
+        final long x = (long) LONG_VAR_HANDLE.getAcquire(buffer, _slotPosition(slotIndex));
+        return x;
+    }
+
+    private int _slotPosition(final int slotIndex) {
+
+        final int x = HEADER_SIZE_BYTES + slotIndex * SLOT_SIZE_BYTES;
+        return x;
+    }
+
+    private boolean _isMatch(final long slot, final int hash, final byte[] keyByteArr) {
+
+        if (EMPTY_SLOT == slot || hash != (int) (slot >>> 32)) {
+            return false;
+        }
+        final int entryPosition = (int) slot;
+        final int keyLength = buffer.getInt(entryPosition);
+        if (keyLength != keyByteArr.length) {
+            return false;
+        }
+        final int keyPosition = entryPosition + ENTRY_HEADER_SIZE_BYTES;
+        for (int i = 0; i < keyLength; ++i) {
+            if (keyByteArr[i] != buffer.get(keyPosition + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TValue _decodeValue(final long slot, final int keyLength) {
+
+        final int entryPosition = (int) slot;
+        final int valueLength = buffer.getInt(entryPosition + Integer.BYTES);
+        final byte[] valueByteArr = new byte[valueLength];
+        final ByteBuffer dup = buffer.duplicate();
+        dup.position(entryPosition + ENTRY_HEADER_SIZE_BYTES + keyLength);
+        dup.get(valueByteArr);
+        final TValue x = valueCodec.decode(valueByteArr, 0, valueLength);
+        return x;
+    }
+
+    /**
+     * @return number of keys stored by all processes
+     */
+    public int entryCount() {
+
+        _checkNotClosed();
+        final int x = buffer.getInt(ENTRY_COUNT_POSITION);
+        return x;
+    }
+
+    // Intentional: The file is mapped (off-heap), so it is not included.
+    @Override
+    public long estimatedRetainedBytes() {
+        return FIXED_RETAINED_BYTES;
+    }
+
+    /**
+     * Closes the file.  Stored entries remain for other processes and later instances.
+     * <p>
+     * Intentional: The mapping is released by the garbage collector.  Java 11 has no public API to unmap.
+     */
+    @Override
+    public void close()
+    throws IOException {
+
+        if (isClosed) {
+            return;
+        }
+        processLock.lock();
+        try {
+            isClosed = true;
+            fileChannel.close();
+        }
+        finally {
+            processLock.unlock();
+        }
+    }
+
+    private void _checkNotClosed() {
+
+        if (isClosed) {
+            throw new IllegalStateException("Cache is closed");
+        }
+    }
+}
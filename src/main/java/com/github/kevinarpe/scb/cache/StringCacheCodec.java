@@ -0,0 +1,34 @@
+package com.github.kevinarpe.scb.cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes strings as UTF-8.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+@ThreadSafe
+public final class StringCacheCodec
+implements CacheCodec<String> {
+
+    public static final StringCacheCodec INSTANCE = new StringCacheCodec();
+
+    private StringCacheCodec() {
+        // Empty
+    }
+
+    @Override
+    public byte[] encode(String value) {
+
+        final byte[] x = value.getBytes(StandardCharsets.UTF_8);
+        return x;
+    }
+
+    @Override
+    public String decode(byte[] byteArr, int offset, int length) {
+
+        final String x = new String(byteArr, offset, length, StandardCharsets.UTF_8);
+        return x;
+    }
+}
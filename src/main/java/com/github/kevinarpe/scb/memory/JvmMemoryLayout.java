@@ -0,0 +1,348 @@
+package com.github.kevinarpe.scb.memory;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.management.ManagementFactory;
+
+/**
+ * ThreadSafe?  Yes.  All state is read once when this class is loaded.
+ * <p>
+ * Estimates heap size of objects and common collections for the layout of the current JVM.  Only structural
+ * parameters are used, e.g., field counts, array lengths, and entry counts.  Nothing is measured, so each estimate is
+ * cheap.
+ * <p>
+ * Assumes a 64-bit HotSpot JVM.  Compressed references, compressed class pointers, and object alignment are read from
+ * VM options at startup.  If the VM options are not available, the HotSpot defaults for heaps under 32 GB are used.
+ * <p>
+ * Field sizes are summed, then aligned once.  HotSpot packs fields tightly, so this is usually exact.  Collection
+ * estimates assume the default load factor (0.75), and that tables have never shrunk.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+@ThreadSafe
+public final class JvmMemoryLayout {
+
+    public static final int REFERENCE_SIZE_BYTES;
+    public static final int OBJECT_HEADER_SIZE_BYTES;
+    public static final int ARRAY_HEADER_SIZE_BYTES;
+    public static final int OBJECT_ALIGNMENT_BYTES;
+
+    static {
+        final boolean isCompressedOops = Boolean.parseBoolean(_vmOptionOrDefault("UseCompressedOops", "true"));
+        final boolean isCompressedClassPointers =
+            Boolean.parseBoolean(_vmOptionOrDefault("UseCompressedClassPointers", "true"));
+
+        REFERENCE_SIZE_BYTES = isCompressedOops ? 4 : 8;
+        // Mark word is always 8 bytes.
+        OBJECT_HEADER_SIZE_BYTES = 8 + (isCompressedClassPointers ? 4 : 8);
+        OBJECT_ALIGNMENT_BYTES = Integer.parseInt(_vmOptionOrDefault("ObjectAlignmentInBytes", "8"));
+        // Intentional: Array elements always start on an 8-byte boundary, so 'long' elements are aligned.
+        ARRAY_HEADER_SIZE_BYTES = (int) _alignUp(OBJECT_HEADER_SIZE_BYTES + Integer.BYTES, Long.BYTES);
+    }
+
+    private JvmMemoryLayout() {
+        // Empty
+    }
+
+    private static String _vmOptionOrDefault(String name, String defaultValue) {
+
+        try {
+            @Nullable
+            final HotSpotDiagnosticMXBean nullableBean =
+                ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (null == nullableBean) {
+                return defaultValue;
+            }
+            final String x = nullableBean.getVMOption(name).getValue();
+            return x;
+        }
+        // Intentional: Not HotSpot, or option is unknown.
+        catch (RuntimeException | LinkageError e) {
+            return defaultValue;
+        }
+    }
+
+    private static long _alignUp(final long sizeBytes, final long alignmentBytes) {
+
+        final long x = (sizeBytes + alignmentBytes - 1) / alignmentBytes * alignmentBytes;
+        return x;
+    }
+
+    /**
+     * @return {@code sizeBytes} rounded up to {@link #OBJECT_ALIGNMENT_BYTES}
+     */
+    public static long align(final long sizeBytes) {
+
+        final long x = _alignUp(sizeBytes, OBJECT_ALIGNMENT_BYTES);
+        return x;
+    }
+
+    /**
+     * @param referenceFieldCount
+     *        number of instance fields that are references, including all superclasses
+     *
+     * @param primitiveFieldBytes
+     *        sum of sizes of all primitive instance fields, including all superclasses
+     *
+     * @return shallow size of one object
+     */
+    public static long objectBytes(final int referenceFieldCount, final int primitiveFieldBytes) {
+
+        final long x =
+            align(OBJECT_HEADER_SIZE_BYTES + (long) referenceFieldCount * REFERENCE_SIZE_BYTES + primitiveFieldBytes);
+        return x;
+    }
+
+    /**
+     * @param elementSizeBytes
+     *        e.g., {@link Long#BYTES} for {@code long[]}, or {@link #REFERENCE_SIZE_BYTES} for {@code Object[]}
+     *
+     * @return shallow size of one array
+     */
+    public static long arrayBytes(final long length, final int elementSizeBytes) {
+
+        final long x = align(ARRAY_HEADER_SIZE_BYTES + length * elementSizeBytes);
+        return x;
+    }
+
+    /**
+     * @return shallow size of one reference array, e.g., {@code Object[]}
+     */
+    public static long referenceArrayBytes(final long length) {
+
+        final long x = arrayBytes(length, REFERENCE_SIZE_BYTES);
+        return x;
+    }
+
+    /**
+     * Boxed primitives are not shared, except small values from {@code valueOf()} caches.  This ignores the caches.
+     *
+     * @return size of one {@link Long}
+     */
+    public static long boxedLongBytes() {
+
+        final long x = objectBytes(0, Long.BYTES);
+        return x;
+    }
+
+    /**
+     * @return table length of a {@link java.util.HashMap} with default settings after {@code size} inserts, or zero if
+     *         {@code size} is zero.
+     */
+    public static int hashTableLength(final int size) {
+
+        if (0 == size) {
+            return 0;
+        }
+        int x = 16;
+        // Intentional: Resize when size exceeds 0.75 of table length.
+        while (size > x - (x >>> 2)) {
+            x <<= 1;
+        }
+        return x;
+    }
+
+    /**
+     * {@link java.util.HashMap#computeIfAbsent(Object, java.util.function.Function)} resizes before insert, but
+     * {@link java.util.HashMap#put(Object, Object)} resizes after, so the table grows one insert later.
+     *
+     * @return table length of a {@link java.util.HashMap} with default settings after {@code size} inserts by
+     *         {@code computeIfAbsent()}, or zero if {@code size} is zero.
+     */
+    public static int computeIfAbsentHashTableLength(final int size) {
+
+        if (0 == size) {
+            return 0;
+        }
+        final int x = Math.max(16, hashTableLength(size - 1));
+        return x;
+    }
+
+    /**
+     * @return table length of a {@link java.util.concurrent.ConcurrentHashMap} with default settings after
+     *         {@code size} inserts, or zero if {@code size} is zero.
+     */
+    public static int concurrentHashTableLength(final int size) {
+
+        if (0 == size) {
+            return 0;
+        }
+        int x = 16;
+        // Intentional: Unlike HashMap, resize when size *reaches* 0.75 of table length.
+        while (size >= x - (x >>> 2)) {
+            x <<= 1;
+        }
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.
+     *
+     * @return retained size of a {@link java.util.HashMap}
+     */
+    public static long hashMapBytes(final int size) {
+
+        // Fields: table, entrySet, keySet, values, size, modCount, threshold, loadFactor
+        final long mapBytes = objectBytes(4, 4 * Integer.BYTES);
+        // Node fields: hash, key, value, next
+        final long nodeBytes = objectBytes(3, Integer.BYTES);
+        final long x = mapBytes + _tableBytes(hashTableLength(size)) + size * nodeBytes;
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.
+     *
+     * @return retained size of a {@link java.util.LinkedHashMap}
+     */
+    public static long linkedHashMapBytes(final int size) {
+
+        final long x = linkedHashMapBytes(size, hashTableLength(size));
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.
+     *
+     * @param tableLength
+     *        e.g., {@link #hashTableLength(int)} or {@link #computeIfAbsentHashTableLength(int)}
+     *
+     * @return retained size of a {@link java.util.LinkedHashMap}
+     */
+    public static long linkedHashMapBytes(final int size, final int tableLength) {
+
+        final long x = linkedHashMapBytes(size, tableLength, 0);
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.
+     *
+     * @param tableLength
+     *        e.g., {@link #hashTableLength(int)} or {@link #computeIfAbsentHashTableLength(int)}
+     *
+     * @param subclassPrimitiveFieldBytes
+     *        sum of sizes of primitive instance fields added by a subclass, e.g., to override
+     *        {@code removeEldestEntry()}
+     *
+     * @return retained size of a {@link java.util.LinkedHashMap}, or subclass
+     */
+    public static long linkedHashMapBytes(final int size,
+                                          final int tableLength,
+                                          final int subclassPrimitiveFieldBytes) {
+
+        // Fields: HashMap + head, tail, accessOrder
+        final long mapBytes = objectBytes(6, 4 * Integer.BYTES + 1 + subclassPrimitiveFieldBytes);
+        // Entry fields: HashMap.Node + before, after
+        final long entryBytes = objectBytes(5, Integer.BYTES);
+        final long x = mapBytes + _tableBytes(tableLength) + size * entryBytes;
+        return x;
+    }
+
+    /**
+     * Elements are not included.
+     *
+     * @return retained size of a {@link java.util.HashSet}
+     */
+    public static long hashSetBytes(final int size) {
+
+        // Fields: map
+        final long x = objectBytes(1, 0) + hashMapBytes(size);
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.  Counter cells for highly contended updates are not included.
+     *
+     * @return retained size of a {@link java.util.concurrent.ConcurrentHashMap}
+     */
+    public static long concurrentHashMapBytes(final int size) {
+
+        // Fields: AbstractMap.keySet, AbstractMap.values, keySet, values, entrySet, table, nextTable, counterCells,
+        // baseCount, sizeCtl, transferIndex, cellsBusy
+        final long mapBytes = objectBytes(8, Long.BYTES + 3 * Integer.BYTES);
+        // Node fields: hash, key, val, next
+        final long nodeBytes = objectBytes(3, Integer.BYTES);
+        final long x = mapBytes + _tableBytes(concurrentHashTableLength(size)) + size * nodeBytes;
+        return x;
+    }
+
+    /**
+     * Keys and values are not included.
+     *
+     * @return retained size of a {@link java.util.TreeMap}
+     */
+    public static long treeMapBytes(final int size) {
+
+        // Fields: comparator, root, entrySet, navigableKeySet, descendingMap, keySet, values, size, modCount
+        final long mapBytes = objectBytes(7, 2 * Integer.BYTES);
+        // Entry fields: key, value, left, right, parent, color
+        final long entryBytes = objectBytes(5, 1);
+        final long x = mapBytes + size * entryBytes;
+        return x;
+    }
+
+    /**
+     * @return retained size of an HPPC {@link LongIntHashMap}
+     */
+    public static long longIntHashMapBytes(LongIntHashMap map) {
+
+        // Fields: keys, values, orderMixer, keyMixer, assigned, mask, resizeAt, hasEmptyKey, loadFactor
+        // Intentional: The default order mixer is a shared singleton, so it is not included.
+        final long x =
+            objectBytes(3, 4 * Integer.BYTES + 1 + Double.BYTES)
+                + arrayBytes(map.keys.length, Long.BYTES) + arrayBytes(map.values.length, Integer.BYTES);
+        return x;
+    }
+
+    /**
+     * @return retained size of an HPPC {@link LongLongHashMap}
+     */
+    public static long longLongHashMapBytes(LongLongHashMap map) {
+
+        // Fields: Same as LongIntHashMap
+        // Intentional: The default order mixer is a shared singleton, so it is not included.
+        final long x =
+            objectBytes(3, 4 * Integer.BYTES + 1 + Double.BYTES)
+                + arrayBytes(map.keys.length, Long.BYTES) + arrayBytes(map.values.length, Long.BYTES);
+        return x;
+    }
+
+    /**
+     * Values are not included.
+     *
+     * @return retained size of an HPPC {@link LongObjectHashMap}
+     */
+    public static long longObjectHashMapBytes(LongObjectHashMap<?> map) {
+
+        // Fields: Same as LongIntHashMap
+        // Intentional: The default order mixer is a shared singleton, so it is not included.
+        final long x =
+            objectBytes(3, 4 * Integer.BYTES + 1 + Double.BYTES)
+                + arrayBytes(map.keys.length, Long.BYTES) + referenceArrayBytes(map.values.length);
+        return x;
+    }
+
+    /**
+     * @return retained size of an HPPC {@link LongHashSet}
+     */
+    public static long longHashSetBytes(LongHashSet set) {
+
+        // Fields: keys, orderMixer, keyMixer, assigned, mask, resizeAt, hasEmptyKey, loadFactor
+        // Intentional: The default order mixer is a shared singleton, so it is not included.
+        final long x = objectBytes(2, 4 * Integer.BYTES + 1 + Double.BYTES) + arrayBytes(set.keys.length, Long.BYTES);
+        return x;
+    }
+
+    private static long _tableBytes(final int tableLength) {
+
+        final long x = (0 == tableLength) ? 0 : referenceArrayBytes(tableLength);
+        return x;
+    }
+}
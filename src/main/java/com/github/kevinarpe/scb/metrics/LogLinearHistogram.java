@@ -0,0 +1,192 @@
+package com.github.kevinarpe.scb.metrics;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ThreadSafe?  Yes.  Recording is lock-free: one atomic increment per value.
+ * <p>
+ * Histogram of non-negative {@code long} values with log-linear buckets: Each power of two is split into
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets.  Thus, relative error is at most 1/{@value #SUB_BUCKET_COUNT}
+ * (about 6%) for any value, and memory is fixed (less than 8 KB), regardless of range or number of values.
+ * Values less than {@value #SUB_BUCKET_COUNT} are exact.
+ * <p>
+ * Inspired by HdrHistogram: http://hdrhistogram.org/
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+@ThreadSafe
+public final class LogLinearHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    // Largest exponent (index of highest one bit) for a positive long is 62.
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray countArr;
+
+    public LogLinearHistogram() {
+
+        this.countArr = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    /**
+     * @param value
+     *        if negative, zero is recorded
+     */
+    public void record(final long value) {
+
+        final int index = _bucketIndex(Math.max(0, value));
+        countArr.incrementAndGet(index);
+    }
+
+    // package-private for testing
+    static int _bucketIndex(final long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucketIndex = (int) ((value >>> shift) & SUB_BUCKET_MASK);
+        final int x = SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucketIndex;
+        return x;
+    }
+
+    // package-private for testing
+    static long _bucketLowerBound(final int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucketIndex = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        final long x = ((long) (SUB_BUCKET_COUNT + subBucketIndex)) << shift;
+        return x;
+    }
+
+    // package-private for testing
+    static long _bucketUpperBound(final int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final long x = _bucketLowerBound(index) + (1L << shift) - 1;
+        return x;
+    }
+
+    /**
+     * Copies current counts.  Concurrent records may or may not be included, but each is either fully included or not.
+     * <p>
+     * Time complexity: O(b) where b is number of buckets (constant)
+     */
+    public Snapshot snapshot() {
+
+        final long[] countArr = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            countArr[i] = this.countArr.get(i);
+            totalCount += countArr[i];
+        }
+        final Snapshot x = new Snapshot(countArr, totalCount);
+        return x;
+    }
+
+    /**
+     * Immutable copy of histogram counts.
+     */
+    @Immutable
+    public static final class Snapshot {
+
+        private final long[] countArr;
+        public final long totalCount;
+
+        private Snapshot(long[] countArr, long totalCount) {
+
+            this.countArr = countArr;
+            this.totalCount = totalCount;
+        }
+
+        /**
+         * @param percentile
+         *        from 0.0 to 100.0 (inclusive), e.g., 99.9
+         *
+         * @return upper bound of the bucket that contains the value at {@code percentile}, or zero if empty
+         */
+        public long valueAtPercentile(final double percentile) {
+
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new IllegalArgumentException("Argument 'percentile' must be 0.0..100.0: " + percentile);
+            }
+            if (0 == totalCount) {
+                return 0;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(totalCount * (percentile / 100.0)));
+            long cumulativeCount = 0;
+            for (int i = 0; i < countArr.length; ++i) {
+                cumulativeCount += countArr[i];
+                if (cumulativeCount >= rank) {
+                    return _bucketUpperBound(i);
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        /**
+         * @return lower bound of the bucket that contains the smallest value, or zero if empty
+         */
+        public long min() {
+
+            for (int i = 0; i < countArr.length; ++i) {
+                if (countArr[i] > 0) {
+                    return _bucketLowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return upper bound of the bucket that contains the largest value, or zero if empty
+         */
+        public long max() {
+
+            for (int i = countArr.length - 1; i >= 0; --i) {
+                if (countArr[i] > 0) {
+                    return _bucketUpperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return approximate mean, using the midpoint of each bucket, or zero if empty
+         */
+        public double mean() {
+
+            if (0 == totalCount) {
+                return 0.0;
+            }
+            double sum = 0.0;
+            for (int i = 0; i < countArr.length; ++i) {
+                if (countArr[i] > 0) {
+                    final double midpoint = (_bucketLowerBound(i) / 2.0) + (_bucketUpperBound(i) / 2.0);
+                    sum += midpoint * countArr[i];
+                }
+            }
+            final double x = sum / totalCount;
+            return x;
+        }
+
+        @Override
+        public String toString() {
+
+            final String x = String.format("count=%d, min=%d, p50=%d, p90=%d, p99=%d, p99.9=%d, max=%d",
+                totalCount, min(), valueAtPercentile(50.0), valueAtPercentile(90.0), valueAtPercentile(99.0),
+                valueAtPercentile(99.9), max());
+            return x;
+        }
+    }
+}
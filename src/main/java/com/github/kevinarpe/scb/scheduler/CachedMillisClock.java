@@ -0,0 +1,50 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+
+/**
+ * ThreadSafe?  Yes.
+ * <p>
+ * Caches the time from another clock.  Reading the cached time is a single volatile read, which is cheaper than
+ * {@link System#currentTimeMillis()}.  The cached time only changes when {@link #refresh()} is called, usually by a
+ * single thread, e.g., the poller thread of {@link DeadlineScheduler}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see MillisClock
+ */
+@ThreadSafe
+public final class CachedMillisClock
+implements MillisClock {
+
+    private final MillisClock delegate;
+    private volatile long volatileCachedMillis;
+
+    public CachedMillisClock(MillisClock delegate) {
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.volatileCachedMillis = delegate.currentTimeMillis();
+    }
+
+    /**
+     * Reads the time from the underlying clock, then caches it.
+     *
+     * @return new cached time in millis since epoch
+     */
+    public long refresh() {
+
+        final long x = delegate.currentTimeMillis();
+        volatileCachedMillis = x;
+        return x;
+    }
+
+    /**
+     * @return cached time from the last call to {@link #refresh()}
+     */
+    @Override
+    public long currentTimeMillis() {
+        final long x = volatileCachedMillis;
+        return x;
+    }
+}
@@ -0,0 +1,879 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This implementation is a calendar queue.  Ref: R. Brown, "Calendar Queues: A Fast O(1) Priority Queue Implementation
+ * for the Simulation Event Set Problem", Communications of the ACM, 1988.
+ * <p>
+ * Time is divided into "days" of {@code bucketWidthMillis}.  Each day maps to one of {@code bucketCount} buckets, like
+ * days of a year on a calendar.  Each bucket is a sorted, doubly-linked list.  If the bucket width is well-chosen, each
+ * bucket holds few entries, so schedule, cancel, and poll are near O(1).
+ * <p>
+ * The best bucket width depends upon the distribution of deadlines, which may change over time, e.g., sub-second RPC
+ * timeouts by day, but hour-long session expiries by night.  Thus, this engine adapts:
+ * <ul>
+ *     <li>Bucket count is doubled when size exceeds twice the bucket count, and halved when size falls below half of
+ *     the bucket count.</li>
+ *     <li>On each resize, bucket width is estimated from sampled gaps: three times the average gap between (up to)
+ *     the next {@value #SAMPLE_COUNT} deadlines, ignoring outliers.</li>
+ *     <li>Sampling from the front is a poor estimate for timeouts: Most are cancelled before they fire, so the front
+ *     is sparse, but the back (where new deadlines are inserted) is dense.  Thus, scan lengths are also measured over
+ *     a window of operations.  If inserts scan too many entries, buckets are too wide.  If dequeues scan too many
+ *     empty buckets, buckets are too narrow.  Either way, bucket width is scaled in proportion.</li>
+ * </ul>
+ * <p>
+ * Each request ID is a generational handle, as {@link GenerationalHandleDeadlineEngineImp}, so there is no hash map.
+ * <p>
+ * Groups are intrusive doubly-linked lists through the slot arrays, so {@link #cancelGroup(long)} is O(k) for k
+ * members.  The only hash map is from group key to the first member.
+ * <p>
+ * Unlike {@link DeadlineEngineImp}, each expired deadline is removed <i>before</i> the handler is called.
+ * <p>
+ * Recurring deadlines keep their slot, so the request ID never changes.  After each poll, each one that fired is
+ * linked again into its new bucket.  See {@link GenerationalHandleDeadlineEngineImp}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ * @see GenerationalHandleDeadlineEngineImp
+ */
+public final class CalendarQueueDeadlineEngineImp
+implements DeadlineEngine {
+
+    // package-private for testing
+    static final int MIN_GENERATION = 1;
+    static final int MIN_BUCKET_COUNT = 16;
+    static final int SAMPLE_COUNT = 25;
+    private static final long INITIAL_BUCKET_WIDTH_MILLIS = 16;
+    // If the average scan (in entries or buckets) per operation exceeds the max, then scale bucket width to target.
+    private static final int MAX_AVERAGE_SCAN_LENGTH = 4;
+    private static final int TARGET_AVERAGE_SCAN_LENGTH = 1;
+    private static final int MIN_SCAN_WINDOW_COUNT = 64;
+    private static final int NIL = -1;
+    // Stored in 'slotPrevArr' to mark a free slot
+    private static final int FREE = -2;
+    // Stored in 'slotPrevArr' to mark a recurring slot that fired during the current poll, and will be re-armed
+    private static final int REARM = -3;
+    private static final int MIN_CAPACITY = 1024;
+    // Stored in 'slotGroupPrevArr' when slot is not a member of any group
+    private static final int NOT_IN_GROUP = -2;
+
+    // Each slot uses one entry from each array.
+    private long[] slotDeadlineEpochMillisArr;
+    // Intentional: Generation always >= MIN_GENERATION, so request IDs are always positive.
+    private int[] slotGenerationArr;
+    private int[] slotNextArr;
+    // Previous slot in bucket, NIL if head, FREE, or REARM
+    private int[] slotPrevArr;
+    // Zero if one-shot
+    private long[] slotPeriodMillisArr;
+    // Null if one-shot
+    private RecurrencePolicy[] slotRecurrencePolicyArr;
+    // Only valid if 'slotGroupPrevArr[slot]' is not NOT_IN_GROUP
+    private long[] slotGroupKeyArr;
+    // Previous member in same group, NIL if first, or NOT_IN_GROUP
+    private int[] slotGroupPrevArr;
+    // Next member in same group, or NIL if last
+    private int[] slotGroupNextArr;
+    // Each value is the first member slot of the group
+    private final LongIntHashMap groupKey_To_HeadSlot_Map;
+    // Number of slots ever used.  Slots at or after this index have never been used.
+    private int slotCount;
+    // Stack of free slots below 'slotCount'
+    private int[] freeSlotArr;
+    private int freeSlotCount;
+
+    private int[] bucketHeadSlotArr;
+    private int[] bucketTailSlotArr;
+    // bucketCount - 1.  Bucket count is always a power of two.
+    private int bucketMask;
+    private long bucketWidthMillis;
+    // Lower bound for all pending deadlines.  Dequeue scans forward from here.
+    private long cursorEpochMillis;
+    private int size;
+    // Sum of scan lengths and count of operations in current window.  See _maybeResize().
+    private long insertScanLengthSum;
+    private int insertCount;
+    private long dequeueScanLengthSum;
+    private int dequeueCount;
+    // Intentional: Reuse, so sampling does not allocate.
+    private final long[] sampleArr;
+    // Recurring slots that fired during the current poll.  See _rearm().
+    private int[] rearmSlotArr;
+    private int rearmSlotCount;
+    // Number of slots in 'rearmSlotArr' still in state REARM
+    private int pendingRearmCount;
+
+    public CalendarQueueDeadlineEngineImp() {
+
+        this.slotDeadlineEpochMillisArr = new long[MIN_CAPACITY];
+        this.slotGenerationArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotGenerationArr, MIN_GENERATION);
+        this.slotNextArr = new int[MIN_CAPACITY];
+        this.slotPrevArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotPrevArr, FREE);
+        this.slotCount = 0;
+        this.freeSlotArr = new int[MIN_CAPACITY];
+        this.freeSlotCount = 0;
+        this.bucketHeadSlotArr = new int[MIN_BUCKET_COUNT];
+        Arrays.fill(bucketHeadSlotArr, NIL);
+        this.bucketTailSlotArr = new int[MIN_BUCKET_COUNT];
+        Arrays.fill(bucketTailSlotArr, NIL);
+        this.bucketMask = MIN_BUCKET_COUNT - 1;
+        this.bucketWidthMillis = INITIAL_BUCKET_WIDTH_MILLIS;
+        this.cursorEpochMillis = Long.MAX_VALUE;
+        this.size = 0;
+        this.insertScanLengthSum = 0;
+        this.insertCount = 0;
+        this.dequeueScanLengthSum = 0;
+        this.dequeueCount = 0;
+        this.sampleArr = new long[SAMPLE_COUNT];
+        this.slotGroupKeyArr = new long[MIN_CAPACITY];
+        this.slotGroupPrevArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotGroupPrevArr, NOT_IN_GROUP);
+        this.slotGroupNextArr = new int[MIN_CAPACITY];
+        this.groupKey_To_HeadSlot_Map = new LongIntHashMap();
+        this.slotPeriodMillisArr = new long[MIN_CAPACITY];
+        this.slotRecurrencePolicyArr = new RecurrencePolicy[MIN_CAPACITY];
+        this.rearmSlotArr = new int[MIN_CAPACITY];
+        this.rearmSlotCount = 0;
+        this.pendingRearmCount = 0;
+    }
+
+    // package-private for testing
+    int bucketCount() {
+        return 1 + bucketMask;
+    }
+
+    // package-private for testing
+    long bucketWidthMillis() {
+        return bucketWidthMillis;
+    }
+
+    // Time complexity: O(1) -> constant (amortised, if bucket width is well-chosen)
+    @Override
+    public long schedule(final long deadlineEpochMillis) {
+
+        _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        final int slot = _allocateSlot();
+        slotDeadlineEpochMillisArr[slot] = deadlineEpochMillis;
+        _recordInsertScan(_link(slot));
+        ++size;
+        final long x = _toRequestId(slotGenerationArr[slot], slot);
+        _maybeResize();
+        return x;
+    }
+
+    // Time complexity: O(1) -> constant (amortised, if bucket width is well-chosen)
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        final long requestId = schedule(firstDeadlineEpochMillis);
+        final int slot = (int) requestId;
+        slotPeriodMillisArr[slot] = periodMillis;
+        slotRecurrencePolicyArr[slot] = policy;
+        return requestId;
+    }
+
+    // Time complexity: O(1) -> constant (amortised, if bucket width is well-chosen)
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = schedule(deadlineEpochMillis);
+        final int slot = (int) requestId;
+        // Add as first member
+        final int index = groupKey_To_HeadSlot_Map.indexOf(groupKey);
+        final int nextSlot;
+        if (groupKey_To_HeadSlot_Map.indexExists(index)) {
+            nextSlot = groupKey_To_HeadSlot_Map.indexGet(index);
+            slotGroupPrevArr[nextSlot] = slot;
+            groupKey_To_HeadSlot_Map.indexReplace(index, slot);
+        }
+        else {
+            nextSlot = NIL;
+            groupKey_To_HeadSlot_Map.indexInsert(index, groupKey, slot);
+        }
+        slotGroupKeyArr[slot] = groupKey;
+        slotGroupPrevArr[slot] = NIL;
+        slotGroupNextArr[slot] = nextSlot;
+        return requestId;
+    }
+
+    // Time complexity: O(k) for k members -- no scan of other deadlines
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final int index = groupKey_To_HeadSlot_Map.indexOf(groupKey);
+        if (false == groupKey_To_HeadSlot_Map.indexExists(index)) {
+            return 0;
+        }
+        int slot = groupKey_To_HeadSlot_Map.indexGet(index);
+        // Intentional: Remove the whole group once, not one member at a time.
+        groupKey_To_HeadSlot_Map.remove(groupKey);
+        int count = 0;
+        while (NIL != slot) {
+
+            final int nextSlot = slotGroupNextArr[slot];
+            slotGroupPrevArr[slot] = NOT_IN_GROUP;
+            _cancelSlot(slot);
+            ++count;
+            slot = nextSlot;
+        }
+        _maybeResize();
+        return count;
+    }
+
+    // Time complexity: O(1) -> constant
+    private void _unlinkFromGroup(final int slot) {
+
+        final int prevSlot = slotGroupPrevArr[slot];
+        if (NOT_IN_GROUP == prevSlot) {
+            return;
+        }
+        final int nextSlot = slotGroupNextArr[slot];
+        if (NIL != nextSlot) {
+            slotGroupPrevArr[nextSlot] = prevSlot;
+        }
+        if (NIL != prevSlot) {
+            slotGroupNextArr[prevSlot] = nextSlot;
+        }
+        else if (NIL != nextSlot) {
+            groupKey_To_HeadSlot_Map.put(slotGroupKeyArr[slot], nextSlot);
+        }
+        else {
+            groupKey_To_HeadSlot_Map.remove(slotGroupKeyArr[slot]);
+        }
+        slotGroupPrevArr[slot] = NOT_IN_GROUP;
+    }
+
+    private void _checkEpochMillis(final long deadlineEpochMillis, String argName) {
+
+        if (deadlineEpochMillis < 0) {
+            throw new IllegalArgumentException("Argument '" + argName + "' must be positive: " + deadlineEpochMillis);
+        }
+    }
+
+    private static long _toRequestId(final int generation, final int slot) {
+
+        final long x = (((long) generation) << 32) | slot;
+        return x;
+    }
+
+    private int _allocateSlot() {
+
+        if (freeSlotCount > 0) {
+            --freeSlotCount;
+            final int x = freeSlotArr[freeSlotCount];
+            return x;
+        }
+        if (slotCount == slotGenerationArr.length) {
+            _grow();
+        }
+        final int x = slotCount;
+        ++slotCount;
+        return x;
+    }
+
+    private void _grow() {
+
+        if (Integer.MAX_VALUE == slotCount) {
+            throw new IllegalStateException("Too many deadlines: " + size);
+        }
+        final int oldCapacity = slotGenerationArr.length;
+        final int newCapacity = (int) Math.min(2L * oldCapacity, Integer.MAX_VALUE);
+        slotDeadlineEpochMillisArr = Arrays.copyOf(slotDeadlineEpochMillisArr, newCapacity);
+        slotGenerationArr = Arrays.copyOf(slotGenerationArr, newCapacity);
+        Arrays.fill(slotGenerationArr, oldCapacity, newCapacity, MIN_GENERATION);
+        slotNextArr = Arrays.copyOf(slotNextArr, newCapacity);
+        slotPrevArr = Arrays.copyOf(slotPrevArr, newCapacity);
+        Arrays.fill(slotPrevArr, oldCapacity, newCapacity, FREE);
+        freeSlotArr = Arrays.copyOf(freeSlotArr, newCapacity);
+        slotGroupKeyArr = Arrays.copyOf(slotGroupKeyArr, newCapacity);
+        slotGroupPrevArr = Arrays.copyOf(slotGroupPrevArr, newCapacity);
+        Arrays.fill(slotGroupPrevArr, oldCapacity, newCapacity, NOT_IN_GROUP);
+        slotGroupNextArr = Arrays.copyOf(slotGroupNextArr, newCapacity);
+        slotPeriodMillisArr = Arrays.copyOf(slotPeriodMillisArr, newCapacity);
+        slotRecurrencePolicyArr = Arrays.copyOf(slotRecurrencePolicyArr, newCapacity);
+    }
+
+    private void _freeSlot(final int slot) {
+
+        _unlinkFromGroup(slot);
+        slotPrevArr[slot] = FREE;
+        slotPeriodMillisArr[slot] = 0;
+        slotRecurrencePolicyArr[slot] = null;
+        final int generation = slotGenerationArr[slot];
+        // Intentional: Skip zero and negative on wrap-around, so request IDs are always positive.
+        slotGenerationArr[slot] = (Integer.MAX_VALUE == generation) ? MIN_GENERATION : 1 + generation;
+        freeSlotArr[freeSlotCount] = slot;
+        ++freeSlotCount;
+    }
+
+    /**
+     * @return slot index, or -1 if request ID is invalid or stale
+     */
+    private int _findLiveSlot(final long requestId) {
+
+        final int slot = (int) requestId;
+        final int generation = (int) (requestId >>> 32);
+        // Intentional: Do not check argument.  Allow any random 'requestId' to be passed.
+        if (slot < 0 || slot >= slotCount
+            || slotGenerationArr[slot] != generation
+            || FREE == slotPrevArr[slot]) {
+
+            return -1;
+        }
+        return slot;
+    }
+
+    private int _bucketIndex(final long deadlineEpochMillis) {
+
+        final int x = (int) ((deadlineEpochMillis / bucketWidthMillis) & bucketMask);
+        return x;
+    }
+
+    /**
+     * Inserts slot into its bucket in sorted order.  Equal deadlines are kept in schedule order.
+     *
+     * @return number of entries scanned
+     */
+    private int _link(final int slot) {
+
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        final int bucketIndex = _bucketIndex(deadlineEpochMillis);
+        // Intentional: Scan backwards from tail.  New deadlines are usually the latest, so this is usually O(1).
+        int prevSlot = bucketTailSlotArr[bucketIndex];
+        int scanLength = 0;
+        while (NIL != prevSlot && slotDeadlineEpochMillisArr[prevSlot] > deadlineEpochMillis) {
+            prevSlot = slotPrevArr[prevSlot];
+            ++scanLength;
+        }
+        final int nextSlot = (NIL == prevSlot) ? bucketHeadSlotArr[bucketIndex] : slotNextArr[prevSlot];
+        slotPrevArr[slot] = prevSlot;
+        slotNextArr[slot] = nextSlot;
+        if (NIL == prevSlot) {
+            bucketHeadSlotArr[bucketIndex] = slot;
+        }
+        else {
+            slotNextArr[prevSlot] = slot;
+        }
+        if (NIL == nextSlot) {
+            bucketTailSlotArr[bucketIndex] = slot;
+        }
+        else {
+            slotPrevArr[nextSlot] = slot;
+        }
+        if (deadlineEpochMillis < cursorEpochMillis) {
+            cursorEpochMillis = deadlineEpochMillis;
+        }
+        return scanLength;
+    }
+
+    private void _unlink(final int slot) {
+
+        final int bucketIndex = _bucketIndex(slotDeadlineEpochMillisArr[slot]);
+        final int prevSlot = slotPrevArr[slot];
+        final int nextSlot = slotNextArr[slot];
+        if (NIL == prevSlot) {
+            bucketHeadSlotArr[bucketIndex] = nextSlot;
+        }
+        else {
+            slotNextArr[prevSlot] = nextSlot;
+        }
+        if (NIL == nextSlot) {
+            bucketTailSlotArr[bucketIndex] = prevSlot;
+        }
+        else {
+            slotPrevArr[nextSlot] = prevSlot;
+        }
+    }
+
+    /**
+     * Scans forward, day by day, from the cursor.  The first bucket whose head is due on the current day holds the
+     * earliest deadline.  If a whole year is empty, deadlines are sparse, so fall back to a direct search of all heads.
+     * <p>
+     * Time complexity: O(1) if bucket width is well-chosen, else O(bucket count)
+     *
+     * @return slot with earliest deadline, or NIL if empty
+     */
+    private int _findMinSlot() {
+
+        if (0 == size) {
+            return NIL;
+        }
+        final int bucketCount = bucketCount();
+        long day = cursorEpochMillis / bucketWidthMillis;
+        for (int i = 0; i < bucketCount; ++i, ++day) {
+
+            final int headSlot = bucketHeadSlotArr[(int) (day & bucketMask)];
+            // Intentional: Compare days, not (day + 1) * width, which may overflow.
+            if (NIL != headSlot && slotDeadlineEpochMillisArr[headSlot] / bucketWidthMillis == day) {
+
+                cursorEpochMillis = slotDeadlineEpochMillisArr[headSlot];
+                _recordDequeueScan(i);
+                return headSlot;
+            }
+        }
+        int minSlot = NIL;
+        for (int bucketIndex = 0; bucketIndex < bucketCount; ++bucketIndex) {
+
+            final int headSlot = bucketHeadSlotArr[bucketIndex];
+            if (NIL != headSlot
+                && (NIL == minSlot || slotDeadlineEpochMillisArr[headSlot] < slotDeadlineEpochMillisArr[minSlot])) {
+
+                minSlot = headSlot;
+            }
+        }
+        cursorEpochMillis = slotDeadlineEpochMillisArr[minSlot];
+        _recordDequeueScan(2 * bucketCount);
+        return minSlot;
+    }
+
+    private void _recordInsertScan(final int scanLength) {
+
+        insertScanLengthSum += scanLength;
+        ++insertCount;
+    }
+
+    private void _recordDequeueScan(final int scanLength) {
+
+        dequeueScanLengthSum += scanLength;
+        ++dequeueCount;
+    }
+
+    private void _remove(final int slot) {
+
+        _unlink(slot);
+        _freeSlot(slot);
+        --size;
+    }
+
+    // Time complexity: O(1) -> constant
+    private void _cancelSlot(final int slot) {
+
+        if (REARM == slotPrevArr[slot]) {
+            // Cancelled by handler during poll: Not in any bucket, so nothing to unlink.
+            --pendingRearmCount;
+            _freeSlot(slot);
+        }
+        else {
+            _remove(slot);
+        }
+    }
+
+    // Time complexity: O(1) -> constant
+    @Override
+    public boolean cancel(final long requestId) {
+
+        // Time complexity: O(1) -- no hash lookup
+        final int slot = _findLiveSlot(requestId);
+        if (-1 == slot) {
+            return false;
+        }
+        _cancelSlot(slot);
+        _maybeResize();
+        return true;
+    }
+
+    // Time complexity: O(1) -> constant (amortised, if bucket width is well-chosen)
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkEpochMillis(newDeadlineEpochMillis, "newDeadlineEpochMillis");
+        final int slot = _findLiveSlot(requestId);
+        if (-1 == slot) {
+            return false;
+        }
+        if (REARM == slotPrevArr[slot]) {
+            // Rescheduled by handler during poll: The new deadline replaces the re-arm.
+            --pendingRearmCount;
+            ++size;
+        }
+        else {
+            // Intentional: Move in place.  The request ID does not change.
+            _unlink(slot);
+        }
+        slotDeadlineEpochMillisArr[slot] = newDeadlineEpochMillis;
+        _recordInsertScan(_link(slot));
+        _maybeResize();
+        return true;
+    }
+
+    // Time complexity: O(k) for k expired deadlines (amortised, if bucket width is well-chosen)
+    @Override
+    public int poll(final long nowEpochMillis,
+                    Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        Objects.requireNonNull(handler);
+        if (maxPollCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
+        }
+        int count = 0;
+        // Intentional: If the handler throws, recurring deadlines that already fired must still be re-armed.
+        try {
+            while (count < maxPollCount) {
+
+                final int slot = _findMinSlot();
+                // Intentional: Less-than-or-equal is required.  See DeadlineEngineImp.poll().
+                if (NIL == slot || slotDeadlineEpochMillisArr[slot] > nowEpochMillis) {
+                    break;
+                }
+                final long requestId = _toRequestId(slotGenerationArr[slot], slot);
+                _removeOrDeferRearm(slot);
+                ++count;
+                handler.accept(requestId);
+            }
+        }
+        finally {
+            _rearm(nowEpochMillis);
+            _maybeResize();
+        }
+        return count;
+    }
+
+    // Time complexity: O(k) for k expired deadlines (amortised, if bucket width is well-chosen)
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        DeadlineEngine.checkDrainToArgs(outRequestIdArr, offset, maxCount);
+        int count = 0;
+        while (count < maxCount) {
+
+            final int slot = _findMinSlot();
+            if (NIL == slot || slotDeadlineEpochMillisArr[slot] > nowEpochMillis) {
+                break;
+            }
+            outRequestIdArr[offset + count] = _toRequestId(slotGenerationArr[slot], slot);
+            _removeOrDeferRearm(slot);
+            ++count;
+        }
+        _rearm(nowEpochMillis);
+        _maybeResize();
+        return count;
+    }
+
+    private void _removeOrDeferRearm(final int slot) {
+
+        if (0 == slotPeriodMillisArr[slot]) {
+            _remove(slot);
+            return;
+        }
+        // Intentional: Keep the slot and generation, so the request ID stays valid.
+        _unlink(slot);
+        --size;
+        slotPrevArr[slot] = REARM;
+        if (rearmSlotCount == rearmSlotArr.length) {
+            rearmSlotArr = Arrays.copyOf(rearmSlotArr, 2 * rearmSlotCount);
+        }
+        rearmSlotArr[rearmSlotCount] = slot;
+        ++rearmSlotCount;
+        ++pendingRearmCount;
+    }
+
+    // Intentional: Re-arm *after* the poll loop, so each recurring deadline fires at most once per poll.
+    // Time complexity: O(r) for r recurring deadlines fired by this poll (amortised, if bucket width is well-chosen)
+    private void _rearm(final long nowEpochMillis) {
+
+        for (int i = 0; i < rearmSlotCount; ++i) {
+
+            final int slot = rearmSlotArr[i];
+            // Cancelled or rescheduled by the handler?  Then do not re-arm.
+            if (REARM != slotPrevArr[slot]) {
+                continue;
+            }
+            slotDeadlineEpochMillisArr[slot] =
+                slotRecurrencePolicyArr[slot].nextDeadlineMs(
+                    slotDeadlineEpochMillisArr[slot], nowEpochMillis, slotPeriodMillisArr[slot]);
+            _recordInsertScan(_link(slot));
+            ++size;
+        }
+        rearmSlotCount = 0;
+        pendingRearmCount = 0;
+    }
+
+    // Time complexity: O(1) -> constant (amortised, if bucket width is well-chosen)
+    @Override
+    public long nextDeadlineMs() {
+
+        final int slot = _findMinSlot();
+        if (NIL == slot) {
+            return NO_DEADLINE_MS;
+        }
+        final long x = slotDeadlineEpochMillisArr[slot];
+        return x;
+    }
+
+    /**
+     * Buckets are not ordered across years, so each bucket is visited.  Each bucket is sorted, so stop at the first
+     * deadline that is not less than {@code toEpochMillis}.
+     * <p>
+     * Time complexity: O(b + m) for b buckets and m deadlines less than {@code toEpochMillis}
+     */
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromEpochMillis, toEpochMillis);
+        int x = 0;
+        for (final int headSlot : bucketHeadSlotArr) {
+            for (int slot = headSlot;
+                 NIL != slot && slotDeadlineEpochMillisArr[slot] < toEpochMillis;
+                 slot = slotNextArr[slot]) {
+
+                if (slotDeadlineEpochMillisArr[slot] >= fromEpochMillis) {
+                    ++x;
+                }
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Merges the sorted buckets with a min-heap of bucket cursors, so no deadline is copied.  Requires O(b) temporary
+     * memory for b buckets.
+     * <p>
+     * Time complexity: O(b + n log b) for n pending deadlines
+     */
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        // Min-heap of slots, ordered by deadline.  Each slot is the next unvisited entry of one bucket.
+        final int[] slotHeapArr = new int[bucketHeadSlotArr.length];
+        int heapSize = 0;
+        for (final int headSlot : bucketHeadSlotArr) {
+            if (NIL != headSlot) {
+                _siftUpSlot(slotHeapArr, heapSize, headSlot);
+                ++heapSize;
+            }
+        }
+        while (heapSize > 0) {
+
+            final int slot = slotHeapArr[0];
+            consumer.accept(_toRequestId(slotGenerationArr[slot], slot), slotDeadlineEpochMillisArr[slot]);
+            final int nextSlot = slotNextArr[slot];
+            if (NIL == nextSlot) {
+                --heapSize;
+                _siftDownSlot(slotHeapArr, heapSize, slotHeapArr[heapSize]);
+            }
+            else {
+                _siftDownSlot(slotHeapArr, heapSize, nextSlot);
+            }
+        }
+    }
+
+    private void _siftUpSlot(final int[] slotHeapArr, int index, final int slot) {
+
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        while (index > 0) {
+
+            final int parentIndex = (index - 1) >>> 1;
+            if (slotDeadlineEpochMillisArr[slotHeapArr[parentIndex]] <= deadlineEpochMillis) {
+                break;
+            }
+            slotHeapArr[index] = slotHeapArr[parentIndex];
+            index = parentIndex;
+        }
+        slotHeapArr[index] = slot;
+    }
+
+    // Intentional: Replaces the root.
+    private void _siftDownSlot(final int[] slotHeapArr, final int heapSize, final int slot) {
+
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        int index = 0;
+        final int half = heapSize >>> 1;
+        while (index < half) {
+
+            int childIndex = 2 * index + 1;
+            if (1 + childIndex < heapSize
+                && slotDeadlineEpochMillisArr[slotHeapArr[1 + childIndex]]
+                    < slotDeadlineEpochMillisArr[slotHeapArr[childIndex]]) {
+
+                ++childIndex;
+            }
+            if (deadlineEpochMillis <= slotDeadlineEpochMillisArr[slotHeapArr[childIndex]]) {
+                break;
+            }
+            slotHeapArr[index] = slotHeapArr[childIndex];
+            index = childIndex;
+        }
+        slotHeapArr[index] = slot;
+    }
+
+    // Time complexity: O(1) -> constant
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final int capacity = slotGenerationArr.length;
+        // This object: 15 refs + 8 ints + 4 longs
+        final long x =
+            JvmMemoryLayout.objectBytes(15, 8 * Integer.BYTES + 4 * Long.BYTES)
+                // slotDeadlineEpochMillisArr, slotPeriodMillisArr, slotGroupKeyArr
+                + 3 * JvmMemoryLayout.arrayBytes(capacity, Long.BYTES)
+                // slotGenerationArr, slotNextArr, slotPrevArr, slotGroupPrevArr, slotGroupNextArr, freeSlotArr
+                + 6 * JvmMemoryLayout.arrayBytes(capacity, Integer.BYTES)
+                + JvmMemoryLayout.referenceArrayBytes(slotRecurrencePolicyArr.length)
+                + JvmMemoryLayout.arrayBytes(rearmSlotArr.length, Integer.BYTES)
+                + 2 * JvmMemoryLayout.arrayBytes(bucketHeadSlotArr.length, Integer.BYTES)
+                + JvmMemoryLayout.arrayBytes(sampleArr.length, Long.BYTES)
+                + JvmMemoryLayout.longIntHashMapBytes(groupKey_To_HeadSlot_Map);
+        return x;
+    }
+
+    @Override
+    public int size() {
+        // Intentional: Recurring deadlines waiting to be re-armed are still pending.
+        final int x = size + pendingRearmCount;
+        return x;
+    }
+
+    private void _maybeResize() {
+
+        final int bucketCount = bucketCount();
+        if ((size > 2 * bucketCount && bucketCount <= (1 << 29))
+            || (size < bucketCount / 2 && bucketCount > MIN_BUCKET_COUNT)) {
+
+            // Intentional: A single poll may remove many deadlines, so jump straight to the final bucket count.
+            int newBucketCount = bucketCount;
+            while (size > 2 * newBucketCount && newBucketCount <= (1 << 29)) {
+                newBucketCount *= 2;
+            }
+            while (size < newBucketCount / 2 && newBucketCount > MIN_BUCKET_COUNT) {
+                newBucketCount /= 2;
+            }
+            _resize(newBucketCount, _estimateBucketWidthMillis());
+        }
+        else if (insertCount + dequeueCount >= Math.max(MIN_SCAN_WINDOW_COUNT, bucketCount)) {
+            // Intentional: Long scans mean the distribution has shifted.  Entries per bucket are proportional to width,
+            // and empty buckets per dequeue are inversely proportional to width.
+            long newBucketWidthMillis = bucketWidthMillis;
+            if (insertScanLengthSum > (long) MAX_AVERAGE_SCAN_LENGTH * insertCount) {
+                final double averageScanLength = (double) insertScanLengthSum / insertCount;
+                newBucketWidthMillis =
+                    Math.max(1L, (long) (bucketWidthMillis * TARGET_AVERAGE_SCAN_LENGTH / averageScanLength));
+            }
+            else if (dequeueScanLengthSum > (long) MAX_AVERAGE_SCAN_LENGTH * dequeueCount) {
+                final double averageScanLength = (double) dequeueScanLengthSum / dequeueCount;
+                // Intentional: Cast saturates at Long.MAX_VALUE.
+                newBucketWidthMillis = (long) (bucketWidthMillis * averageScanLength / TARGET_AVERAGE_SCAN_LENGTH);
+            }
+            _resize(bucketCount, newBucketWidthMillis);
+        }
+    }
+
+    /**
+     * Samples (up to) the next {@link #SAMPLE_COUNT} deadlines in order, then returns three times the average gap,
+     * ignoring gaps more than twice the average.  If fewer than two deadlines are found in the next year, the head of
+     * each bucket is sampled instead.
+     * <p>
+     * Time complexity: O(bucket count)
+     */
+    // package-private for testing
+    long _estimateBucketWidthMillis() {
+
+        final int bucketCount = bucketCount();
+        int sampleCount = 0;
+        long day = cursorEpochMillis / bucketWidthMillis;
+        for (int i = 0; i < bucketCount && sampleCount < SAMPLE_COUNT; ++i, ++day) {
+
+            for (int slot = bucketHeadSlotArr[(int) (day & bucketMask)];
+                 NIL != slot && sampleCount < SAMPLE_COUNT;
+                 slot = slotNextArr[slot]) {
+
+                final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+                // Intentional: Bucket is sorted, so all remaining entries are in later years.
+                if (deadlineEpochMillis / bucketWidthMillis != day) {
+                    break;
+                }
+                sampleArr[sampleCount] = deadlineEpochMillis;
+                ++sampleCount;
+            }
+        }
+        if (sampleCount >= 2) {
+            final long x = _estimateBucketWidthMillis(sampleArr, sampleCount);
+            return x;
+        }
+        final long[] headDeadlineEpochMillisArr = new long[bucketCount];
+        int headCount = 0;
+        for (int bucketIndex = 0; bucketIndex < bucketCount; ++bucketIndex) {
+
+            final int headSlot = bucketHeadSlotArr[bucketIndex];
+            if (NIL != headSlot) {
+                headDeadlineEpochMillisArr[headCount] = slotDeadlineEpochMillisArr[headSlot];
+                ++headCount;
+            }
+        }
+        if (headCount < 2) {
+            return bucketWidthMillis;
+        }
+        Arrays.sort(headDeadlineEpochMillisArr, 0, headCount);
+        final long x = _estimateBucketWidthMillis(headDeadlineEpochMillisArr, Math.min(headCount, SAMPLE_COUNT));
+        return x;
+    }
+
+    /**
+     * @param sortedDeadlineEpochMillisArr
+     *        ascending
+     */
+    private static long _estimateBucketWidthMillis(final long[] sortedDeadlineEpochMillisArr, final int count) {
+
+        final long totalGapMillis = sortedDeadlineEpochMillisArr[count - 1] - sortedDeadlineEpochMillisArr[0];
+        final double averageGapMillis = (double) totalGapMillis / (count - 1);
+        double sumGapMillis = 0;
+        int gapCount = 0;
+        for (int i = 1; i < count; ++i) {
+
+            final long gapMillis = sortedDeadlineEpochMillisArr[i] - sortedDeadlineEpochMillisArr[i - 1];
+            if (gapMillis <= 2 * averageGapMillis) {
+                sumGapMillis += gapMillis;
+                ++gapCount;
+            }
+        }
+        // Intentional: At least one gap is always <= average, so 'gapCount' is never zero.
+        final long x = Math.max(1L, Math.round(3 * sumGapMillis / gapCount));
+        return x;
+    }
+
+    /**
+     * Time complexity: O(n) where n is number of pending deadlines
+     */
+    private void _resize(final int newBucketCount, final long newBucketWidthMillis) {
+
+        insertScanLengthSum = 0;
+        insertCount = 0;
+        dequeueScanLengthSum = 0;
+        dequeueCount = 0;
+        if (newBucketCount == bucketCount() && newBucketWidthMillis == bucketWidthMillis) {
+            return;
+        }
+        final int[] oldBucketHeadSlotArr = bucketHeadSlotArr;
+        bucketHeadSlotArr = new int[newBucketCount];
+        Arrays.fill(bucketHeadSlotArr, NIL);
+        bucketTailSlotArr = new int[newBucketCount];
+        Arrays.fill(bucketTailSlotArr, NIL);
+        bucketMask = newBucketCount - 1;
+        bucketWidthMillis = newBucketWidthMillis;
+        for (final int oldHeadSlot : oldBucketHeadSlotArr) {
+
+            int slot = oldHeadSlot;
+            while (NIL != slot) {
+
+                final int nextSlot = slotNextArr[slot];
+                _link(slot);
+                slot = nextSlot;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Optional extension of {@link Flow.Subscriber} for {@link DeadlinePublisher}.  Expired request IDs are signalled in
+ * batches as primitive {@code long}, so there is no boxing.  Each request ID still counts as one unit of demand.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlinePublisher
+ */
+public interface DeadlineBatchSubscriber
+extends Flow.Subscriber<Long> {
+
+    /**
+     * Called instead of {@link #onNext(Object)} for each batch of expired request IDs.
+     * <p>
+     * The default implementation calls {@link #onNext(Object)} for each request ID.
+     *
+     * @param requestIdArr
+     *        owned by the publisher and reused for the next batch.  Do not keep a reference after return.
+     *
+     * @param offset
+     *        index of first request ID
+     *
+     * @param count
+     *        number of request IDs.  Always positive, and never more than outstanding demand.
+     */
+    default void onNextBatch(long[] requestIdArr, int offset, int count) {
+
+        for (int i = offset; i < offset + count; ++i) {
+            onNext(requestIdArr[i]);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * NotThreadSafe?  Correct.
+ * <p>
+ * This is a multiset of deadlines that answers "how many deadlines are less than X?" in O(log n).  It is a treap
+ * (binary search tree with random heap-ordered priorities, so expected depth is O(log n)) where each node is one
+ * distinct deadline, and is augmented with the total count of its subtree.  Ref: R. Seidel and C. Aragon, "Randomized
+ * Search Trees", Algorithmica, 1996.
+ * <p>
+ * Nodes are kept in parallel primitive arrays, as {@link GenerationalHandleDeadlineEngineImp}, and freed nodes are
+ * reused, so there is no allocation in steady state.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ */
+@NotThreadSafe
+final class DeadlineCountTreap {
+
+    private static final int NIL = -1;
+    private static final int MIN_CAPACITY = 64;
+
+    // Each node uses one entry from each array.
+    private long[] nodeDeadlineEpochMillisArr;
+    // Number of equal deadlines in this node
+    private int[] nodeCountArr;
+    // Sum of 'nodeCountArr' for this node and all descendants
+    private int[] nodeSubtreeCountArr;
+    private int[] nodeLeftArr;
+    private int[] nodeRightArr;
+    private int[] nodePriorityArr;
+    // Number of nodes ever used.  Nodes at or after this index have never been used.
+    private int nodeCount;
+    // Stack of free nodes below 'nodeCount'.  Intentional: Linked through 'nodeLeftArr' to avoid another array.
+    private int freeNodeHead;
+    private int rootNode;
+    // Xorshift state for priorities.  Intentional: Fixed seed, so tree shape is repeatable for tests and benchmarks.
+    private int randomState;
+
+    DeadlineCountTreap() {
+
+        this.nodeDeadlineEpochMillisArr = new long[MIN_CAPACITY];
+        this.nodeCountArr = new int[MIN_CAPACITY];
+        this.nodeSubtreeCountArr = new int[MIN_CAPACITY];
+        this.nodeLeftArr = new int[MIN_CAPACITY];
+        this.nodeRightArr = new int[MIN_CAPACITY];
+        this.nodePriorityArr = new int[MIN_CAPACITY];
+        this.nodeCount = 0;
+        this.freeNodeHead = NIL;
+        this.rootNode = NIL;
+        this.randomState = 0x2545F491;
+    }
+
+    /**
+     * @return total count of all deadlines
+     */
+    int size() {
+        final int x = _subtreeCount(rootNode);
+        return x;
+    }
+
+    // Time complexity: O(log n) expected
+    void add(final long deadlineEpochMillis) {
+        rootNode = _add(rootNode, deadlineEpochMillis);
+    }
+
+    /**
+     * Caller must only remove deadlines previously added.
+     * <p>
+     * Time complexity: O(log n) expected
+     */
+    void remove(final long deadlineEpochMillis) {
+        rootNode = _remove(rootNode, deadlineEpochMillis);
+    }
+
+    /**
+     * Time complexity: O(log n) expected
+     *
+     * @return count of deadlines strictly less than {@code deadlineEpochMillis}
+     */
+    int countLessThan(final long deadlineEpochMillis) {
+
+        int count = 0;
+        int node = rootNode;
+        while (NIL != node) {
+
+            if (deadlineEpochMillis <= nodeDeadlineEpochMillisArr[node]) {
+                node = nodeLeftArr[node];
+            }
+            else {
+                count += _subtreeCount(nodeLeftArr[node]) + nodeCountArr[node];
+                node = nodeRightArr[node];
+            }
+        }
+        return count;
+    }
+
+    long estimatedRetainedBytes() {
+
+        final int capacity = nodeCountArr.length;
+        final long x =
+            JvmMemoryLayout.objectBytes(6, 4 * Integer.BYTES)
+                + JvmMemoryLayout.arrayBytes(capacity, Long.BYTES)
+                + 5 * JvmMemoryLayout.arrayBytes(capacity, Integer.BYTES);
+        return x;
+    }
+
+    private int _subtreeCount(final int node) {
+
+        final int x = (NIL == node) ? 0 : nodeSubtreeCountArr[node];
+        return x;
+    }
+
+    private void _update(final int node) {
+
+        nodeSubtreeCountArr[node] =
+            _subtreeCount(nodeLeftArr[node]) + nodeCountArr[node] + _subtreeCount(nodeRightArr[node]);
+    }
+
+    // Recursion depth is O(log n) expected.
+    private int _add(final int node, final long deadlineEpochMillis) {
+
+        if (NIL == node) {
+            final int x = _allocateNode(deadlineEpochMillis);
+            return x;
+        }
+        final long nodeDeadlineEpochMillis = nodeDeadlineEpochMillisArr[node];
+        if (deadlineEpochMillis == nodeDeadlineEpochMillis) {
+            ++nodeCountArr[node];
+            ++nodeSubtreeCountArr[node];
+            return node;
+        }
+        if (deadlineEpochMillis < nodeDeadlineEpochMillis) {
+            final int left = _add(nodeLeftArr[node], deadlineEpochMillis);
+            nodeLeftArr[node] = left;
+            if (nodePriorityArr[left] > nodePriorityArr[node]) {
+                final int x = _rotateRight(node);
+                return x;
+            }
+        }
+        else {
+            final int right = _add(nodeRightArr[node], deadlineEpochMillis);
+            nodeRightArr[node] = right;
+            if (nodePriorityArr[right] > nodePriorityArr[node]) {
+                final int x = _rotateLeft(node);
+                return x;
+            }
+        }
+        _update(node);
+        return node;
+    }
+
+    private int _remove(final int node, final long deadlineEpochMillis) {
+
+        if (NIL == node) {
+            throw new IllegalStateException("Deadline not found: " + deadlineEpochMillis);
+        }
+        final long nodeDeadlineEpochMillis = nodeDeadlineEpochMillisArr[node];
+        if (deadlineEpochMillis < nodeDeadlineEpochMillis) {
+            nodeLeftArr[node] = _remove(nodeLeftArr[node], deadlineEpochMillis);
+        }
+        else if (deadlineEpochMillis > nodeDeadlineEpochMillis) {
+            nodeRightArr[node] = _remove(nodeRightArr[node], deadlineEpochMillis);
+        }
+        else if (nodeCountArr[node] > 1) {
+            --nodeCountArr[node];
+        }
+        else {
+            final int x = _removeNode(node);
+            return x;
+        }
+        _update(node);
+        return node;
+    }
+
+    // Rotate the node down until it is a leaf or has one child, then splice it out.
+    private int _removeNode(final int node) {
+
+        final int left = nodeLeftArr[node];
+        final int right = nodeRightArr[node];
+        if (NIL == left) {
+            _freeNode(node);
+            return right;
+        }
+        if (NIL == right) {
+            _freeNode(node);
+            return left;
+        }
+        if (nodePriorityArr[left] > nodePriorityArr[right]) {
+            final int newRoot = _rotateRight(node);
+            nodeRightArr[newRoot] = _removeNode(node);
+            _update(newRoot);
+            return newRoot;
+        }
+        else {
+            final int newRoot = _rotateLeft(node);
+            nodeLeftArr[newRoot] = _removeNode(node);
+            _update(newRoot);
+            return newRoot;
+        }
+    }
+
+    private int _rotateRight(final int node) {
+
+        final int left = nodeLeftArr[node];
+        nodeLeftArr[node] = nodeRightArr[left];
+        nodeRightArr[left] = node;
+        _update(node);
+        _update(left);
+        return left;
+    }
+
+    private int _rotateLeft(final int node) {
+
+        final int right = nodeRightArr[node];
+        nodeRightArr[node] = nodeLeftArr[right];
+        nodeLeftArr[right] = node;
+        _update(node);
+        _update(right);
+        return right;
+    }
+
+    private int _allocateNode(final long deadlineEpochMillis) {
+
+        final int node;
+        if (NIL != freeNodeHead) {
+            node = freeNodeHead;
+            freeNodeHead = nodeLeftArr[node];
+        }
+        else {
+            if (nodeCount == nodeCountArr.length) {
+                _grow();
+            }
+            node = nodeCount;
+            ++nodeCount;
+        }
+        nodeDeadlineEpochMillisArr[node] = deadlineEpochMillis;
+        nodeCountArr[node] = 1;
+        nodeSubtreeCountArr[node] = 1;
+        nodeLeftArr[node] = NIL;
+        nodeRightArr[node] = NIL;
+        nodePriorityArr[node] = _nextRandom();
+        return node;
+    }
+
+    private void _freeNode(final int node) {
+
+        nodeLeftArr[node] = freeNodeHead;
+        freeNodeHead = node;
+    }
+
+    private void _grow() {
+
+        if (Integer.MAX_VALUE == nodeCount) {
+            throw new IllegalStateException("Too many distinct deadlines: " + nodeCount);
+        }
+        final int newCapacity = (int) Math.min(2L * nodeCountArr.length, Integer.MAX_VALUE);
+        nodeDeadlineEpochMillisArr = Arrays.copyOf(nodeDeadlineEpochMillisArr, newCapacity);
+        nodeCountArr = Arrays.copyOf(nodeCountArr, newCapacity);
+        nodeSubtreeCountArr = Arrays.copyOf(nodeSubtreeCountArr, newCapacity);
+        nodeLeftArr = Arrays.copyOf(nodeLeftArr, newCapacity);
+        nodeRightArr = Arrays.copyOf(nodeRightArr, newCapacity);
+        nodePriorityArr = Arrays.copyOf(nodePriorityArr, newCapacity);
+    }
+
+    private int _nextRandom() {
+
+        int x = randomState;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomState = x;
+        return x;
+    }
+}
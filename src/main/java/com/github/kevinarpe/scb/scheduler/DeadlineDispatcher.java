@@ -0,0 +1,367 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * ThreadSafe?  Yes.
+ * <p>
+ * This is a subscriber for {@link DeadlinePublisher} that runs the handler for each expired request ID on its own
+ * thread, with at most {@code maxInFlightCount} handlers running at once.  Handlers may block, e.g., network calls,
+ * without delaying the publisher or the engine.
+ * <p>
+ * A {@link Semaphore} counts in-flight handlers.  Each permit is also one unit of subscriber demand: This class
+ * requests {@code maxInFlightCount} on subscribe, then requests one more as each handler completes.  Thus, when all
+ * permits are taken, expired deadlines stay in the engine (not in a queue) until a handler completes.  The publisher
+ * never waits for a permit, so its drain latency does not depend upon handler latency.
+ * <p>
+ * By default, handlers run on virtual threads if available (Java 21+), else on a fixed pool of
+ * {@code maxInFlightCount} daemon platform threads.  See {@link #newDefaultExecutorService(int)}.
+ * <p>
+ * Errors: Ref: Reactive Streams rule 2.13: {@link #onNext(Long)} and {@link #onNextBatch(long[], int, int)} never
+ * throw.  If a request ID cannot be dispatched, e.g., the executor rejects it, this class cancels its subscription,
+ * then passes the rest of the batch to an {@link ErrorHandler}.  An error signalled by the publisher via
+ * {@link #onError(Throwable)} is passed to the same handler.  The first error is also kept for
+ * {@link #nullableError()}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlinePublisher
+ * @see DeadlineScheduler
+ */
+@ThreadSafe
+public final class DeadlineDispatcher
+implements DeadlineBatchSubscriber, Closeable {
+
+    /**
+     * Reports each error to the uncaught exception handler of the current thread.  By default, this prints a stack
+     * trace to {@link System#err}.
+     */
+    public static final ErrorHandler DEFAULT_ERROR_HANDLER = DeadlineDispatcher::_reportUncaughtException;
+
+    private static final long[] EMPTY_REQUEST_ID_ARR = new long[0];
+
+    /**
+     * Called on the publisher thread when request IDs cannot be dispatched, or when the publisher signals an error.
+     */
+    @FunctionalInterface
+    public interface ErrorHandler {
+
+        /**
+         * If this method throws, the error is ignored.
+         *
+         * @param cause
+         *        error thrown by the executor, or signalled by the publisher
+         *
+         * @param requestIdArr
+         *        expired request IDs that were not dispatched.  They are no longer in the engine.  Only valid during
+         *        this call: The array may be reused.
+         *
+         * @param offset
+         *        index of the first request ID in {@code requestIdArr}
+         *
+         * @param count
+         *        number of request IDs in {@code requestIdArr}.  Zero if the publisher signalled the error.
+         */
+        void onError(Throwable cause, long[] requestIdArr, int offset, int count);
+    }
+
+    private static void _reportUncaughtException(final Throwable cause,
+                                                 final long[] requestIdArr,
+                                                 final int offset,
+                                                 final int count) {
+
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, cause);
+    }
+
+    private final LongConsumer handler;
+    private final int maxInFlightCount;
+    private final ExecutorService executorService;
+    private final boolean isExecutorServiceOwned;
+    private final Semaphore inFlightPermits;
+    private final ErrorHandler errorHandler;
+    @Nullable
+    private volatile Flow.Subscription nullableSubscription;
+    @Nullable
+    private volatile Throwable volatileNullableError;
+
+    /**
+     * Handlers run on {@link #newDefaultExecutorService(int)}, which is shut down by {@link #close()}.
+     */
+    public DeadlineDispatcher(LongConsumer handler, final int maxInFlightCount) {
+
+        this(handler, maxInFlightCount, newDefaultExecutorService(maxInFlightCount), true, DEFAULT_ERROR_HANDLER);
+    }
+
+    /**
+     * @param handler
+     *        called with each expired request ID.  May block.
+     *
+     * @param maxInFlightCount
+     *        maximum number of handlers to run at once
+     *
+     * @param executorService
+     *        runs each handler.  Not shut down by {@link #close()}.
+     */
+    public DeadlineDispatcher(LongConsumer handler, final int maxInFlightCount, ExecutorService executorService) {
+
+        this(handler, maxInFlightCount, executorService, false, DEFAULT_ERROR_HANDLER);
+    }
+
+    /**
+     * @param handler
+     *        called with each expired request ID.  May block.
+     *
+     * @param maxInFlightCount
+     *        maximum number of handlers to run at once
+     *
+     * @param executorService
+     *        runs each handler.  Not shut down by {@link #close()}.
+     *
+     * @param errorHandler
+     *        called with request IDs that cannot be dispatched.  Usually {@link #DEFAULT_ERROR_HANDLER}.
+     */
+    public DeadlineDispatcher(LongConsumer handler,
+                              final int maxInFlightCount,
+                              ExecutorService executorService,
+                              ErrorHandler errorHandler) {
+
+        this(handler, maxInFlightCount, executorService, false, errorHandler);
+    }
+
+    private DeadlineDispatcher(LongConsumer handler,
+                               final int maxInFlightCount,
+                               ExecutorService executorService,
+                               final boolean isExecutorServiceOwned,
+                               ErrorHandler errorHandler) {
+
+        this.handler = Objects.requireNonNull(handler);
+        if (maxInFlightCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxInFlightCount' must be positive: " + maxInFlightCount);
+        }
+        this.maxInFlightCount = maxInFlightCount;
+        this.executorService = Objects.requireNonNull(executorService);
+        this.isExecutorServiceOwned = isExecutorServiceOwned;
+        this.inFlightPermits = new Semaphore(maxInFlightCount);
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        this.nullableSubscription = null;
+        this.volatileNullableError = null;
+    }
+
+    /**
+     * On Java 21+, returns {@code Executors.newVirtualThreadPerTaskExecutor()}.  Else, returns a fixed pool of
+     * {@code platformThreadCount} daemon threads.
+     * <p>
+     * Intentional: The virtual thread factory is found by reflection, so this class compiles for Java 11.
+     */
+    public static ExecutorService newDefaultExecutorService(final int platformThreadCount) {
+
+        if (platformThreadCount <= 0) {
+            throw new IllegalArgumentException(
+                "Argument 'platformThreadCount' must be positive: " + platformThreadCount);
+        }
+        @Nullable
+        final ExecutorService nullableVirtualThreadExecutorService = _newVirtualThreadExecutorServiceOrNull();
+        if (null != nullableVirtualThreadExecutorService) {
+            return nullableVirtualThreadExecutorService;
+        }
+        final ExecutorService x = Executors.newFixedThreadPool(platformThreadCount, new _DaemonThreadFactory());
+        return x;
+    }
+
+    @Nullable
+    private static ExecutorService _newVirtualThreadExecutorServiceOrNull() {
+
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            final ExecutorService x = (ExecutorService) method.invoke(null);
+            return x;
+        }
+        catch (ReflectiveOperationException e) {
+            // Intentional: Java 20 or earlier.  Java 19 and 20 also throw here unless preview features are enabled.
+            return null;
+        }
+    }
+
+    private static final class _DaemonThreadFactory
+    implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+            final Thread x =
+                new Thread(runnable, DeadlineDispatcher.class.getSimpleName() + "-" + threadCount.incrementAndGet());
+            x.setDaemon(true);
+            return x;
+        }
+    }
+
+    /**
+     * @return number of handlers running now, or waiting to start on the executor
+     */
+    public int inFlightCount() {
+
+        final int x = maxInFlightCount - inFlightPermits.availablePermits();
+        return x;
+    }
+
+    /**
+     * @return first error from the executor or the publisher, or null if none
+     */
+    @Nullable
+    public Throwable nullableError() {
+        return volatileNullableError;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+
+        Objects.requireNonNull(subscription);
+        if (null != nullableSubscription) {
+            // Ref: Reactive Streams rule 2.5
+            subscription.cancel();
+            return;
+        }
+        nullableSubscription = subscription;
+        subscription.request(maxInFlightCount);
+    }
+
+    @Override
+    public void onNextBatch(final long[] requestIdArr, final int offset, final int count) {
+
+        final int endIndex = offset + count;
+        for (int i = offset; i < endIndex; ++i) {
+
+            @Nullable
+            final RuntimeException nullableError = _dispatch(requestIdArr[i]);
+            if (null != nullableError) {
+                _onDispatchError(nullableError, requestIdArr, i, endIndex - i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onNext(final Long requestId) {
+
+        @Nullable
+        final RuntimeException nullableError = _dispatch(requestId);
+        if (null != nullableError) {
+            // Intentional: Allocate only on error.
+            _onDispatchError(nullableError, new long[] {requestId}, 0, 1);
+        }
+    }
+
+    /**
+     * Ref: Reactive Streams rule 2.13: Never throw.  Return the error instead.
+     *
+     * @return null if dispatched, else error
+     */
+    @Nullable
+    private RuntimeException _dispatch(final long requestId) {
+
+        // Intentional: Never block here.  The publisher never signals more than demand, so a permit is always free.
+        if (false == inFlightPermits.tryAcquire()) {
+            return new IllegalStateException("Publisher signalled more than requested: " + requestId);
+        }
+        try {
+            executorService.execute(() -> _run(requestId));
+            return null;
+        }
+        catch (RuntimeException e) {
+            inFlightPermits.release();
+            return e;
+        }
+    }
+
+    // Ref: Reactive Streams rule 2.13: A subscriber signals failure only by cancelling its subscription.
+    private void _onDispatchError(final RuntimeException cause,
+                                  final long[] requestIdArr,
+                                  final int offset,
+                                  final int count) {
+
+        _cancelSubscription();
+        _onError(cause, requestIdArr, offset, count);
+    }
+
+    private void _onError(final Throwable cause, final long[] requestIdArr, final int offset, final int count) {
+
+        // Intentional: Keep only the first error.  A race may keep a later one, which is harmless.
+        if (null == volatileNullableError) {
+            volatileNullableError = cause;
+        }
+        try {
+            errorHandler.onError(cause, requestIdArr, offset, count);
+        }
+        catch (RuntimeException e) {
+            // Intentional: Ref: Reactive Streams rule 2.13: Never throw to the publisher.
+        }
+    }
+
+    private void _run(final long requestId) {
+
+        try {
+            handler.accept(requestId);
+        }
+        finally {
+            // Feed completion back to the publisher: One more request ID may be signalled.
+            inFlightPermits.release();
+            @Nullable
+            final Flow.Subscription subscription = nullableSubscription;
+            if (null != subscription) {
+                subscription.request(1);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+
+        // Ref: Reactive Streams rule 2.13: Throw only if the argument is null.
+        Objects.requireNonNull(throwable);
+        nullableSubscription = null;
+        _onError(throwable, EMPTY_REQUEST_ID_ARR, 0, 0);
+    }
+
+    @Override
+    public void onComplete() {
+
+        nullableSubscription = null;
+    }
+
+    private void _cancelSubscription() {
+
+        @Nullable
+        final Flow.Subscription subscription = nullableSubscription;
+        nullableSubscription = null;
+        if (null != subscription) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Cancels the subscription, if any.  If the executor is owned by this class, it is shut down.  In-flight handlers
+     * are not interrupted.
+     */
+    @Override
+    public void close() {
+
+        _cancelSubscription();
+        if (isExecutorServiceOwned) {
+            executorService.shutdown();
+        }
+    }
+}
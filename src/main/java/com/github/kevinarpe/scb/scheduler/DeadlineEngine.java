@@ -1,6 +1,7 @@
 package com.github.kevinarpe.scb.scheduler;
 
 import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -16,6 +17,12 @@ import java.util.function.Consumer;
 @NotThreadSafe
 public interface DeadlineEngine {
 
+     /**
+      * Returned by {@link #nextDeadlineMs()} when no deadlines are registered.  Intentional: This is the largest possible
+      * value, so callers may safely use it in comparisons, e.g., {@code if (nowMs >= engine.nextDeadlineMs())}.
+      */
+     long NO_DEADLINE_MS = Long.MAX_VALUE;
+
      /**
       * Request a new deadline be added to the engine. The deadline is in millis offset from
       * unix epoch. https://en.wikipedia.org/wiki/Unix_time
@@ -26,6 +33,128 @@ public interface DeadlineEngine {
       */
      long schedule(long deadlineMs);
 
+     /**
+      * Request a new deadline be added to the engine, where the deadline may fire up to {@code slackMs} late.  This allows
+      * the engine to coalesce nearby deadlines into a shared coarse bucket.  A deadline never fires early.
+      * <p>
+      * The default implementation calls {@link #schedule(long)} with {@link #coarsenDeadlineMs(long, long)}.
+      * @param deadlineMs the millis
+      * @param slackMs maximum tolerated lateness in millis.  Zero means exact.
+      * @return An identifier for the scheduled deadline.
+      */
+     default long schedule(long deadlineMs, long slackMs) {
+
+          final long coarseDeadlineMs = coarsenDeadlineMs(deadlineMs, slackMs);
+          final long x = schedule(coarseDeadlineMs);
+          return x;
+     }
+
+     /**
+      * Rounds a deadline <b>up</b> to a multiple of the largest power of two that is less than or equal to
+      * {@code slackMs + 1}.  Thus, the result is never earlier than {@code deadlineMs}, nor later than
+      * {@code deadlineMs + slackMs}.
+      * <p>
+      * Intentional: Using powers of two means that the boundaries of a coarse bucket are also boundaries of all finer
+      * buckets.  Thus, deadlines with different slack still tend to share the same bucket.
+      * @param deadlineMs the millis
+      * @param slackMs maximum tolerated lateness in millis.  Zero means exact.
+      * @return coarse deadline in millis
+      */
+     static long coarsenDeadlineMs(long deadlineMs, long slackMs) {
+
+          if (slackMs < 0) {
+               throw new IllegalArgumentException("Argument 'slackMs' must not be negative: " + slackMs);
+          }
+          if (0 == slackMs || Long.MAX_VALUE == slackMs) {
+               return deadlineMs;
+          }
+          final long granularityMs = Long.highestOneBit(slackMs + 1);
+          final long mask = granularityMs - 1;
+          final long roundedUp = deadlineMs + mask;
+          // Overflow?  Then just use exact deadline.
+          if (roundedUp < deadlineMs) {
+               return deadlineMs;
+          }
+          final long x = roundedUp & ~mask;
+          return x;
+     }
+
+     /**
+      * Request many new deadlines be added to the engine in a single call.  This is the batch version of
+      * {@link #schedule(long)}.  Implementations are encouraged to override, e.g., to take a lock only once per batch, or
+      * to group inserts when {@code deadlinesMs} is sorted.
+      * @param deadlinesMs the millis for each new deadline
+      * @param outRequestIds output array: identifier for each scheduled deadline is written to the same index.
+      *                      Length must be greater than or equal to {@code deadlinesMs.length}.
+      */
+     default void scheduleAll(long[] deadlinesMs, long[] outRequestIds) {
+
+          _checkScheduleAllArgs(deadlinesMs, outRequestIds);
+          for (int i = 0; i < deadlinesMs.length; ++i) {
+               outRequestIds[i] = schedule(deadlinesMs[i]);
+          }
+     }
+
+     private static void _checkScheduleAllArgs(long[] deadlinesMs, long[] outRequestIds) {
+
+          if (outRequestIds.length < deadlinesMs.length) {
+               throw new IllegalArgumentException("Argument 'outRequestIds.length' < 'deadlinesMs.length': "
+                    + outRequestIds.length + " < " + deadlinesMs.length);
+          }
+     }
+
+     /**
+      * Same as {@link #scheduleRecurring(long, long, RecurrencePolicy)} with {@link RecurrencePolicy#SKIP}.
+      */
+     default long scheduleRecurring(long firstDeadlineMs, long periodMs) {
+
+          final long x = scheduleRecurring(firstDeadlineMs, periodMs, RecurrencePolicy.SKIP);
+          return x;
+     }
+
+     /**
+      * Request a new recurring deadline, e.g., for keepalives.  Each time it fires, it is re-armed internally, so the
+      * identifier never changes and stays valid for {@link #cancel(long)} and {@link #reschedule(long, long)}.
+      * <p>
+      * A recurring deadline fires at most once per {@link #poll(long, Consumer, int)} or
+      * {@link #drainTo(long, long[], int, int)}.  It counts as one in {@link #size()}.
+      * @param firstDeadlineMs the millis of the first deadline
+      * @param periodMs millis between deadlines.  Must be positive.
+      * @param policy how to choose the next deadline after each fire.
+      * @return An identifier for the recurring deadline.
+      */
+     long scheduleRecurring(long firstDeadlineMs, long periodMs, RecurrencePolicy policy);
+
+     /**
+      * Checks arguments for {@link #scheduleRecurring(long, long, RecurrencePolicy)}.  Implementations that override
+      * should call this first.
+      */
+     static void checkScheduleRecurringArgs(long periodMs, RecurrencePolicy policy) {
+
+          if (periodMs <= 0) {
+               throw new IllegalArgumentException("Argument 'periodMs' must be positive: " + periodMs);
+          }
+          Objects.requireNonNull(policy);
+     }
+
+     /**
+      * Request a new deadline that belongs to a group, e.g., all timeouts for one connection or session.  Later, all
+      * members may be removed in one call to {@link #cancelGroup(long)}, so callers need not track identifiers.
+      * Otherwise, this is the same as {@link #schedule(long)}.  When a member fires or is canceled, it leaves its group.
+      * @param deadlineMs the millis
+      * @param groupKey any value chosen by the caller, e.g., a connection ID.
+      * @return An identifier for the scheduled deadline.
+      */
+     long scheduleInGroup(long deadlineMs, long groupKey);
+
+     /**
+      * Remove all scheduled events in a group.  Implementations should only visit the members of the group, not all
+      * pending deadlines.
+      * @param groupKey as passed to {@link #scheduleInGroup(long, long)}.  Unknown keys are ignored.
+      * @return number of identifiers canceled.
+      */
+     int cancelGroup(long groupKey);
+
      /**
       * Remove the scheduled event using the identifier returned when the deadline was scheduled.
       * @param requestId identifier to cancel.
@@ -33,6 +162,31 @@ public interface DeadlineEngine {
       */
      boolean cancel(long requestId);
 
+     /**
+      * Move a scheduled deadline, but keep the same identifier.  This is cheaper than {@link #cancel(long)} followed by
+      * {@link #schedule(long)}, e.g., for heartbeat or idle timeouts that are pushed back on every message.
+      * @param requestId identifier returned when the deadline was scheduled.
+      * @param newDeadlineMs the new millis
+      * @return true if rescheduled, or false if {@code requestId} is unknown, e.g., already canceled or fired.
+      */
+     boolean reschedule(long requestId, long newDeadlineMs);
+
+     /**
+      * Remove many scheduled events in a single call.  This is the batch version of {@link #cancel(long)}.
+      * @param requestIds identifiers to cancel.  Unknown identifiers are ignored.
+      * @return number of identifiers canceled.
+      */
+     default int cancelAll(long[] requestIds) {
+
+          int count = 0;
+          for (final long requestId : requestIds) {
+               if (cancel(requestId)) {
+                    ++count;
+               }
+          }
+          return count;
+     }
+
      /**
       * Supplies a deadline in millis to check against scheduled deadlines. If any deadlines are triggered the
       * supplied handler is called with the identifier of the expired deadline.
@@ -46,8 +200,131 @@ public interface DeadlineEngine {
       */
      int poll(long nowMs, Consumer<Long> handler, int maxPoll);
 
+     /**
+      * Same as {@link #poll(long, Consumer, int)}, but instead of calling a handler for each expired deadline, copies
+      * its identifier into {@code out}.  Callers may then pass the whole batch downstream in one step, e.g., to a worker
+      * pool or ring buffer.  Each copied identifier is removed from the engine, as if fired.
+      * <p>
+      * The default implementation calls {@link #poll(long, Consumer, int)}, so each identifier is boxed.  Implementations
+      * are encouraged to override, and copy without allocation or a callback.
+      * @param nowMs time in millis since epoch to check deadlines against.
+      * @param out output array for identifiers of expired deadlines.
+      * @param offset index in {@code out} for the first identifier.
+      * @param max count of maximum number of expired deadlines to copy.  {@code offset + max} must not be greater than
+      *            {@code out.length}.
+      * @return number of identifiers copied to {@code out}, starting from {@code offset}.
+      */
+     default int drainTo(long nowMs, long[] out, int offset, int max) {
+
+          checkDrainToArgs(out, offset, max);
+          final int[] countRef = {0};
+          final int x =
+               poll(nowMs,
+                    (Long requestId) -> {
+                         out[offset + countRef[0]] = requestId;
+                         ++countRef[0];
+                    },
+                    max);
+          return x;
+     }
+
+     /**
+      * Checks arguments for {@link #drainTo(long, long[], int, int)}.  Implementations that override should call this
+      * first.
+      */
+     static void checkDrainToArgs(long[] out, int offset, int max) {
+
+          if (offset < 0) {
+               throw new IllegalArgumentException("Argument 'offset' must not be negative: " + offset);
+          }
+          if (max <= 0) {
+               throw new IllegalArgumentException("Argument 'max' must be positive: " + max);
+          }
+          if (offset > out.length - max) {
+               throw new IllegalArgumentException("Argument 'offset + max' > 'out.length': "
+                    + offset + " + " + max + " > " + out.length);
+          }
+     }
+
+     /**
+      * Use this method to decide when to next call {@link #poll(long, Consumer, int)}, e.g., to sleep or park exactly
+      * until the earliest deadline.
+      * @return the earliest registered deadline in millis, or {@link #NO_DEADLINE_MS} if none.
+      */
+     long nextDeadlineMs();
+
      /**
       * @return the number of registered deadlines.
       */
      int size();
+
+     /**
+      * Counts registered deadlines in a range, e.g., to learn how many will expire in the next N millis without polling
+      * them.
+      * @param fromMs first millis in range (inclusive)
+      * @param toMs last millis in range (exclusive).  Must not be less than {@code fromMs}.
+      * @return number of registered deadlines {@code d} where {@code fromMs <= d < toMs}.
+      */
+     int countBetween(long fromMs, long toMs);
+
+     /**
+      * Checks arguments for {@link #countBetween(long, long)}.  Implementations that override should call this first.
+      */
+     static void checkCountBetweenArgs(long fromMs, long toMs) {
+
+          if (toMs < fromMs) {
+               throw new IllegalArgumentException("Argument 'toMs' < 'fromMs': " + toMs + " < " + fromMs);
+          }
+     }
+
+     /**
+      * Counts registered deadlines in consecutive, equal-width buckets: {@code outCounts[i]} is the number of
+      * deadlines {@code d} where {@code fromMs + i * bucketWidthMs <= d < fromMs + (i + 1) * bucketWidthMs}.  Deadlines
+      * before {@code fromMs} or after the last bucket are not counted.
+      * <p>
+      * The default implementation calls {@link #countBetween(long, long)} once per bucket.
+      * @param fromMs first millis in first bucket (inclusive)
+      * @param bucketWidthMs millis per bucket.  Must be positive.
+      * @param outCounts output array: one count per bucket.
+      */
+     default void countHistogram(long fromMs, long bucketWidthMs, int[] outCounts) {
+
+          if (bucketWidthMs <= 0) {
+               throw new IllegalArgumentException("Argument 'bucketWidthMs' must be positive: " + bucketWidthMs);
+          }
+          long bucketFromMs = fromMs;
+          for (int i = 0; i < outCounts.length; ++i) {
+
+               // Intentional: Saturate, so a wide histogram near the end of time does not wrap around.
+               final long bucketToMs =
+                    (bucketFromMs > Long.MAX_VALUE - bucketWidthMs) ? Long.MAX_VALUE : bucketFromMs + bucketWidthMs;
+               outCounts[i] = countBetween(bucketFromMs, bucketToMs);
+               bucketFromMs = bucketToMs;
+          }
+     }
+
+     /**
+      * Callback for {@link #forEachPending(PendingDeadlineConsumer)}.
+      */
+     @FunctionalInterface
+     interface PendingDeadlineConsumer {
+
+          void accept(long requestId, long deadlineMs);
+     }
+
+     /**
+      * Calls {@code consumer} for each registered deadline in deadline order.  The order of equal deadlines is not
+      * specified.  The consumer must not modify this engine.
+      * @param consumer called once per registered deadline
+      */
+     void forEachPending(PendingDeadlineConsumer consumer);
+
+     /**
+      * Estimates heap retained by this engine.  The estimate is computed from structural parameters, e.g., number of
+      * deadlines and array capacities, using {@link com.github.kevinarpe.scb.memory.JvmMemoryLayout}.  Off-heap memory
+      * is not included.
+      *
+      * @return estimated size in bytes
+      */
+     long estimatedRetainedBytes();
 }
@@ -0,0 +1,206 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+/**
+ * ThreadSafe?  Yes.
+ * <p>
+ * This is the hot-standby side of replication.  A reader thread receives {@link DeadlineLogRecord}s from a
+ * {@link ReplicatedDeadlineEngineImp} and applies each batch to its own {@link DeadlineEngineImp}.  Thus, this follower
+ * always holds the full set of pending deadlines, less any records still in flight.
+ * <p>
+ * Failover: Call {@link #promote()}.  It stops the reader thread, and returns the engine as-is.  Nothing is replayed,
+ * so failover is as fast as a thread join.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see ReplicatedDeadlineEngineImp
+ */
+@ThreadSafe
+public final class DeadlineEngineFollower
+implements Closeable {
+
+    public static final int DEFAULT_READ_BUFFER_RECORD_COUNT = 4096;
+
+    private final Object lock;
+    @GuardedBy("lock")
+    private final DeadlineEngineImp engine;
+    private final SocketChannel primaryChannel;
+    private final ByteBuffer readBuffer;
+    private final Thread readerThread;
+    private volatile long volatileAppliedRecordCount;
+    @Nullable
+    private volatile Throwable volatileNullableError;
+    @GuardedBy("lock")
+    private boolean isPromoted;
+
+    public DeadlineEngineFollower(SocketChannel primaryChannel) {
+
+        this(primaryChannel, DEFAULT_READ_BUFFER_RECORD_COUNT);
+    }
+
+    /**
+     * Starts the reader thread.
+     *
+     * @param primaryChannel
+     *        connected, blocking channel to the primary.  Closed by {@link #close()} and {@link #promote()}.
+     *
+     * @param readBufferRecordCount
+     *        maximum number of records to read and apply as one batch
+     */
+    public DeadlineEngineFollower(SocketChannel primaryChannel, final int readBufferRecordCount) {
+
+        this.lock = new Object();
+        this.engine = new DeadlineEngineImp();
+        this.primaryChannel = Objects.requireNonNull(primaryChannel);
+        if (false == primaryChannel.isBlocking()) {
+            throw new IllegalArgumentException("Argument 'primaryChannel' must be blocking");
+        }
+        if (readBufferRecordCount <= 0) {
+            throw new IllegalArgumentException(
+                "Argument 'readBufferRecordCount' must be positive: " + readBufferRecordCount);
+        }
+        this.readBuffer = ByteBuffer.allocateDirect(readBufferRecordCount * DeadlineLogRecord.SIZE_BYTES);
+        this.volatileAppliedRecordCount = 0;
+        this.volatileNullableError = null;
+        this.isPromoted = false;
+        this.readerThread = new Thread(this::_run, getClass().getSimpleName());
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+    }
+
+    private void _run() {
+
+        try {
+            while (primaryChannel.read(readBuffer) >= 0) {
+
+                readBuffer.flip();
+                _applyBatch();
+                // Intentional: Keep a partial record for the next read.
+                readBuffer.compact();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // Intentional: After close() or promote(), the read is expected to fail.
+            if (primaryChannel.isOpen()) {
+                volatileNullableError = e;
+            }
+        }
+        finally {
+            try {
+                primaryChannel.close();
+            }
+            catch (IOException e) {
+                // Intentional: Nothing more can be done.
+            }
+        }
+    }
+
+    // Time complexity: O(r log n) where r is number of records in batch
+    private void _applyBatch() {
+
+        final int recordCount = readBuffer.remaining() / DeadlineLogRecord.SIZE_BYTES;
+        if (0 == recordCount) {
+            return;
+        }
+        synchronized (lock) {
+            if (isPromoted) {
+                return;
+            }
+            int position = readBuffer.position();
+            for (int i = 0; i < recordCount; ++i) {
+
+                DeadlineLogRecord.apply(readBuffer, position, engine);
+                position += DeadlineLogRecord.SIZE_BYTES;
+            }
+            readBuffer.position(position);
+        }
+        volatileAppliedRecordCount += recordCount;
+    }
+
+    /**
+     * @return number of records applied.  Only useful for monitoring and tests.
+     */
+    public long appliedRecordCount() {
+        return volatileAppliedRecordCount;
+    }
+
+    /**
+     * @return true while the reader thread is running
+     */
+    public boolean isConnected() {
+        return readerThread.isAlive();
+    }
+
+    /**
+     * @return first error from reader thread, or null if none
+     */
+    @Nullable
+    public Throwable nullableError() {
+        return volatileNullableError;
+    }
+
+    /**
+     * @see DeadlineEngine#size()
+     */
+    public int size() {
+
+        synchronized (lock) {
+            final int x = engine.size();
+            return x;
+        }
+    }
+
+    /**
+     * Stops replication, then returns the replicated engine.  If the primary is still connected, records in flight are
+     * discarded.  To make this follower the next primary with its own follower, pass the result to
+     * {@link ReplicatedDeadlineEngineImp#ReplicatedDeadlineEngineImp(DeadlineEngineImp, SocketChannel, int)}.
+     * <p>
+     * Time complexity: O(1) -> constant.  Nothing is replayed.
+     *
+     * @return engine that is no longer accessed by this class
+     *
+     * @throws IllegalStateException
+     *         if already promoted
+     */
+    public DeadlineEngineImp promote() {
+
+        synchronized (lock) {
+            if (isPromoted) {
+                throw new IllegalStateException("Already promoted");
+            }
+            isPromoted = true;
+        }
+        close();
+        return engine;
+    }
+
+    /**
+     * Stops the reader thread and waits for it to exit.
+     */
+    @Override
+    public void close() {
+
+        try {
+            primaryChannel.close();
+        }
+        catch (IOException e) {
+            // Intentional: Nothing more can be done.
+        }
+        if (Thread.currentThread() != readerThread) {
+            try {
+                readerThread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
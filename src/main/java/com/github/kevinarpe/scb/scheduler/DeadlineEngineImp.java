@@ -1,6 +1,10 @@
 package com.github.kevinarpe.scb.scheduler;
 
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,9 +14,29 @@ import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.TreeMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * This implementation does not use any external Java libraries.
+ * <p>
+ * Each distinct deadline has its own request ID set.  When a set becomes empty, it is removed from the tree map, so
+ * memory and poll cost depend upon live deadlines, not historical ones.  Removed sets are kept in a small pool for
+ * reuse by later deadlines.  During {@link #poll(long, Consumer, int)}, a handler may cancel or reschedule any request
+ * ID, including its own.  Poll copies each request ID set before it calls the handler, and walks the tree map by key,
+ * not by iterator, so the handler never modifies a collection during iteration.  A set emptied by the handler is left
+ * in place, then removed by a later poll or drain.
+ * <p>
+ * Groups are two more maps: request ID to group key, and group key to request ID set.  Both are usually empty, so
+ * deadlines outside a group pay only an isEmpty() check.  {@link #cancelGroup(long)} only visits the members of the
+ * group.
+ * <p>
+ * A recurring deadline that fired is re-armed after the poll loop.  Until then, it is a <i>pending re-arm</i>: It is
+ * not in the maps, but it is counted by {@link #size()}, and it may be cancelled or rescheduled by a later handler.
+ * <p>
+ * By default, {@link #countBetween(long, long)} sums the sizes of the request ID sets in range, so it costs O(log n + d)
+ * for d distinct deadlines in range.  If range counts are frequent and wide, see
+ * {@link #DeadlineEngineImp(boolean)}: All deadlines are also counted by a {@link DeadlineCountTreap}, so range counts
+ * are O(log n), but each schedule, cancel, reschedule, and fire pays another O(log n).
  *
  * @author Kevin Connor ARPE (kevinarpe@gmail.com)
  *
@@ -23,16 +47,141 @@ implements DeadlineEngine {
 
     // package-private for testing
     static final long MIN_REQUEST_ID = 1;
+    // package-private for testing
+    static final int MAX_POOLED_REQUEST_ID_SET_COUNT = 64;
     private long nextRequestId;
     // These two data structures are mirrors of one another.
     private final TreeMap<Long, HashSet<Long>> deadlineEpochMillis_To_RequestIdSet_Map;
     private final HashMap<Long, Long> requestId_To_DeadlineEpochMillis_Map;
+    // Optional mirror: Counts all deadlines in 'requestId_To_DeadlineEpochMillis_Map' for range queries.
+    @Nullable
+    private final DeadlineCountTreap nullableDeadlineCountTreap;
+    // Only recurring request IDs.  Usually empty, so one-shot deadlines pay only an isEmpty() check.
+    private final HashMap<Long, _Recurrence> requestId_To_Recurrence_Map;
+    // These two data structures are mirrors of one another.  Only request IDs scheduled by scheduleInGroup().
+    private final HashMap<Long, Long> requestId_To_GroupKey_Map;
+    private final HashMap<Long, HashSet<Long>> groupKey_To_RequestIdSet_Map;
+    // Recurring deadlines fired by the current poll: re-armed after the poll loop, so each fires at most once per poll.
+    private long[] rearmRequestIdArr;
+    private long[] rearmDeadlineEpochMillisArr;
+    private int rearmCount;
+    // Recurring deadlines fired by the current poll that were not cancelled or rescheduled by a handler.
+    private int pendingRearmCount;
+    // Copy of the request ID set that poll() is firing.  Boxed, as each is already boxed in the set.
+    private Long[] pollRequestIdArr;
+    // Empty request ID sets for reuse.  Bounded, as HashSet.clear() does not shrink the table.
+    private final ArrayDeque<HashSet<Long>> requestIdSetPool;
+    // Intentional: Allocate once.  A lambda that captures 'this' may allocate on each call.
+    private final Function<Long, HashSet<Long>> newRequestIdSetFunc;
+    // True while poll() is walking the tree map.  See _removeFromRequestIdSet().
+    private boolean isPolling;
 
     public DeadlineEngineImp() {
 
+        this(false);
+    }
+
+    /**
+     * @param isCountBetweenIndexed
+     *        if true, all deadlines are also counted by a {@link DeadlineCountTreap}, so
+     *        {@link #countBetween(long, long)} is O(log n), but each schedule, cancel, reschedule, and fire pays another
+     *        O(log n).  If false, {@link #countBetween(long, long)} is O(log n + d) for d distinct deadlines in range.
+     */
+    public DeadlineEngineImp(final boolean isCountBetweenIndexed) {
+
         this.nextRequestId = MIN_REQUEST_ID;
         this.deadlineEpochMillis_To_RequestIdSet_Map = new TreeMap<>(Comparator.naturalOrder());
         this.requestId_To_DeadlineEpochMillis_Map = new HashMap<>();
+        this.nullableDeadlineCountTreap = isCountBetweenIndexed ? new DeadlineCountTreap() : null;
+        this.requestId_To_Recurrence_Map = new HashMap<>();
+        this.requestId_To_GroupKey_Map = new HashMap<>();
+        this.groupKey_To_RequestIdSet_Map = new HashMap<>();
+        this.rearmRequestIdArr = new long[16];
+        this.rearmDeadlineEpochMillisArr = new long[16];
+        this.rearmCount = 0;
+        this.pendingRearmCount = 0;
+        this.pollRequestIdArr = new Long[16];
+        this.requestIdSetPool = new ArrayDeque<>();
+        this.newRequestIdSetFunc = any -> _newRequestIdSet();
+        this.isPolling = false;
+    }
+
+    // package-private for testing
+    int requestIdSetCount() {
+        return deadlineEpochMillis_To_RequestIdSet_Map.size();
+    }
+
+    // package-private for testing
+    int pooledRequestIdSetCount() {
+        return requestIdSetPool.size();
+    }
+
+    private HashSet<Long> _newRequestIdSet() {
+
+        @Nullable
+        final HashSet<Long> nullableRequestIdSet = requestIdSetPool.pollLast();
+        if (null != nullableRequestIdSet) {
+            return nullableRequestIdSet;
+        }
+        final HashSet<Long> x = new HashSet<>();
+        return x;
+    }
+
+    private void _recycleRequestIdSet(final HashSet<Long> emptyRequestIdSet) {
+
+        if (requestIdSetPool.size() < MAX_POOLED_REQUEST_ID_SET_COUNT) {
+            requestIdSetPool.addLast(emptyRequestIdSet);
+        }
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    private HashSet<Long> _getOrAddRequestIdSet(final long deadlineEpochMillis) {
+
+        final HashSet<Long> x =
+            deadlineEpochMillis_To_RequestIdSet_Map.computeIfAbsent(deadlineEpochMillis, newRequestIdSetFunc);
+        return x;
+    }
+
+    // Time complexity: O(1) if request ID set is not empty after remove, else O(log n)
+    private void _removeFromRequestIdSet(final HashSet<Long> requestIdSet,
+                                         final long deadlineEpochMillis,
+                                         final long requestId) {
+
+        requestIdSet.remove(requestId);
+        // Intentional: Do not remove sets while poll() walks the tree map, as poll() may still hold this set.  Poll
+        // removes empty sets as it passes them.
+        if (requestIdSet.isEmpty() && false == isPolling) {
+            deadlineEpochMillis_To_RequestIdSet_Map.remove(deadlineEpochMillis);
+            _recycleRequestIdSet(requestIdSet);
+        }
+    }
+
+    // Time complexity: O(log n) if indexed, else O(1)
+    private void _addToCountTreap(final long deadlineEpochMillis) {
+
+        if (null != nullableDeadlineCountTreap) {
+            nullableDeadlineCountTreap.add(deadlineEpochMillis);
+        }
+    }
+
+    // Time complexity: O(log n) if indexed, else O(1)
+    private void _removeFromCountTreap(final long deadlineEpochMillis) {
+
+        if (null != nullableDeadlineCountTreap) {
+            nullableDeadlineCountTreap.remove(deadlineEpochMillis);
+        }
+    }
+
+    private static final class _Recurrence {
+
+        private final long periodMillis;
+        private final RecurrencePolicy policy;
+
+        private _Recurrence(final long periodMillis, RecurrencePolicy policy) {
+
+            this.periodMillis = periodMillis;
+            this.policy = policy;
+        }
     }
 
     // Time complexity: O(log n) + O(1) + O(1) = O(log n) -> logarithmic
@@ -45,18 +194,132 @@ implements DeadlineEngine {
         ++nextRequestId;
 
         // Time complexity: O(log n)
-        final HashSet<Long> requestIdSet =
-            deadlineEpochMillis_To_RequestIdSet_Map.computeIfAbsent(deadlineEpochMillis,
-                any -> new HashSet<>());
+        final HashSet<Long> requestIdSet = _getOrAddRequestIdSet(deadlineEpochMillis);
 
         // Time complexity: O(1)
         requestIdSet.add(requestId);
 
         // Time complexity: O(1)
         requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+        // Time complexity: O(log n) if indexed, else O(1)
+        _addToCountTreap(deadlineEpochMillis);
+        return requestId;
+    }
+
+    // Time complexity: O(k log n) for k deadlines, but only O(log n) for each *distinct* run of equal deadlines
+    @Override
+    public void scheduleAll(final long[] deadlineEpochMillisArr, final long[] outRequestIdArr) {
+
+        if (outRequestIdArr.length < deadlineEpochMillisArr.length) {
+            throw new IllegalArgumentException("Argument 'outRequestIdArr.length' < 'deadlineEpochMillisArr.length': "
+                + outRequestIdArr.length + " < " + deadlineEpochMillisArr.length);
+        }
+        // Intentional: Check all arguments *before* we modify any state.  Thus, a bad argument cannot leave us with a
+        // partially scheduled batch.
+        for (final long deadlineEpochMillis : deadlineEpochMillisArr) {
+            _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        }
+        // When input is sorted, neighbours often share the same deadline.  Reuse the previous request ID set to avoid
+        // another lookup in the tree map.
+        @Nullable
+        HashSet<Long> prevRequestIdSet = null;
+        long prevDeadlineEpochMillis = -1;
+        for (int i = 0; i < deadlineEpochMillisArr.length; ++i) {
+
+            final long deadlineEpochMillis = deadlineEpochMillisArr[i];
+            final long requestId = nextRequestId;
+            ++nextRequestId;
+
+            if (null == prevRequestIdSet || deadlineEpochMillis != prevDeadlineEpochMillis) {
+                // Time complexity: O(log n)
+                prevRequestIdSet = _getOrAddRequestIdSet(deadlineEpochMillis);
+                prevDeadlineEpochMillis = deadlineEpochMillis;
+            }
+            // Time complexity: O(1)
+            prevRequestIdSet.add(requestId);
+            // Time complexity: O(1)
+            requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+            // Time complexity: O(log n) if indexed, else O(1)
+            _addToCountTreap(deadlineEpochMillis);
+            outRequestIdArr[i] = requestId;
+        }
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        final long requestId = schedule(firstDeadlineEpochMillis);
+        requestId_To_Recurrence_Map.put(requestId, new _Recurrence(periodMillis, policy));
+        return requestId;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = schedule(deadlineEpochMillis);
+        _addToGroup(requestId, groupKey);
         return requestId;
     }
 
+    // Time complexity: O(1) -> constant
+    private void _addToGroup(final long requestId, final long groupKey) {
+
+        requestId_To_GroupKey_Map.put(requestId, groupKey);
+        // Intentional: Do not use computeIfAbsent().  It resizes the table one insert earlier than put(), which
+        // JvmMemoryLayout.hashMapBytes() does not expect.
+        HashSet<Long> requestIdSet = groupKey_To_RequestIdSet_Map.get(groupKey);
+        if (null == requestIdSet) {
+            requestIdSet = new HashSet<>();
+            groupKey_To_RequestIdSet_Map.put(groupKey, requestIdSet);
+        }
+        requestIdSet.add(requestId);
+    }
+
+    // Call when a pending deadline is cancelled or fires.
+    // Time complexity: O(1) -> constant
+    private void _removeFromGroup(final long requestId) {
+
+        if (requestId_To_GroupKey_Map.isEmpty()) {
+            return;
+        }
+        @Nullable
+        final Long nullableGroupKey = requestId_To_GroupKey_Map.remove(requestId);
+        if (null == nullableGroupKey) {
+            return;
+        }
+        final HashSet<Long> requestIdSet = groupKey_To_RequestIdSet_Map.get(nullableGroupKey);
+        requestIdSet.remove(requestId);
+        if (requestIdSet.isEmpty()) {
+            groupKey_To_RequestIdSet_Map.remove(nullableGroupKey);
+        }
+    }
+
+    // Time complexity: O(k log n) for k members -- no scan of other deadlines
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        // Intentional: Remove the whole group once, not one member at a time.
+        @Nullable
+        final HashSet<Long> nullableRequestIdSet = groupKey_To_RequestIdSet_Map.remove(groupKey);
+        if (null == nullableRequestIdSet) {
+            return 0;
+        }
+        int count = 0;
+        for (final Long requestId : nullableRequestIdSet) {
+
+            requestId_To_GroupKey_Map.remove(requestId);
+            if (cancel(requestId)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
     private void _checkEpochMillis(final long deadlineEpochMillis, String argName) {
 
         if (deadlineEpochMillis < 0) {
@@ -74,18 +337,121 @@ implements DeadlineEngine {
         @Nullable
         final Long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.remove(requestId);
         if (null == deadlineEpochMillis) {
-            return false;
+            final boolean x = _cancelPendingRearm(requestId);
+            return x;
         }
+        if (false == requestId_To_Recurrence_Map.isEmpty()) {
+            requestId_To_Recurrence_Map.remove(requestId);
+        }
+        _removeFromGroup(requestId);
         // Time complexity: O(log n)
-        final HashSet<Long> requestIdSet =
-            deadlineEpochMillis_To_RequestIdSet_Map.computeIfAbsent(deadlineEpochMillis,
-                any -> new HashSet<>());
+        final HashSet<Long> requestIdSet = deadlineEpochMillis_To_RequestIdSet_Map.get(deadlineEpochMillis);
+        // Time complexity: O(1) or O(log n) if now empty
+        _removeFromRequestIdSet(requestIdSet, deadlineEpochMillis, requestId);
+        // Time complexity: O(log n) if indexed, else O(1)
+        _removeFromCountTreap(deadlineEpochMillis);
+        return true;
+    }
+
+    // A recurring deadline that fired earlier in this poll is not in the maps, but its recurrence is.
+    // Time complexity: O(1)
+    private boolean _isPendingRearm(final long requestId) {
 
+        final boolean x =
+            (0 != pendingRearmCount && requestId_To_Recurrence_Map.containsKey(requestId)
+                && false == requestId_To_DeadlineEpochMillis_Map.containsKey(requestId));
+        return x;
+    }
+
+    // Time complexity: O(1)
+    private boolean _cancelPendingRearm(final long requestId) {
+
+        if (false == _isPendingRearm(requestId)) {
+            return false;
+        }
+        // Intentional: _rearm() skips request IDs without a recurrence.
+        requestId_To_Recurrence_Map.remove(requestId);
+        --pendingRearmCount;
+        return true;
+    }
+
+    // Time complexity: O(1) + O(log n) + O(log n) = O(log n) -> logarithmic, or O(1) if deadline is unchanged
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkEpochMillis(newDeadlineEpochMillis, "newDeadlineEpochMillis");
         // Time complexity: O(1)
-        requestIdSet.remove(requestId);
+        @Nullable
+        final Long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.get(requestId);
+        if (null == deadlineEpochMillis) {
+            if (false == _isPendingRearm(requestId)) {
+                return false;
+            }
+            // Intentional: The new deadline replaces the re-arm.  _rearm() skips request IDs that are in the maps.
+            --pendingRearmCount;
+            _add(requestId, newDeadlineEpochMillis);
+            return true;
+        }
+        // Same bucket?  Nothing to move.
+        if (newDeadlineEpochMillis == deadlineEpochMillis) {
+            return true;
+        }
+        // Time complexity: O(log n)
+        final HashSet<Long> requestIdSet = deadlineEpochMillis_To_RequestIdSet_Map.get(deadlineEpochMillis);
+        // Time complexity: O(1) or O(log n) if now empty
+        _removeFromRequestIdSet(requestIdSet, deadlineEpochMillis, requestId);
+        // Time complexity: O(log n)
+        _getOrAddRequestIdSet(newDeadlineEpochMillis).add(requestId);
+        // Time complexity: O(1)
+        requestId_To_DeadlineEpochMillis_Map.put(requestId, newDeadlineEpochMillis);
+        // Time complexity: O(log n) if indexed, else O(1)
+        _removeFromCountTreap(deadlineEpochMillis);
+        _addToCountTreap(newDeadlineEpochMillis);
         return true;
     }
 
+    // Time complexity: O(k log n) for k request IDs, but only O(log n) for each *distinct* run of equal deadlines
+    @Override
+    public int cancelAll(final long[] requestIdArr) {
+
+        // Intentional: Do not check argument values.  Allow any random 'requestId' to be passed.
+
+        @Nullable
+        HashSet<Long> prevRequestIdSet = null;
+        long prevDeadlineEpochMillis = -1;
+        int count = 0;
+        for (final long requestId : requestIdArr) {
+
+            // Time complexity: O(1)
+            @Nullable
+            final Long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+            if (null == deadlineEpochMillis) {
+                if (_cancelPendingRearm(requestId)) {
+                    ++count;
+                }
+                continue;
+            }
+            if (false == requestId_To_Recurrence_Map.isEmpty()) {
+                requestId_To_Recurrence_Map.remove(requestId);
+            }
+            _removeFromGroup(requestId);
+            // Intentional: If the previous set was emptied, it was removed from the tree map, so look it up again.
+            if (null == prevRequestIdSet || deadlineEpochMillis != prevDeadlineEpochMillis
+                || prevRequestIdSet.isEmpty()) {
+
+                // Time complexity: O(log n)
+                prevRequestIdSet = deadlineEpochMillis_To_RequestIdSet_Map.get(deadlineEpochMillis);
+                prevDeadlineEpochMillis = deadlineEpochMillis;
+            }
+            // Time complexity: O(1) or O(log n) if now empty
+            _removeFromRequestIdSet(prevRequestIdSet, deadlineEpochMillis, requestId);
+            // Time complexity: O(log n) if indexed, else O(1)
+            _removeFromCountTreap(deadlineEpochMillis);
+            ++count;
+        }
+        return count;
+    }
+
     // Time complexity: O(log n) + O(1) + O(1) = O(log n) -> logarithmic
     @Override
     public int poll(final long nowEpochMillis,
@@ -98,41 +464,379 @@ implements DeadlineEngine {
             throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
         }
 
-        // Intentional: 'inclusive' here will *include* deadlines that match 'nowEpochMillis'.  This is important, as
-        // the interface clearly states: "When the deadline is met or exceeded (>=)...".  Thus, less-than-or-equal is
-        // required, not just less-than.
+        int remainPollCount = maxPollCount;
+        int count = 0;
+        isPolling = true;
+        // Intentional: If the handler throws, recurring deadlines that already fired must still be re-armed.
+        try {
+            // Intentional: Walk the tree map by key, not by iterator.  A handler that reschedules may add a key.
+            // Time complexity: O(log n)
+            @Nullable
+            Long deadlineEpochMillis = deadlineEpochMillis_To_RequestIdSet_Map.isEmpty()
+                ? null : deadlineEpochMillis_To_RequestIdSet_Map.firstKey();
+            // Intentional: Less-than-or-equal will *include* deadlines that match 'nowEpochMillis'.  This is important,
+            // as the interface clearly states: "When the deadline is met or exceeded (>=)...".
+            while (remainPollCount > 0 && null != deadlineEpochMillis && deadlineEpochMillis <= nowEpochMillis) {
+
+                final HashSet<Long> requestIdSet = deadlineEpochMillis_To_RequestIdSet_Map.get(deadlineEpochMillis);
+                final int copyCount = _copyForPoll(requestIdSet, remainPollCount);
+                for (int i = 0; i < copyCount; ++i) {
+
+                    final Long requestId = pollRequestIdArr[i];
+                    pollRequestIdArr[i] = null;
+                    // Cancelled or rescheduled by an earlier handler?  Then skip.
+                    if (false == deadlineEpochMillis.equals(requestId_To_DeadlineEpochMillis_Map.get(requestId))) {
+                        continue;
+                    }
+                    handler.accept(requestId);
+                    --remainPollCount;
+                    ++count;
+                    // Cancelled or rescheduled by this handler?  Then it was already removed.
+                    if (false == deadlineEpochMillis.equals(requestId_To_DeadlineEpochMillis_Map.get(requestId))) {
+                        continue;
+                    }
+                    // Time complexity: O(1)
+                    requestIdSet.remove(requestId);
+                    // Time complexity: O(1)
+                    requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+                    // Time complexity: O(log n) if indexed, else O(1)
+                    _removeFromCountTreap(deadlineEpochMillis);
+                    _removeFromGroup(requestId);
+                    _addRearmIfRecurring(requestId, deadlineEpochMillis);
+                }
+                // Also removes sets emptied by earlier cancels or reschedules from a handler
+                if (requestIdSet.isEmpty()) {
+                    // Time complexity: O(log n)
+                    deadlineEpochMillis_To_RequestIdSet_Map.remove(deadlineEpochMillis);
+                    _recycleRequestIdSet(requestIdSet);
+                }
+                // Intentional: Request IDs added to this set by a handler are *not* fired until the next poll.
+                // Time complexity: O(log n)
+                deadlineEpochMillis = deadlineEpochMillis_To_RequestIdSet_Map.higherKey(deadlineEpochMillis);
+            }
+        }
+        finally {
+            isPolling = false;
+            _rearm(nowEpochMillis);
+        }
+        return count;
+    }
+
+    // Time complexity: O(k) for k copied request IDs
+    private int _copyForPoll(final HashSet<Long> requestIdSet, final int maxCount) {
+
+        final int x = Math.min(requestIdSet.size(), maxCount);
+        if (x > pollRequestIdArr.length) {
+            pollRequestIdArr = new Long[Math.max(x, 2 * pollRequestIdArr.length)];
+        }
+        int i = 0;
+        for (final Iterator<Long> requestIdIter = requestIdSet.iterator(); i < x; ++i) {
+            pollRequestIdArr[i] = requestIdIter.next();
+        }
+        return x;
+    }
+
+    // Time complexity: O(log n) + O(k) for k expired deadlines
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        DeadlineEngine.checkDrainToArgs(outRequestIdArr, offset, maxCount);
+
+        // Intentional: 'inclusive' is required.  See poll().
         final boolean inclusive = true;
         // Time complexity: O(log n)
         final NavigableMap<Long, HashSet<Long>> lessEqualDeadlineMap =
             deadlineEpochMillis_To_RequestIdSet_Map.headMap(nowEpochMillis, inclusive);
 
-        int remainPollCount = maxPollCount;
         int count = 0;
-BREAK_LABEL:
-        for (final Map.Entry<Long, HashSet<Long>> entry : lessEqualDeadlineMap.entrySet()) {
+        final Iterator<Map.Entry<Long, HashSet<Long>>> entryIter = lessEqualDeadlineMap.entrySet().iterator();
+        while (count < maxCount && entryIter.hasNext()) {
 
+            final Map.Entry<Long, HashSet<Long>> entry = entryIter.next();
             final HashSet<Long> requestIdSet = entry.getValue();
-            for (final Iterator<Long> requestIdIter = requestIdSet.iterator(); requestIdIter.hasNext() ; ) {
+            for (final Iterator<Long> requestIdIter = requestIdSet.iterator();
+                 count < maxCount && requestIdIter.hasNext() ; ) {
 
                 final long requestId = requestIdIter.next();
-                handler.accept(requestId);
+                outRequestIdArr[offset + count] = requestId;
                 // Time complexity: O(1)
                 requestIdIter.remove();
                 // Time complexity: O(1)
                 requestId_To_DeadlineEpochMillis_Map.remove(requestId);
-                --remainPollCount;
+                // Time complexity: O(log n) if indexed, else O(1)
+                _removeFromCountTreap(entry.getKey());
+                _removeFromGroup(requestId);
+                _addRearmIfRecurring(requestId, entry.getKey());
                 ++count;
-                if (0 == remainPollCount) {
-                    break BREAK_LABEL;
-                }
+            }
+            if (requestIdSet.isEmpty()) {
+                // Time complexity: O(1) amortised
+                entryIter.remove();
+                _recycleRequestIdSet(requestIdSet);
             }
         }
+        _rearm(nowEpochMillis);
         return count;
     }
 
+    private void _addRearmIfRecurring(final long requestId, final long deadlineEpochMillis) {
+
+        if (requestId_To_Recurrence_Map.isEmpty() || false == requestId_To_Recurrence_Map.containsKey(requestId)) {
+            return;
+        }
+        if (rearmCount == rearmRequestIdArr.length) {
+            rearmRequestIdArr = Arrays.copyOf(rearmRequestIdArr, 2 * rearmCount);
+            rearmDeadlineEpochMillisArr = Arrays.copyOf(rearmDeadlineEpochMillisArr, 2 * rearmCount);
+        }
+        rearmRequestIdArr[rearmCount] = requestId;
+        rearmDeadlineEpochMillisArr[rearmCount] = deadlineEpochMillis;
+        ++rearmCount;
+        ++pendingRearmCount;
+    }
+
+    // Intentional: Re-arm *after* the poll loop.  Else, a new deadline inside the head map would modify the map during
+    // iteration, and a recurring deadline that is far behind could fire many times in one poll.
+    // Time complexity: O(r log n) for r recurring deadlines fired by this poll
+    private void _rearm(final long nowEpochMillis) {
+
+        for (int i = 0; i < rearmCount; ++i) {
+
+            final long requestId = rearmRequestIdArr[i];
+            @Nullable
+            final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+            // Cancelled or rescheduled by a handler?  Then do not re-arm.
+            if (null == nullableRecurrence || requestId_To_DeadlineEpochMillis_Map.containsKey(requestId)) {
+                continue;
+            }
+            final long nextDeadlineEpochMillis =
+                nullableRecurrence.policy.nextDeadlineMs(
+                    rearmDeadlineEpochMillisArr[i], nowEpochMillis, nullableRecurrence.periodMillis);
+            // Intentional: Keep the same request ID.
+            _add(requestId, nextDeadlineEpochMillis);
+        }
+        rearmCount = 0;
+        pendingRearmCount = 0;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    private void _add(final long requestId, final long deadlineEpochMillis) {
+
+        _getOrAddRequestIdSet(deadlineEpochMillis).add(requestId);
+        requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+        _addToCountTreap(deadlineEpochMillis);
+    }
+
+    // Time complexity: O(log n) + O(e) where e is number of leading empty request ID sets.  Usually, e is zero: Only a
+    // handler that cancels during poll() may leave an empty set.
+    @Override
+    public long nextDeadlineMs() {
+
+        for (final Map.Entry<Long, HashSet<Long>> entry : deadlineEpochMillis_To_RequestIdSet_Map.entrySet()) {
+
+            if (false == entry.getValue().isEmpty()) {
+                final long x = entry.getKey();
+                return x;
+            }
+        }
+        return NO_DEADLINE_MS;
+    }
+
     @Override
     public int size() {
-        final int x = requestId_To_DeadlineEpochMillis_Map.size();
+        // Intentional: Include recurring deadlines that wait to be re-armed by the current poll.
+        final int x = requestId_To_DeadlineEpochMillis_Map.size() + pendingRearmCount;
+        return x;
+    }
+
+    // Time complexity: O(log n) if indexed, else O(log n + d) for d distinct deadlines in range
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromEpochMillis, toEpochMillis);
+        if (null != nullableDeadlineCountTreap) {
+            final int x = nullableDeadlineCountTreap.countLessThan(toEpochMillis)
+                - nullableDeadlineCountTreap.countLessThan(fromEpochMillis);
+            return x;
+        }
+        // Intentional: Empty sets left by a handler during poll() add zero.
+        int x = 0;
+        for (final HashSet<Long> requestIdSet
+            : deadlineEpochMillis_To_RequestIdSet_Map.subMap(fromEpochMillis, true, toEpochMillis, false).values()) {
+
+            x += requestIdSet.size();
+        }
+        return x;
+    }
+
+    // Time complexity: O(d) for d distinct deadlines
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final long boxedLongBytes = JvmMemoryLayout.boxedLongBytes();
+        // This object (11 refs + long + 2 ints + boolean) and the wrapper for 'newRequestIdSetFunc'
+        long x = JvmMemoryLayout.objectBytes(11, Long.BYTES + 2 * Integer.BYTES + 1) + JvmMemoryLayout.objectBytes(1, 0);
+
+        // Each distinct deadline is boxed once as tree map key.  Each request ID in a set is boxed again.
+        // Intentional: Iteration creates the entry set view, which the tree map keeps, so it is included.
+        final int distinctCount = deadlineEpochMillis_To_RequestIdSet_Map.size();
+        x += JvmMemoryLayout.treeMapBytes(distinctCount) + distinctCount * boxedLongBytes
+            + JvmMemoryLayout.objectBytes(1, 0);
+        for (final Map.Entry<Long, HashSet<Long>> entry : deadlineEpochMillis_To_RequestIdSet_Map.entrySet()) {
+
+            final int setSize = entry.getValue().size();
+            x += JvmMemoryLayout.hashSetBytes(setSize) + setSize * boxedLongBytes;
+        }
+        // Each key and value is boxed.
+        final int size = requestId_To_DeadlineEpochMillis_Map.size();
+        x += JvmMemoryLayout.hashMapBytes(size) + 2 * size * boxedLongBytes;
+
+        // Each entry: boxed key, and _Recurrence (ref + long)
+        final int recurrenceCount = requestId_To_Recurrence_Map.size();
+        x += JvmMemoryLayout.hashMapBytes(recurrenceCount)
+            + recurrenceCount * (boxedLongBytes + JvmMemoryLayout.objectBytes(1, Long.BYTES));
+
+        // Each key and value is boxed.  Each group: boxed key, and its request ID set with each member boxed again.
+        final int groupMemberCount = requestId_To_GroupKey_Map.size();
+        final int groupCount = groupKey_To_RequestIdSet_Map.size();
+        // Intentional: Iteration creates the values view, which the hash map keeps, so it is included.
+        x += JvmMemoryLayout.hashMapBytes(groupMemberCount) + 2 * groupMemberCount * boxedLongBytes
+            + JvmMemoryLayout.hashMapBytes(groupCount) + groupCount * boxedLongBytes + groupMemberCount * boxedLongBytes
+            + JvmMemoryLayout.objectBytes(1, 0);
+        for (final HashSet<Long> requestIdSet : groupKey_To_RequestIdSet_Map.values()) {
+            x += JvmMemoryLayout.hashSetBytes(requestIdSet.size());
+        }
+
+        x += 2 * JvmMemoryLayout.arrayBytes(rearmRequestIdArr.length, Long.BYTES);
+        // Intentional: Poll clears each slot after use, so boxed request IDs are not retained.
+        x += JvmMemoryLayout.referenceArrayBytes(pollRequestIdArr.length);
+        // Pool: ArrayDeque (ref + 2 ints) and its array.  Pooled sets were used before, so each keeps at least the
+        // minimum table.  Intentional: A set may keep a larger table from earlier use, which is not included.
+        final int pooledCount = requestIdSetPool.size();
+        x += JvmMemoryLayout.objectBytes(1, 2 * Integer.BYTES)
+            + JvmMemoryLayout.referenceArrayBytes(Math.max(16, pooledCount) + 1)
+            + pooledCount * (JvmMemoryLayout.hashSetBytes(0) + JvmMemoryLayout.referenceArrayBytes(16));
+
+        if (null != nullableDeadlineCountTreap) {
+            x += nullableDeadlineCountTreap.estimatedRetainedBytes();
+        }
+        return x;
+    }
+
+    // Time complexity: O(n) -> linear
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        for (final Map.Entry<Long, HashSet<Long>> entry : deadlineEpochMillis_To_RequestIdSet_Map.entrySet()) {
+
+            final long deadlineEpochMillis = entry.getKey();
+            for (final Long requestId : entry.getValue()) {
+                consumer.accept(requestId, deadlineEpochMillis);
+            }
+        }
+    }
+
+    // package-private for recovery and replication
+    long _nextRequestId() {
+        return nextRequestId;
+    }
+
+    // package-private for recovery and replication
+    void _advanceNextRequestId(final long nextRequestId) {
+
+        if (nextRequestId > this.nextRequestId) {
+            this.nextRequestId = nextRequestId;
+        }
+    }
+
+    // package-private for recovery and replication
+    // Intentional: Caller chooses the request ID, so restored state matches the original engine exactly.  If the
+    // request ID already exists, it is moved.  This makes replay idempotent.
+    void _restore(final long requestId, final long deadlineEpochMillis) {
+
+        _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        if (requestId < MIN_REQUEST_ID) {
+            throw new IllegalArgumentException("Argument 'requestId' must be >= " + MIN_REQUEST_ID + ": " + requestId);
+        }
+        // Intentional: Do not cancel, then add.  Cancel would remove the recurrence of a recurring deadline.
+        if (false == reschedule(requestId, deadlineEpochMillis)) {
+            _add(requestId, deadlineEpochMillis);
+        }
+        if (requestId >= nextRequestId) {
+            nextRequestId = 1 + requestId;
+        }
+    }
+
+    // package-private for recovery and replication
+    // Intentional: Ignored if the request ID is not pending.  Else, a stray recurrence could be mistaken for a pending
+    // re-arm.
+    void _restoreRecurrence(final long requestId, final long periodMillis, RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        if (requestId_To_DeadlineEpochMillis_Map.containsKey(requestId)) {
+            requestId_To_Recurrence_Map.put(requestId, new _Recurrence(periodMillis, policy));
+        }
+    }
+
+    // package-private for recovery and replication
+    // Intentional: Ignored if the request ID is not pending.  If already in a group, it is moved.  This makes replay
+    // idempotent.
+    void _restoreGroup(final long requestId, final long groupKey) {
+
+        if (requestId_To_DeadlineEpochMillis_Map.containsKey(requestId)) {
+            _removeFromGroup(requestId);
+            _addToGroup(requestId, groupKey);
+        }
+    }
+
+    // package-private for recovery and replication
+    // @return null if request ID is not in a group, or not pending
+    @Nullable
+    Long _nullableGroupKey(final long requestId) {
+
+        if (requestId_To_GroupKey_Map.isEmpty()) {
+            return null;
+        }
+        @Nullable
+        final Long x = requestId_To_GroupKey_Map.get(requestId);
+        return x;
+    }
+
+    // package-private for recovery and replication
+    @Nullable
+    Long _nullableDeadlineEpochMillis(final long requestId) {
+
+        @Nullable
+        final Long x = requestId_To_DeadlineEpochMillis_Map.get(requestId);
+        return x;
+    }
+
+    // package-private for recovery and replication
+    // @return null if request ID is one-shot, or not pending
+    @Nullable
+    RecurrencePolicy _nullableRecurrencePolicy(final long requestId) {
+
+        if (requestId_To_Recurrence_Map.isEmpty()) {
+            return null;
+        }
+        @Nullable
+        final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+        @Nullable
+        final RecurrencePolicy x = (null == nullableRecurrence) ? null : nullableRecurrence.policy;
+        return x;
+    }
+
+    // package-private for recovery and replication
+    // @return zero if request ID is one-shot, or not pending
+    long _recurrencePeriodMillis(final long requestId) {
+
+        if (requestId_To_Recurrence_Map.isEmpty()) {
+            return 0;
+        }
+        @Nullable
+        final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+        final long x = (null == nullableRecurrence) ? 0 : nullableRecurrence.periodMillis;
         return x;
     }
 }
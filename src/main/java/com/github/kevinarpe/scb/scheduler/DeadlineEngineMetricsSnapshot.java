@@ -0,0 +1,70 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.metrics.LogLinearHistogram;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * Immutable point-in-time copy of metrics from {@link InstrumentedDeadlineEngineImp}.  All counts are cumulative since
+ * the engine was created.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see InstrumentedDeadlineEngineImp#metricsSnapshot()
+ */
+@Immutable
+public final class DeadlineEngineMetricsSnapshot {
+
+    public final long scheduledCount;
+    public final long cancelledCount;
+    public final long rescheduledCount;
+    public final long firedCount;
+    public final long pollCount;
+    /**
+     * After the most recent poll: Number of expired deadlines left for the next poll, e.g., due to {@code maxPoll}.
+     */
+    public final int backlogCount;
+    /**
+     * After the most recent poll: {@code nowMs} minus earliest expired deadline left for the next poll.  Zero if none.
+     */
+    public final long backlogLatenessMs;
+    public final int pendingCount;
+    /**
+     * For each poll that fires: {@code nowMs - deadlineMs} of the earliest expired deadline, i.e., the worst lateness
+     * of the poll
+     */
+    public final LogLinearHistogram.Snapshot latenessMsHistogram;
+
+    public DeadlineEngineMetricsSnapshot(long scheduledCount,
+                                         long cancelledCount,
+                                         long rescheduledCount,
+                                         long firedCount,
+                                         long pollCount,
+                                         int backlogCount,
+                                         long backlogLatenessMs,
+                                         int pendingCount,
+                                         LogLinearHistogram.Snapshot latenessMsHistogram) {
+
+        this.scheduledCount = scheduledCount;
+        this.cancelledCount = cancelledCount;
+        this.rescheduledCount = rescheduledCount;
+        this.firedCount = firedCount;
+        this.pollCount = pollCount;
+        this.backlogCount = backlogCount;
+        this.backlogLatenessMs = backlogLatenessMs;
+        this.pendingCount = pendingCount;
+        this.latenessMsHistogram = Objects.requireNonNull(latenessMsHistogram);
+    }
+
+    @Override
+    public String toString() {
+
+        final String x = String.format(
+            "scheduled=%d, cancelled=%d, rescheduled=%d, fired=%d, polls=%d, backlog=%d, backlogLatenessMs=%d,"
+                + " pending=%d, latenessMs=[%s]",
+            scheduledCount, cancelledCount, rescheduledCount, firedCount, pollCount, backlogCount,
+            backlogLatenessMs, pendingCount, latenessMsHistogram);
+        return x;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.Nullable;
+
+/**
+ * Groups for an engine that finds each pending deadline by request ID, e.g., {@link OffHeapDeadlineEngineImp}.  Only
+ * request IDs scheduled by {@link DeadlineEngine#scheduleInGroup(long, long)} are stored, so deadlines outside a group
+ * pay only an {@link #isEmpty()} check.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see RecurrenceTable
+ */
+final class DeadlineGroupTable {
+
+    // These two data structures are mirrors of one another.
+    // Intentional: Group key may be any value, including zero, so always use indexOf() for lookups.
+    private final LongLongHashMap requestId_To_GroupKey_Map;
+    private final LongObjectHashMap<LongHashSet> groupKey_To_RequestIdSet_Map;
+
+    DeadlineGroupTable() {
+
+        this.requestId_To_GroupKey_Map = new LongLongHashMap();
+        this.groupKey_To_RequestIdSet_Map = new LongObjectHashMap<>();
+    }
+
+    boolean isEmpty() {
+        final boolean x = requestId_To_GroupKey_Map.isEmpty();
+        return x;
+    }
+
+    /**
+     * Time complexity: O(g) for g groups
+     *
+     * @see DeadlineEngine#estimatedRetainedBytes()
+     */
+    long estimatedRetainedBytes() {
+
+        // This object: 2 refs
+        long x =
+            JvmMemoryLayout.objectBytes(2, 0)
+                + JvmMemoryLayout.longLongHashMapBytes(requestId_To_GroupKey_Map)
+                + JvmMemoryLayout.longObjectHashMapBytes(groupKey_To_RequestIdSet_Map);
+        for (final ObjectCursor<LongHashSet> cursor : groupKey_To_RequestIdSet_Map.values()) {
+            x += JvmMemoryLayout.longHashSetBytes(cursor.value);
+        }
+        return x;
+    }
+
+    // Time complexity: O(1) -> constant
+    void add(final long requestId, final long groupKey) {
+
+        requestId_To_GroupKey_Map.put(requestId, groupKey);
+        final int index = groupKey_To_RequestIdSet_Map.indexOf(groupKey);
+        if (groupKey_To_RequestIdSet_Map.indexExists(index)) {
+            groupKey_To_RequestIdSet_Map.indexGet(index).add(requestId);
+        }
+        else {
+            final LongHashSet requestIdSet = new LongHashSet();
+            requestIdSet.add(requestId);
+            groupKey_To_RequestIdSet_Map.indexInsert(index, groupKey, requestIdSet);
+        }
+    }
+
+    /**
+     * Call when a pending deadline is cancelled or fires.
+     * <p>
+     * Time complexity: O(1) -> constant
+     */
+    void remove(final long requestId) {
+
+        if (requestId_To_GroupKey_Map.isEmpty()) {
+            return;
+        }
+        // Intentional: Group key may be zero, which is also returned by remove() for a missing key.
+        if (false == requestId_To_GroupKey_Map.containsKey(requestId)) {
+            return;
+        }
+        final long groupKey = requestId_To_GroupKey_Map.remove(requestId);
+        final LongHashSet requestIdSet = groupKey_To_RequestIdSet_Map.get(groupKey);
+        requestIdSet.remove(requestId);
+        if (requestIdSet.isEmpty()) {
+            groupKey_To_RequestIdSet_Map.remove(groupKey);
+        }
+    }
+
+    /**
+     * Removes a whole group at once.  The engine must cancel each member.
+     * <p>
+     * Time complexity: O(k) for k members
+     *
+     * @return request IDs of all members, or null if group key is unknown
+     */
+    @Nullable
+    LongHashSet removeGroup(final long groupKey) {
+
+        @Nullable
+        final LongHashSet nullableRequestIdSet = groupKey_To_RequestIdSet_Map.remove(groupKey);
+        if (null != nullableRequestIdSet) {
+            requestId_To_GroupKey_Map.removeAll(nullableRequestIdSet);
+        }
+        return nullableRequestIdSet;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary record for a single {@link DeadlineEngine} operation.  Shared by the write-ahead log and by
+ * replication, so both can replay operations with {@link #apply(ByteBuffer, int, DeadlineEngineImp)}.
+ * <p>
+ * Layout: [type: 1 byte][requestId: 8 bytes][value: 8 bytes]
+ * <p>
+ * Usually, value is a deadline.  For {@link #TYPE_RECURRENCE}, value is
+ * [policy ordinal: 1 byte][periodMillis: 7 bytes].  For {@link #TYPE_GROUP} and {@link #TYPE_CANCEL_GROUP}, value is
+ * the group key.
+ * <p>
+ * Type zero is reserved as end-of-records marker.  When writing, the type is stored <b>last</b>, so a reader never
+ * sees a half-written record as valid.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DurableDeadlineEngineImp
+ * @see ReplicatedDeadlineEngineImp
+ */
+final class DeadlineLogRecord {
+
+    static final byte TYPE_END = 0;
+    static final byte TYPE_SCHEDULE = 1;
+    static final byte TYPE_CANCEL = 2;
+    static final byte TYPE_FIRE = 3;
+    static final byte TYPE_RESCHEDULE = 4;
+    // Only used by replication: 'requestId' is next request ID.  See ReplicatedDeadlineEngineImp.
+    static final byte TYPE_NEXT_REQUEST_ID = 5;
+    // Always follows TYPE_SCHEDULE for the same request ID.  See toRecurrenceValue().
+    static final byte TYPE_RECURRENCE = 6;
+    // Always follows TYPE_SCHEDULE for the same request ID.  Value is group key.
+    static final byte TYPE_GROUP = 7;
+    // Request ID is unused.  Value is group key.  Replay cancels the same members, as membership is also replayed.
+    static final byte TYPE_CANCEL_GROUP = 8;
+    // A recurring deadline that fired is written as TYPE_RESCHEDULE with its next deadline, never as TYPE_FIRE, as
+    // TYPE_FIRE would cancel it.
+
+    static final long MAX_RECURRENCE_PERIOD_MILLIS = (1L << 56) - 1;
+    // Intentional: values() allocates a new array for each call.
+    private static final RecurrencePolicy[] RECURRENCE_POLICY_ARR = RecurrencePolicy.values();
+
+    static final int SIZE_BYTES = 1 + Long.BYTES + Long.BYTES;
+
+    private DeadlineLogRecord() {
+        // Empty
+    }
+
+    /**
+     * @return value for {@link #TYPE_RECURRENCE}
+     *
+     * @throws IllegalArgumentException
+     *         if {@code periodMillis} is not positive, or larger than {@link #MAX_RECURRENCE_PERIOD_MILLIS}
+     */
+    static long toRecurrenceValue(final long periodMillis, RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        if (periodMillis > MAX_RECURRENCE_PERIOD_MILLIS) {
+            throw new IllegalArgumentException(
+                "Argument 'periodMillis' must be <= " + MAX_RECURRENCE_PERIOD_MILLIS + ": " + periodMillis);
+        }
+        final long x = ((long) policy.ordinal() << 56) | periodMillis;
+        return x;
+    }
+
+    static void write(final ByteBuffer buffer,
+                      final int position,
+                      final byte type,
+                      final long requestId,
+                      final long value) {
+
+        buffer.putLong(position + 1, requestId);
+        buffer.putLong(position + 1 + Long.BYTES, value);
+        // Intentional: Write type last.  See class docs.
+        buffer.put(position, type);
+    }
+
+    /**
+     * @return record type that was applied, or {@link #TYPE_END}
+     *
+     * @throws IllegalStateException
+     *         if record type is unknown
+     */
+    static byte apply(final ByteBuffer buffer, final int position, final DeadlineEngineImp engine) {
+
+        final byte type = buffer.get(position);
+        final long requestId = buffer.getLong(position + 1);
+        final long value = buffer.getLong(position + 1 + Long.BYTES);
+        switch (type) {
+            case TYPE_END: {
+                break;
+            }
+            // Intentional: Restore will move an existing request ID.
+            case TYPE_SCHEDULE:
+            case TYPE_RESCHEDULE: {
+                engine._restore(requestId, value);
+                break;
+            }
+            case TYPE_CANCEL:
+            case TYPE_FIRE: {
+                engine.cancel(requestId);
+                break;
+            }
+            case TYPE_NEXT_REQUEST_ID: {
+                engine._advanceNextRequestId(requestId);
+                break;
+            }
+            case TYPE_RECURRENCE: {
+                applyRecurrence(requestId, value, engine);
+                break;
+            }
+            case TYPE_GROUP: {
+                engine._restoreGroup(requestId, value);
+                break;
+            }
+            case TYPE_CANCEL_GROUP: {
+                engine.cancelGroup(value);
+                break;
+            }
+            default: {
+                throw new IllegalStateException("Unknown record type " + type + " at position " + position);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @param recurrenceValue
+     *        from {@link #toRecurrenceValue(long, RecurrencePolicy)}
+     */
+    static void applyRecurrence(final long requestId, final long recurrenceValue, final DeadlineEngineImp engine) {
+
+        final long periodMillis = recurrenceValue & MAX_RECURRENCE_PERIOD_MILLIS;
+        final int policyOrdinal = (int) (recurrenceValue >>> 56);
+        if (policyOrdinal >= RECURRENCE_POLICY_ARR.length) {
+            throw new IllegalStateException("Unknown recurrence policy ordinal: " + policyOrdinal);
+        }
+        engine._restoreRecurrence(requestId, periodMillis, RECURRENCE_POLICY_ARR[policyOrdinal]);
+    }
+}
@@ -0,0 +1,411 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ThreadSafe?  Yes.
+ * <p>
+ * This is a reactive adapter for a {@link DeadlineEngine}: It publishes the request ID of each expired deadline to a
+ * {@link Flow.Subscriber}.  There is no poll loop.  A timer is armed only while the subscriber has outstanding demand,
+ * and fires at the earliest deadline.
+ * <p>
+ * Backpressure: Subscriber demand from {@link Flow.Subscription#request(long)} is passed to the engine as the
+ * {@code max} argument of {@link DeadlineEngine#drainTo(long, long[], int, int)}.  Thus, the engine never emits more
+ * expired deadlines than requested.  The rest stay in the engine until more demand arrives.
+ * <p>
+ * Java generics cannot use {@code long}, so the item type is {@link Long}.  To avoid boxing, implement
+ * {@link DeadlineBatchSubscriber}.  Then request IDs are signalled in batches of primitive {@code long}.
+ * <p>
+ * Only one subscriber is supported at a time.  After it cancels, a new subscriber may subscribe.  All signals are
+ * delivered on {@code scheduledExecutor}, and never concurrently.
+ * <p>
+ * Delivery is at-most-once: Each batch is drained from the engine before it is signalled.  If the subscriber throws,
+ * its subscription is cancelled (Ref: Reactive Streams rule 2.13), and the rest of the batch is lost, including request
+ * IDs not yet signalled.  They are not scheduled again, because the engine would assign new request IDs.  To handle
+ * failures, the subscriber must not throw, e.g., {@link DeadlineDispatcher} passes failed request IDs to its
+ * {@link DeadlineDispatcher.ErrorHandler}.
+ * <p>
+ * The engine need not be thread-safe: All access is guarded by this class.  Do not access the engine directly after
+ * construction.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineScheduler
+ */
+@ThreadSafe
+public final class DeadlinePublisher
+implements Flow.Publisher<Long>, Closeable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    /**
+     * Maximum timer delay, even if the next deadline is later.  This protects against wall clock adjustments, e.g., NTP.
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    private final Object lock;
+    @GuardedBy("lock")
+    private final DeadlineEngine engine;
+    private final MillisClock clock;
+    private final ScheduledExecutorService scheduledExecutor;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final AtomicReference<_Subscription> subscriptionRef;
+    // When the armed timer will fire, or NO_DEADLINE_MS if none
+    @GuardedBy("lock")
+    private long timerEpochMillis;
+    @GuardedBy("lock")
+    @Nullable
+    private ScheduledFuture<?> nullableTimerFuture;
+    private volatile boolean volatileIsClosed;
+
+    public DeadlinePublisher(DeadlineEngine engine, ScheduledExecutorService scheduledExecutor) {
+
+        this(engine, MillisClock.SYSTEM, scheduledExecutor, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param engine
+     *        single-threaded engine.  From now, only this class should access this engine.
+     *
+     * @param clock
+     *        source of time to check deadlines against.  Usually {@link MillisClock#SYSTEM}.
+     *
+     * @param scheduledExecutor
+     *        runs the timer and delivers all signals to the subscriber.  Not shut down by {@link #close()}.
+     *
+     * @param maxBatchSize
+     *        maximum number of request IDs per batch, even if demand is larger
+     *
+     * @param maxDelayMillis
+     *        maximum timer delay, even if next deadline is later
+     */
+    public DeadlinePublisher(DeadlineEngine engine,
+                             MillisClock clock,
+                             ScheduledExecutorService scheduledExecutor,
+                             final int maxBatchSize,
+                             final long maxDelayMillis) {
+
+        this.lock = new Object();
+        this.engine = Objects.requireNonNull(engine);
+        this.clock = Objects.requireNonNull(clock);
+        this.scheduledExecutor = Objects.requireNonNull(scheduledExecutor);
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Argument 'maxBatchSize' must be positive: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+        if (maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("Argument 'maxDelayMillis' must be positive: " + maxDelayMillis);
+        }
+        this.maxDelayMillis = maxDelayMillis;
+        this.subscriptionRef = new AtomicReference<>(null);
+        this.timerEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+        this.nullableTimerFuture = null;
+        this.volatileIsClosed = false;
+    }
+
+    /**
+     * If another subscriber is active, or this publisher is closed, {@code subscriber} receives
+     * {@link Flow.Subscriber#onError(Throwable)} with {@link IllegalStateException}.
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super Long> subscriber) {
+
+        Objects.requireNonNull(subscriber);
+        final _Subscription subscription = new _Subscription(subscriber);
+        if (volatileIsClosed || false == subscriptionRef.compareAndSet(null, subscription)) {
+
+            // Intentional: Reactive Streams rule 1.9 requires onSubscribe() before onError().
+            subscription.isCancelled = true;
+            subscriber.onSubscribe(subscription);
+            subscriber.onError(
+                new IllegalStateException(volatileIsClosed ? "Publisher is closed" : "Only one subscriber is supported"));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+        // Intentional: Do not signal before onSubscribe() returns.  See _Subscription._emit().
+        subscription.isSubscribed = true;
+        subscription._scheduleDrain();
+    }
+
+    /**
+     * @see DeadlineEngine#schedule(long)
+     */
+    public long schedule(final long deadlineMs) {
+
+        final long requestId;
+        synchronized (lock) {
+            requestId = engine.schedule(deadlineMs);
+        }
+        _onDeadline(deadlineMs);
+        return requestId;
+    }
+
+    /**
+     * @see DeadlineEngine#schedule(long, long)
+     */
+    public long schedule(final long deadlineMs, final long slackMs) {
+
+        final long requestId;
+        synchronized (lock) {
+            requestId = engine.schedule(deadlineMs, slackMs);
+        }
+        // Intentional: The engine may coarsen the deadline.  At worst, the timer fires early, finds nothing, and is
+        // armed again.
+        _onDeadline(deadlineMs);
+        return requestId;
+    }
+
+    /**
+     * @see DeadlineEngine#cancel(long)
+     */
+    public boolean cancel(final long requestId) {
+
+        // Intentional: Do not disarm the timer.  At worst, it fires early, finds nothing, and is armed again.
+        synchronized (lock) {
+            final boolean x = engine.cancel(requestId);
+            return x;
+        }
+    }
+
+    /**
+     * @see DeadlineEngine#reschedule(long, long)
+     */
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final boolean isRescheduled;
+        synchronized (lock) {
+            isRescheduled = engine.reschedule(requestId, newDeadlineMs);
+        }
+        if (isRescheduled) {
+            _onDeadline(newDeadlineMs);
+        }
+        return isRescheduled;
+    }
+
+    /**
+     * @see DeadlineEngine#size()
+     */
+    public int size() {
+
+        synchronized (lock) {
+            final int x = engine.size();
+            return x;
+        }
+    }
+
+    private void _onDeadline(final long deadlineEpochMillis) {
+
+        @Nullable
+        final _Subscription nullableSubscription = subscriptionRef.get();
+        // Intentional: Without demand, there is nothing to emit, so no timer is required.
+        if (null != nullableSubscription && nullableSubscription.demand.get() > 0) {
+            _armTimer(deadlineEpochMillis);
+        }
+    }
+
+    private void _armTimer(final long deadlineEpochMillis) {
+
+        final long nowEpochMillis = clock.currentTimeMillis();
+        final long delayMillis = Math.max(0, Math.min(deadlineEpochMillis - nowEpochMillis, maxDelayMillis));
+        final long fireEpochMillis = nowEpochMillis + delayMillis;
+        synchronized (lock) {
+            // Already armed to fire earlier?  Nothing to do.
+            if (fireEpochMillis >= timerEpochMillis || volatileIsClosed) {
+                return;
+            }
+            if (null != nullableTimerFuture) {
+                nullableTimerFuture.cancel(false);
+            }
+            timerEpochMillis = fireEpochMillis;
+            nullableTimerFuture =
+                scheduledExecutor.schedule(this::_onTimer, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Intentional: Drain the *current* subscription.  It may have changed since the timer was armed.
+    private void _onTimer() {
+
+        synchronized (lock) {
+            timerEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+            nullableTimerFuture = null;
+        }
+        @Nullable
+        final _Subscription nullableSubscription = subscriptionRef.get();
+        if (null != nullableSubscription) {
+            nullableSubscription._scheduleDrain();
+        }
+    }
+
+    /**
+     * Signals {@link Flow.Subscriber#onComplete()} to the current subscriber, if any.  Pending deadlines are not
+     * emitted.  Safe to call more than once.
+     */
+    @Override
+    public void close() {
+
+        volatileIsClosed = true;
+        synchronized (lock) {
+            if (null != nullableTimerFuture) {
+                nullableTimerFuture.cancel(false);
+                nullableTimerFuture = null;
+            }
+            timerEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+        }
+        @Nullable
+        final _Subscription nullableSubscription = subscriptionRef.get();
+        if (null != nullableSubscription) {
+            nullableSubscription._scheduleDrain();
+        }
+    }
+
+    private final class _Subscription
+    implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Long> subscriber;
+        @Nullable
+        private final DeadlineBatchSubscriber nullableBatchSubscriber;
+        // Long.MAX_VALUE means unbounded.  Ref: Reactive Streams rule 3.17
+        private final AtomicLong demand;
+        // Work-in-progress counter: Only one thread may emit at a time.  Other threads increment, and the emitting
+        // thread loops again.  Thus, no signal is lost, and signals are never concurrent.
+        private final AtomicInteger workInProgress;
+        // Intentional: Only accessed by the emitting thread.
+        private final long[] requestIdArr;
+        private volatile boolean isSubscribed;
+        private volatile boolean isCancelled;
+        @Nullable
+        private volatile Throwable nullableError;
+
+        private _Subscription(Flow.Subscriber<? super Long> subscriber) {
+
+            this.subscriber = subscriber;
+            this.nullableBatchSubscriber =
+                (subscriber instanceof DeadlineBatchSubscriber) ? (DeadlineBatchSubscriber) subscriber : null;
+            this.demand = new AtomicLong(0);
+            this.workInProgress = new AtomicInteger(0);
+            this.requestIdArr = new long[maxBatchSize];
+            this.isSubscribed = false;
+            this.isCancelled = false;
+            this.nullableError = null;
+        }
+
+        @Override
+        public void request(final long n) {
+
+            if (n <= 0) {
+                // Ref: Reactive Streams rule 3.9
+                nullableError = new IllegalArgumentException("Argument 'n' must be positive: " + n);
+            }
+            else {
+                // Intentional: Cap at Long.MAX_VALUE on overflow.
+                demand.getAndUpdate((long x) -> (x + n < 0) ? Long.MAX_VALUE : x + n);
+            }
+            _scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+
+            isCancelled = true;
+            // Intentional: Allow a new subscriber.
+            subscriptionRef.compareAndSet(this, null);
+        }
+
+        private void _scheduleDrain() {
+
+            if (0 == workInProgress.getAndIncrement()) {
+                scheduledExecutor.execute(this::_drainLoop);
+            }
+        }
+
+        private void _drainLoop() {
+
+            int missed = 1;
+            while (0 != missed) {
+
+                _emit();
+                missed = workInProgress.addAndGet(-missed);
+            }
+        }
+
+        private void _emit() {
+
+            if (isCancelled || false == isSubscribed) {
+                return;
+            }
+            @Nullable
+            final Throwable error = nullableError;
+            if (null != error) {
+                cancel();
+                subscriber.onError(error);
+                return;
+            }
+            if (volatileIsClosed) {
+                cancel();
+                subscriber.onComplete();
+                return;
+            }
+            long nextDeadlineEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+            while (false == isCancelled) {
+
+                final long demandCount = demand.get();
+                if (0 == demandCount) {
+                    // Intentional: No timer without demand.  The next request() will emit.
+                    return;
+                }
+                final int maxCount = (int) Math.min(demandCount, maxBatchSize);
+                final long nowEpochMillis = clock.currentTimeMillis();
+                final int count;
+                synchronized (lock) {
+                    count = engine.drainTo(nowEpochMillis, requestIdArr, 0, maxCount);
+                    nextDeadlineEpochMillis = engine.nextDeadlineMs();
+                }
+                if (count > 0) {
+                    if (Long.MAX_VALUE != demandCount) {
+                        demand.addAndGet(-count);
+                    }
+                    _signal(count);
+                }
+                if (count < maxCount) {
+                    // No more expired deadlines
+                    break;
+                }
+            }
+            if (false == isCancelled && DeadlineEngine.NO_DEADLINE_MS != nextDeadlineEpochMillis) {
+                _armTimer(nextDeadlineEpochMillis);
+            }
+        }
+
+        private void _signal(final int count) {
+
+            try {
+                if (null != nullableBatchSubscriber) {
+                    nullableBatchSubscriber.onNextBatch(requestIdArr, 0, count);
+                }
+                else {
+                    for (int i = 0; i < count; ++i) {
+                        subscriber.onNext(requestIdArr[i]);
+                    }
+                }
+            }
+            catch (RuntimeException | Error e) {
+                // Ref: Reactive Streams rule 2.13: A subscriber that throws is considered cancelled.
+                // Intentional: The rest of the batch is already drained from the engine, so it is lost.  See class
+                // docs: Delivery is at-most-once.
+                cancel();
+                throw e;
+            }
+        }
+    }
+}
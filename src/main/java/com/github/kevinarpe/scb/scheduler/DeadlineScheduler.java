@@ -0,0 +1,380 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * ThreadSafe?  Yes.
+ * <p>
+ * This is a self-driving runtime for a {@link DeadlineEngine}.  It owns a poller thread that parks exactly until the
+ * earliest deadline, then polls the engine and dispatches each expired request ID to an {@link Executor}.  If an earlier
+ * deadline is scheduled while the poller is parked, the poller is woken immediately.  Thus, callers neither spin nor
+ * sleep on a fixed interval.
+ * <p>
+ * The poller thread reads the time from a {@link CachedMillisClock}, so other threads may cheaply read the same time
+ * via {@link #clock()}.
+ * <p>
+ * The engine need not be thread-safe: All access is guarded by this class.  Do not access the engine directly after
+ * construction.
+ * <p>
+ * Errors: If the engine or the executor throws, the poller thread reports the error to an {@link ErrorHandler}, then
+ * keeps running.  Expired request IDs that the executor rejects are kept by the poller, then dispatched again after at
+ * most {@code maxParkMillis}.  Thus, a saturated executor delays request IDs, but never loses them.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngine#nextDeadlineMs()
+ */
+@ThreadSafe
+public final class DeadlineScheduler
+implements Closeable {
+
+    public static final int DEFAULT_MAX_POLL_COUNT = 1024;
+    /**
+     * Maximum time to park, even if the next deadline is later.  This protects against wall clock adjustments, e.g., NTP.
+     */
+    public static final long DEFAULT_MAX_PARK_MILLIS = 1000;
+    /**
+     * Reports each error to the uncaught exception handler of the poller thread.  By default, this prints a stack trace
+     * to {@link System#err}.
+     */
+    public static final ErrorHandler DEFAULT_ERROR_HANDLER = DeadlineScheduler::_reportUncaughtException;
+
+    /**
+     * Called on the poller thread for each batch that failed.
+     */
+    @FunctionalInterface
+    public interface ErrorHandler {
+
+        /**
+         * If this method throws, the error is ignored.
+         *
+         * @param cause
+         *        error thrown by the engine or the executor.  After {@link #close()}, this is
+         *        {@link IllegalStateException}.
+         *
+         * @param requestIdArr
+         *        expired request IDs that were not dispatched.  Only valid during this call: The array is reused.
+         *        Unless the scheduler is closed, these request IDs will be dispatched again.
+         *
+         * @param offset
+         *        index of the first request ID in {@code requestIdArr}
+         *
+         * @param count
+         *        number of request IDs in {@code requestIdArr}.  Zero if the engine threw.
+         */
+        void onError(Throwable cause, long[] requestIdArr, int offset, int count);
+    }
+
+    private static void _reportUncaughtException(final Throwable cause,
+                                                 final long[] requestIdArr,
+                                                 final int offset,
+                                                 final int count) {
+
+        final Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, cause);
+    }
+
+    private final DeadlineEngine engine;
+    private final CachedMillisClock clock;
+    private final Executor executor;
+    private final LongConsumer handler;
+    private final ErrorHandler errorHandler;
+    private final int maxPollCount;
+    private final long maxParkMillis;
+    private final Thread pollerThread;
+    private final Object lock;
+    @GuardedBy("lock")
+    private long parkUntilEpochMillis;
+    private volatile boolean volatileIsRunning;
+
+    public DeadlineScheduler(DeadlineEngine engine, Executor executor, LongConsumer handler) {
+
+        this(engine,
+             MillisClock.SYSTEM,
+             executor,
+             handler,
+             DEFAULT_ERROR_HANDLER,
+             DEFAULT_MAX_POLL_COUNT,
+             DEFAULT_MAX_PARK_MILLIS);
+    }
+
+    /**
+     * @param engine
+     *        single-threaded engine.  From now, only this class should access this engine.
+     *
+     * @param clock
+     *        source of time to check deadlines against.  Usually {@link MillisClock#SYSTEM}.
+     *
+     * @param executor
+     *        runs {@code handler} for each expired request ID
+     *
+     * @param handler
+     *        called with each expired request ID
+     *
+     * @param errorHandler
+     *        called on the poller thread when the engine or the executor throws.  Usually
+     *        {@link #DEFAULT_ERROR_HANDLER}.
+     *
+     * @param maxPollCount
+     *        maximum number of expired deadlines to dispatch per poll
+     *
+     * @param maxParkMillis
+     *        maximum time to park, even if next deadline is later.  Also, the delay before an error is retried.
+     */
+    public DeadlineScheduler(DeadlineEngine engine,
+                             MillisClock clock,
+                             Executor executor,
+                             LongConsumer handler,
+                             ErrorHandler errorHandler,
+                             final int maxPollCount,
+                             final long maxParkMillis) {
+
+        this.engine = Objects.requireNonNull(engine);
+        this.clock = new CachedMillisClock(Objects.requireNonNull(clock));
+        this.executor = Objects.requireNonNull(executor);
+        this.handler = Objects.requireNonNull(handler);
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        if (maxPollCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
+        }
+        this.maxPollCount = maxPollCount;
+        if (maxParkMillis <= 0) {
+            throw new IllegalArgumentException("Argument 'maxParkMillis' must be positive: " + maxParkMillis);
+        }
+        this.maxParkMillis = maxParkMillis;
+        this.pollerThread = new Thread(this::_run, getClass().getSimpleName());
+        this.pollerThread.setDaemon(true);
+        this.lock = new Object();
+        this.parkUntilEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+    }
+
+    /**
+     * Starts the poller thread.
+     *
+     * @throws IllegalStateException
+     *         if already started
+     */
+    public void start() {
+
+        if (pollerThread.getState() != Thread.State.NEW) {
+            throw new IllegalStateException("Already started");
+        }
+        volatileIsRunning = true;
+        pollerThread.start();
+    }
+
+    /**
+     * @return clock that is refreshed by the poller thread
+     */
+    public CachedMillisClock clock() {
+        return clock;
+    }
+
+    /**
+     * @see DeadlineEngine#schedule(long)
+     */
+    public long schedule(final long deadlineMs) {
+
+        final long requestId;
+        final boolean isWakeRequired;
+        synchronized (lock) {
+            requestId = engine.schedule(deadlineMs);
+            isWakeRequired = (deadlineMs < parkUntilEpochMillis);
+            if (isWakeRequired) {
+                parkUntilEpochMillis = deadlineMs;
+            }
+        }
+        // Intentional: Unpark outside the lock, so the poller does not immediately block on our lock.
+        // If the poller is not yet parked, then its next park will return immediately.  Thus, no wake-up is lost.
+        if (isWakeRequired) {
+            LockSupport.unpark(pollerThread);
+        }
+        return requestId;
+    }
+
+    /**
+     * @see DeadlineEngine#schedule(long, long)
+     */
+    public long schedule(final long deadlineMs, final long slackMs) {
+
+        final long coarseDeadlineMs = DeadlineEngine.coarsenDeadlineMs(deadlineMs, slackMs);
+        final long x = schedule(coarseDeadlineMs);
+        return x;
+    }
+
+    /**
+     * @see DeadlineEngine#cancel(long)
+     */
+    public boolean cancel(final long requestId) {
+
+        // Intentional: Do not wake the poller.  At worst, it wakes early, finds nothing, and parks again.
+        synchronized (lock) {
+            return engine.cancel(requestId);
+        }
+    }
+
+    /**
+     * @see DeadlineEngine#reschedule(long, long)
+     */
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final boolean isRescheduled;
+        final boolean isWakeRequired;
+        synchronized (lock) {
+            isRescheduled = engine.reschedule(requestId, newDeadlineMs);
+            // Intentional: Only wake when moved earlier.  See schedule().
+            isWakeRequired = isRescheduled && (newDeadlineMs < parkUntilEpochMillis);
+            if (isWakeRequired) {
+                parkUntilEpochMillis = newDeadlineMs;
+            }
+        }
+        if (isWakeRequired) {
+            LockSupport.unpark(pollerThread);
+        }
+        return isRescheduled;
+    }
+
+    /**
+     * @see DeadlineEngine#nextDeadlineMs()
+     */
+    public long nextDeadlineMs() {
+
+        synchronized (lock) {
+            return engine.nextDeadlineMs();
+        }
+    }
+
+    /**
+     * @see DeadlineEngine#size()
+     */
+    public int size() {
+
+        synchronized (lock) {
+            return engine.size();
+        }
+    }
+
+    /**
+     * Wakes the poller thread to check deadlines immediately.  This is only useful with a fake clock in tests.
+     */
+    public void wakeUp() {
+        LockSupport.unpark(pollerThread);
+    }
+
+    private void _run() {
+
+        // Intentional: Reuse the same array for each drain to avoid allocation.
+        // Request IDs rejected by the executor are kept at the front of this array, then dispatched again.
+        final long[] requestIdArr = new long[maxPollCount];
+        int retryCount = 0;
+        while (volatileIsRunning) {
+
+            final long nowEpochMillis = clock.refresh();
+            int count = retryCount;
+            long nextDeadlineEpochMillis;
+            @Nullable
+            RuntimeException nullableDrainError = null;
+            synchronized (lock) {
+                try {
+                    // Intentional: If every slot waits for a retry, do not drain.  Argument 'max' must be positive.
+                    if (retryCount < maxPollCount) {
+                        count += engine.drainTo(nowEpochMillis, requestIdArr, retryCount, maxPollCount - retryCount);
+                    }
+                    nextDeadlineEpochMillis = engine.nextDeadlineMs();
+                }
+                catch (RuntimeException e) {
+                    nullableDrainError = e;
+                    nextDeadlineEpochMillis = nowEpochMillis + maxParkMillis;
+                }
+                parkUntilEpochMillis = nextDeadlineEpochMillis;
+            }
+            if (null != nullableDrainError) {
+                _onError(nullableDrainError, requestIdArr, 0, 0);
+            }
+            // Intentional: Dispatch outside the lock.  A slow executor must not block schedule() or cancel().
+            final int dispatchedCount = _dispatch(requestIdArr, count);
+            retryCount = count - dispatchedCount;
+            if (retryCount > 0) {
+                System.arraycopy(requestIdArr, dispatchedCount, requestIdArr, 0, retryCount);
+                // Intentional: Back off.  An earlier deadline may wake us, which only retries sooner.
+                _parkUntil(nowEpochMillis + maxParkMillis);
+            }
+            else if (null == nullableDrainError && count == maxPollCount) {
+                // More expired deadlines may remain.  Do not park.
+                continue;
+            }
+            else {
+                _parkUntil(nextDeadlineEpochMillis);
+            }
+        }
+        if (retryCount > 0) {
+            _onError(new IllegalStateException("Closed"), requestIdArr, 0, retryCount);
+        }
+    }
+
+    /**
+     * Stops at the first request ID rejected by the executor.  The rest of the batch is reported as one error.
+     *
+     * @return number of request IDs dispatched, from the front of {@code requestIdArr}
+     */
+    private int _dispatch(final long[] requestIdArr, final int count) {
+
+        for (int i = 0; i < count; ++i) {
+
+            final long requestId = requestIdArr[i];
+            try {
+                executor.execute(() -> handler.accept(requestId));
+            }
+            catch (RuntimeException e) {
+                _onError(e, requestIdArr, i, count - i);
+                return i;
+            }
+        }
+        return count;
+    }
+
+    private void _onError(final Throwable cause, final long[] requestIdArr, final int offset, final int count) {
+
+        try {
+            errorHandler.onError(cause, requestIdArr, offset, count);
+        }
+        catch (RuntimeException e) {
+            // Intentional: Keep the poller thread alive.  Nothing more can be done.
+        }
+    }
+
+    private void _parkUntil(final long deadlineEpochMillis) {
+
+        final long delayMillis = Math.min(deadlineEpochMillis - clock.refresh(), maxParkMillis);
+        if (delayMillis > 0) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+    }
+
+    /**
+     * Stops the poller thread and waits for it to exit.  Pending deadlines are not dispatched.  Expired request IDs
+     * still waiting for a retry are passed to the {@link ErrorHandler} a final time.
+     */
+    @Override
+    public void close() {
+
+        volatileIsRunning = false;
+        LockSupport.unpark(pollerThread);
+        if (Thread.currentThread() != pollerThread && pollerThread.getState() != Thread.State.NEW) {
+            try {
+                pollerThread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
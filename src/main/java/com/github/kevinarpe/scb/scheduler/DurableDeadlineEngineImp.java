@@ -0,0 +1,746 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.procedures.LongLongProcedure;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This implementation survives process restarts.  All state is held by a {@link DeadlineEngineImp}, and each schedule,
+ * cancel, and fire is appended to a memory-mapped write-ahead log.  When the log is full, a compact snapshot of pending
+ * deadlines is written, and the log is reset.
+ * <p>
+ * Recovery (in the constructor) reads the snapshot, then replays the log.  Both are sequential reads, so tens of
+ * millions of deadlines are rebuilt in seconds.
+ * <p>
+ * Durability: Writes to a memory-mapped file survive a <i>process</i> crash as soon as they are written.  To survive
+ * an <i>operating system</i> crash, records must be forced to disk.  To amortise the cost, records are forced in
+ * groups: once per {@code groupCommitRecordCount} records, or when {@link #sync()} or {@link #close()} is called.
+ * <p>
+ * A snapshot is never written during {@link #poll(long, Consumer, int)}, as the delegate is only consistent after poll
+ * returns.  If the log is full during a poll, the log file grows, and the snapshot is written when poll returns.
+ * <p>
+ * Recurring deadlines are logged as a schedule and its recurrence, written atomically.  When a recurring deadline
+ * fires, its next deadline is logged as a reschedule, so recovery never loses the recurrence.  Likewise, each group
+ * member is logged as a schedule and its group key, written atomically.  A group cancel is logged as one record, as
+ * replay cancels the same members.
+ * <p>
+ * Only one instance may use a directory at a time.  This is enforced with a file lock.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ * @see DeadlineLogRecord
+ */
+public final class DurableDeadlineEngineImp
+implements DeadlineEngine, Closeable {
+
+    public static final int DEFAULT_LOG_CAPACITY_RECORD_COUNT = 1024 * 1024;
+    public static final int DEFAULT_GROUP_COMMIT_RECORD_COUNT = 256;
+
+    // package-private for testing
+    static final String SNAPSHOT_FILE_NAME = "deadline-engine.snapshot";
+    static final String LOG_FILE_NAME = "deadline-engine.log";
+    private static final String LOCK_FILE_NAME = "deadline-engine.lock";
+
+    private static final int SNAPSHOT_MAGIC = 0x44534e50;  // "DSNP"
+    private static final int LOG_MAGIC = 0x444c4f47;  // "DLOG"
+    // Version 2 adds recurrences to the snapshot, and version 3 adds groups.  Older files are still read.
+    private static final int FORMAT_VERSION = 3;
+    private static final int MIN_FORMAT_VERSION = 1;
+    // [magic: 4 bytes][version: 4 bytes][generation: 8 bytes]
+    private static final int LOG_HEADER_SIZE_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    // [magic: 4 bytes][version: 4 bytes][generation: 8 bytes][nextRequestId: 8 bytes][count: 8 bytes]
+    private static final int SNAPSHOT_HEADER_SIZE_BYTES = LOG_HEADER_SIZE_BYTES + Long.BYTES + Long.BYTES;
+    private static final int SNAPSHOT_IO_BUFFER_SIZE_BYTES = 1024 * 1024;
+
+    private final Path snapshotFilePath;
+    private final int groupCommitRecordCount;
+    private final DeadlineEngineImp delegate;
+    private final FileChannel lockFileChannel;
+    private final FileLock fileLock;
+    private final FileChannel logFileChannel;
+    // Intentional: Only written by the constructor and _growLog().
+    private MappedByteBuffer logBuffer;
+    // Log is full when 'logPosition' reaches this size.  Only a poll may grow 'logBuffer' beyond this size.
+    private final long logSizeBytes;
+    // Generation is incremented for each new snapshot.  Log records are only valid for a snapshot with same generation.
+    private long generation;
+    private int logPosition;
+    private int unsyncedRecordCount;
+    // True while poll() calls the delegate.  See snapshot().
+    private boolean isPolling;
+    private boolean isSnapshotPending;
+    private boolean isClosed;
+    // One-shot request IDs fired by the current poll.  See _appendFires().
+    private final LongArrayList firedOneShotRequestIdList;
+    // Recurring request IDs fired by the current poll.  See _appendRearms().
+    private final LongArrayList firedRecurringRequestIdList;
+
+    public DurableDeadlineEngineImp(Path dirPath)
+    throws IOException {
+
+        this(dirPath, DEFAULT_LOG_CAPACITY_RECORD_COUNT, DEFAULT_GROUP_COMMIT_RECORD_COUNT);
+    }
+
+    /**
+     * @param dirPath
+     *        directory for snapshot and log files.  Created if it does not exist.
+     *
+     * @param logCapacityRecordCount
+     *        maximum number of records in the log before a new snapshot is written
+     *
+     * @param groupCommitRecordCount
+     *        number of records to append before forcing the log to disk.  Use one to force after every record.
+     *
+     * @throws IOException
+     *         if recovery fails, or if another instance is using {@code dirPath}.  Either way, no files are left open.
+     */
+    public DurableDeadlineEngineImp(final Path dirPath,
+                                    final int logCapacityRecordCount,
+                                    final int groupCommitRecordCount)
+    throws IOException {
+
+        Objects.requireNonNull(dirPath);
+        if (logCapacityRecordCount <= 0) {
+            throw new IllegalArgumentException(
+                "Argument 'logCapacityRecordCount' must be positive: " + logCapacityRecordCount);
+        }
+        if (groupCommitRecordCount <= 0) {
+            throw new IllegalArgumentException(
+                "Argument 'groupCommitRecordCount' must be positive: " + groupCommitRecordCount);
+        }
+        final long logSizeBytes = LOG_HEADER_SIZE_BYTES + (long) logCapacityRecordCount * DeadlineLogRecord.SIZE_BYTES;
+        if (logSizeBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Argument 'logCapacityRecordCount' is too large: " + logCapacityRecordCount);
+        }
+        Files.createDirectories(dirPath);
+        this.snapshotFilePath = dirPath.resolve(SNAPSHOT_FILE_NAME);
+        this.groupCommitRecordCount = groupCommitRecordCount;
+        this.delegate = new DeadlineEngineImp();
+
+        this.lockFileChannel =
+            FileChannel.open(dirPath.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        @Nullable
+        FileLock nullableFileLock;
+        try {
+            nullableFileLock = lockFileChannel.tryLock();
+        }
+        // Intentional: This is thrown when the lock is held by another instance in *this* process.
+        catch (OverlappingFileLockException e) {
+            nullableFileLock = null;
+        }
+        catch (IOException e) {
+            lockFileChannel.close();
+            throw e;
+        }
+        if (null == nullableFileLock) {
+            lockFileChannel.close();
+            throw new IOException("Directory is already in use by another instance: " + dirPath);
+        }
+        this.fileLock = nullableFileLock;
+        this.logSizeBytes = logSizeBytes;
+        this.isPolling = false;
+        this.isSnapshotPending = false;
+        this.firedOneShotRequestIdList = new LongArrayList();
+        this.firedRecurringRequestIdList = new LongArrayList();
+
+        @Nullable
+        FileChannel nullableLogFileChannel = null;
+        // Intentional: If recovery fails, release the lock.  Else, it is held until this process exits, and each retry
+        // in this process fails as if another instance were using the directory.
+        try {
+            this.generation = _readSnapshot();
+
+            nullableLogFileChannel =
+                FileChannel.open(dirPath.resolve(LOG_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.logFileChannel = nullableLogFileChannel;
+            final boolean isNewLog = (logFileChannel.size() < LOG_HEADER_SIZE_BYTES);
+            // Intentional: Never map less than the existing file.  Else, records from the previous run may be
+            // truncated.
+            final long mapSizeBytes = Math.max(logSizeBytes, Math.min(logFileChannel.size(), Integer.MAX_VALUE));
+            this.logBuffer = logFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, mapSizeBytes);
+
+            if (isNewLog || false == _isLogForCurrentGeneration()) {
+                _resetLog();
+            }
+            else {
+                _replayLog();
+            }
+        }
+        catch (Throwable e) {
+            _closeAfterFailure(nullableLogFileChannel, e);
+            throw e;
+        }
+    }
+
+    private void _closeAfterFailure(@Nullable final FileChannel nullableLogFileChannel, final Throwable cause) {
+
+        try {
+            if (null != nullableLogFileChannel) {
+                nullableLogFileChannel.close();
+            }
+        }
+        catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            fileLock.release();
+        }
+        catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            lockFileChannel.close();
+        }
+        catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Time complexity: O(n) where n is number of pending deadlines in snapshot
+    private long _readSnapshot()
+    throws IOException {
+
+        if (Files.notExists(snapshotFilePath)) {
+            return 0;
+        }
+        try (final FileChannel fileChannel = FileChannel.open(snapshotFilePath, StandardOpenOption.READ)) {
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_IO_BUFFER_SIZE_BYTES);
+            _readFully(fileChannel, buffer, SNAPSHOT_HEADER_SIZE_BYTES);
+            final int magic = buffer.getInt();
+            final int version = buffer.getInt();
+            if (SNAPSHOT_MAGIC != magic || false == _isSupportedVersion(version)) {
+                throw new IOException("Invalid snapshot file: " + snapshotFilePath);
+            }
+            final long generation = buffer.getLong();
+            final long nextRequestId = buffer.getLong();
+            final long count = buffer.getLong();
+
+            final int pairSizeBytes = Long.BYTES + Long.BYTES;
+            long remainCount = count;
+            while (remainCount > 0) {
+
+                final int batchCount = (int) Math.min(remainCount, buffer.capacity() / pairSizeBytes);
+                _readFully(fileChannel, buffer, batchCount * pairSizeBytes);
+                for (int i = 0; i < batchCount; ++i) {
+
+                    final long requestId = buffer.getLong();
+                    final long deadlineEpochMillis = buffer.getLong();
+                    delegate._restore(requestId, deadlineEpochMillis);
+                }
+                remainCount -= batchCount;
+            }
+            if (version >= 2) {
+                _readSnapshotPairs(fileChannel, buffer,
+                    (long requestId, long recurrenceValue) ->
+                        DeadlineLogRecord.applyRecurrence(requestId, recurrenceValue, delegate));
+            }
+            if (version >= 3) {
+                _readSnapshotPairs(fileChannel, buffer, delegate::_restoreGroup);
+            }
+            delegate._advanceNextRequestId(nextRequestId);
+            return generation;
+        }
+    }
+
+    private static boolean _isSupportedVersion(final int version) {
+
+        final boolean x = (version >= MIN_FORMAT_VERSION && version <= FORMAT_VERSION);
+        return x;
+    }
+
+    // Layout: [count: 8 bytes], then for each: [requestId: 8 bytes][value: 8 bytes]
+    // Value is a recurrence value (version 2) or group key (version 3).
+    // Time complexity: O(p) where p is number of pairs in snapshot
+    private void _readSnapshotPairs(final FileChannel fileChannel,
+                                    final ByteBuffer buffer,
+                                    final LongLongProcedure pairProc)
+    throws IOException {
+
+        _readFully(fileChannel, buffer, Long.BYTES);
+        final long count = buffer.getLong();
+        final int pairSizeBytes = Long.BYTES + Long.BYTES;
+        long remainCount = count;
+        while (remainCount > 0) {
+
+            final int batchCount = (int) Math.min(remainCount, buffer.capacity() / pairSizeBytes);
+            _readFully(fileChannel, buffer, batchCount * pairSizeBytes);
+            for (int i = 0; i < batchCount; ++i) {
+
+                final long requestId = buffer.getLong();
+                final long value = buffer.getLong();
+                pairProc.apply(requestId, value);
+            }
+            remainCount -= batchCount;
+        }
+    }
+
+    private void _readFully(final FileChannel fileChannel, final ByteBuffer buffer, final int byteCount)
+    throws IOException {
+
+        buffer.clear().limit(byteCount);
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of snapshot file: " + snapshotFilePath);
+            }
+        }
+        buffer.flip();
+    }
+
+    private boolean _isLogForCurrentGeneration()
+    throws IOException {
+
+        final int magic = logBuffer.getInt(0);
+        final int version = logBuffer.getInt(Integer.BYTES);
+        if (LOG_MAGIC != magic || false == _isSupportedVersion(version)) {
+            throw new IOException("Invalid log file");
+        }
+        final long logGeneration = logBuffer.getLong(Integer.BYTES + Integer.BYTES);
+        // Intentional: An older generation means we crashed after writing a new snapshot, but before the log was
+        // reset.  All of its records are already included in the snapshot.
+        final boolean x = (logGeneration == generation);
+        return x;
+    }
+
+    // Time complexity: O(r) where r is number of records in log
+    private void _replayLog() {
+
+        int position = LOG_HEADER_SIZE_BYTES;
+        while (position + DeadlineLogRecord.SIZE_BYTES <= logBuffer.capacity()) {
+
+            final byte type = DeadlineLogRecord.apply(logBuffer, position, delegate);
+            if (DeadlineLogRecord.TYPE_END == type) {
+                break;
+            }
+            position += DeadlineLogRecord.SIZE_BYTES;
+        }
+        this.logPosition = position;
+    }
+
+    private void _resetLog() {
+
+        logBuffer.putInt(0, LOG_MAGIC);
+        logBuffer.putInt(Integer.BYTES, FORMAT_VERSION);
+        logBuffer.putLong(Integer.BYTES + Integer.BYTES, generation);
+        logPosition = LOG_HEADER_SIZE_BYTES;
+        // Intentional: Do not zero the whole log.  Instead, mark the first record as end-of-records.  Each append also
+        // marks the following record, so stale records from a previous generation are never replayed.
+        logBuffer.put(logPosition, DeadlineLogRecord.TYPE_END);
+        logBuffer.force();
+        unsyncedRecordCount = 0;
+    }
+
+    private void _append(final byte type, final long requestId, final long value) {
+
+        _ensureLogCapacity(DeadlineLogRecord.SIZE_BYTES);
+        final int nextPosition = logPosition + DeadlineLogRecord.SIZE_BYTES;
+        if (nextPosition < logBuffer.capacity()) {
+            logBuffer.put(nextPosition, DeadlineLogRecord.TYPE_END);
+        }
+        DeadlineLogRecord.write(logBuffer, logPosition, type, requestId, value);
+        _afterAppend(nextPosition, 1);
+    }
+
+    // Intentional: Both records become visible atomically, as the type of the first record is written last.  Thus, a
+    // recurring deadline is never recovered as one-shot, and a group member is never recovered outside its group.
+    private void _appendPair(final byte type, final long requestId, final long value,
+                             final byte type2, final long requestId2, final long value2) {
+
+        _ensureLogCapacity(2 * DeadlineLogRecord.SIZE_BYTES);
+        final int position2 = logPosition + DeadlineLogRecord.SIZE_BYTES;
+        final int nextPosition = position2 + DeadlineLogRecord.SIZE_BYTES;
+        if (nextPosition < logBuffer.capacity()) {
+            logBuffer.put(nextPosition, DeadlineLogRecord.TYPE_END);
+        }
+        DeadlineLogRecord.write(logBuffer, position2, type2, requestId2, value2);
+        DeadlineLogRecord.write(logBuffer, logPosition, type, requestId, value);
+        _afterAppend(nextPosition, 2);
+    }
+
+    private void _ensureLogCapacity(final int byteCount) {
+
+        if (logPosition + byteCount > logSizeBytes) {
+            // Intentional: Do not snapshot during poll.  See snapshot().
+            if (isPolling) {
+                isSnapshotPending = true;
+            }
+            else {
+                snapshot();
+            }
+        }
+        // Intentional: Also after a snapshot, as a pair of records may not fit in a tiny log.
+        if (logPosition + byteCount > logBuffer.capacity()) {
+            _growLog(byteCount);
+        }
+    }
+
+    private void _afterAppend(final int nextPosition, final int recordCount) {
+
+        logPosition = nextPosition;
+        unsyncedRecordCount += recordCount;
+        if (unsyncedRecordCount >= groupCommitRecordCount) {
+            sync();
+        }
+    }
+
+    // Time complexity: O(1), but the file and its mapping double in size
+    private void _growLog(final int byteCount) {
+
+        final long newSizeBytes = Math.min(2L * logBuffer.capacity(), Integer.MAX_VALUE);
+        if (newSizeBytes < logPosition + byteCount) {
+            throw new IllegalStateException("Log is full: " + logBuffer.capacity() + " bytes");
+        }
+        try {
+            // Intentional: Records already written are in the file, so the new mapping sees them.
+            logBuffer = logFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSizeBytes);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow log to " + newSizeBytes + " bytes", e);
+        }
+    }
+
+    /**
+     * Forces all appended log records to disk.
+     */
+    public void sync() {
+
+        _checkNotClosed();
+        if (unsyncedRecordCount > 0) {
+            logBuffer.force();
+            unsyncedRecordCount = 0;
+        }
+    }
+
+    /**
+     * Writes a compact snapshot of all pending deadlines, then resets the log.  This is called automatically when the
+     * log is full.
+     * <p>
+     * If called by a handler during {@link #poll(long, Consumer, int)}, the snapshot is deferred until poll returns.
+     * <p>
+     * Time complexity: O(n) where n is number of pending deadlines
+     */
+    public void snapshot() {
+
+        _checkNotClosed();
+        if (isPolling) {
+            isSnapshotPending = true;
+            return;
+        }
+        isSnapshotPending = false;
+        final long nextGeneration = 1 + generation;
+        final Path tmpFilePath = snapshotFilePath.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+        try {
+            try (final FileOutputStream fos = new FileOutputStream(tmpFilePath.toFile());
+                 final DataOutputStream dos =
+                     new DataOutputStream(new BufferedOutputStream(fos, SNAPSHOT_IO_BUFFER_SIZE_BYTES))) {
+
+                dos.writeInt(SNAPSHOT_MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeLong(nextGeneration);
+                dos.writeLong(delegate._nextRequestId());
+                dos.writeLong(delegate.size());
+                final IOException[] nullableExceptionRef = {null};
+                // Pairs: [requestId, recurrenceValue]
+                final LongArrayList recurrenceList = new LongArrayList();
+                // Pairs: [requestId, groupKey]
+                final LongArrayList groupList = new LongArrayList();
+                delegate.forEachPending((long requestId, long deadlineEpochMillis) -> {
+                    final long periodMillis = delegate._recurrencePeriodMillis(requestId);
+                    if (0 != periodMillis) {
+                        recurrenceList.add(requestId,
+                            DeadlineLogRecord.toRecurrenceValue(
+                                periodMillis, delegate._nullableRecurrencePolicy(requestId)));
+                    }
+                    @Nullable
+                    final Long nullableGroupKey = delegate._nullableGroupKey(requestId);
+                    if (null != nullableGroupKey) {
+                        groupList.add(requestId, nullableGroupKey);
+                    }
+                    if (null == nullableExceptionRef[0]) {
+                        try {
+                            dos.writeLong(requestId);
+                            dos.writeLong(deadlineEpochMillis);
+                        }
+                        catch (IOException e) {
+                            nullableExceptionRef[0] = e;
+                        }
+                    }
+                });
+                if (null != nullableExceptionRef[0]) {
+                    throw nullableExceptionRef[0];
+                }
+                _writePairs(dos, recurrenceList);
+                _writePairs(dos, groupList);
+                dos.flush();
+                fos.getFD().sync();
+            }
+            // Intentional: The snapshot becomes visible atomically.  If we crash before this line, the old snapshot and
+            // old log are still valid.  If we crash after this line, the old log is ignored due to its generation.
+            Files.move(tmpFilePath, snapshotFilePath,
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to write snapshot: " + snapshotFilePath, e);
+        }
+        generation = nextGeneration;
+        _resetLog();
+    }
+
+    // Layout: See _readSnapshotPairs().
+    private static void _writePairs(final DataOutputStream dos, final LongArrayList pairList)
+    throws IOException {
+
+        dos.writeLong(pairList.size() / 2);
+        for (int i = 0; i < pairList.size(); ++i) {
+            dos.writeLong(pairList.get(i));
+        }
+    }
+
+    private void _checkNotClosed() {
+
+        if (isClosed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+    }
+
+    @Override
+    public long schedule(final long deadlineEpochMillis) {
+
+        _checkNotClosed();
+        final long requestId = delegate.schedule(deadlineEpochMillis);
+        _append(DeadlineLogRecord.TYPE_SCHEDULE, requestId, deadlineEpochMillis);
+        return requestId;
+    }
+
+    @Override
+    public void scheduleAll(final long[] deadlineEpochMillisArr, final long[] outRequestIdArr) {
+
+        _checkNotClosed();
+        delegate.scheduleAll(deadlineEpochMillisArr, outRequestIdArr);
+        for (int i = 0; i < deadlineEpochMillisArr.length; ++i) {
+            _append(DeadlineLogRecord.TYPE_SCHEDULE, outRequestIdArr[i], deadlineEpochMillisArr[i]);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if {@code periodMillis} is larger than {@link DeadlineLogRecord#MAX_RECURRENCE_PERIOD_MILLIS}
+     */
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        _checkNotClosed();
+        // Intentional: Check before the delegate is changed.
+        final long recurrenceValue = DeadlineLogRecord.toRecurrenceValue(periodMillis, policy);
+        final long requestId = delegate.scheduleRecurring(firstDeadlineEpochMillis, periodMillis, policy);
+        _appendPair(DeadlineLogRecord.TYPE_SCHEDULE, requestId, firstDeadlineEpochMillis,
+            DeadlineLogRecord.TYPE_RECURRENCE, requestId, recurrenceValue);
+        return requestId;
+    }
+
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        _checkNotClosed();
+        final long requestId = delegate.scheduleInGroup(deadlineEpochMillis, groupKey);
+        _appendPair(DeadlineLogRecord.TYPE_SCHEDULE, requestId, deadlineEpochMillis,
+            DeadlineLogRecord.TYPE_GROUP, requestId, groupKey);
+        return requestId;
+    }
+
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        _checkNotClosed();
+        final int count = delegate.cancelGroup(groupKey);
+        if (count > 0) {
+            _append(DeadlineLogRecord.TYPE_CANCEL_GROUP, 0, groupKey);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        _checkNotClosed();
+        final boolean isCancelled = delegate.cancel(requestId);
+        if (isCancelled) {
+            _append(DeadlineLogRecord.TYPE_CANCEL, requestId, 0);
+        }
+        return isCancelled;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkNotClosed();
+        final boolean isRescheduled = delegate.reschedule(requestId, newDeadlineEpochMillis);
+        if (isRescheduled) {
+            _append(DeadlineLogRecord.TYPE_RESCHEDULE, requestId, newDeadlineEpochMillis);
+        }
+        return isRescheduled;
+    }
+
+    @Override
+    public int poll(final long nowEpochMillis,
+                    final Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        _checkNotClosed();
+        Objects.requireNonNull(handler);
+        // Intentional: Append *after* calling handler.  If the handler throws, the deadline is not removed from the
+        // delegate, so the log must agree.  If we crash between handler and append, the deadline will fire again after
+        // recovery: at-least-once.
+        isPolling = true;
+        try {
+            final int count =
+                delegate.poll(nowEpochMillis,
+                    (Long requestId) -> {
+                        handler.accept(requestId);
+                        // Intentional: The delegate removes a fired deadline only *after* the handler returns, and
+                        // re-arms recurring deadlines after its poll loop.  See _appendFires() and _appendRearms().
+                        if (0 == delegate._recurrencePeriodMillis(requestId)) {
+                            firedOneShotRequestIdList.add(requestId);
+                        }
+                        else {
+                            firedRecurringRequestIdList.add(requestId);
+                        }
+                    },
+                    maxPollCount);
+            return count;
+        }
+        finally {
+            isPolling = false;
+            _appendFires();
+            _appendRearms();
+            if (isSnapshotPending) {
+                snapshot();
+            }
+        }
+    }
+
+    private void _appendFires() {
+
+        for (int i = 0; i < firedOneShotRequestIdList.size(); ++i) {
+
+            final long requestId = firedOneShotRequestIdList.get(i);
+            // Rescheduled by a handler?  Then its reschedule is already logged, and TYPE_FIRE would cancel it after
+            // recovery.
+            if (null == delegate._nullableDeadlineEpochMillis(requestId)) {
+                _append(DeadlineLogRecord.TYPE_FIRE, requestId, 0);
+            }
+        }
+        firedOneShotRequestIdList.clear();
+    }
+
+    // Intentional: A recurring deadline that fired is logged with its next deadline.  TYPE_FIRE would cancel it.
+    private void _appendRearms() {
+
+        for (int i = 0; i < firedRecurringRequestIdList.size(); ++i) {
+
+            final long requestId = firedRecurringRequestIdList.get(i);
+            @Nullable
+            final Long nullableDeadlineEpochMillis = delegate._nullableDeadlineEpochMillis(requestId);
+            // Cancelled by a handler?  Then its cancel is already logged.
+            if (null != nullableDeadlineEpochMillis) {
+                _append(DeadlineLogRecord.TYPE_RESCHEDULE, requestId, nullableDeadlineEpochMillis);
+            }
+        }
+        firedRecurringRequestIdList.clear();
+    }
+
+    // Intentional: Unlike poll(), each request ID is logged as fired *before* the caller sees it.  If we crash before
+    // the caller handles the batch, those deadlines will not fire again after recovery: at-most-once.  For
+    // at-least-once, use poll().
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkNotClosed();
+        final int count = delegate.drainTo(nowEpochMillis, outRequestIdArr, offset, maxCount);
+        for (int i = offset; i < offset + count; ++i) {
+            // Intentional: Recurring deadlines are already re-armed.  See _appendRearms().
+            if (0 == delegate._recurrencePeriodMillis(outRequestIdArr[i])) {
+                _append(DeadlineLogRecord.TYPE_FIRE, outRequestIdArr[i], 0);
+            }
+            else {
+                firedRecurringRequestIdList.add(outRequestIdArr[i]);
+            }
+        }
+        _appendRearms();
+        return count;
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+        final long x = delegate.nextDeadlineMs();
+        return x;
+    }
+
+    @Override
+    public int size() {
+        final int x = delegate.size();
+        return x;
+    }
+
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+        final int x = delegate.countBetween(fromEpochMillis, toEpochMillis);
+        return x;
+    }
+
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+        delegate.forEachPending(consumer);
+    }
+
+    // Intentional: Only the delegate.  The log is memory-mapped (off-heap).
+    @Override
+    public long estimatedRetainedBytes() {
+        final long x = delegate.estimatedRetainedBytes();
+        return x;
+    }
+
+    /**
+     * Forces the log to disk and releases all files.  Pending deadlines are recovered by the next instance.
+     */
+    @Override
+    public void close()
+    throws IOException {
+
+        if (isClosed) {
+            return;
+        }
+        sync();
+        isClosed = true;
+        try {
+            logFileChannel.close();
+        }
+        finally {
+            fileLock.release();
+            lockFileChannel.close();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * ThreadSafe?  Yes.  This is a flat-combining thread-safe wrapper for {@link DeadlineEngine}.  Ref: D. Hendler, et al.,
+ * "Flat Combining and the Synchronization-Parallelism Tradeoff", SPAA 2010.
+ * <p>
+ * With {@link SynchronizedDeadlineEngineImp}, each thread acquires the monitor in turn, so the cache lines of the
+ * delegate's data structures bounce between cores.  Instead, here each thread publishes its operation in its own
+ * publication record, then tries to acquire the combiner lock.  The winner (the combiner) applies all published
+ * operations in one pass, while the delegate's data stays hot in its cache.  Other threads spin on their own record
+ * until their result is written.
+ * <p>
+ * {@link #poll(long, Consumer, int)}, {@link #drainTo(long, long[], int, int)},
+ * {@link #countHistogram(long, long, int[])}, and {@link #forEachPending(PendingDeadlineConsumer)} are not published.  The caller
+ * acquires the combiner lock and applies them directly, so the handler is always called by the polling thread.  Other
+ * published operations are combined first.
+ * <p>
+ * Publication records are kept in a list.  To bound the cost of each pass, records unused for many passes are removed
+ * by the combiner, then re-added by their thread on next use.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see SynchronizedDeadlineEngineImp
+ */
+@ThreadSafe
+public final class FlatCombiningDeadlineEngineImp
+implements DeadlineEngine {
+
+    private static final int OP_NONE = 0;
+    private static final int OP_SCHEDULE = 1;
+    private static final int OP_SCHEDULE_ALL = 2;
+    private static final int OP_CANCEL = 3;
+    private static final int OP_CANCEL_ALL = 4;
+    private static final int OP_RESCHEDULE = 5;
+    private static final int OP_NEXT_DEADLINE_MS = 6;
+    private static final int OP_SIZE = 7;
+    private static final int OP_SCHEDULE_RECURRING = 8;
+    private static final int OP_SCHEDULE_IN_GROUP = 9;
+    private static final int OP_CANCEL_GROUP = 10;
+    private static final int OP_COUNT_BETWEEN = 11;
+
+    // Every N passes, the combiner removes records unused for more than MAX_IDLE_PASS_COUNT passes.
+    private static final int CLEANUP_PERIOD_PASS_COUNT = 1024;
+    private static final int MAX_IDLE_PASS_COUNT = 1024;
+    private static final int MAX_SPIN_COUNT = 64;
+
+    private final ReentrantLock combinerLock;
+    @GuardedBy("combinerLock")
+    private final DeadlineEngine delegate;
+    // Intentional: Threads add records at the head (lock-free).  Only the combiner removes records, and never the head.
+    private final AtomicReference<_Record> headRecordRef;
+    private final ThreadLocal<_Record> threadLocalRecord;
+    @GuardedBy("combinerLock")
+    private long passCount;
+
+    /**
+     * @param delegate
+     *        single-threaded engine.  From now, only this class should access this engine.
+     */
+    public FlatCombiningDeadlineEngineImp(DeadlineEngine delegate) {
+
+        this.combinerLock = new ReentrantLock();
+        this.delegate = Objects.requireNonNull(delegate);
+        this.headRecordRef = new AtomicReference<>(null);
+        this.threadLocalRecord = ThreadLocal.withInitial(_Record::new);
+        this.passCount = 0;
+    }
+
+    /**
+     * Publication record: one per thread.  Arguments are written by the owner thread, then published by a volatile
+     * write to {@link #volatileOpCode}.  The result is written by the combiner, then published by a volatile write of
+     * {@link #OP_NONE}.
+     */
+    private static final class _Record {
+
+        private volatile int volatileOpCode = OP_NONE;
+        private volatile boolean volatileIsActive = false;
+        private long longArg;
+        private long longArg2;
+        @Nullable
+        private long[] nullableArrArg;
+        @Nullable
+        private long[] nullableArrArg2;
+        @Nullable
+        private RecurrencePolicy nullablePolicyArg;
+        private long result;
+        @Nullable
+        private Throwable nullableError;
+        // Only accessed by the combiner
+        @Nullable
+        private _Record nullableNext;
+        private long lastActivePassCount;
+    }
+
+    @Override
+    public long schedule(final long deadlineMs) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = deadlineMs;
+        _publishAndAwait(record, OP_SCHEDULE);
+        final long x = record.result;
+        return x;
+    }
+
+    // Intentional: Publish the whole batch as one operation.
+    @Override
+    public void scheduleAll(final long[] deadlinesMs, final long[] outRequestIds) {
+
+        final _Record record = threadLocalRecord.get();
+        record.nullableArrArg = deadlinesMs;
+        record.nullableArrArg2 = outRequestIds;
+        _publishAndAwait(record, OP_SCHEDULE_ALL);
+    }
+
+    @Override
+    public long scheduleRecurring(final long firstDeadlineMs, final long periodMs, RecurrencePolicy policy) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = firstDeadlineMs;
+        record.longArg2 = periodMs;
+        record.nullablePolicyArg = policy;
+        _publishAndAwait(record, OP_SCHEDULE_RECURRING);
+        final long x = record.result;
+        return x;
+    }
+
+    @Override
+    public long scheduleInGroup(final long deadlineMs, final long groupKey) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = deadlineMs;
+        record.longArg2 = groupKey;
+        _publishAndAwait(record, OP_SCHEDULE_IN_GROUP);
+        final long x = record.result;
+        return x;
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = requestId;
+        _publishAndAwait(record, OP_CANCEL);
+        final boolean x = (0 != record.result);
+        return x;
+    }
+
+    // Intentional: Publish the whole batch as one operation.
+    @Override
+    public int cancelAll(final long[] requestIds) {
+
+        final _Record record = threadLocalRecord.get();
+        record.nullableArrArg = requestIds;
+        _publishAndAwait(record, OP_CANCEL_ALL);
+        final int x = (int) record.result;
+        return x;
+    }
+
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = groupKey;
+        _publishAndAwait(record, OP_CANCEL_GROUP);
+        final int x = (int) record.result;
+        return x;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = requestId;
+        record.longArg2 = newDeadlineMs;
+        _publishAndAwait(record, OP_RESCHEDULE);
+        final boolean x = (0 != record.result);
+        return x;
+    }
+
+    @Override
+    public int poll(final long nowMs, final Consumer<Long> handler, final int maxPoll) {
+
+        combinerLock.lock();
+        try {
+            _combine();
+            final int x = delegate.poll(nowMs, handler, maxPoll);
+            return x;
+        }
+        finally {
+            combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(final long nowMs, final long[] out, final int offset, final int max) {
+
+        combinerLock.lock();
+        try {
+            _combine();
+            final int x = delegate.drainTo(nowMs, out, offset, max);
+            return x;
+        }
+        finally {
+            combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+
+        final _Record record = threadLocalRecord.get();
+        _publishAndAwait(record, OP_NEXT_DEADLINE_MS);
+        final long x = record.result;
+        return x;
+    }
+
+    @Override
+    public int size() {
+
+        final _Record record = threadLocalRecord.get();
+        _publishAndAwait(record, OP_SIZE);
+        final int x = (int) record.result;
+        return x;
+    }
+
+    @Override
+    public int countBetween(final long fromMs, final long toMs) {
+
+        final _Record record = threadLocalRecord.get();
+        record.longArg = fromMs;
+        record.longArg2 = toMs;
+        _publishAndAwait(record, OP_COUNT_BETWEEN);
+        final int x = (int) record.result;
+        return x;
+    }
+
+    @Override
+    public void countHistogram(final long fromMs, final long bucketWidthMs, final int[] outCounts) {
+
+        combinerLock.lock();
+        try {
+            _combine();
+            delegate.countHistogram(fromMs, bucketWidthMs, outCounts);
+        }
+        finally {
+            combinerLock.unlock();
+        }
+    }
+
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        combinerLock.lock();
+        try {
+            _combine();
+            delegate.forEachPending(consumer);
+        }
+        finally {
+            combinerLock.unlock();
+        }
+    }
+
+    // Intentional: Publication records are not included.  There is one small record per thread.
+    @Override
+    public long estimatedRetainedBytes() {
+
+        combinerLock.lock();
+        try {
+            _combine();
+            final long x = delegate.estimatedRetainedBytes();
+            return x;
+        }
+        finally {
+            combinerLock.unlock();
+        }
+    }
+
+    private void _publishAndAwait(final _Record record, final int opCode) {
+
+        record.nullableError = null;
+        // Publish: All argument writes above happen-before this volatile write.
+        record.volatileOpCode = opCode;
+        int spinCount = 0;
+        while (OP_NONE != record.volatileOpCode) {
+
+            // Intentional: The combiner may have removed this record as idle, just before it was published.
+            if (false == record.volatileIsActive) {
+                _addRecord(record);
+            }
+            if (combinerLock.tryLock()) {
+                try {
+                    _combine();
+                }
+                finally {
+                    combinerLock.unlock();
+                }
+            }
+            else if (spinCount < MAX_SPIN_COUNT) {
+                ++spinCount;
+                Thread.onSpinWait();
+            }
+            else {
+                Thread.yield();
+            }
+        }
+        record.nullableArrArg = null;
+        record.nullableArrArg2 = null;
+        record.nullablePolicyArg = null;
+        @Nullable
+        final Throwable nullableError = record.nullableError;
+        if (null != nullableError) {
+            record.nullableError = null;
+            if (nullableError instanceof RuntimeException) {
+                throw (RuntimeException) nullableError;
+            }
+            throw (Error) nullableError;
+        }
+    }
+
+    private void _addRecord(final _Record record) {
+
+        record.volatileIsActive = true;
+        while (true) {
+
+            final _Record nullableHead = headRecordRef.get();
+            record.nullableNext = nullableHead;
+            if (headRecordRef.compareAndSet(nullableHead, record)) {
+                return;
+            }
+        }
+    }
+
+    // Time complexity: O(r + k) where r is number of records and k is cost to apply published operations
+    @GuardedBy("combinerLock")
+    private void _combine() {
+
+        ++passCount;
+        final boolean isCleanup = (0 == passCount % CLEANUP_PERIOD_PASS_COUNT);
+        @Nullable
+        _Record nullablePrev = null;
+        @Nullable
+        _Record nullableRecord = headRecordRef.get();
+        while (null != nullableRecord) {
+
+            final _Record record = nullableRecord;
+            @Nullable
+            final _Record nullableNext = record.nullableNext;
+            final int opCode = record.volatileOpCode;
+            if (OP_NONE != opCode) {
+                record.lastActivePassCount = passCount;
+                _apply(record, opCode);
+                // Publish result: All result writes happen-before this volatile write.
+                record.volatileOpCode = OP_NONE;
+                nullablePrev = record;
+            }
+            // Intentional: Never remove the head.  Another thread may be adding a new head concurrently.
+            else if (isCleanup && null != nullablePrev && passCount - record.lastActivePassCount > MAX_IDLE_PASS_COUNT) {
+                nullablePrev.nullableNext = nullableNext;
+                record.volatileIsActive = false;
+            }
+            else {
+                nullablePrev = record;
+            }
+            nullableRecord = nullableNext;
+        }
+    }
+
+    @GuardedBy("combinerLock")
+    private void _apply(final _Record record, final int opCode) {
+
+        try {
+            switch (opCode) {
+                case OP_SCHEDULE: {
+                    record.result = delegate.schedule(record.longArg);
+                    break;
+                }
+                case OP_SCHEDULE_RECURRING: {
+                    record.result = delegate.scheduleRecurring(record.longArg, record.longArg2, record.nullablePolicyArg);
+                    break;
+                }
+                case OP_SCHEDULE_IN_GROUP: {
+                    record.result = delegate.scheduleInGroup(record.longArg, record.longArg2);
+                    break;
+                }
+                case OP_SCHEDULE_ALL: {
+                    delegate.scheduleAll(record.nullableArrArg, record.nullableArrArg2);
+                    break;
+                }
+                case OP_CANCEL: {
+                    record.result = delegate.cancel(record.longArg) ? 1 : 0;
+                    break;
+                }
+                case OP_CANCEL_ALL: {
+                    record.result = delegate.cancelAll(record.nullableArrArg);
+                    break;
+                }
+                case OP_CANCEL_GROUP: {
+                    record.result = delegate.cancelGroup(record.longArg);
+                    break;
+                }
+                case OP_RESCHEDULE: {
+                    record.result = delegate.reschedule(record.longArg, record.longArg2) ? 1 : 0;
+                    break;
+                }
+                case OP_NEXT_DEADLINE_MS: {
+                    record.result = delegate.nextDeadlineMs();
+                    break;
+                }
+                case OP_COUNT_BETWEEN: {
+                    record.result = delegate.countBetween(record.longArg, record.longArg2);
+                    break;
+                }
+                case OP_SIZE: {
+                    record.result = delegate.size();
+                    break;
+                }
+                default: {
+                    throw new IllegalStateException("Unknown op code: " + opCode);
+                }
+            }
+        }
+        // Intentional: Rethrow in the publishing thread, not the combiner.
+        catch (RuntimeException | Error e) {
+            record.nullableError = e;
+        }
+    }
+}
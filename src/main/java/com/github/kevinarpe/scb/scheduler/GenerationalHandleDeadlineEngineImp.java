@@ -0,0 +1,664 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This implementation needs no hash map.  Each request ID is a handle: [generation: high 32 bits][slot: low 32 bits].
+ * {@link #cancel(long)} and {@link #reschedule(long, long)} index directly into the slot arrays, then compare the
+ * generation.  When a slot is freed, its generation is incremented, so a stale request ID is always rejected, even
+ * after the slot is reused.
+ * <p>
+ * Freed slots are kept on a free list (stack), so the most recently freed slot (still hot in CPU cache) is reused
+ * first.  In steady state, there is no allocation.  Arrays grow by doubling, but never shrink.
+ * <p>
+ * Deadlines are ordered by a binary min-heap of slot indices.
+ * <p>
+ * Unlike {@link DeadlineEngineImp}, each expired deadline is removed <i>before</i> the handler is called.
+ * <p>
+ * Recurring deadlines keep their slot, so the request ID never changes.  After each poll, each one that fired is
+ * re-armed with a single heap insert.  There is no slot allocation or generation change.
+ * <p>
+ * Groups are intrusive doubly-linked lists through the slot arrays, so {@link #cancelGroup(long)} only visits the
+ * members of the group.  The only hash map is from group key to the first member, and it is never touched by
+ * deadlines scheduled without a group.
+ * <p>
+ * Limitation: After 2^31 - 1 reuses of the same slot, its generation wraps around.  An ancient request ID for the slot
+ * might then match again.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ * @see OffHeapDeadlineEngineImp
+ */
+public final class GenerationalHandleDeadlineEngineImp
+implements DeadlineEngine {
+
+    // package-private for testing
+    static final int MIN_GENERATION = 1;
+    private static final int FREE_HEAP_INDEX = -1;
+    // Recurring slot that fired during the current poll, and will be re-armed at the end
+    private static final int REARM_HEAP_INDEX = -2;
+    private static final int MIN_CAPACITY = 1024;
+    // End of a group list
+    private static final int GROUP_NIL = -1;
+    // Slot is not a member of any group
+    private static final int NOT_IN_GROUP = -2;
+
+    // Each slot uses one entry from each array.
+    private long[] slotDeadlineEpochMillisArr;
+    // Intentional: Generation always >= MIN_GENERATION, so request IDs are always positive.
+    private int[] slotGenerationArr;
+    // Position of slot in heap, FREE_HEAP_INDEX, or REARM_HEAP_INDEX
+    private int[] slotHeapIndexArr;
+    // Zero if one-shot
+    private long[] slotPeriodMillisArr;
+    // Null if one-shot
+    private RecurrencePolicy[] slotRecurrencePolicyArr;
+    // Only valid if 'slotGroupPrevArr[slot]' is not NOT_IN_GROUP
+    private long[] slotGroupKeyArr;
+    // Previous member in same group, GROUP_NIL if first, or NOT_IN_GROUP
+    private int[] slotGroupPrevArr;
+    // Next member in same group, or GROUP_NIL if last
+    private int[] slotGroupNextArr;
+    // Each value is the first member slot of the group
+    private final LongIntHashMap groupKey_To_HeadSlot_Map;
+    // Number of slots ever used.  Slots at or after this index have never been used.
+    private int slotCount;
+    // Stack of free slots below 'slotCount'
+    private int[] freeSlotArr;
+    private int freeSlotCount;
+    // Binary min-heap of slot indices ordered by deadline
+    private int[] heapSlotArr;
+    private int size;
+    // Recurring slots that fired during the current poll.  See _rearm().
+    private int[] rearmSlotArr;
+    private int rearmSlotCount;
+    // Number of slots in 'rearmSlotArr' still in state REARM_HEAP_INDEX
+    private int pendingRearmCount;
+
+    public GenerationalHandleDeadlineEngineImp() {
+
+        this.slotDeadlineEpochMillisArr = new long[MIN_CAPACITY];
+        this.slotGenerationArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotGenerationArr, MIN_GENERATION);
+        this.slotHeapIndexArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotHeapIndexArr, FREE_HEAP_INDEX);
+        this.slotCount = 0;
+        this.freeSlotArr = new int[MIN_CAPACITY];
+        this.freeSlotCount = 0;
+        this.heapSlotArr = new int[MIN_CAPACITY];
+        this.size = 0;
+        this.slotPeriodMillisArr = new long[MIN_CAPACITY];
+        this.slotRecurrencePolicyArr = new RecurrencePolicy[MIN_CAPACITY];
+        this.rearmSlotArr = new int[MIN_CAPACITY];
+        this.rearmSlotCount = 0;
+        this.pendingRearmCount = 0;
+        this.slotGroupKeyArr = new long[MIN_CAPACITY];
+        this.slotGroupPrevArr = new int[MIN_CAPACITY];
+        Arrays.fill(slotGroupPrevArr, NOT_IN_GROUP);
+        this.slotGroupNextArr = new int[MIN_CAPACITY];
+        this.groupKey_To_HeadSlot_Map = new LongIntHashMap();
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long schedule(final long deadlineEpochMillis) {
+
+        _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        // Time complexity: O(1)
+        final int slot = _allocateSlot();
+        slotDeadlineEpochMillisArr[slot] = deadlineEpochMillis;
+        final int heapIndex = size;
+        ++size;
+        // Time complexity: O(log n)
+        _siftUp(heapIndex, slot);
+        final long x = _toRequestId(slotGenerationArr[slot], slot);
+        return x;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        final long requestId = schedule(firstDeadlineEpochMillis);
+        final int slot = (int) requestId;
+        slotPeriodMillisArr[slot] = periodMillis;
+        slotRecurrencePolicyArr[slot] = policy;
+        return requestId;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = schedule(deadlineEpochMillis);
+        final int slot = (int) requestId;
+        // Time complexity: O(1) -- add as first member
+        final int index = groupKey_To_HeadSlot_Map.indexOf(groupKey);
+        final int nextSlot;
+        if (groupKey_To_HeadSlot_Map.indexExists(index)) {
+            nextSlot = groupKey_To_HeadSlot_Map.indexGet(index);
+            slotGroupPrevArr[nextSlot] = slot;
+            groupKey_To_HeadSlot_Map.indexReplace(index, slot);
+        }
+        else {
+            nextSlot = GROUP_NIL;
+            groupKey_To_HeadSlot_Map.indexInsert(index, groupKey, slot);
+        }
+        slotGroupKeyArr[slot] = groupKey;
+        slotGroupPrevArr[slot] = GROUP_NIL;
+        slotGroupNextArr[slot] = nextSlot;
+        return requestId;
+    }
+
+    // Time complexity: O(k log n) for k members -- no scan of other deadlines
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final int index = groupKey_To_HeadSlot_Map.indexOf(groupKey);
+        if (false == groupKey_To_HeadSlot_Map.indexExists(index)) {
+            return 0;
+        }
+        int slot = groupKey_To_HeadSlot_Map.indexGet(index);
+        // Intentional: Remove the whole group once, not one member at a time.
+        groupKey_To_HeadSlot_Map.remove(groupKey);
+        int count = 0;
+        while (GROUP_NIL != slot) {
+
+            final int nextSlot = slotGroupNextArr[slot];
+            slotGroupPrevArr[slot] = NOT_IN_GROUP;
+            _cancelSlot(slot);
+            ++count;
+            slot = nextSlot;
+        }
+        return count;
+    }
+
+    // Time complexity: O(1) -> constant
+    private void _unlinkFromGroup(final int slot) {
+
+        final int prevSlot = slotGroupPrevArr[slot];
+        if (NOT_IN_GROUP == prevSlot) {
+            return;
+        }
+        final int nextSlot = slotGroupNextArr[slot];
+        if (GROUP_NIL != nextSlot) {
+            slotGroupPrevArr[nextSlot] = prevSlot;
+        }
+        if (GROUP_NIL != prevSlot) {
+            slotGroupNextArr[prevSlot] = nextSlot;
+        }
+        else if (GROUP_NIL != nextSlot) {
+            groupKey_To_HeadSlot_Map.put(slotGroupKeyArr[slot], nextSlot);
+        }
+        else {
+            groupKey_To_HeadSlot_Map.remove(slotGroupKeyArr[slot]);
+        }
+        slotGroupPrevArr[slot] = NOT_IN_GROUP;
+    }
+
+    private void _checkEpochMillis(final long deadlineEpochMillis, String argName) {
+
+        if (deadlineEpochMillis < 0) {
+            throw new IllegalArgumentException("Argument '" + argName + "' must be positive: " + deadlineEpochMillis);
+        }
+    }
+
+    private static long _toRequestId(final int generation, final int slot) {
+
+        final long x = (((long) generation) << 32) | slot;
+        return x;
+    }
+
+    private int _allocateSlot() {
+
+        if (freeSlotCount > 0) {
+            --freeSlotCount;
+            final int x = freeSlotArr[freeSlotCount];
+            return x;
+        }
+        if (slotCount == slotGenerationArr.length) {
+            _grow();
+        }
+        final int x = slotCount;
+        ++slotCount;
+        return x;
+    }
+
+    private void _grow() {
+
+        if (Integer.MAX_VALUE == slotCount) {
+            throw new IllegalStateException("Too many deadlines: " + size);
+        }
+        final int oldCapacity = slotGenerationArr.length;
+        final int newCapacity = (int) Math.min(2L * oldCapacity, Integer.MAX_VALUE);
+        slotDeadlineEpochMillisArr = Arrays.copyOf(slotDeadlineEpochMillisArr, newCapacity);
+        slotGenerationArr = Arrays.copyOf(slotGenerationArr, newCapacity);
+        Arrays.fill(slotGenerationArr, oldCapacity, newCapacity, MIN_GENERATION);
+        slotHeapIndexArr = Arrays.copyOf(slotHeapIndexArr, newCapacity);
+        Arrays.fill(slotHeapIndexArr, oldCapacity, newCapacity, FREE_HEAP_INDEX);
+        freeSlotArr = Arrays.copyOf(freeSlotArr, newCapacity);
+        heapSlotArr = Arrays.copyOf(heapSlotArr, newCapacity);
+        slotPeriodMillisArr = Arrays.copyOf(slotPeriodMillisArr, newCapacity);
+        slotRecurrencePolicyArr = Arrays.copyOf(slotRecurrencePolicyArr, newCapacity);
+        slotGroupKeyArr = Arrays.copyOf(slotGroupKeyArr, newCapacity);
+        slotGroupPrevArr = Arrays.copyOf(slotGroupPrevArr, newCapacity);
+        Arrays.fill(slotGroupPrevArr, oldCapacity, newCapacity, NOT_IN_GROUP);
+        slotGroupNextArr = Arrays.copyOf(slotGroupNextArr, newCapacity);
+    }
+
+    private void _freeSlot(final int slot) {
+
+        _unlinkFromGroup(slot);
+        slotHeapIndexArr[slot] = FREE_HEAP_INDEX;
+        slotPeriodMillisArr[slot] = 0;
+        slotRecurrencePolicyArr[slot] = null;
+        final int generation = slotGenerationArr[slot];
+        // Intentional: Skip zero and negative on wrap-around, so request IDs are always positive.
+        slotGenerationArr[slot] = (Integer.MAX_VALUE == generation) ? MIN_GENERATION : 1 + generation;
+        freeSlotArr[freeSlotCount] = slot;
+        ++freeSlotCount;
+    }
+
+    /**
+     * @return slot index, or -1 if request ID is invalid or stale
+     */
+    private int _findLiveSlot(final long requestId) {
+
+        final int slot = (int) requestId;
+        final int generation = (int) (requestId >>> 32);
+        // Intentional: Do not check argument.  Allow any random 'requestId' to be passed.
+        if (slot < 0 || slot >= slotCount
+            || slotGenerationArr[slot] != generation
+            || FREE_HEAP_INDEX == slotHeapIndexArr[slot]) {
+
+            return -1;
+        }
+        return slot;
+    }
+
+    // Time complexity: O(1) + O(log n) = O(log n) -> logarithmic
+    @Override
+    public boolean cancel(final long requestId) {
+
+        // Time complexity: O(1) -- no hash lookup
+        final int slot = _findLiveSlot(requestId);
+        if (-1 == slot) {
+            return false;
+        }
+        _cancelSlot(slot);
+        return true;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    private void _cancelSlot(final int slot) {
+
+        final int heapIndex = slotHeapIndexArr[slot];
+        if (REARM_HEAP_INDEX == heapIndex) {
+            // Cancelled by handler during poll: Not in heap, so nothing to remove.
+            --pendingRearmCount;
+        }
+        else {
+            // Time complexity: O(log n)
+            _heapRemoveAt(heapIndex);
+        }
+        _freeSlot(slot);
+    }
+
+    // Time complexity: O(1) + O(log n) = O(log n) -> logarithmic, or O(1) if deadline is unchanged
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkEpochMillis(newDeadlineEpochMillis, "newDeadlineEpochMillis");
+        final int slot = _findLiveSlot(requestId);
+        if (-1 == slot) {
+            return false;
+        }
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        slotDeadlineEpochMillisArr[slot] = newDeadlineEpochMillis;
+        if (REARM_HEAP_INDEX == slotHeapIndexArr[slot]) {
+            // Rescheduled by handler during poll: The new deadline replaces the re-arm.
+            --pendingRearmCount;
+            _heapAdd(slot);
+            return true;
+        }
+        // Intentional: Move in place.  The request ID does not change.
+        if (newDeadlineEpochMillis < deadlineEpochMillis) {
+            _siftUp(slotHeapIndexArr[slot], slot);
+        }
+        else if (newDeadlineEpochMillis > deadlineEpochMillis) {
+            _siftDown(slotHeapIndexArr[slot], slot);
+        }
+        return true;
+    }
+
+    // Time complexity: O(k log n) for k expired deadlines
+    @Override
+    public int poll(final long nowEpochMillis,
+                    Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        Objects.requireNonNull(handler);
+        if (maxPollCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
+        }
+        int count = 0;
+        // Intentional: If the handler throws, recurring deadlines that already fired must still be re-armed.
+        try {
+            // Intentional: Less-than-or-equal is required.  See DeadlineEngineImp.poll().
+            while (count < maxPollCount && size > 0 && slotDeadlineEpochMillisArr[heapSlotArr[0]] <= nowEpochMillis) {
+
+                final int slot = heapSlotArr[0];
+                final long requestId = _toRequestId(slotGenerationArr[slot], slot);
+                _heapRemoveAt(0);
+                _freeOrDeferRearm(slot);
+                ++count;
+                handler.accept(requestId);
+            }
+        }
+        finally {
+            _rearm(nowEpochMillis);
+        }
+        return count;
+    }
+
+    // Time complexity: O(k log n) for k expired deadlines
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        DeadlineEngine.checkDrainToArgs(outRequestIdArr, offset, maxCount);
+        int count = 0;
+        while (count < maxCount && size > 0 && slotDeadlineEpochMillisArr[heapSlotArr[0]] <= nowEpochMillis) {
+
+            final int slot = heapSlotArr[0];
+            outRequestIdArr[offset + count] = _toRequestId(slotGenerationArr[slot], slot);
+            _heapRemoveAt(0);
+            _freeOrDeferRearm(slot);
+            ++count;
+        }
+        _rearm(nowEpochMillis);
+        return count;
+    }
+
+    private void _freeOrDeferRearm(final int slot) {
+
+        if (0 == slotPeriodMillisArr[slot]) {
+            _freeSlot(slot);
+            return;
+        }
+        // Intentional: Keep the slot and generation, so the request ID stays valid.
+        slotHeapIndexArr[slot] = REARM_HEAP_INDEX;
+        if (rearmSlotCount == rearmSlotArr.length) {
+            rearmSlotArr = Arrays.copyOf(rearmSlotArr, 2 * rearmSlotCount);
+        }
+        rearmSlotArr[rearmSlotCount] = slot;
+        ++rearmSlotCount;
+        ++pendingRearmCount;
+    }
+
+    // Intentional: Re-arm *after* the poll loop, so each recurring deadline fires at most once per poll.
+    // Time complexity: O(r log n) for r recurring deadlines fired by this poll
+    private void _rearm(final long nowEpochMillis) {
+
+        for (int i = 0; i < rearmSlotCount; ++i) {
+
+            final int slot = rearmSlotArr[i];
+            // Cancelled or rescheduled by the handler?  Then do not re-arm.
+            if (REARM_HEAP_INDEX != slotHeapIndexArr[slot]) {
+                continue;
+            }
+            slotDeadlineEpochMillisArr[slot] =
+                slotRecurrencePolicyArr[slot].nextDeadlineMs(
+                    slotDeadlineEpochMillisArr[slot], nowEpochMillis, slotPeriodMillisArr[slot]);
+            _heapAdd(slot);
+        }
+        rearmSlotCount = 0;
+        pendingRearmCount = 0;
+    }
+
+    // Time complexity: O(1) -> constant
+    @Override
+    public long nextDeadlineMs() {
+
+        if (0 == size) {
+            return NO_DEADLINE_MS;
+        }
+        final long x = slotDeadlineEpochMillisArr[heapSlotArr[0]];
+        return x;
+    }
+
+    @Override
+    public int size() {
+        // Intentional: Recurring deadlines waiting to be re-armed are still pending.
+        final int x = size + pendingRearmCount;
+        return x;
+    }
+
+    // Time complexity: O(m) for m deadlines less than 'toEpochMillis'
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromEpochMillis, toEpochMillis);
+        // Intentional: Each child is not earlier than its parent, so skip any subtree whose root is not less than
+        // 'toEpochMillis'.  Depth-first, so the stack holds at most one pending sibling per level.
+        final int[] heapIndexStackArr = new int[2 * Integer.SIZE];
+        int stackSize = 0;
+        if (size > 0) {
+            heapIndexStackArr[stackSize] = 0;
+            ++stackSize;
+        }
+        int x = 0;
+        while (stackSize > 0) {
+
+            --stackSize;
+            final int heapIndex = heapIndexStackArr[stackSize];
+            final long deadlineEpochMillis = slotDeadlineEpochMillisArr[heapSlotArr[heapIndex]];
+            if (deadlineEpochMillis >= toEpochMillis) {
+                continue;
+            }
+            if (deadlineEpochMillis >= fromEpochMillis) {
+                ++x;
+            }
+            final long leftIndex = 2L * heapIndex + 1;
+            if (leftIndex < size) {
+                heapIndexStackArr[stackSize] = (int) leftIndex;
+                ++stackSize;
+                if (1 + leftIndex < size) {
+                    heapIndexStackArr[stackSize] = (int) (1 + leftIndex);
+                    ++stackSize;
+                }
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Walks the heap in order with a second min-heap of heap indices, called the frontier: Pop the earliest, then push
+     * its children.  The frontier holds at most about n/2 entries.
+     * <p>
+     * Time complexity: O(n log n)
+     */
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        int[] frontierArr = new int[Math.min(MIN_CAPACITY, Math.max(1, size))];
+        int frontierSize = 0;
+        if (size > 0) {
+            frontierSize = _frontierPush(frontierArr, frontierSize, 0);
+        }
+        while (frontierSize > 0) {
+
+            final int heapIndex = frontierArr[0];
+            frontierSize = _frontierPop(frontierArr, frontierSize);
+            final int slot = heapSlotArr[heapIndex];
+            consumer.accept(_toRequestId(slotGenerationArr[slot], slot), slotDeadlineEpochMillisArr[slot]);
+
+            final long leftIndex = 2L * heapIndex + 1;
+            if (leftIndex < size) {
+                // Intentional: At most two pushes, so grow once here.
+                if (frontierSize + 2 > frontierArr.length) {
+                    frontierArr = Arrays.copyOf(frontierArr, 2 * frontierArr.length + 2);
+                }
+                frontierSize = _frontierPush(frontierArr, frontierSize, (int) leftIndex);
+                if (1 + leftIndex < size) {
+                    frontierSize = _frontierPush(frontierArr, frontierSize, (int) (1 + leftIndex));
+                }
+            }
+        }
+    }
+
+    private long _heapDeadlineEpochMillis(final int heapIndex) {
+
+        final long x = slotDeadlineEpochMillisArr[heapSlotArr[heapIndex]];
+        return x;
+    }
+
+    // @return new frontier size
+    private int _frontierPush(final int[] frontierArr, final int frontierSize, final int heapIndex) {
+
+        final long deadlineEpochMillis = _heapDeadlineEpochMillis(heapIndex);
+        int index = frontierSize;
+        while (index > 0) {
+
+            final int parentIndex = (index - 1) >>> 1;
+            final int parentHeapIndex = frontierArr[parentIndex];
+            if (_heapDeadlineEpochMillis(parentHeapIndex) <= deadlineEpochMillis) {
+                break;
+            }
+            frontierArr[index] = parentHeapIndex;
+            index = parentIndex;
+        }
+        frontierArr[index] = heapIndex;
+        final int x = 1 + frontierSize;
+        return x;
+    }
+
+    // @return new frontier size
+    private int _frontierPop(final int[] frontierArr, final int frontierSize) {
+
+        final int x = frontierSize - 1;
+        final int lastHeapIndex = frontierArr[x];
+        final long lastDeadlineEpochMillis = _heapDeadlineEpochMillis(lastHeapIndex);
+        int index = 0;
+        final int half = x >>> 1;
+        while (index < half) {
+
+            int childIndex = 2 * index + 1;
+            if (1 + childIndex < x
+                && _heapDeadlineEpochMillis(frontierArr[1 + childIndex])
+                    < _heapDeadlineEpochMillis(frontierArr[childIndex])) {
+
+                ++childIndex;
+            }
+            final int childHeapIndex = frontierArr[childIndex];
+            if (lastDeadlineEpochMillis <= _heapDeadlineEpochMillis(childHeapIndex)) {
+                break;
+            }
+            frontierArr[index] = childHeapIndex;
+            index = childIndex;
+        }
+        frontierArr[index] = lastHeapIndex;
+        return x;
+    }
+
+    // Time complexity: O(1) -> constant
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final int capacity = slotGenerationArr.length;
+        // This object: 12 refs + 5 ints
+        final long x =
+            JvmMemoryLayout.objectBytes(12, 5 * Integer.BYTES)
+                // slotDeadlineEpochMillisArr, slotPeriodMillisArr, slotGroupKeyArr
+                + 3 * JvmMemoryLayout.arrayBytes(capacity, Long.BYTES)
+                // slotGenerationArr, slotHeapIndexArr, slotGroupPrevArr, slotGroupNextArr, freeSlotArr, heapSlotArr
+                + 6 * JvmMemoryLayout.arrayBytes(capacity, Integer.BYTES)
+                + JvmMemoryLayout.referenceArrayBytes(slotRecurrencePolicyArr.length)
+                + JvmMemoryLayout.arrayBytes(rearmSlotArr.length, Integer.BYTES)
+                + JvmMemoryLayout.longIntHashMapBytes(groupKey_To_HeadSlot_Map);
+        return x;
+    }
+
+    private void _heapAdd(final int slot) {
+
+        final int heapIndex = size;
+        ++size;
+        _siftUp(heapIndex, slot);
+    }
+
+    private void _heapSet(final int heapIndex, final int slot) {
+
+        heapSlotArr[heapIndex] = slot;
+        slotHeapIndexArr[slot] = heapIndex;
+    }
+
+    // Intentional: Use "hole" technique.  Only write each moved entry once.
+    private void _siftUp(int heapIndex, final int slot) {
+
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        while (heapIndex > 0) {
+
+            final int parentIndex = (heapIndex - 1) >>> 1;
+            final int parentSlot = heapSlotArr[parentIndex];
+            if (slotDeadlineEpochMillisArr[parentSlot] <= deadlineEpochMillis) {
+                break;
+            }
+            _heapSet(heapIndex, parentSlot);
+            heapIndex = parentIndex;
+        }
+        _heapSet(heapIndex, slot);
+    }
+
+    private void _siftDown(int heapIndex, final int slot) {
+
+        final long deadlineEpochMillis = slotDeadlineEpochMillisArr[slot];
+        final int half = size >>> 1;
+        while (heapIndex < half) {
+
+            int childIndex = 2 * heapIndex + 1;
+            int childSlot = heapSlotArr[childIndex];
+            final int rightIndex = 1 + childIndex;
+            if (rightIndex < size) {
+                final int rightSlot = heapSlotArr[rightIndex];
+                if (slotDeadlineEpochMillisArr[rightSlot] < slotDeadlineEpochMillisArr[childSlot]) {
+                    childIndex = rightIndex;
+                    childSlot = rightSlot;
+                }
+            }
+            if (deadlineEpochMillis <= slotDeadlineEpochMillisArr[childSlot]) {
+                break;
+            }
+            _heapSet(heapIndex, childSlot);
+            heapIndex = childIndex;
+        }
+        _heapSet(heapIndex, slot);
+    }
+
+    private void _heapRemoveAt(final int heapIndex) {
+
+        --size;
+        if (heapIndex == size) {
+            return;
+        }
+        // Move last entry into the hole, then restore heap order in whichever direction is required.
+        final int lastSlot = heapSlotArr[size];
+        final long lastDeadlineEpochMillis = slotDeadlineEpochMillisArr[lastSlot];
+        if (heapIndex > 0 && slotDeadlineEpochMillisArr[heapSlotArr[(heapIndex - 1) >>> 1]] > lastDeadlineEpochMillis) {
+            _siftUp(heapIndex, lastSlot);
+        }
+        else {
+            _siftDown(heapIndex, lastSlot);
+        }
+    }
+}
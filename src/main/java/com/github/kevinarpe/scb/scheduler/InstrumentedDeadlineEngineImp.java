@@ -0,0 +1,278 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.metrics.LogLinearHistogram;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * NotThreadSafe?  Same as the delegate.  For thread-safety, wrap with {@link SynchronizedDeadlineEngineImp}.  However,
+ * {@link #metricsSnapshot()} may be called from any thread at any time, e.g., by a monitoring thread.
+ * <p>
+ * This is a decorator that records metrics for another {@link DeadlineEngine}:
+ * <ul>
+ *     <li>Number of schedules, cancels, reschedules, fires, and polls</li>
+ *     <li>Lateness of each poll: {@code nowMs - deadlineMs} of the earliest expired deadline in a lock-free
+ *     {@link LogLinearHistogram}</li>
+ *     <li>Backlog: Expired deadlines left for the next poll, e.g., due to {@code maxPoll}</li>
+ * </ul>
+ * <p>
+ * This class keeps no per-deadline state.  All lateness and backlog metrics are read from the delegate via
+ * {@link #nextDeadlineMs()} and {@link #countBetween(long, long)}, so memory is constant, and each poll pays two
+ * extra calls to {@link #nextDeadlineMs()}, plus one call to {@link #countBetween(long, long)} if a backlog remains.
+ * For {@link #schedule(long, long)}, lateness is measured from the coarse deadline chosen by the delegate.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineMetricsSnapshot
+ */
+public final class InstrumentedDeadlineEngineImp
+implements DeadlineEngine {
+
+    private final DeadlineEngine delegate;
+    private final LongAdder scheduledCount;
+    private final LongAdder cancelledCount;
+    private final LongAdder rescheduledCount;
+    private final LongAdder firedCount;
+    private final LongAdder pollCount;
+    private volatile int volatileBacklogCount;
+    private volatile long volatileBacklogLatenessMillis;
+    private volatile int volatilePendingCount;
+    private final LogLinearHistogram latenessMillisHistogram;
+    private final _FireHandler fireHandler;
+
+    public InstrumentedDeadlineEngineImp(DeadlineEngine delegate) {
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.scheduledCount = new LongAdder();
+        this.cancelledCount = new LongAdder();
+        this.rescheduledCount = new LongAdder();
+        this.firedCount = new LongAdder();
+        this.pollCount = new LongAdder();
+        this.volatileBacklogCount = 0;
+        this.volatileBacklogLatenessMillis = 0;
+        this.volatilePendingCount = delegate.size();
+        this.latenessMillisHistogram = new LogLinearHistogram();
+        this.fireHandler = new _FireHandler();
+    }
+
+    /**
+     * Cheap to call from any thread.
+     * <p>
+     * Time complexity: O(1) -> constant
+     */
+    public DeadlineEngineMetricsSnapshot metricsSnapshot() {
+
+        final DeadlineEngineMetricsSnapshot x =
+            new DeadlineEngineMetricsSnapshot(
+                scheduledCount.sum(),
+                cancelledCount.sum(),
+                rescheduledCount.sum(),
+                firedCount.sum(),
+                pollCount.sum(),
+                volatileBacklogCount,
+                volatileBacklogLatenessMillis,
+                volatilePendingCount,
+                latenessMillisHistogram.snapshot());
+        return x;
+    }
+
+    @Override
+    public long schedule(final long deadlineMs) {
+
+        final long requestId = delegate.schedule(deadlineMs);
+        _onSchedule(1);
+        return requestId;
+    }
+
+    private void _onSchedule(final int count) {
+
+        scheduledCount.add(count);
+        volatilePendingCount = delegate.size();
+    }
+
+    @Override
+    public long schedule(final long deadlineMs, final long slackMs) {
+
+        final long requestId = delegate.schedule(deadlineMs, slackMs);
+        _onSchedule(1);
+        return requestId;
+    }
+
+    @Override
+    public long scheduleRecurring(final long firstDeadlineMs,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        final long requestId = delegate.scheduleRecurring(firstDeadlineMs, periodMillis, policy);
+        _onSchedule(1);
+        return requestId;
+    }
+
+    @Override
+    public long scheduleInGroup(final long deadlineMs, final long groupKey) {
+
+        final long requestId = delegate.scheduleInGroup(deadlineMs, groupKey);
+        _onSchedule(1);
+        return requestId;
+    }
+
+    @Override
+    public void scheduleAll(final long[] deadlinesMs, final long[] outRequestIds) {
+
+        delegate.scheduleAll(deadlinesMs, outRequestIds);
+        _onSchedule(deadlinesMs.length);
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        final boolean isCancelled = delegate.cancel(requestId);
+        if (isCancelled) {
+            _onCancel(1);
+        }
+        return isCancelled;
+    }
+
+    private void _onCancel(final int count) {
+
+        cancelledCount.add(count);
+        volatilePendingCount = delegate.size();
+    }
+
+    @Override
+    public int cancelAll(final long[] requestIds) {
+
+        final int count = delegate.cancelAll(requestIds);
+        _onCancel(count);
+        return count;
+    }
+
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final int count = delegate.cancelGroup(groupKey);
+        _onCancel(count);
+        return count;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final boolean isRescheduled = delegate.reschedule(requestId, newDeadlineMs);
+        if (isRescheduled) {
+            rescheduledCount.increment();
+        }
+        return isRescheduled;
+    }
+
+    // Intentional: Pre-allocate to avoid allocation for each poll.
+    private final class _FireHandler
+    implements Consumer<Long> {
+
+        private Consumer<Long> handler;
+
+        @Override
+        public void accept(Long requestId) {
+
+            handler.accept(requestId);
+            // Intentional: Record *after* handler.  If handler throws, the delegate may not remove the deadline.
+            firedCount.increment();
+        }
+    }
+
+    @Override
+    public int poll(final long nowMs,
+                    final Consumer<Long> handler,
+                    final int maxPoll) {
+
+        Objects.requireNonNull(handler);
+        _recordLateness(nowMs);
+        fireHandler.handler = handler;
+        final int count;
+        try {
+            count = delegate.poll(nowMs, fireHandler, maxPoll);
+        }
+        finally {
+            fireHandler.handler = null;
+            volatilePendingCount = delegate.size();
+        }
+        pollCount.increment();
+        _updateBacklog(nowMs);
+        return count;
+    }
+
+    @Override
+    public int drainTo(final long nowMs, final long[] out, final int offset, final int max) {
+
+        _recordLateness(nowMs);
+        final int count = delegate.drainTo(nowMs, out, offset, max);
+        firedCount.add(count);
+        volatilePendingCount = delegate.size();
+        pollCount.increment();
+        _updateBacklog(nowMs);
+        return count;
+    }
+
+    // Intentional: Deadlines fire in order, so the earliest expired deadline is the latest to fire in this poll.
+    private void _recordLateness(final long nowMs) {
+
+        final long nextDeadlineMs = delegate.nextDeadlineMs();
+        if (nextDeadlineMs <= nowMs) {
+            latenessMillisHistogram.record(nowMs - nextDeadlineMs);
+        }
+    }
+
+    // Intentional: Check after every poll, not only a poll that stopped due to 'maxPoll'.  A re-armed recurring
+    // deadline may also be expired.
+    private void _updateBacklog(final long nowMs) {
+
+        final long nextDeadlineMs = delegate.nextDeadlineMs();
+        if (nextDeadlineMs > nowMs) {
+            volatileBacklogCount = 0;
+            volatileBacklogLatenessMillis = 0;
+        }
+        else {
+            // Intentional: 'toMs' is exclusive.  Saturate, so the end of time does not wrap around.
+            final long toMs = (Long.MAX_VALUE == nowMs) ? Long.MAX_VALUE : 1 + nowMs;
+            volatileBacklogCount = delegate.countBetween(0, toMs);
+            volatileBacklogLatenessMillis = nowMs - nextDeadlineMs;
+        }
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+        final long x = delegate.nextDeadlineMs();
+        return x;
+    }
+
+    @Override
+    public int size() {
+        final int x = delegate.size();
+        return x;
+    }
+
+    @Override
+    public int countBetween(final long fromMs, final long toMs) {
+        final int x = delegate.countBetween(fromMs, toMs);
+        return x;
+    }
+
+    @Override
+    public void countHistogram(final long fromMs, final long bucketWidthMs, final int[] outCounts) {
+        delegate.countHistogram(fromMs, bucketWidthMs, outCounts);
+    }
+
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+        delegate.forEachPending(consumer);
+    }
+
+    // Intentional: Metrics are not included.  They are small and constant.
+    @Override
+    public long estimatedRetainedBytes() {
+        final long x = delegate.estimatedRetainedBytes();
+        return x;
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * ThreadSafe?  Implementations of this interface must be thread-safe.
+ * <p>
+ * Pluggable source of time in millis offset from unix epoch.  Tests may supply a fake clock.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see CachedMillisClock
+ * @see DeadlineScheduler
+ */
+@ThreadSafe
+@FunctionalInterface
+public interface MillisClock {
+
+    MillisClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return time in millis since epoch
+     */
+    long currentTimeMillis();
+}
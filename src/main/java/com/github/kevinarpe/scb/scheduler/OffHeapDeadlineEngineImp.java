@@ -0,0 +1,629 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.procedures.LongLongProcedure;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This implementation stores all deadline and request ID state in off-heap memory.  It is intended for very large
+ * numbers of pending deadlines, e.g., 100M+.  Compared to {@link DeadlineEngineImp}, there are no per-deadline objects,
+ * so the GC sees almost nothing, and memory per pending deadline is much lower.  See
+ * {@link #bytesPerPendingDeadline()}.
+ * <p>
+ * Two off-heap data structures point to each other:
+ * <ul>
+ *     <li>Ordered index: A binary min-heap of [deadlineEpochMillis, hashSlot] ordered by deadline</li>
+ *     <li>Hash index: An open-addressing (linear probing) hash table of [requestId, heapIndex]</li>
+ * </ul>
+ * <p>
+ * Unlike {@link DeadlineEngineImp}, each expired deadline is removed <i>before</i> the handler is called.
+ * <p>
+ * Recurring deadlines and group members are the exception to "no per-deadline objects": Each has a small on-heap entry
+ * in a {@link RecurrenceTable} or {@link DeadlineGroupTable}.  They are usually few, e.g., keepalives, compared to
+ * one-shot timeouts.
+ * <p>
+ * Capacity: Both indices double when full, and shrink when mostly empty, so off-heap memory follows the number of
+ * pending deadlines.  The hash index shrinks to the smallest power of two where the load factor is at most half of the
+ * maximum, so it never thrashes between grow and shrink.  Each resize of the hash index rehashes all entries, and
+ * allocates the new table before the old one is released.
+ * <p>
+ * Direct memory: All off-heap memory is allocated by {@link java.nio.ByteBuffer#allocateDirect(int)}, so it is limited
+ * by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum Java heap size ({@code -Xmx}).  Each index uses 16
+ * bytes per entry with capacity rounded up to a power of two.  For 100M pending deadlines:
+ * <ul>
+ *     <li>Ordered index: 2^27 entries = 2 GB</li>
+ *     <li>Hash index: 2^27 slots (load factor 0.75) = 2 GB</li>
+ *     <li>Old hash index of 2^26 slots, until the GC frees it: 1 GB</li>
+ *     <li>{@link #forEachPending(PendingDeadlineConsumer)}: up to 2^26 frontier entries of 8 bytes = 0.5 GB</li>
+ * </ul>
+ * Thus, use at least {@code -XX:MaxDirectMemorySize=6g}.  See {@link #offHeapBytes()}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ * @see OffHeapLongArray
+ */
+public final class OffHeapDeadlineEngineImp
+implements DeadlineEngine {
+
+    // package-private for testing
+    static final long MIN_REQUEST_ID = 1;
+    // Intentional: Zero is reserved as a special sentinel value for an empty hash slot.
+    private static final long EMPTY_REQUEST_ID = 0;
+    private static final long NOT_FOUND = -1;
+    private static final int MIN_HEAP_CAPACITY = 1024;
+    private static final int MIN_HASH_CAPACITY = 2 * MIN_HEAP_CAPACITY;
+    private static final double MAX_HASH_LOAD_FACTOR = 0.75;
+
+    private long nextRequestId;
+    // Each heap entry uses two longs: [2*i] = deadlineEpochMillis, [2*i+1] = hashSlot
+    private final OffHeapLongArray heapArr;
+    private long heapCapacity;
+    private int size;
+    // Each hash slot uses two longs: [2*s] = requestId, [2*s+1] = heapIndex
+    private OffHeapLongArray hashArr;
+    // Always a power of two
+    private long hashCapacity;
+    private long hashMask;
+    private final RecurrenceTable recurrenceTable;
+    private final DeadlineGroupTable groupTable;
+    // Intentional: Allocate once.  A method reference that captures 'this' may allocate on each call.
+    private final LongLongProcedure rearmProc;
+
+    public OffHeapDeadlineEngineImp() {
+
+        this.nextRequestId = MIN_REQUEST_ID;
+        this.heapCapacity = MIN_HEAP_CAPACITY;
+        this.heapArr = new OffHeapLongArray(2 * heapCapacity);
+        this.size = 0;
+        this.hashCapacity = MIN_HASH_CAPACITY;
+        this.hashMask = hashCapacity - 1;
+        this.hashArr = new OffHeapLongArray(2 * hashCapacity);
+        this.recurrenceTable = new RecurrenceTable();
+        this.groupTable = new DeadlineGroupTable();
+        this.rearmProc = this::_add;
+    }
+
+    // Time complexity: O(log n) + O(1) = O(log n) -> logarithmic
+    @Override
+    public long schedule(final long deadlineEpochMillis) {
+
+        _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        final long requestId = nextRequestId;
+        ++nextRequestId;
+        _add(requestId, deadlineEpochMillis);
+        return requestId;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        final long requestId = schedule(firstDeadlineEpochMillis);
+        recurrenceTable.add(requestId, periodMillis, policy);
+        return requestId;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = schedule(deadlineEpochMillis);
+        groupTable.add(requestId, groupKey);
+        return requestId;
+    }
+
+    // Time complexity: O(k log n) for k members -- no scan of other deadlines
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        @Nullable
+        final LongHashSet nullableRequestIdSet = groupTable.removeGroup(groupKey);
+        if (null == nullableRequestIdSet) {
+            return 0;
+        }
+        int count = 0;
+        for (final LongCursor cursor : nullableRequestIdSet) {
+            if (cancel(cursor.value)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    // Time complexity: O(log n) + O(1) = O(log n) -> logarithmic
+    private void _add(final long requestId, final long deadlineEpochMillis) {
+
+        if (Integer.MAX_VALUE == size) {
+            throw new IllegalStateException("Too many deadlines: " + size);
+        }
+        _ensureCapacity(1 + size);
+        // Time complexity: O(1)
+        final long hashSlot = _hashInsert(requestId);
+        final int heapIndex = size;
+        ++size;
+        // Time complexity: O(log n)
+        _siftUp(heapIndex, deadlineEpochMillis, hashSlot);
+    }
+
+    private void _checkEpochMillis(final long deadlineEpochMillis, String argName) {
+
+        if (deadlineEpochMillis < 0) {
+            throw new IllegalArgumentException("Argument '" + argName + "' must be positive: " + deadlineEpochMillis);
+        }
+    }
+
+    // Time complexity: O(1) + O(log n) = O(log n) -> logarithmic
+    @Override
+    public boolean cancel(final long requestId) {
+
+        // Intentional: Do not check argument.  Allow any random 'requestId' to be passed.
+        if (requestId < MIN_REQUEST_ID) {
+            return false;
+        }
+        // Time complexity: O(1)
+        final long hashSlot = _hashFind(requestId);
+        if (NOT_FOUND == hashSlot) {
+            // Cancelled by handler during poll?
+            final boolean x = recurrenceTable.cancelPendingRearm(requestId);
+            return x;
+        }
+        recurrenceTable.remove(requestId);
+        groupTable.remove(requestId);
+        final int heapIndex = (int) hashArr.get(2 * hashSlot + 1);
+        // Time complexity: O(log n)
+        _heapRemoveAt(heapIndex);
+        // Time complexity: O(1)
+        _hashRemoveAt(hashSlot);
+        _trimCapacity();
+        return true;
+    }
+
+    // Time complexity: O(1) + O(log n) = O(log n) -> logarithmic, or O(1) if deadline is unchanged
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkEpochMillis(newDeadlineEpochMillis, "newDeadlineEpochMillis");
+        if (requestId < MIN_REQUEST_ID) {
+            return false;
+        }
+        // Time complexity: O(1)
+        final long hashSlot = _hashFind(requestId);
+        if (NOT_FOUND == hashSlot) {
+            // Rescheduled by handler during poll?  The new deadline replaces the re-arm.
+            if (false == recurrenceTable.takePendingRearm(requestId)) {
+                return false;
+            }
+            _add(requestId, newDeadlineEpochMillis);
+            return true;
+        }
+        final int heapIndex = (int) hashArr.get(2 * hashSlot + 1);
+        final long deadlineEpochMillis = heapArr.get(2L * heapIndex);
+        // Intentional: Move in place.  Neither the hash index, nor the request ID, changes.
+        // Time complexity: O(log n)
+        if (newDeadlineEpochMillis < deadlineEpochMillis) {
+            _siftUp(heapIndex, newDeadlineEpochMillis, hashSlot);
+        }
+        else if (newDeadlineEpochMillis > deadlineEpochMillis) {
+            _siftDown(heapIndex, newDeadlineEpochMillis, hashSlot);
+        }
+        return true;
+    }
+
+    // Time complexity: O(k log n) for k expired deadlines
+    @Override
+    public int poll(final long nowEpochMillis,
+                    Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        Objects.requireNonNull(handler);
+        if (maxPollCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
+        }
+        int count = 0;
+        // Intentional: If the handler throws, recurring deadlines that already fired must still be re-armed.
+        try {
+            // Intentional: Less-than-or-equal is required.  See DeadlineEngineImp.poll().
+            while (count < maxPollCount && size > 0 && heapArr.get(0) <= nowEpochMillis) {
+
+                final long deadlineEpochMillis = heapArr.get(0);
+                final long hashSlot = heapArr.get(1);
+                final long requestId = hashArr.get(2 * hashSlot);
+                _heapRemoveAt(0);
+                _hashRemoveAt(hashSlot);
+                groupTable.remove(requestId);
+                recurrenceTable.deferRearm(requestId, deadlineEpochMillis);
+                ++count;
+                handler.accept(requestId);
+            }
+        }
+        finally {
+            recurrenceTable.rearm(nowEpochMillis, rearmProc);
+            _trimCapacity();
+        }
+        return count;
+    }
+
+    // Time complexity: O(k log n) for k expired deadlines
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        DeadlineEngine.checkDrainToArgs(outRequestIdArr, offset, maxCount);
+        int count = 0;
+        while (count < maxCount && size > 0 && heapArr.get(0) <= nowEpochMillis) {
+
+            final long deadlineEpochMillis = heapArr.get(0);
+            final long hashSlot = heapArr.get(1);
+            final long requestId = hashArr.get(2 * hashSlot);
+            outRequestIdArr[offset + count] = requestId;
+            _heapRemoveAt(0);
+            _hashRemoveAt(hashSlot);
+            groupTable.remove(requestId);
+            recurrenceTable.deferRearm(requestId, deadlineEpochMillis);
+            ++count;
+        }
+        // Intentional: Re-arm *after* the loop, so each recurring deadline is drained at most once per call.
+        recurrenceTable.rearm(nowEpochMillis, rearmProc);
+        _trimCapacity();
+        return count;
+    }
+
+    // Time complexity: O(1) -> constant
+    @Override
+    public long nextDeadlineMs() {
+
+        if (0 == size) {
+            return NO_DEADLINE_MS;
+        }
+        final long x = heapArr.get(0);
+        return x;
+    }
+
+    @Override
+    public int size() {
+        // Intentional: Recurring deadlines waiting to be re-armed are still pending.
+        final int x = size + recurrenceTable.pendingRearmCount();
+        return x;
+    }
+
+    // Time complexity: O(m) for m deadlines less than 'toEpochMillis'
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromEpochMillis, toEpochMillis);
+        // Intentional: Each child is not earlier than its parent, so skip any subtree whose root is not less than
+        // 'toEpochMillis'.  Depth-first, so the stack holds at most one pending sibling per level.
+        final int[] heapIndexStackArr = new int[2 * Integer.SIZE];
+        int stackSize = 0;
+        if (size > 0) {
+            heapIndexStackArr[stackSize] = 0;
+            ++stackSize;
+        }
+        int x = 0;
+        while (stackSize > 0) {
+
+            --stackSize;
+            final int heapIndex = heapIndexStackArr[stackSize];
+            final long deadlineEpochMillis = heapArr.get(2L * heapIndex);
+            if (deadlineEpochMillis >= toEpochMillis) {
+                continue;
+            }
+            if (deadlineEpochMillis >= fromEpochMillis) {
+                ++x;
+            }
+            final long leftIndex = 2L * heapIndex + 1;
+            if (leftIndex < size) {
+                heapIndexStackArr[stackSize] = (int) leftIndex;
+                ++stackSize;
+                if (1 + leftIndex < size) {
+                    heapIndexStackArr[stackSize] = (int) (1 + leftIndex);
+                    ++stackSize;
+                }
+            }
+        }
+        return x;
+    }
+
+    // Time complexity: O(n log n)
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        // Intentional: Do not copy all entries, then sort.  Instead, walk the heap in order with a second min-heap of
+        // heap indices, called the frontier: Pop the earliest, then push its children.  The frontier holds at most
+        // about n/2 entries, so it is also off-heap.
+        final OffHeapLongArray frontierArr = new OffHeapLongArray(Math.min(MIN_HEAP_CAPACITY, Math.max(1, size)));
+        int frontierSize = 0;
+        if (size > 0) {
+            frontierSize = _frontierPush(frontierArr, frontierSize, 0);
+        }
+        while (frontierSize > 0) {
+
+            final int heapIndex = (int) frontierArr.get(0);
+            frontierSize = _frontierPop(frontierArr, frontierSize);
+            final long requestId = hashArr.get(2 * heapArr.get(2L * heapIndex + 1));
+            consumer.accept(requestId, heapArr.get(2L * heapIndex));
+
+            final long leftIndex = 2L * heapIndex + 1;
+            if (leftIndex < size) {
+                frontierSize = _frontierPush(frontierArr, frontierSize, leftIndex);
+                if (1 + leftIndex < size) {
+                    frontierSize = _frontierPush(frontierArr, frontierSize, 1 + leftIndex);
+                }
+            }
+        }
+    }
+
+    // @return new frontier size
+    private int _frontierPush(final OffHeapLongArray frontierArr, final int frontierSize, final long heapIndex) {
+
+        if (frontierSize == frontierArr.capacity()) {
+            frontierArr.ensureCapacity(2 * frontierArr.capacity());
+        }
+        final long deadlineEpochMillis = heapArr.get(2 * heapIndex);
+        int index = frontierSize;
+        while (index > 0) {
+
+            final int parentIndex = (index - 1) >>> 1;
+            final long parentHeapIndex = frontierArr.get(parentIndex);
+            if (heapArr.get(2 * parentHeapIndex) <= deadlineEpochMillis) {
+                break;
+            }
+            frontierArr.set(index, parentHeapIndex);
+            index = parentIndex;
+        }
+        frontierArr.set(index, heapIndex);
+        final int x = 1 + frontierSize;
+        return x;
+    }
+
+    // @return new frontier size
+    private int _frontierPop(final OffHeapLongArray frontierArr, final int frontierSize) {
+
+        final int x = frontierSize - 1;
+        final long lastHeapIndex = frontierArr.get(x);
+        final long lastDeadlineEpochMillis = heapArr.get(2 * lastHeapIndex);
+        int index = 0;
+        final int half = x >>> 1;
+        while (index < half) {
+
+            int childIndex = 2 * index + 1;
+            long childHeapIndex = frontierArr.get(childIndex);
+            if (1 + childIndex < x) {
+                final long rightHeapIndex = frontierArr.get(1 + childIndex);
+                if (heapArr.get(2 * rightHeapIndex) < heapArr.get(2 * childHeapIndex)) {
+                    childIndex = 1 + childIndex;
+                    childHeapIndex = rightHeapIndex;
+                }
+            }
+            if (lastDeadlineEpochMillis <= heapArr.get(2 * childHeapIndex)) {
+                break;
+            }
+            frontierArr.set(index, childHeapIndex);
+            index = childIndex;
+        }
+        frontierArr.set(index, lastHeapIndex);
+        return x;
+    }
+
+    /**
+     * @return number of bytes of off-heap memory currently allocated
+     */
+    public long offHeapBytes() {
+
+        final long x = heapArr.allocatedBytes() + hashArr.allocatedBytes();
+        return x;
+    }
+
+    /**
+     * Only the small heap objects that own the off-heap memory are included, e.g., one {@link java.nio.ByteBuffer} per
+     * chunk.  Off-heap memory is counted separately by {@link #offHeapBytes()}.  Recurring deadlines and group members
+     * are included, as each has an on-heap entry.
+     * <p>
+     * Time complexity: O(g) for g groups
+     */
+    @Override
+    public long estimatedRetainedBytes() {
+
+        // This object (5 refs + 4 longs + int) and the wrapper for 'rearmProc'
+        final long x =
+            JvmMemoryLayout.objectBytes(5, 4 * Long.BYTES + Integer.BYTES) + JvmMemoryLayout.objectBytes(1, 0)
+                + heapArr.estimatedRetainedBytes()
+                + hashArr.estimatedRetainedBytes()
+                + recurrenceTable.estimatedRetainedBytes()
+                + groupTable.estimatedRetainedBytes();
+        return x;
+    }
+
+    /**
+     * Off-heap memory is allocated in advance, so this number is larger when the engine is nearly empty.
+     *
+     * @return {@link #offHeapBytes()} divided by number of pending deadlines (or one, if empty)
+     */
+    public double bytesPerPendingDeadline() {
+
+        final double x = ((double) offHeapBytes()) / Math.max(1, size);
+        return x;
+    }
+
+    private void _ensureCapacity(final int minSize) {
+
+        if (minSize > heapCapacity) {
+            heapCapacity = Math.min(2 * heapCapacity, (long) Integer.MAX_VALUE);
+            heapArr.ensureCapacity(2 * heapCapacity);
+        }
+        if (minSize > (long) (MAX_HASH_LOAD_FACTOR * hashCapacity)) {
+            _hashResize(2 * hashCapacity);
+        }
+    }
+
+    private void _trimCapacity() {
+
+        // Intentional: Use a quarter (not a half) to avoid thrashing between grow and trim.
+        if (heapCapacity > MIN_HEAP_CAPACITY && size < heapCapacity / 4) {
+            heapCapacity /= 2;
+            heapArr.trimToCapacity(2 * heapCapacity);
+        }
+        // Intentional: Shrink below a quarter of max load, so load is at most half of max after the rehash.  Shrink
+        // all the way in one rehash, as each rehash costs O(hash capacity).
+        long newHashCapacity = hashCapacity;
+        while (newHashCapacity > MIN_HASH_CAPACITY && size < (long) (MAX_HASH_LOAD_FACTOR * newHashCapacity / 4)) {
+            newHashCapacity /= 2;
+        }
+        if (newHashCapacity < hashCapacity) {
+            _hashResize(newHashCapacity);
+        }
+    }
+
+    // Mix bits, as request IDs are sequential.  Ref: https://en.wikipedia.org/wiki/Hash_function#Fibonacci_hashing
+    private long _hashSlot(final long requestId) {
+
+        final long x = (requestId * 0x9E3779B97F4A7C15L) >>> 17;
+        return x;
+    }
+
+    private long _hashFind(final long requestId) {
+
+        for (long slot = _hashSlot(requestId) & hashMask; ; slot = (1 + slot) & hashMask) {
+
+            final long key = hashArr.get(2 * slot);
+            if (requestId == key) {
+                return slot;
+            }
+            if (EMPTY_REQUEST_ID == key) {
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    // Intentional: Caller must set heap index.
+    private long _hashInsert(final long requestId) {
+
+        for (long slot = _hashSlot(requestId) & hashMask; ; slot = (1 + slot) & hashMask) {
+
+            if (EMPTY_REQUEST_ID == hashArr.get(2 * slot)) {
+                hashArr.set(2 * slot, requestId);
+                return slot;
+            }
+        }
+    }
+
+    // Backward shift deletion for linear probing: No tombstones are required.
+    // Ref: https://en.wikipedia.org/wiki/Linear_probing#Deletion
+    private void _hashRemoveAt(final long removeSlot) {
+
+        long gapSlot = removeSlot;
+        for (long slot = (1 + gapSlot) & hashMask; ; slot = (1 + slot) & hashMask) {
+
+            final long requestId = hashArr.get(2 * slot);
+            if (EMPTY_REQUEST_ID == requestId) {
+                break;
+            }
+            final long idealSlot = _hashSlot(requestId) & hashMask;
+            // Can this entry move back to the gap?  Only if its probe sequence passes through the gap.
+            if (((slot - idealSlot) & hashMask) >= ((slot - gapSlot) & hashMask)) {
+
+                final long heapIndex = hashArr.get(2 * slot + 1);
+                hashArr.set(2 * gapSlot, requestId);
+                hashArr.set(2 * gapSlot + 1, heapIndex);
+                heapArr.set(2 * heapIndex + 1, gapSlot);
+                gapSlot = slot;
+            }
+        }
+        hashArr.set(2 * gapSlot, EMPTY_REQUEST_ID);
+        hashArr.set(2 * gapSlot + 1, 0);
+    }
+
+    private void _hashResize(final long newHashCapacity) {
+
+        final OffHeapLongArray oldHashArr = hashArr;
+        final long oldHashCapacity = hashCapacity;
+        hashArr = new OffHeapLongArray(2 * newHashCapacity);
+        hashCapacity = newHashCapacity;
+        hashMask = newHashCapacity - 1;
+        for (long oldSlot = 0; oldSlot < oldHashCapacity; ++oldSlot) {
+
+            final long requestId = oldHashArr.get(2 * oldSlot);
+            if (EMPTY_REQUEST_ID != requestId) {
+                final long heapIndex = oldHashArr.get(2 * oldSlot + 1);
+                final long slot = _hashInsert(requestId);
+                hashArr.set(2 * slot + 1, heapIndex);
+                heapArr.set(2 * heapIndex + 1, slot);
+            }
+        }
+    }
+
+    private void _heapSet(final int heapIndex, final long deadlineEpochMillis, final long hashSlot) {
+
+        heapArr.set(2L * heapIndex, deadlineEpochMillis);
+        heapArr.set(2L * heapIndex + 1, hashSlot);
+        hashArr.set(2 * hashSlot + 1, heapIndex);
+    }
+
+    // Intentional: Use "hole" technique.  Only write each moved entry once.
+    private void _siftUp(int heapIndex, final long deadlineEpochMillis, final long hashSlot) {
+
+        while (heapIndex > 0) {
+
+            final int parentIndex = (heapIndex - 1) >>> 1;
+            final long parentDeadlineEpochMillis = heapArr.get(2L * parentIndex);
+            if (parentDeadlineEpochMillis <= deadlineEpochMillis) {
+                break;
+            }
+            _heapSet(heapIndex, parentDeadlineEpochMillis, heapArr.get(2L * parentIndex + 1));
+            heapIndex = parentIndex;
+        }
+        _heapSet(heapIndex, deadlineEpochMillis, hashSlot);
+    }
+
+    private void _siftDown(int heapIndex, final long deadlineEpochMillis, final long hashSlot) {
+
+        final int half = size >>> 1;
+        while (heapIndex < half) {
+
+            int childIndex = 2 * heapIndex + 1;
+            long childDeadlineEpochMillis = heapArr.get(2L * childIndex);
+            final int rightIndex = 1 + childIndex;
+            if (rightIndex < size) {
+                final long rightDeadlineEpochMillis = heapArr.get(2L * rightIndex);
+                if (rightDeadlineEpochMillis < childDeadlineEpochMillis) {
+                    childIndex = rightIndex;
+                    childDeadlineEpochMillis = rightDeadlineEpochMillis;
+                }
+            }
+            if (deadlineEpochMillis <= childDeadlineEpochMillis) {
+                break;
+            }
+            _heapSet(heapIndex, childDeadlineEpochMillis, heapArr.get(2L * childIndex + 1));
+            heapIndex = childIndex;
+        }
+        _heapSet(heapIndex, deadlineEpochMillis, hashSlot);
+    }
+
+    private void _heapRemoveAt(final int heapIndex) {
+
+        --size;
+        if (heapIndex == size) {
+            return;
+        }
+        // Move last entry into the hole, then restore heap order in whichever direction is required.
+        final long lastDeadlineEpochMillis = heapArr.get(2L * size);
+        final long lastHashSlot = heapArr.get(2L * size + 1);
+        if (heapIndex > 0 && heapArr.get(2L * ((heapIndex - 1) >>> 1)) > lastDeadlineEpochMillis) {
+            _siftUp(heapIndex, lastDeadlineEpochMillis, lastHashSlot);
+        }
+        else {
+            _siftDown(heapIndex, lastDeadlineEpochMillis, lastHashSlot);
+        }
+    }
+}
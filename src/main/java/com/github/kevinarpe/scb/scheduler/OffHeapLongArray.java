@@ -0,0 +1,150 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Growable array of {@code long} stored in off-heap memory.  The GC only sees one small {@link ByteBuffer} object per
+ * chunk, regardless of the number of elements.
+ * <p>
+ * Chunks are needed because a single {@link ByteBuffer} is limited to {@link Integer#MAX_VALUE} bytes.
+ * <p>
+ * New elements are always zero.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see OffHeapDeadlineEngineImp
+ */
+final class OffHeapLongArray {
+
+    // 2^20 longs = 8 MB per chunk
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_LENGTH = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_LENGTH - 1;
+
+    private ByteBuffer[] chunkArr;
+    private int chunkCount;
+    // Elements in the last chunk may be fewer than CHUNK_LENGTH when array is small.
+    private long capacity;
+
+    OffHeapLongArray(final long capacity) {
+
+        this.chunkArr = new ByteBuffer[0];
+        this.chunkCount = 0;
+        this.capacity = 0;
+        ensureCapacity(capacity);
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    long allocatedBytes() {
+        final long x = capacity * Long.BYTES;
+        return x;
+    }
+
+    /**
+     * Off-heap memory is not included.  See {@link #allocatedBytes()}.
+     * <p>
+     * Time complexity: O(1) -> constant
+     */
+    long estimatedRetainedBytes() {
+
+        // Each chunk: a direct buffer (5 refs + 5 ints + long + 4 booleans), its cleaner (7 refs), and its deallocator
+        // (int + 2 longs).  Field counts are for Java 17.
+        final long chunkBytes =
+            JvmMemoryLayout.objectBytes(5, 5 * Integer.BYTES + Long.BYTES + 4)
+                + JvmMemoryLayout.objectBytes(7, 0)
+                + JvmMemoryLayout.objectBytes(0, Integer.BYTES + 2 * Long.BYTES);
+        // This object: 1 ref + int + long
+        final long x =
+            JvmMemoryLayout.objectBytes(1, Integer.BYTES + Long.BYTES)
+                + JvmMemoryLayout.referenceArrayBytes(chunkArr.length)
+                + chunkCount * chunkBytes;
+        return x;
+    }
+
+    long get(final long index) {
+
+        final ByteBuffer chunk = chunkArr[(int) (index >>> CHUNK_SHIFT)];
+        final long x = chunk.getLong((int) (index & CHUNK_MASK) << 3);
+        return x;
+    }
+
+    void set(final long index, final long value) {
+
+        final ByteBuffer chunk = chunkArr[(int) (index >>> CHUNK_SHIFT)];
+        chunk.putLong((int) (index & CHUNK_MASK) << 3, value);
+    }
+
+    /**
+     * Grows this array if {@code minCapacity} is larger than current capacity.
+     */
+    void ensureCapacity(final long minCapacity) {
+
+        if (minCapacity <= capacity) {
+            return;
+        }
+        if (minCapacity < CHUNK_LENGTH) {
+            // Small array: Use a single chunk of exact size, and grow by copy.
+            final ByteBuffer chunk = _allocate((int) minCapacity);
+            if (1 == chunkCount) {
+                final ByteBuffer oldChunk = chunkArr[0].duplicate();
+                oldChunk.clear();
+                chunk.put(oldChunk);
+                chunk.clear();
+            }
+            chunkArr = new ByteBuffer[]{chunk};
+            chunkCount = 1;
+            capacity = minCapacity;
+            return;
+        }
+        // Large array: First, grow a small last chunk to full size, then append full chunks.
+        if (chunkCount > 0 && chunkArr[chunkCount - 1].capacity() < CHUNK_LENGTH * Long.BYTES) {
+            final ByteBuffer chunk = _allocate(CHUNK_LENGTH);
+            final ByteBuffer oldChunk = chunkArr[chunkCount - 1].duplicate();
+            oldChunk.clear();
+            chunk.put(oldChunk);
+            chunk.clear();
+            chunkArr[chunkCount - 1] = chunk;
+        }
+        final int newChunkCount = (int) ((minCapacity + CHUNK_LENGTH - 1) >>> CHUNK_SHIFT);
+        if (newChunkCount > chunkArr.length) {
+            chunkArr = Arrays.copyOf(chunkArr, newChunkCount);
+        }
+        for (int i = chunkCount; i < newChunkCount; ++i) {
+            chunkArr[i] = _allocate(CHUNK_LENGTH);
+        }
+        chunkCount = newChunkCount;
+        capacity = (long) newChunkCount << CHUNK_SHIFT;
+    }
+
+    /**
+     * Releases whole chunks that are not needed to hold {@code minCapacity} elements.  Off-heap memory is returned when
+     * the GC collects the released {@link ByteBuffer} objects.
+     */
+    void trimToCapacity(final long minCapacity) {
+
+        if (capacity < CHUNK_LENGTH) {
+            return;
+        }
+        final int newChunkCount = Math.max(1, (int) ((minCapacity + CHUNK_LENGTH - 1) >>> CHUNK_SHIFT));
+        for (int i = newChunkCount; i < chunkCount; ++i) {
+            chunkArr[i] = null;
+        }
+        if (newChunkCount < chunkCount) {
+            chunkCount = newChunkCount;
+            capacity = (long) newChunkCount << CHUNK_SHIFT;
+        }
+    }
+
+    private static ByteBuffer _allocate(final int length) {
+
+        final ByteBuffer x = ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder());
+        return x;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.kevinarpe.scb.scheduler;
+
+/**
+ * How a recurring deadline chooses its next deadline after it fires.  See
+ * {@link DeadlineEngine#scheduleRecurring(long, long, RecurrencePolicy)}.
+ * <p>
+ * Example: Period is 100 ms, and deadline 1000 fires late during a poll at 1250.
+ * <ul>
+ *     <li>{@link #CATCH_UP}: 1100, then 1200, then 1300, ...  Missed periods fire on successive polls.</li>
+ *     <li>{@link #SKIP}: 1300.  Missed periods are dropped, but the schedule stays aligned to the first deadline.</li>
+ *     <li>{@link #FIXED_DELAY}: 1350.  One period after the poll that fired.</li>
+ * </ul>
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public enum RecurrencePolicy {
+
+    /**
+     * Fixed-rate.  Each missed period still fires, once per poll, until caught up.
+     */
+    CATCH_UP {
+        @Override
+        public long nextDeadlineMs(final long deadlineMs, final long nowMs, final long periodMs) {
+
+            final long x = _saturatedAdd(deadlineMs, periodMs);
+            return x;
+        }
+    },
+    /**
+     * Fixed-rate.  Missed periods are skipped.  The next deadline is the first after {@code nowMs} on the original
+     * schedule.
+     */
+    SKIP {
+        @Override
+        public long nextDeadlineMs(final long deadlineMs, final long nowMs, final long periodMs) {
+
+            if (nowMs < deadlineMs) {
+                final long x = _saturatedAdd(deadlineMs, periodMs);
+                return x;
+            }
+            // Intentional: Do not loop over missed periods.  After a long pause, there may be millions.
+            final long missedPeriodCount = (nowMs - deadlineMs) / periodMs;
+            final long x = _saturatedAdd(deadlineMs, _saturatedMultiply(1 + missedPeriodCount, periodMs));
+            return x;
+        }
+    },
+    /**
+     * Fixed-delay.  The next deadline is one period after the poll that fired.
+     */
+    FIXED_DELAY {
+        @Override
+        public long nextDeadlineMs(final long deadlineMs, final long nowMs, final long periodMs) {
+
+            final long x = _saturatedAdd(Math.max(deadlineMs, nowMs), periodMs);
+            return x;
+        }
+    },
+    ;
+
+    /**
+     * @param deadlineMs
+     *        deadline that just fired
+     *
+     * @param nowMs
+     *        from the poll that fired
+     *
+     * @param periodMs
+     *        always positive
+     *
+     * @return next deadline, always after {@code deadlineMs}.  Saturates at {@link Long#MAX_VALUE}.
+     */
+    public abstract long nextDeadlineMs(long deadlineMs, long nowMs, long periodMs);
+
+    private static long _saturatedAdd(final long a, final long b) {
+
+        final long x = a + b;
+        // Intentional: Both are non-negative, so overflow is always negative.
+        return (x < 0) ? Long.MAX_VALUE : x;
+    }
+
+    private static long _saturatedMultiply(final long a, final long b) {
+
+        final long hi = Math.multiplyHigh(a, b);
+        final long lo = a * b;
+        return (0 != hi || lo < 0) ? Long.MAX_VALUE : lo;
+    }
+}
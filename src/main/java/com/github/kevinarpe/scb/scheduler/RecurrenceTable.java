@@ -0,0 +1,208 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.procedures.LongLongProcedure;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Recurring deadlines for an engine that finds each pending deadline by request ID, e.g.,
+ * {@link OffHeapDeadlineEngineImp}.  Only recurring request IDs are stored, so one-shot deadlines pay only an
+ * {@link #isEmpty()} check.
+ * <p>
+ * When a recurring deadline fires, the engine removes it as usual, then calls {@link #deferRearm(long, long)}.  Until
+ * {@link #rearm(long, LongLongProcedure)} is called at the end of the poll, it is a <i>pending re-arm</i>: It is not
+ * in the engine, but it is counted by {@link #pendingRearmCount()}, and a handler may still cancel or reschedule it.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see GenerationalHandleDeadlineEngineImp
+ */
+final class RecurrenceTable {
+
+    private static final class _Recurrence {
+
+        private final long periodMillis;
+        private final RecurrencePolicy policy;
+        // Only valid if 'isPendingRearm'
+        private long firedDeadlineEpochMillis;
+        private boolean isPendingRearm;
+
+        private _Recurrence(final long periodMillis, RecurrencePolicy policy) {
+
+            this.periodMillis = periodMillis;
+            this.policy = policy;
+            this.firedDeadlineEpochMillis = 0;
+            this.isPendingRearm = false;
+        }
+    }
+
+    private final LongObjectHashMap<_Recurrence> requestId_To_Recurrence_Map;
+    // Request IDs passed to deferRearm() since the last rearm().  See rearm().
+    private long[] rearmRequestIdArr;
+    private int rearmCount;
+    // Number of recurrences in state 'isPendingRearm'
+    private int pendingRearmCount;
+
+    RecurrenceTable() {
+
+        this.requestId_To_Recurrence_Map = new LongObjectHashMap<>();
+        this.rearmRequestIdArr = new long[16];
+        this.rearmCount = 0;
+        this.pendingRearmCount = 0;
+    }
+
+    boolean isEmpty() {
+        final boolean x = requestId_To_Recurrence_Map.isEmpty();
+        return x;
+    }
+
+    /**
+     * Recurrence policies are shared enum constants, so they are not included.
+     * <p>
+     * Time complexity: O(1) -> constant
+     *
+     * @see DeadlineEngine#estimatedRetainedBytes()
+     */
+    long estimatedRetainedBytes() {
+
+        // This object (2 refs + 2 ints) and each recurrence (1 ref + 2 longs + boolean)
+        final long x =
+            JvmMemoryLayout.objectBytes(2, 2 * Integer.BYTES)
+                + JvmMemoryLayout.longObjectHashMapBytes(requestId_To_Recurrence_Map)
+                + requestId_To_Recurrence_Map.size() * JvmMemoryLayout.objectBytes(1, 2 * Long.BYTES + 1)
+                + JvmMemoryLayout.arrayBytes(rearmRequestIdArr.length, Long.BYTES);
+        return x;
+    }
+
+    /**
+     * @return number of recurring deadlines that fired, but are not yet re-armed
+     */
+    int pendingRearmCount() {
+        return pendingRearmCount;
+    }
+
+    // Time complexity: O(1) -> constant
+    void add(final long requestId, final long periodMillis, RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        requestId_To_Recurrence_Map.put(requestId, new _Recurrence(periodMillis, policy));
+    }
+
+    /**
+     * Call when a pending deadline is cancelled.
+     * <p>
+     * Time complexity: O(1) -> constant
+     */
+    void remove(final long requestId) {
+
+        if (false == requestId_To_Recurrence_Map.isEmpty()) {
+            requestId_To_Recurrence_Map.remove(requestId);
+        }
+    }
+
+    /**
+     * Call when a request ID to cancel is not found by the engine.
+     * <p>
+     * Time complexity: O(1) -> constant
+     *
+     * @return true if {@code requestId} was a pending re-arm, and is now removed
+     */
+    boolean cancelPendingRearm(final long requestId) {
+
+        if (false == _isPendingRearm(requestId)) {
+            return false;
+        }
+        requestId_To_Recurrence_Map.remove(requestId);
+        --pendingRearmCount;
+        return true;
+    }
+
+    /**
+     * Call when a request ID to reschedule is not found by the engine.  If true, the engine must schedule the same
+     * request ID with its new deadline.  The new deadline replaces the re-arm.
+     * <p>
+     * Time complexity: O(1) -> constant
+     *
+     * @return true if {@code requestId} was a pending re-arm, and is now pending again
+     */
+    boolean takePendingRearm(final long requestId) {
+
+        if (false == _isPendingRearm(requestId)) {
+            return false;
+        }
+        requestId_To_Recurrence_Map.get(requestId).isPendingRearm = false;
+        --pendingRearmCount;
+        return true;
+    }
+
+    private boolean _isPendingRearm(final long requestId) {
+
+        if (0 == pendingRearmCount) {
+            return false;
+        }
+        @Nullable
+        final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+        final boolean x = (null != nullableRecurrence && nullableRecurrence.isPendingRearm);
+        return x;
+    }
+
+    /**
+     * Call after a deadline fires, and is removed from the engine.  Nothing happens if it is one-shot.
+     * <p>
+     * Time complexity: O(1) -> constant
+     */
+    void deferRearm(final long requestId, final long deadlineEpochMillis) {
+
+        if (requestId_To_Recurrence_Map.isEmpty()) {
+            return;
+        }
+        @Nullable
+        final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+        if (null == nullableRecurrence) {
+            return;
+        }
+        nullableRecurrence.firedDeadlineEpochMillis = deadlineEpochMillis;
+        nullableRecurrence.isPendingRearm = true;
+        ++pendingRearmCount;
+        if (rearmCount == rearmRequestIdArr.length) {
+            rearmRequestIdArr = Arrays.copyOf(rearmRequestIdArr, 2 * rearmCount);
+        }
+        rearmRequestIdArr[rearmCount] = requestId;
+        ++rearmCount;
+    }
+
+    /**
+     * Call at the end of each poll or drain, even if the handler throws.  Thus, each recurring deadline fires at most
+     * once per poll.
+     * <p>
+     * Time complexity: O(r) for r recurring deadlines that fired, plus the cost of {@code scheduleProc}
+     *
+     * @param scheduleProc
+     *        called with each request ID to re-arm, and its next deadline.  The engine must schedule the same request
+     *        ID.
+     */
+    void rearm(final long nowEpochMillis, final LongLongProcedure scheduleProc) {
+
+        for (int i = 0; i < rearmCount; ++i) {
+
+            final long requestId = rearmRequestIdArr[i];
+            @Nullable
+            final _Recurrence nullableRecurrence = requestId_To_Recurrence_Map.get(requestId);
+            // Cancelled or rescheduled by a handler?  Then do not re-arm.
+            // Intentional: Also skip duplicates.  A request ID rescheduled by a handler may fire twice in one poll.
+            if (null == nullableRecurrence || false == nullableRecurrence.isPendingRearm) {
+                continue;
+            }
+            nullableRecurrence.isPendingRearm = false;
+            final long nextDeadlineEpochMillis =
+                nullableRecurrence.policy.nextDeadlineMs(
+                    nullableRecurrence.firedDeadlineEpochMillis, nowEpochMillis, nullableRecurrence.periodMillis);
+            scheduleProc.apply(requestId, nextDeadlineEpochMillis);
+        }
+        rearmCount = 0;
+        pendingRearmCount = 0;
+    }
+}
@@ -0,0 +1,364 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * NotThreadSafe?  Correct.  For thread-safety, wrap with {@link SynchronizedDeadlineEngineImp}.
+ * <p>
+ * This is the primary side of hot-standby replication.  All state is held by a {@link DeadlineEngineImp}, and each
+ * schedule, cancel, reschedule, and fire is streamed to a {@link DeadlineEngineFollower} as a
+ * {@link DeadlineLogRecord}.  The follower applies records as they arrive, so it always holds the full set of pending
+ * deadlines.  On failover, {@link DeadlineEngineFollower#promote()} returns the follower's engine immediately: Nothing
+ * is replayed.
+ * <p>
+ * Records are written to the socket in batches: when {@code batchRecordCount} records are buffered, at the end of each
+ * {@link #poll(long, Consumer, int)} and {@link #drainTo(long, long[], int, int)}, and when {@link #flush()} is called.
+ * Thus, replication is asynchronous: On failover, the follower may lack operations since the last batch.  For a
+ * tighter bound, call {@link #flush()} more often.
+ * <p>
+ * Recurring deadlines are sent as a schedule and its recurrence.  When a recurring deadline fires, its next deadline is
+ * sent as a reschedule, not as a fire.  Thus, after failover, the promoted follower re-arms it as the primary would.
+ * Likewise, group members are sent as a schedule and its group key, and a group cancel is sent as one record.
+ * <p>
+ * When the follower disconnects, or a write fails, replication stops, but the primary continues to work.  See
+ * {@link #isReplicating()}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineFollower
+ * @see DurableDeadlineEngineImp
+ */
+@NotThreadSafe
+public final class ReplicatedDeadlineEngineImp
+implements DeadlineEngine, Closeable {
+
+    public static final int DEFAULT_BATCH_RECORD_COUNT = 1024;
+
+    private final DeadlineEngineImp delegate;
+    private final SocketChannel followerChannel;
+    private final ByteBuffer batchBuffer;
+    private boolean isReplicating;
+    // One-shot request IDs fired by the current poll.  See _appendFires().
+    private final LongArrayList firedOneShotRequestIdList;
+    // Recurring request IDs fired by the current poll.  See _appendRearms().
+    private final LongArrayList firedRecurringRequestIdList;
+
+    public ReplicatedDeadlineEngineImp(SocketChannel followerChannel)
+    throws IOException {
+
+        this(new DeadlineEngineImp(), followerChannel, DEFAULT_BATCH_RECORD_COUNT);
+    }
+
+    /**
+     * All pending deadlines from {@code engine} are sent to the follower before this constructor returns.  Thus, a
+     * promoted follower may become the next primary with a new follower.
+     *
+     * @param engine
+     *        initial state.  Usually empty, or from {@link DeadlineEngineFollower#promote()}.  From now, only this
+     *        class should access this engine.
+     *
+     * @param followerChannel
+     *        connected, blocking channel to the follower.  Closed by {@link #close()}.
+     *
+     * @param batchRecordCount
+     *        maximum number of records to buffer before writing to the socket
+     *
+     * @throws IOException
+     *         if pending deadlines cannot be sent to the follower
+     */
+    public ReplicatedDeadlineEngineImp(DeadlineEngineImp engine,
+                                       SocketChannel followerChannel,
+                                       final int batchRecordCount)
+    throws IOException {
+
+        this.delegate = Objects.requireNonNull(engine);
+        this.followerChannel = Objects.requireNonNull(followerChannel);
+        if (false == followerChannel.isBlocking()) {
+            throw new IllegalArgumentException("Argument 'followerChannel' must be blocking");
+        }
+        if (batchRecordCount <= 0) {
+            throw new IllegalArgumentException("Argument 'batchRecordCount' must be positive: " + batchRecordCount);
+        }
+        this.batchBuffer = ByteBuffer.allocateDirect(batchRecordCount * DeadlineLogRecord.SIZE_BYTES);
+        this.isReplicating = true;
+        this.firedOneShotRequestIdList = new LongArrayList();
+        this.firedRecurringRequestIdList = new LongArrayList();
+
+        // Time complexity: O(n) where n is number of pending deadlines
+        delegate.forEachPending(
+            (long requestId, long deadlineEpochMillis) -> {
+                _append(DeadlineLogRecord.TYPE_SCHEDULE, requestId, deadlineEpochMillis);
+                final long periodMillis = delegate._recurrencePeriodMillis(requestId);
+                if (0 != periodMillis) {
+                    final long recurrenceValue =
+                        DeadlineLogRecord.toRecurrenceValue(periodMillis, delegate._nullableRecurrencePolicy(requestId));
+                    _append(DeadlineLogRecord.TYPE_RECURRENCE, requestId, recurrenceValue);
+                }
+                @Nullable
+                final Long nullableGroupKey = delegate._nullableGroupKey(requestId);
+                if (null != nullableGroupKey) {
+                    _append(DeadlineLogRecord.TYPE_GROUP, requestId, nullableGroupKey);
+                }
+            });
+        // Intentional: Cancelled and fired request IDs are not sent, so the follower must be told the next request ID.
+        _append(DeadlineLogRecord.TYPE_NEXT_REQUEST_ID, delegate._nextRequestId(), 0);
+        flush();
+        if (false == isReplicating) {
+            throw new IOException("Failed to send pending deadlines to follower");
+        }
+    }
+
+    /**
+     * @return true until the follower disconnects, a write fails, or {@link #close()} is called
+     */
+    public boolean isReplicating() {
+        return isReplicating;
+    }
+
+    private void _append(final byte type, final long requestId, final long value) {
+
+        if (false == isReplicating) {
+            return;
+        }
+        if (false == batchBuffer.hasRemaining()) {
+            flush();
+        }
+        DeadlineLogRecord.write(batchBuffer, batchBuffer.position(), type, requestId, value);
+        batchBuffer.position(batchBuffer.position() + DeadlineLogRecord.SIZE_BYTES);
+    }
+
+    /**
+     * Writes all buffered records to the follower.  If the write fails, replication stops.
+     */
+    public void flush() {
+
+        if (false == isReplicating || 0 == batchBuffer.position()) {
+            return;
+        }
+        batchBuffer.flip();
+        try {
+            while (batchBuffer.hasRemaining()) {
+                followerChannel.write(batchBuffer);
+            }
+        }
+        catch (IOException e) {
+            // Intentional: The primary must survive the loss of its follower.
+            _stopReplicating();
+        }
+        batchBuffer.clear();
+    }
+
+    private void _stopReplicating() {
+
+        isReplicating = false;
+        try {
+            followerChannel.close();
+        }
+        catch (IOException e) {
+            // Intentional: Nothing more can be done.
+        }
+    }
+
+    @Override
+    public long schedule(final long deadlineEpochMillis) {
+
+        final long requestId = delegate.schedule(deadlineEpochMillis);
+        _append(DeadlineLogRecord.TYPE_SCHEDULE, requestId, deadlineEpochMillis);
+        return requestId;
+    }
+
+    @Override
+    public void scheduleAll(final long[] deadlineEpochMillisArr, final long[] outRequestIdArr) {
+
+        delegate.scheduleAll(deadlineEpochMillisArr, outRequestIdArr);
+        for (int i = 0; i < deadlineEpochMillisArr.length; ++i) {
+            _append(DeadlineLogRecord.TYPE_SCHEDULE, outRequestIdArr[i], deadlineEpochMillisArr[i]);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if {@code periodMillis} is larger than {@link DeadlineLogRecord#MAX_RECURRENCE_PERIOD_MILLIS}
+     */
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        // Intentional: Check before the delegate is changed.
+        final long recurrenceValue = DeadlineLogRecord.toRecurrenceValue(periodMillis, policy);
+        final long requestId = delegate.scheduleRecurring(firstDeadlineEpochMillis, periodMillis, policy);
+        _append(DeadlineLogRecord.TYPE_SCHEDULE, requestId, firstDeadlineEpochMillis);
+        _append(DeadlineLogRecord.TYPE_RECURRENCE, requestId, recurrenceValue);
+        return requestId;
+    }
+
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = delegate.scheduleInGroup(deadlineEpochMillis, groupKey);
+        _append(DeadlineLogRecord.TYPE_SCHEDULE, requestId, deadlineEpochMillis);
+        _append(DeadlineLogRecord.TYPE_GROUP, requestId, groupKey);
+        return requestId;
+    }
+
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final int count = delegate.cancelGroup(groupKey);
+        if (count > 0) {
+            _append(DeadlineLogRecord.TYPE_CANCEL_GROUP, 0, groupKey);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        final boolean isCancelled = delegate.cancel(requestId);
+        if (isCancelled) {
+            _append(DeadlineLogRecord.TYPE_CANCEL, requestId, 0);
+        }
+        return isCancelled;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        final boolean isRescheduled = delegate.reschedule(requestId, newDeadlineEpochMillis);
+        if (isRescheduled) {
+            _append(DeadlineLogRecord.TYPE_RESCHEDULE, requestId, newDeadlineEpochMillis);
+        }
+        return isRescheduled;
+    }
+
+    @Override
+    public int poll(final long nowEpochMillis,
+                    final Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        Objects.requireNonNull(handler);
+        try {
+            // Intentional: Append *after* calling handler.  If the handler throws, the deadline is not removed from
+            // the delegate, so the follower must agree.
+            final int count =
+                delegate.poll(nowEpochMillis,
+                    (Long requestId) -> {
+                        handler.accept(requestId);
+                        _addFired(requestId);
+                    },
+                    maxPollCount);
+            return count;
+        }
+        finally {
+            _appendFires();
+            _appendRearms();
+            flush();
+        }
+    }
+
+    private void _addFired(final long requestId) {
+
+        // Intentional: The delegate removes a fired deadline only *after* the handler returns, and re-arms recurring
+        // deadlines after its poll loop.  See _appendFires() and _appendRearms().
+        if (0 == delegate._recurrencePeriodMillis(requestId)) {
+            firedOneShotRequestIdList.add(requestId);
+        }
+        else {
+            firedRecurringRequestIdList.add(requestId);
+        }
+    }
+
+    private void _appendFires() {
+
+        for (int i = 0; i < firedOneShotRequestIdList.size(); ++i) {
+
+            final long requestId = firedOneShotRequestIdList.get(i);
+            // Rescheduled by a handler?  Then its reschedule is already sent, and TYPE_FIRE would cancel it on the
+            // follower.
+            if (null == delegate._nullableDeadlineEpochMillis(requestId)) {
+                _append(DeadlineLogRecord.TYPE_FIRE, requestId, 0);
+            }
+        }
+        firedOneShotRequestIdList.clear();
+    }
+
+    // Intentional: A recurring deadline that fired is sent with its next deadline.  TYPE_FIRE would cancel it on the
+    // follower, so after failover, it would never fire again.
+    private void _appendRearms() {
+
+        for (int i = 0; i < firedRecurringRequestIdList.size(); ++i) {
+
+            final long requestId = firedRecurringRequestIdList.get(i);
+            @Nullable
+            final Long nullableDeadlineEpochMillis = delegate._nullableDeadlineEpochMillis(requestId);
+            // Cancelled by a handler?  Then its cancel is already sent.
+            if (null != nullableDeadlineEpochMillis) {
+                _append(DeadlineLogRecord.TYPE_RESCHEDULE, requestId, nullableDeadlineEpochMillis);
+            }
+        }
+        firedRecurringRequestIdList.clear();
+    }
+
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        final int count = delegate.drainTo(nowEpochMillis, outRequestIdArr, offset, maxCount);
+        for (int i = offset; i < offset + count; ++i) {
+            _addFired(outRequestIdArr[i]);
+        }
+        _appendFires();
+        _appendRearms();
+        flush();
+        return count;
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+        final long x = delegate.nextDeadlineMs();
+        return x;
+    }
+
+    @Override
+    public int size() {
+        final int x = delegate.size();
+        return x;
+    }
+
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+        final int x = delegate.countBetween(fromEpochMillis, toEpochMillis);
+        return x;
+    }
+
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+        delegate.forEachPending(consumer);
+    }
+
+    // Intentional: Only the delegate.  I/O buffers are direct (off-heap).
+    @Override
+    public long estimatedRetainedBytes() {
+        final long x = delegate.estimatedRetainedBytes();
+        return x;
+    }
+
+    /**
+     * Flushes buffered records, then closes the channel to the follower.  The follower keeps its state.
+     */
+    @Override
+    public void close() {
+
+        flush();
+        _stopReplicating();
+    }
+}
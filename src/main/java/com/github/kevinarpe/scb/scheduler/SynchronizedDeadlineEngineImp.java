@@ -31,6 +31,28 @@ implements DeadlineEngine {
         }
     }
 
+    // Intentional: Acquire the lock only once per batch.
+    @Override
+    public void scheduleAll(long[] deadlinesMs, long[] outRequestIds) {
+        synchronized (delegate) {
+            delegate.scheduleAll(deadlinesMs, outRequestIds);
+        }
+    }
+
+    @Override
+    public long scheduleRecurring(long firstDeadlineMs, long periodMs, RecurrencePolicy policy) {
+        synchronized (delegate) {
+            return delegate.scheduleRecurring(firstDeadlineMs, periodMs, policy);
+        }
+    }
+
+    @Override
+    public long scheduleInGroup(long deadlineMs, long groupKey) {
+        synchronized (delegate) {
+            return delegate.scheduleInGroup(deadlineMs, groupKey);
+        }
+    }
+
     @Override
     public boolean cancel(long requestId) {
         synchronized (delegate) {
@@ -38,6 +60,28 @@ implements DeadlineEngine {
         }
     }
 
+    @Override
+    public boolean reschedule(long requestId, long newDeadlineMs) {
+        synchronized (delegate) {
+            return delegate.reschedule(requestId, newDeadlineMs);
+        }
+    }
+
+    // Intentional: Acquire the lock only once per batch.
+    @Override
+    public int cancelAll(long[] requestIds) {
+        synchronized (delegate) {
+            return delegate.cancelAll(requestIds);
+        }
+    }
+
+    @Override
+    public int cancelGroup(long groupKey) {
+        synchronized (delegate) {
+            return delegate.cancelGroup(groupKey);
+        }
+    }
+
     @Override
     public int poll(long nowMs, Consumer<Long> handler, int maxPoll) {
         synchronized (delegate) {
@@ -45,10 +89,54 @@ implements DeadlineEngine {
         }
     }
 
+    @Override
+    public int drainTo(long nowMs, long[] out, int offset, int max) {
+        synchronized (delegate) {
+            return delegate.drainTo(nowMs, out, offset, max);
+        }
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+        synchronized (delegate) {
+            return delegate.nextDeadlineMs();
+        }
+    }
+
     @Override
     public int size() {
         synchronized (delegate) {
             return delegate.size();
         }
     }
+
+    @Override
+    public int countBetween(long fromMs, long toMs) {
+        synchronized (delegate) {
+            return delegate.countBetween(fromMs, toMs);
+        }
+    }
+
+    // Intentional: Acquire the lock only once for all buckets.
+    @Override
+    public void countHistogram(long fromMs, long bucketWidthMs, int[] outCounts) {
+        synchronized (delegate) {
+            delegate.countHistogram(fromMs, bucketWidthMs, outCounts);
+        }
+    }
+
+    @Override
+    public long estimatedRetainedBytes() {
+        synchronized (delegate) {
+            return delegate.estimatedRetainedBytes();
+        }
+    }
+
+    // Intentional: Hold the lock for the whole iteration.  Thus, the consumer sees a consistent snapshot.
+    @Override
+    public void forEachPending(PendingDeadlineConsumer consumer) {
+        synchronized (delegate) {
+            delegate.forEachPending(consumer);
+        }
+    }
 }
@@ -0,0 +1,598 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This implementation shares each poll fairly between tenants.  A plain {@link DeadlineEngine} drains expired deadlines
+ * in deadline order, so one noisy tenant with a million simultaneous timeouts may starve all other tenants for many
+ * polls.  Here, each tenant has its own engine, and {@code maxPollCount} is shared by weight.  Any share that is not
+ * used by a tenant (because it has too few expired deadlines) is split equally between other tenants, so no poll
+ * capacity is wasted.
+ * <p>
+ * The first tenant to poll is rotated for each poll, so rounding of shares does not always favour the same tenant.
+ * <p>
+ * Request IDs encode the tenant index in the lowest {@value #TENANT_INDEX_BITS} bits.
+ * <p>
+ * Recurring deadlines are re-armed by each tenant engine, so a recurring deadline keeps its tenant.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineImp
+ */
+public final class TenantFairDeadlineEngineImp
+implements DeadlineEngine {
+
+    public static final int TENANT_INDEX_BITS = 16;
+    public static final int MAX_TENANT_COUNT = 1 << TENANT_INDEX_BITS;
+    public static final int DEFAULT_TENANT_INDEX = 0;
+    private static final long TENANT_INDEX_MASK = MAX_TENANT_COUNT - 1;
+    // Intentional: Keep composite request IDs positive.
+    private static final long MAX_TENANT_REQUEST_ID = Long.MAX_VALUE >>> TENANT_INDEX_BITS;
+
+    private final DeadlineEngine[] tenantEngineArr;
+    private final int[] tenantWeightArr;
+    private final long totalWeight;
+    private final _TenantHandler[] tenantHandlerArr;
+    // Intentional: Pre-allocate to avoid allocation for each poll.  See _share().
+    private final int[] tenantExpiredCountArr;
+    private final int[] tenantPollCountArr;
+    private int firstTenantIndex;
+
+    /**
+     * Each tenant has equal weight, so polls are round-robin.
+     */
+    public TenantFairDeadlineEngineImp(final int tenantCount) {
+
+        this(DeadlineEngineImp::new, _newEqualWeightArr(tenantCount));
+    }
+
+    private static int[] _newEqualWeightArr(final int tenantCount) {
+
+        if (tenantCount <= 0) {
+            throw new IllegalArgumentException("Argument 'tenantCount' must be positive: " + tenantCount);
+        }
+        final int[] x = new int[tenantCount];
+        Arrays.fill(x, 1);
+        return x;
+    }
+
+    /**
+     * @param engineFactory
+     *        called once per tenant to create a new, empty engine
+     *
+     * @param tenantWeightArr
+     *        weight for each tenant.  Length is number of tenants.  Each weight must be positive.
+     */
+    public TenantFairDeadlineEngineImp(Supplier<? extends DeadlineEngine> engineFactory,
+                                       int... tenantWeightArr) {
+
+        Objects.requireNonNull(engineFactory);
+        if (0 == tenantWeightArr.length || tenantWeightArr.length > MAX_TENANT_COUNT) {
+            throw new IllegalArgumentException(
+                "Argument 'tenantWeightArr.length' must be 1.." + MAX_TENANT_COUNT + ": " + tenantWeightArr.length);
+        }
+        long totalWeight = 0;
+        for (int i = 0; i < tenantWeightArr.length; ++i) {
+            if (tenantWeightArr[i] <= 0) {
+                throw new IllegalArgumentException(
+                    "Argument 'tenantWeightArr[" + i + "]' must be positive: " + tenantWeightArr[i]);
+            }
+            totalWeight += tenantWeightArr[i];
+        }
+        this.tenantWeightArr = tenantWeightArr.clone();
+        this.totalWeight = totalWeight;
+        this.tenantEngineArr = new DeadlineEngine[tenantWeightArr.length];
+        this.tenantHandlerArr = new _TenantHandler[tenantWeightArr.length];
+        this.tenantExpiredCountArr = new int[tenantWeightArr.length];
+        this.tenantPollCountArr = new int[tenantWeightArr.length];
+        for (int i = 0; i < tenantWeightArr.length; ++i) {
+            tenantEngineArr[i] = Objects.requireNonNull(engineFactory.get());
+            tenantHandlerArr[i] = new _TenantHandler(i);
+        }
+        this.firstTenantIndex = 0;
+    }
+
+    // Intentional: Pre-allocate one handler per tenant to avoid allocation for each poll.
+    private static final class _TenantHandler
+    implements Consumer<Long> {
+
+        private final int tenantIndex;
+        private Consumer<Long> handler;
+        private int count;
+
+        private _TenantHandler(final int tenantIndex) {
+            this.tenantIndex = tenantIndex;
+        }
+
+        @Override
+        public void accept(Long tenantRequestId) {
+            // Intentional: Increment before calling handler, so the count is correct, even if handler throws.
+            ++count;
+            handler.accept(_toRequestId(tenantIndex, tenantRequestId));
+        }
+    }
+
+    /**
+     * @return number of tenants
+     */
+    public int tenantCount() {
+        return tenantEngineArr.length;
+    }
+
+    /**
+     * Request a new deadline for the default tenant.
+     *
+     * @see #scheduleForTenant(long, int)
+     */
+    @Override
+    public long schedule(final long deadlineMs) {
+
+        final long x = scheduleForTenant(deadlineMs, DEFAULT_TENANT_INDEX);
+        return x;
+    }
+
+    /**
+     * @see DeadlineEngine#schedule(long)
+     */
+    public long scheduleForTenant(final long deadlineMs, final int tenantIndex) {
+
+        final DeadlineEngine engine = _getTenantEngine(tenantIndex);
+        final long tenantRequestId = engine.schedule(deadlineMs);
+        final long x = _toCheckedRequestId(engine, tenantIndex, tenantRequestId);
+        return x;
+    }
+
+    /**
+     * Request a new recurring deadline for the default tenant.
+     *
+     * @see #scheduleRecurringForTenant(long, long, RecurrencePolicy, int)
+     */
+    @Override
+    public long scheduleRecurring(final long firstDeadlineMs,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        final long x = scheduleRecurringForTenant(firstDeadlineMs, periodMillis, policy, DEFAULT_TENANT_INDEX);
+        return x;
+    }
+
+    /**
+     * @see DeadlineEngine#scheduleRecurring(long, long, RecurrencePolicy)
+     */
+    public long scheduleRecurringForTenant(final long firstDeadlineMs,
+                                           final long periodMillis,
+                                           RecurrencePolicy policy,
+                                           final int tenantIndex) {
+
+        final DeadlineEngine engine = _getTenantEngine(tenantIndex);
+        final long tenantRequestId = engine.scheduleRecurring(firstDeadlineMs, periodMillis, policy);
+        final long x = _toCheckedRequestId(engine, tenantIndex, tenantRequestId);
+        return x;
+    }
+
+    /**
+     * Request a new deadline in a group for the default tenant.
+     *
+     * @see #scheduleInGroupForTenant(long, long, int)
+     */
+    @Override
+    public long scheduleInGroup(final long deadlineMs, final long groupKey) {
+
+        final long x = scheduleInGroupForTenant(deadlineMs, groupKey, DEFAULT_TENANT_INDEX);
+        return x;
+    }
+
+    /**
+     * Each tenant has its own groups, but {@link #cancelGroup(long)} cancels the group with the same key in every
+     * tenant.
+     *
+     * @see DeadlineEngine#scheduleInGroup(long, long)
+     */
+    public long scheduleInGroupForTenant(final long deadlineMs, final long groupKey, final int tenantIndex) {
+
+        final DeadlineEngine engine = _getTenantEngine(tenantIndex);
+        final long tenantRequestId = engine.scheduleInGroup(deadlineMs, groupKey);
+        final long x = _toCheckedRequestId(engine, tenantIndex, tenantRequestId);
+        return x;
+    }
+
+    // Time complexity: O(t) + cost of each tenant cancel, where t is number of tenants
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        int x = 0;
+        for (final DeadlineEngine engine : tenantEngineArr) {
+            x += engine.cancelGroup(groupKey);
+        }
+        return x;
+    }
+
+    private static long _toCheckedRequestId(final DeadlineEngine engine,
+                                            final int tenantIndex,
+                                            final long tenantRequestId) {
+
+        if (tenantRequestId > MAX_TENANT_REQUEST_ID || tenantRequestId < 0) {
+            engine.cancel(tenantRequestId);
+            throw new IllegalStateException("Tenant request ID is too large: " + tenantRequestId);
+        }
+        final long x = _toRequestId(tenantIndex, tenantRequestId);
+        return x;
+    }
+
+    private DeadlineEngine _getTenantEngine(final int tenantIndex) {
+
+        if (tenantIndex < 0 || tenantIndex >= tenantEngineArr.length) {
+            throw new IllegalArgumentException(
+                "Argument 'tenantIndex' must be 0.." + (tenantEngineArr.length - 1) + ": " + tenantIndex);
+        }
+        final DeadlineEngine x = tenantEngineArr[tenantIndex];
+        return x;
+    }
+
+    private static long _toRequestId(final int tenantIndex, final long tenantRequestId) {
+
+        final long x = (tenantRequestId << TENANT_INDEX_BITS) | tenantIndex;
+        return x;
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        // Intentional: Do not check argument.  Allow any random 'requestId' to be passed.
+        final int tenantIndex = (int) (requestId & TENANT_INDEX_MASK);
+        if (requestId < 0 || tenantIndex >= tenantEngineArr.length) {
+            return false;
+        }
+        final boolean x = tenantEngineArr[tenantIndex].cancel(requestId >>> TENANT_INDEX_BITS);
+        return x;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final int tenantIndex = (int) (requestId & TENANT_INDEX_MASK);
+        if (requestId < 0 || tenantIndex >= tenantEngineArr.length) {
+            return false;
+        }
+        final boolean x = tenantEngineArr[tenantIndex].reschedule(requestId >>> TENANT_INDEX_BITS, newDeadlineMs);
+        return x;
+    }
+
+    /**
+     * Shares {@code maxPollCount} between tenants by weight.  Any unused share is split equally between other tenants
+     * with expired deadlines in round-robin order.
+     * <p>
+     * Each tenant is polled at most once, so a recurring deadline fires at most once per poll.
+     * <p>
+     * Time complexity: O(t) + cost of each tenant count and poll, where t is number of tenants
+     */
+    @Override
+    public int poll(final long nowMs,
+                    Consumer<Long> handler,
+                    final int maxPollCount) {
+
+        Objects.requireNonNull(handler);
+        if (maxPollCount <= 0) {
+            throw new IllegalArgumentException("Argument 'maxPollCount' must be positive: " + maxPollCount);
+        }
+        final int tenantCount = tenantEngineArr.length;
+        final int firstTenantIndex = this.firstTenantIndex;
+        this.firstTenantIndex = (1 + firstTenantIndex) % tenantCount;
+
+        _share(nowMs, maxPollCount, firstTenantIndex);
+        int count = 0;
+        for (int i = 0; i < tenantCount; ++i) {
+
+            final int tenantIndex = (firstTenantIndex + i) % tenantCount;
+            final int tenantPollCount = tenantPollCountArr[tenantIndex];
+            if (tenantPollCount > 0) {
+                count += _pollTenant(tenantIndex, nowMs, handler, tenantPollCount);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Decides how many expired deadlines each tenant may poll, before any tenant is polled.  Output is
+     * {@code tenantPollCountArr}.
+     * <p>
+     * Intentional: Each tenant engine re-arms its recurring deadlines at the end of each poll.  If a tenant were polled
+     * twice, a {@link RecurrencePolicy#CATCH_UP} deadline that is many periods behind would fire twice in one poll.
+     * Thus, leftover capacity is shared by counting, not by polling again.
+     * <p>
+     * Time complexity: O(t * r) + cost of each tenant count, where t is number of tenants, and r is number of rounds
+     * for leftover capacity (usually one or two)
+     */
+    private void _share(final long nowMs, final int maxCount, final int firstTenantIndex) {
+
+        final int tenantCount = tenantEngineArr.length;
+        for (int i = 0; i < tenantCount; ++i) {
+            tenantExpiredCountArr[i] = _expiredCount(tenantEngineArr[i], nowMs);
+        }
+        int remainCount = maxCount;
+        // Pass 1: Weighted share.  Intentional: Each share is at least one, so a tiny weight is never starved.
+        for (int i = 0; i < tenantCount; ++i) {
+
+            final int tenantIndex = (firstTenantIndex + i) % tenantCount;
+            final long share = Math.max(1L, (maxCount * (long) tenantWeightArr[tenantIndex]) / totalWeight);
+            final int count = (int) Math.min(Math.min(share, tenantExpiredCountArr[tenantIndex]), remainCount);
+            tenantPollCountArr[tenantIndex] = count;
+            remainCount -= count;
+        }
+        // Pass 2: Work-conserving.  Share leftover equally between tenants that still have expired deadlines, so the
+        // first tenant in this round does not take it all.  A tenant with fewer expired deadlines leaves its unused
+        // share for the next round.
+        while (remainCount > 0) {
+
+            int expiredTenantCount = 0;
+            for (int i = 0; i < tenantCount; ++i) {
+                if (tenantExpiredCountArr[i] > tenantPollCountArr[i]) {
+                    ++expiredTenantCount;
+                }
+            }
+            if (0 == expiredTenantCount) {
+                break;
+            }
+            final int share = Math.max(1, remainCount / expiredTenantCount);
+            for (int i = 0; i < tenantCount && remainCount > 0; ++i) {
+
+                final int tenantIndex = (firstTenantIndex + i) % tenantCount;
+                final int count = Math.min(
+                    Math.min(share, tenantExpiredCountArr[tenantIndex] - tenantPollCountArr[tenantIndex]), remainCount);
+                tenantPollCountArr[tenantIndex] += count;
+                remainCount -= count;
+            }
+        }
+    }
+
+    // @return number of deadlines <= nowMs
+    private static int _expiredCount(final DeadlineEngine engine, final long nowMs) {
+
+        final long nextDeadlineMs = engine.nextDeadlineMs();
+        // Intentional: Cheap check avoids the cost of a count when tenant has no expired deadlines.
+        if (nextDeadlineMs > nowMs) {
+            return 0;
+        }
+        // Intentional: 'nowMs + 1' would overflow.
+        if (Long.MAX_VALUE == nowMs) {
+            final int x = engine.size();
+            return x;
+        }
+        final int x = engine.countBetween(nextDeadlineMs, 1 + nowMs);
+        return x;
+    }
+
+    private int _pollTenant(final int tenantIndex,
+                            final long nowMs,
+                            final Consumer<Long> handler,
+                            final int maxPollCount) {
+
+        final DeadlineEngine engine = tenantEngineArr[tenantIndex];
+        final _TenantHandler tenantHandler = tenantHandlerArr[tenantIndex];
+        tenantHandler.handler = handler;
+        tenantHandler.count = 0;
+        try {
+            engine.poll(nowMs, tenantHandler, maxPollCount);
+        }
+        finally {
+            tenantHandler.handler = null;
+        }
+        return tenantHandler.count;
+    }
+
+    /**
+     * Shares {@code max} between tenants in the same way as {@link #poll(long, Consumer, int)}.
+     * <p>
+     * Time complexity: O(t) + cost of each tenant count and drain, where t is number of tenants
+     */
+    @Override
+    public int drainTo(final long nowMs, final long[] out, final int offset, final int max) {
+
+        DeadlineEngine.checkDrainToArgs(out, offset, max);
+        final int tenantCount = tenantEngineArr.length;
+        final int firstTenantIndex = this.firstTenantIndex;
+        this.firstTenantIndex = (1 + firstTenantIndex) % tenantCount;
+
+        _share(nowMs, max, firstTenantIndex);
+        int count = 0;
+        for (int i = 0; i < tenantCount; ++i) {
+
+            final int tenantIndex = (firstTenantIndex + i) % tenantCount;
+            final int tenantDrainCount = tenantPollCountArr[tenantIndex];
+            if (tenantDrainCount > 0) {
+                count += _drainTenant(tenantIndex, nowMs, out, offset + count, tenantDrainCount);
+            }
+        }
+        return count;
+    }
+
+    private int _drainTenant(final int tenantIndex,
+                             final long nowMs,
+                             final long[] out,
+                             final int offset,
+                             final int max) {
+
+        final DeadlineEngine engine = tenantEngineArr[tenantIndex];
+        final int count = engine.drainTo(nowMs, out, offset, max);
+        for (int i = offset; i < offset + count; ++i) {
+            out[i] = _toRequestId(tenantIndex, out[i]);
+        }
+        return count;
+    }
+
+    // Time complexity: O(t) where t is number of tenants
+    @Override
+    public long nextDeadlineMs() {
+
+        long x = NO_DEADLINE_MS;
+        for (final DeadlineEngine engine : tenantEngineArr) {
+            x = Math.min(x, engine.nextDeadlineMs());
+        }
+        return x;
+    }
+
+    /**
+     * @return the number of registered deadlines for a single tenant
+     */
+    public int sizeForTenant(final int tenantIndex) {
+
+        final int x = _getTenantEngine(tenantIndex).size();
+        return x;
+    }
+
+    // Time complexity: O(t) where t is number of tenants
+    @Override
+    public int size() {
+
+        int x = 0;
+        for (final DeadlineEngine engine : tenantEngineArr) {
+            x += engine.size();
+        }
+        return x;
+    }
+
+    // Time complexity: O(t) + cost of each tenant estimate, where t is number of tenants
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final int tenantCount = tenantEngineArr.length;
+        // This object (5 refs + long + int), its five arrays, and one handler (1 ref + 2 ints) per tenant
+        long x =
+            JvmMemoryLayout.objectBytes(5, Long.BYTES + Integer.BYTES)
+                + 2 * JvmMemoryLayout.referenceArrayBytes(tenantCount)
+                + 3 * JvmMemoryLayout.arrayBytes(tenantCount, Integer.BYTES)
+                + tenantCount * JvmMemoryLayout.objectBytes(1, 2 * Integer.BYTES);
+        for (final DeadlineEngine engine : tenantEngineArr) {
+            x += engine.estimatedRetainedBytes();
+        }
+        return x;
+    }
+
+    // Time complexity: O(t) + cost of each tenant count, where t is number of tenants
+    @Override
+    public int countBetween(final long fromMs, final long toMs) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromMs, toMs);
+        int x = 0;
+        for (final DeadlineEngine engine : tenantEngineArr) {
+            x += engine.countBetween(fromMs, toMs);
+        }
+        return x;
+    }
+
+    // Each tenant engine visits its own deadlines in order, so each run is sorted.
+    private static final class _PendingRun
+    implements PendingDeadlineConsumer {
+
+        private final int tenantIndex;
+        private long[] requestIdArr;
+        private long[] deadlineMsArr;
+        private int count;
+        // Index of next entry to merge
+        private int cursor;
+
+        private _PendingRun(final int tenantIndex, final int capacity) {
+
+            this.tenantIndex = tenantIndex;
+            this.requestIdArr = new long[capacity];
+            this.deadlineMsArr = new long[capacity];
+            this.count = 0;
+            this.cursor = 0;
+        }
+
+        @Override
+        public void accept(final long tenantRequestId, final long deadlineMs) {
+
+            if (count == requestIdArr.length) {
+                requestIdArr = Arrays.copyOf(requestIdArr, Math.max(16, 2 * count));
+                deadlineMsArr = Arrays.copyOf(deadlineMsArr, Math.max(16, 2 * count));
+            }
+            requestIdArr[count] = _toRequestId(tenantIndex, tenantRequestId);
+            deadlineMsArr[count] = deadlineMs;
+            ++count;
+        }
+
+        private long _headDeadlineMs() {
+            return deadlineMsArr[cursor];
+        }
+    }
+
+    /**
+     * Merges the sorted deadlines of each tenant.  Requires O(n) temporary memory.
+     * <p>
+     * Time complexity: O(n log t) for n registered deadlines and t tenants, plus cost of each tenant iteration
+     */
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        // Min-heap of non-empty runs, ordered by head deadline
+        final _PendingRun[] runHeapArr = new _PendingRun[tenantEngineArr.length];
+        int runCount = 0;
+        for (int tenantIndex = 0; tenantIndex < tenantEngineArr.length; ++tenantIndex) {
+
+            final DeadlineEngine engine = tenantEngineArr[tenantIndex];
+            final _PendingRun run = new _PendingRun(tenantIndex, engine.size());
+            engine.forEachPending(run);
+            if (run.count > 0) {
+                _siftUpRun(runHeapArr, runCount, run);
+                ++runCount;
+            }
+        }
+        while (runCount > 0) {
+
+            final _PendingRun run = runHeapArr[0];
+            consumer.accept(run.requestIdArr[run.cursor], run.deadlineMsArr[run.cursor]);
+            ++run.cursor;
+            if (run.cursor == run.count) {
+                --runCount;
+                _siftDownRun(runHeapArr, runCount, runHeapArr[runCount]);
+                runHeapArr[runCount] = null;
+            }
+            else {
+                _siftDownRun(runHeapArr, runCount, run);
+            }
+        }
+    }
+
+    private static void _siftUpRun(final _PendingRun[] runHeapArr, int index, final _PendingRun run) {
+
+        while (index > 0) {
+
+            final int parentIndex = (index - 1) >>> 1;
+            if (runHeapArr[parentIndex]._headDeadlineMs() <= run._headDeadlineMs()) {
+                break;
+            }
+            runHeapArr[index] = runHeapArr[parentIndex];
+            index = parentIndex;
+        }
+        runHeapArr[index] = run;
+    }
+
+    // Intentional: Replaces the root.
+    private static void _siftDownRun(final _PendingRun[] runHeapArr, final int runCount, final _PendingRun run) {
+
+        int index = 0;
+        final int half = runCount >>> 1;
+        while (index < half) {
+
+            int childIndex = 2 * index + 1;
+            if (1 + childIndex < runCount
+                && runHeapArr[1 + childIndex]._headDeadlineMs() < runHeapArr[childIndex]._headDeadlineMs()) {
+
+                ++childIndex;
+            }
+            if (run._headDeadlineMs() <= runHeapArr[childIndex]._headDeadlineMs()) {
+                break;
+            }
+            runHeapArr[index] = runHeapArr[childIndex];
+            index = childIndex;
+        }
+        runHeapArr[index] = run;
+    }
+}
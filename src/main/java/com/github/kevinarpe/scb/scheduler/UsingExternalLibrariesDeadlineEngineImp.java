@@ -1,17 +1,28 @@
 package com.github.kevinarpe.scb.scheduler;
 
+import com.carrotsearch.hppc.LongHashSet;
 import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.carrotsearch.hppc.procedures.LongLongProcedure;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
 import com.google.common.collect.TreeMultimap;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.SortedSet;
 import java.util.function.Consumer;
 
 /**
  * This is an alternative implementation.  Compared to {@link DeadlineEngineImp}, it uses external Java libraries.
+ * <p>
+ * During {@link #poll(long, Consumer, int)}, a handler may cancel or reschedule any request ID, including its own.
+ * Poll copies the request IDs of each deadline before it calls the handler, so the handler never modifies a collection
+ * during iteration.  Recurring deadlines are held by a {@link RecurrenceTable}, and groups by a
+ * {@link DeadlineGroupTable}.
  *
  * @author Kevin Connor ARPE (kevinarpe@gmail.com)
  *
@@ -29,12 +40,22 @@ implements DeadlineEngine {
     // This type is borrowed from Carrot Search Labs HPPC library.  It is a more memory efficient HashMap<Long, Long>
     // that avoids boxing.
     private final LongLongHashMap requestId_To_DeadlineEpochMillis_Map;
+    private final RecurrenceTable recurrenceTable;
+    private final DeadlineGroupTable groupTable;
+    // Intentional: Allocate once.  A method reference that captures 'this' may allocate on each call.
+    private final LongLongProcedure rearmProc;
+    // Copy of the request IDs that poll() is firing.  Boxed, as each is already boxed in the multimap.
+    private Long[] pollRequestIdArr;
 
     public UsingExternalLibrariesDeadlineEngineImp() {
 
         this.nextRequestId = MIN_REQUEST_ID;
         this.deadlineEpochMillis_To_RequestId_Multimap = TreeMultimap.create();
         this.requestId_To_DeadlineEpochMillis_Map = new LongLongHashMap();
+        this.recurrenceTable = new RecurrenceTable();
+        this.groupTable = new DeadlineGroupTable();
+        this.rearmProc = this::_add;
+        this.pollRequestIdArr = new Long[16];
     }
 
     // Time complexity: O(log n) + O(1) = O(log n) -> logarithmic
@@ -45,14 +66,96 @@ implements DeadlineEngine {
 
         final long requestId = nextRequestId;
         ++nextRequestId;
+        _add(requestId, deadlineEpochMillis);
+        _assertSizesMatch();
+        return requestId;
+    }
+
+    // Time complexity: O(log n) + O(1) = O(log n) -> logarithmic
+    private void _add(final long requestId, final long deadlineEpochMillis) {
+
         // Time complexity: O(log n)
         deadlineEpochMillis_To_RequestId_Multimap.put(deadlineEpochMillis, requestId);
         // Time complexity: O(1)
         requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
-        _assertSizesMatch();
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleRecurring(final long firstDeadlineEpochMillis,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        DeadlineEngine.checkScheduleRecurringArgs(periodMillis, policy);
+        final long requestId = schedule(firstDeadlineEpochMillis);
+        recurrenceTable.add(requestId, periodMillis, policy);
+        return requestId;
+    }
+
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long scheduleInGroup(final long deadlineEpochMillis, final long groupKey) {
+
+        final long requestId = schedule(deadlineEpochMillis);
+        groupTable.add(requestId, groupKey);
         return requestId;
     }
 
+    // Time complexity: O(k log n) for k members -- no scan of other deadlines
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        @Nullable
+        final LongHashSet nullableRequestIdSet = groupTable.removeGroup(groupKey);
+        if (null == nullableRequestIdSet) {
+            return 0;
+        }
+        int count = 0;
+        for (final LongCursor cursor : nullableRequestIdSet) {
+            if (cancel(cursor.value)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    // Time complexity: O(k log n) for k deadlines, but only O(log n) for each *distinct* run of equal deadlines
+    @Override
+    public void scheduleAll(final long[] deadlineEpochMillisArr, final long[] outRequestIdArr) {
+
+        if (outRequestIdArr.length < deadlineEpochMillisArr.length) {
+            throw new IllegalArgumentException("Argument 'outRequestIdArr.length' < 'deadlineEpochMillisArr.length': "
+                + outRequestIdArr.length + " < " + deadlineEpochMillisArr.length);
+        }
+        // Intentional: Check all arguments *before* we modify any state.  Thus, a bad argument cannot leave us with a
+        // partially scheduled batch.
+        for (final long deadlineEpochMillis : deadlineEpochMillisArr) {
+            _checkEpochMillis(deadlineEpochMillis, "deadlineEpochMillis");
+        }
+        // When input is sorted, neighbours often share the same deadline.  Reuse the previous (live) view of the
+        // request ID set to avoid another lookup in the tree multimap.
+        @Nullable
+        SortedSet<Long> prevRequestIdSet = null;
+        long prevDeadlineEpochMillis = 0;
+        for (int i = 0; i < deadlineEpochMillisArr.length; ++i) {
+
+            final long deadlineEpochMillis = deadlineEpochMillisArr[i];
+            final long requestId = nextRequestId;
+            ++nextRequestId;
+
+            if (null == prevRequestIdSet || deadlineEpochMillis != prevDeadlineEpochMillis) {
+                // Time complexity: O(log n)
+                prevRequestIdSet = deadlineEpochMillis_To_RequestId_Multimap.get(deadlineEpochMillis);
+                prevDeadlineEpochMillis = deadlineEpochMillis;
+            }
+            prevRequestIdSet.add(requestId);
+            // Time complexity: O(1)
+            requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+            outRequestIdArr[i] = requestId;
+        }
+        _assertSizesMatch();
+    }
+
     private void _checkEpochMillis(final long deadlineEpochMillis, String argName) {
 
         // Intentional: Zero is reserved as a special sentinel value.  When we call
@@ -78,14 +181,81 @@ implements DeadlineEngine {
         // Time complexity: O(1)
         final long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.remove(requestId);
         if (0 == deadlineEpochMillis) {
-            return false;
+            final boolean x = recurrenceTable.cancelPendingRearm(requestId);
+            return x;
+        }
+        recurrenceTable.remove(requestId);
+        groupTable.remove(requestId);
+        // Time complexity: O(log n)
+        deadlineEpochMillis_To_RequestId_Multimap.remove(deadlineEpochMillis, requestId);
+        _assertSizesMatch();
+        return true;
+    }
+
+    // Time complexity: O(1) + O(log n) + O(log n) = O(log n) -> logarithmic, or O(1) if deadline is unchanged
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineEpochMillis) {
+
+        _checkEpochMillis(newDeadlineEpochMillis, "newDeadlineEpochMillis");
+        // Time complexity: O(1)
+        final int index = requestId_To_DeadlineEpochMillis_Map.indexOf(requestId);
+        if (false == requestId_To_DeadlineEpochMillis_Map.indexExists(index)) {
+            if (false == recurrenceTable.takePendingRearm(requestId)) {
+                return false;
+            }
+            _add(requestId, newDeadlineEpochMillis);
+            _assertSizesMatch();
+            return true;
+        }
+        final long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.indexGet(index);
+        // Same bucket?  Nothing to move.
+        if (newDeadlineEpochMillis == deadlineEpochMillis) {
+            return true;
         }
+        // Time complexity: O(1)
+        requestId_To_DeadlineEpochMillis_Map.indexReplace(index, newDeadlineEpochMillis);
         // Time complexity: O(log n)
         deadlineEpochMillis_To_RequestId_Multimap.remove(deadlineEpochMillis, requestId);
+        // Time complexity: O(log n)
+        deadlineEpochMillis_To_RequestId_Multimap.put(newDeadlineEpochMillis, requestId);
         _assertSizesMatch();
         return true;
     }
 
+    // Time complexity: O(k log n) for k request IDs, but only O(log n) for each *distinct* run of equal deadlines
+    @Override
+    public int cancelAll(final long[] requestIdArr) {
+
+        // Intentional: Do not check argument values.  Allow any random 'requestId' to be passed.
+
+        @Nullable
+        SortedSet<Long> prevRequestIdSet = null;
+        long prevDeadlineEpochMillis = 0;
+        int count = 0;
+        for (final long requestId : requestIdArr) {
+
+            // Time complexity: O(1)
+            final long deadlineEpochMillis = requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+            if (0 == deadlineEpochMillis) {
+                if (recurrenceTable.cancelPendingRearm(requestId)) {
+                    ++count;
+                }
+                continue;
+            }
+            recurrenceTable.remove(requestId);
+            groupTable.remove(requestId);
+            if (null == prevRequestIdSet || deadlineEpochMillis != prevDeadlineEpochMillis) {
+                // Time complexity: O(log n)
+                prevRequestIdSet = deadlineEpochMillis_To_RequestId_Multimap.get(deadlineEpochMillis);
+                prevDeadlineEpochMillis = deadlineEpochMillis;
+            }
+            prevRequestIdSet.remove(requestId);
+            ++count;
+        }
+        _assertSizesMatch();
+        return count;
+    }
+
     // Time complexity: O(log n) + O(1) + O(1) = O(log n) -> logarithmic
     @Override
     public int poll(final long nowEpochMillis,
@@ -108,32 +278,189 @@ implements DeadlineEngine {
 
         int remainPollCount = maxPollCount;
         int count = 0;
-BREAK_LABEL:
-        for (final Map.Entry<Long, Collection<Long>> entry : lessEqualDeadlineMap.entrySet()) {
+        // Intentional: If the handler throws, recurring deadlines that already fired must still be re-armed.
+        try {
+            // Intentional: Do not iterate 'lessEqualDeadlineMap.entrySet()'.  When the last request ID is removed from
+            // a collection, the multimap also removes its key, which breaks any iterator over the key set.
+            // Time complexity: O(log n) for each distinct deadline
+            for (Map.Entry<Long, Collection<Long>> entry = lessEqualDeadlineMap.firstEntry();
+                 remainPollCount > 0 && null != entry;
+                 entry = lessEqualDeadlineMap.firstEntry()) {
+
+                final long deadlineEpochMillis = entry.getKey();
+                final Collection<Long> requestIdColl = entry.getValue();
+                final int copyCount = _copyForPoll(requestIdColl, remainPollCount);
+                for (int i = 0; i < copyCount; ++i) {
+
+                    final Long requestId = pollRequestIdArr[i];
+                    pollRequestIdArr[i] = null;
+                    // Cancelled or rescheduled by an earlier handler?  Then skip.
+                    if (deadlineEpochMillis != requestId_To_DeadlineEpochMillis_Map.get(requestId)) {
+                        continue;
+                    }
+                    handler.accept(requestId);
+                    --remainPollCount;
+                    ++count;
+                    // Cancelled or rescheduled by this handler?  Then it was already removed.
+                    if (deadlineEpochMillis != requestId_To_DeadlineEpochMillis_Map.get(requestId)) {
+                        continue;
+                    }
+                    // Time complexity: O(1)
+                    requestIdColl.remove(requestId);
+                    // Time complexity: O(1)
+                    requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+                    groupTable.remove(requestId);
+                    recurrenceTable.deferRearm(requestId, deadlineEpochMillis);
+                }
+            }
+        }
+        finally {
+            recurrenceTable.rearm(nowEpochMillis, rearmProc);
+        }
+        _assertSizesMatch();
+        return count;
+    }
+
+    // Time complexity: O(k) for k copied request IDs
+    private int _copyForPoll(final Collection<Long> requestIdColl, final int maxCount) {
+
+        final int x = Math.min(requestIdColl.size(), maxCount);
+        if (x > pollRequestIdArr.length) {
+            pollRequestIdArr = new Long[Math.max(x, 2 * pollRequestIdArr.length)];
+        }
+        int i = 0;
+        for (final Iterator<Long> requestIdIter = requestIdColl.iterator(); i < x; ++i) {
+            pollRequestIdArr[i] = requestIdIter.next();
+        }
+        return x;
+    }
+
+    // Time complexity: O(log n) for each distinct expired deadline + O(k) for k expired deadlines
+    @Override
+    public int drainTo(final long nowEpochMillis, final long[] outRequestIdArr, final int offset, final int maxCount) {
+
+        _checkEpochMillis(nowEpochMillis, "nowEpochMillis");
+        DeadlineEngine.checkDrainToArgs(outRequestIdArr, offset, maxCount);
+
+        // Intentional: 'inclusive' is required.  See poll().
+        final boolean inclusive = true;
+        final NavigableMap<Long, Collection<Long>> lessEqualDeadlineMap =
+            // Time complexity: O(log n)
+            deadlineEpochMillis_To_RequestId_Multimap.asMap().headMap(nowEpochMillis, inclusive);
+
+        int count = 0;
+        // Intentional: Do not iterate 'lessEqualDeadlineMap.entrySet()'.  See poll().
+        for (Map.Entry<Long, Collection<Long>> entry = lessEqualDeadlineMap.firstEntry();
+             count < maxCount && null != entry;
+             entry = lessEqualDeadlineMap.firstEntry()) {
 
             final Collection<Long> requestIdColl = entry.getValue();
-            for (final Iterator<Long> requestIdIter = requestIdColl.iterator(); requestIdIter.hasNext() ; ) {
+            for (final Iterator<Long> requestIdIter = requestIdColl.iterator();
+                 count < maxCount && requestIdIter.hasNext() ; ) {
 
                 final long requestId = requestIdIter.next();
-                handler.accept(requestId);
+                outRequestIdArr[offset + count] = requestId;
                 // Time complexity: O(1)
                 requestIdIter.remove();
                 // Time complexity: O(1)
                 requestId_To_DeadlineEpochMillis_Map.remove(requestId);
-                --remainPollCount;
+                groupTable.remove(requestId);
+                recurrenceTable.deferRearm(requestId, entry.getKey());
                 ++count;
-                if (0 == remainPollCount) {
-                    break BREAK_LABEL;
-                }
             }
         }
+        // Intentional: Re-arm *after* the loop.  Else, a re-armed deadline may be drained again by this call.
+        recurrenceTable.rearm(nowEpochMillis, rearmProc);
         _assertSizesMatch();
         return count;
     }
 
+    // Time complexity: O(log n) -> logarithmic
+    @Override
+    public long nextDeadlineMs() {
+
+        // Intentional: Unlike TreeMap<Long, HashSet<Long>>, keys of a TreeMultimap never map to an empty collection.
+        if (deadlineEpochMillis_To_RequestId_Multimap.isEmpty()) {
+            return NO_DEADLINE_MS;
+        }
+        // Intentional: Use asMap(), not keySet(), so only one view is cached.  See estimatedRetainedBytes().
+        final long x = deadlineEpochMillis_To_RequestId_Multimap.asMap().firstKey();
+        return x;
+    }
+
     @Override
     public int size() {
-        final int x = deadlineEpochMillis_To_RequestId_Multimap.size();
+        // Intentional: Include recurring deadlines that wait to be re-armed by the current poll.
+        final int x = deadlineEpochMillis_To_RequestId_Multimap.size() + recurrenceTable.pendingRearmCount();
+        return x;
+    }
+
+    // Time complexity: O(log n + d) for d distinct deadlines in range
+    @Override
+    public int countBetween(final long fromEpochMillis, final long toEpochMillis) {
+
+        DeadlineEngine.checkCountBetweenArgs(fromEpochMillis, toEpochMillis);
+        int x = 0;
+        for (final Collection<Long> requestIdColl
+            : deadlineEpochMillis_To_RequestId_Multimap.asMap()
+                .subMap(fromEpochMillis, true, toEpochMillis, false).values()) {
+
+            x += requestIdColl.size();
+        }
+        return x;
+    }
+
+    // Time complexity: O(n) -> linear
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+
+        Objects.requireNonNull(consumer);
+        // Intentional: Keys of a TreeMultimap are sorted, so entries are in deadline order.
+        // Intentional: Use asMap(), not entries(), so no more views are cached.  See estimatedRetainedBytes().
+        for (final Map.Entry<Long, Collection<Long>> entry
+            : deadlineEpochMillis_To_RequestId_Multimap.asMap().entrySet()) {
+
+            final long deadlineEpochMillis = entry.getKey();
+            for (final Long requestId : entry.getValue()) {
+                consumer.accept(requestId, deadlineEpochMillis);
+            }
+        }
+    }
+
+    /**
+     * Views of the multimap are created on first use, then cached.  This class only uses {@code asMap()}, and the
+     * views created to iterate it, so they are included.  However, each request ID set also caches a small key set
+     * view after its first iteration, e.g., by {@link #forEachPending(PendingDeadlineConsumer)}, or by a poll that
+     * stops in the middle of a set.  These are not included.
+     * <p>
+     * Time complexity: O(d) for d distinct deadlines
+     */
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final long boxedLongBytes = JvmMemoryLayout.boxedLongBytes();
+        // This object (6 refs + long) and the wrapper for 'rearmProc'
+        long x = JvmMemoryLayout.objectBytes(6, Long.BYTES) + JvmMemoryLayout.objectBytes(1, 0);
+
+        // Multimap (8 refs + int), then its views: asMap() (10 refs), plus its values and entry set, and the entry set
+        // of the tree map (1 ref each)
+        x += JvmMemoryLayout.objectBytes(8, Integer.BYTES)
+            + JvmMemoryLayout.objectBytes(10, 0) + 3 * JvmMemoryLayout.objectBytes(1, 0);
+        // Each distinct deadline is boxed once as tree map key, and has a tree set (1 ref) of boxed request IDs.
+        int distinctCount = 0;
+        for (final Collection<Long> requestIdColl : deadlineEpochMillis_To_RequestId_Multimap.asMap().values()) {
+
+            ++distinctCount;
+            x += JvmMemoryLayout.objectBytes(1, 0) + JvmMemoryLayout.treeMapBytes(requestIdColl.size());
+        }
+        x += JvmMemoryLayout.treeMapBytes(distinctCount) + distinctCount * boxedLongBytes
+            + deadlineEpochMillis_To_RequestId_Multimap.size() * boxedLongBytes;
+
+        x += JvmMemoryLayout.longLongHashMapBytes(requestId_To_DeadlineEpochMillis_Map)
+            + recurrenceTable.estimatedRetainedBytes()
+            + groupTable.estimatedRetainedBytes()
+            // Intentional: Poll clears each slot after use, so boxed request IDs are not retained.
+            + JvmMemoryLayout.referenceArrayBytes(pollRequestIdArr.length);
         return x;
     }
 }
@@ -0,0 +1,61 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.cache.Cache;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * This is a decorator that records each {@link #get(Object)} to a {@link TraceWriter}.  Keys are encoded as
+ * {@code long}, e.g., an ID or a hash code, so traces stay compact.  Replay a trace with
+ * {@link TraceReplayer#replay(TraceReader, java.util.function.Function, java.util.function.LongFunction,
+ * java.util.function.Function, double)}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see RecordingDeadlineEngineImp
+ */
+@ThreadSafe
+public final class RecordingCacheImp<TKey, TValue>
+implements Cache<TKey, TValue> {
+
+    private final Cache<TKey, TValue> delegate;
+    private final ToLongFunction<? super TKey> keyEncoder;
+    private final TraceWriter traceWriter;
+
+    /**
+     * @param keyEncoder
+     *        equal keys must have equal codes.  Ideally, unequal keys have unequal codes, else the hit rate during
+     *        replay will be too high.
+     *
+     * @param traceWriter
+     *        not closed by this class
+     */
+    public RecordingCacheImp(Cache<TKey, TValue> delegate,
+                             ToLongFunction<? super TKey> keyEncoder,
+                             TraceWriter traceWriter) {
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.keyEncoder = Objects.requireNonNull(keyEncoder);
+        this.traceWriter = Objects.requireNonNull(traceWriter);
+    }
+
+    // Intentional: Record before get, so a get that throws is also recorded.
+    @Override
+    public TValue get(TKey key) {
+
+        Objects.requireNonNull(key);
+        traceWriter.writeCacheGet(keyEncoder.applyAsLong(key));
+        final TValue value = delegate.get(key);
+        return value;
+    }
+
+    // Intentional: The trace writer is not included.  Its buffer is sized by the caller.
+    @Override
+    public long estimatedRetainedBytes() {
+
+        final long x = delegate.estimatedRetainedBytes();
+        return x;
+    }
+}
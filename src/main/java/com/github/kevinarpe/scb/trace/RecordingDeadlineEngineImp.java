@@ -0,0 +1,171 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.scheduler.DeadlineEngine;
+import com.github.kevinarpe.scb.scheduler.RecurrencePolicy;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * NotThreadSafe?  Same as the delegate.
+ * <p>
+ * This is a decorator that records each operation, and its result, to a {@link TraceWriter}.  Read-only operations,
+ * e.g., {@link #nextDeadlineMs()}, {@link #size()}, and {@link #countBetween(long, long)}, are not recorded.  Replay
+ * a trace with {@link TraceReplayer#replay(TraceReader, DeadlineEngine, double)}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see RecordingCacheImp
+ */
+public final class RecordingDeadlineEngineImp
+implements DeadlineEngine {
+
+    private final DeadlineEngine delegate;
+    private final TraceWriter traceWriter;
+
+    /**
+     * @param traceWriter
+     *        not closed by this class
+     */
+    public RecordingDeadlineEngineImp(DeadlineEngine delegate, TraceWriter traceWriter) {
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.traceWriter = Objects.requireNonNull(traceWriter);
+    }
+
+    @Override
+    public long schedule(final long deadlineMs) {
+
+        final long requestId = delegate.schedule(deadlineMs);
+        traceWriter.writeSchedule(deadlineMs, 0, requestId);
+        return requestId;
+    }
+
+    @Override
+    public long schedule(final long deadlineMs, final long slackMs) {
+
+        final long requestId = delegate.schedule(deadlineMs, slackMs);
+        traceWriter.writeSchedule(deadlineMs, slackMs, requestId);
+        return requestId;
+    }
+
+    @Override
+    public long scheduleRecurring(final long firstDeadlineMs,
+                                  final long periodMillis,
+                                  RecurrencePolicy policy) {
+
+        final long requestId = delegate.scheduleRecurring(firstDeadlineMs, periodMillis, policy);
+        traceWriter.writeScheduleRecurring(firstDeadlineMs, periodMillis, policy, requestId);
+        return requestId;
+    }
+
+    @Override
+    public void scheduleAll(final long[] deadlinesMs, final long[] outRequestIds) {
+
+        delegate.scheduleAll(deadlinesMs, outRequestIds);
+        for (int i = 0; i < deadlinesMs.length; ++i) {
+            traceWriter.writeSchedule(deadlinesMs[i], 0, outRequestIds[i]);
+        }
+    }
+
+    @Override
+    public boolean cancel(final long requestId) {
+
+        final boolean isCancelled = delegate.cancel(requestId);
+        traceWriter.writeCancel(requestId, isCancelled);
+        return isCancelled;
+    }
+
+    // Intentional: Cancel one at a time, so the result for each request ID is recorded.
+    @Override
+    public int cancelAll(final long[] requestIds) {
+
+        int count = 0;
+        for (final long requestId : requestIds) {
+            if (cancel(requestId)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean reschedule(final long requestId, final long newDeadlineMs) {
+
+        final boolean isRescheduled = delegate.reschedule(requestId, newDeadlineMs);
+        traceWriter.writeReschedule(requestId, newDeadlineMs, isRescheduled);
+        return isRescheduled;
+    }
+
+    @Override
+    public long scheduleInGroup(final long deadlineMs, final long groupKey) {
+
+        final long requestId = delegate.scheduleInGroup(deadlineMs, groupKey);
+        traceWriter.writeScheduleInGroup(deadlineMs, groupKey, requestId);
+        return requestId;
+    }
+
+    @Override
+    public int cancelGroup(final long groupKey) {
+
+        final int count = delegate.cancelGroup(groupKey);
+        traceWriter.writeCancelGroup(groupKey, count);
+        return count;
+    }
+
+    // Intentional: If handler throws, the poll is not recorded.  The expired deadline is not removed, so it will be
+    // recorded by the next poll.
+    @Override
+    public int poll(final long nowMs,
+                    final Consumer<Long> handler,
+                    final int maxPoll) {
+
+        final int count = delegate.poll(nowMs, handler, maxPoll);
+        traceWriter.writePoll(nowMs, maxPoll, count);
+        return count;
+    }
+
+    // Intentional: Recorded as a poll.  Replay will call poll(), which must fire the same count.
+    @Override
+    public int drainTo(final long nowMs, final long[] out, final int offset, final int max) {
+
+        final int count = delegate.drainTo(nowMs, out, offset, max);
+        traceWriter.writePoll(nowMs, max, count);
+        return count;
+    }
+
+    @Override
+    public long nextDeadlineMs() {
+        final long x = delegate.nextDeadlineMs();
+        return x;
+    }
+
+    @Override
+    public int size() {
+        final int x = delegate.size();
+        return x;
+    }
+
+    @Override
+    public int countBetween(final long fromMs, final long toMs) {
+        final int x = delegate.countBetween(fromMs, toMs);
+        return x;
+    }
+
+    @Override
+    public void countHistogram(final long fromMs, final long bucketWidthMs, final int[] outCounts) {
+        delegate.countHistogram(fromMs, bucketWidthMs, outCounts);
+    }
+
+    @Override
+    public void forEachPending(final PendingDeadlineConsumer consumer) {
+        delegate.forEachPending(consumer);
+    }
+
+    // Intentional: The trace writer is not included.  It is owned by the caller.
+    @Override
+    public long estimatedRetainedBytes() {
+        final long x = delegate.estimatedRetainedBytes();
+        return x;
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.kevinarpe.scb.trace;
+
+/**
+ * Binary trace file format shared by {@link TraceWriter} and {@link TraceReader}.
+ * <p>
+ * Header: [magic: 4 bytes][version: 4 bytes][startEpochMillis: 8 bytes]
+ * <p>
+ * Each record: [type: 1 byte][varint: nanoseconds since previous record][fields for type...]
+ * <p>
+ * To keep records compact, all numbers are variable-length (7 bits per byte).  Deadlines and {@code nowMs} are stored
+ * as a signed delta from the previous epoch millis in the trace.  Request IDs are stored as a signed delta from the
+ * previous request ID.  Signed values use zig-zag encoding, so small negative values are also short.  A typical
+ * record is 4 to 8 bytes.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+final class TraceFormat {
+
+    // "SCBT"
+    static final int MAGIC = 0x53434254;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    // Largest varint for a long: ceil(64 / 7)
+    static final int MAX_VARINT_SIZE_BYTES = 10;
+
+    private TraceFormat() {
+        // Empty
+    }
+
+    static long zigZagEncode(final long value) {
+
+        final long x = (value << 1) ^ (value >> 63);
+        return x;
+    }
+
+    static long zigZagDecode(final long value) {
+
+        final long x = (value >>> 1) ^ -(value & 1);
+        return x;
+    }
+}
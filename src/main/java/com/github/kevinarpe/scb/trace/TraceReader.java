@@ -0,0 +1,200 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.scheduler.RecurrencePolicy;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * NotThreadSafe?  Correct.
+ * <p>
+ * Reads a trace written by {@link TraceWriter}, one record at a time.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see TraceReplayer
+ */
+@NotThreadSafe
+public final class TraceReader
+implements Closeable {
+
+    // Intentional: values() allocates a new array for each call.
+    private static final RecurrencePolicy[] RECURRENCE_POLICY_ARR = RecurrencePolicy.values();
+
+    private final InputStream inputStream;
+    private final long startEpochMillis;
+    private long timestampNanos;
+    private long prevEpochMillis;
+    private long prevRequestId;
+
+    public TraceReader(Path filePath)
+    throws IOException {
+
+        this(Files.newInputStream(filePath));
+    }
+
+    /**
+     * @param inputStream
+     *        closed by {@link #close()}
+     *
+     * @throws IOException
+     *         if header is invalid
+     */
+    public TraceReader(InputStream inputStream)
+    throws IOException {
+
+        this.inputStream = new BufferedInputStream(Objects.requireNonNull(inputStream), 64 * 1024);
+        final byte[] headerArr = this.inputStream.readNBytes(TraceFormat.HEADER_SIZE_BYTES);
+        final ByteBuffer header = ByteBuffer.wrap(headerArr);
+        if (headerArr.length != TraceFormat.HEADER_SIZE_BYTES
+            || TraceFormat.MAGIC != header.getInt()
+            || TraceFormat.VERSION != header.getInt()) {
+
+            throw new IOException("Invalid trace header");
+        }
+        this.startEpochMillis = header.getLong();
+        this.timestampNanos = 0;
+        this.prevEpochMillis = startEpochMillis;
+        this.prevRequestId = 0;
+    }
+
+    /**
+     * @return wall clock time when the trace was started
+     */
+    public long startEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param record
+     *        output: all fields are overwritten
+     *
+     * @return false at end of trace
+     *
+     * @throws IOException
+     *         if trace is truncated in the middle of a record, or record type is unknown
+     */
+    public boolean next(final TraceRecord record)
+    throws IOException {
+
+        final int type = inputStream.read();
+        if (-1 == type) {
+            return false;
+        }
+        timestampNanos += _readVarLong();
+        record.type = (byte) type;
+        record.timestampNanos = timestampNanos;
+        record.requestId = 0;
+        record.epochMillis = 0;
+        record.slackMs = 0;
+        record.maxPoll = 0;
+        record.count = 0;
+        record.key = 0;
+        record.periodMillis = 0;
+        record.nullableRecurrencePolicy = null;
+        switch (record.type) {
+            case TraceRecord.TYPE_SCHEDULE: {
+                record.epochMillis = _readEpochMillis();
+                record.slackMs = _readVarLong();
+                record.requestId = _readRequestId();
+                break;
+            }
+            case TraceRecord.TYPE_CANCEL: {
+                record.requestId = _readRequestId();
+                record.count = (int) _readVarLong();
+                break;
+            }
+            case TraceRecord.TYPE_RESCHEDULE: {
+                record.requestId = _readRequestId();
+                record.epochMillis = _readEpochMillis();
+                record.count = (int) _readVarLong();
+                break;
+            }
+            case TraceRecord.TYPE_POLL: {
+                record.epochMillis = _readEpochMillis();
+                record.maxPoll = (int) _readVarLong();
+                record.count = (int) _readVarLong();
+                break;
+            }
+            case TraceRecord.TYPE_CACHE_GET: {
+                record.key = TraceFormat.zigZagDecode(_readVarLong());
+                break;
+            }
+            case TraceRecord.TYPE_SCHEDULE_RECURRING: {
+                record.epochMillis = _readEpochMillis();
+                record.periodMillis = _readVarLong();
+                final long policyOrdinal = _readVarLong();
+                if (policyOrdinal >= RECURRENCE_POLICY_ARR.length) {
+                    throw new IOException("Unknown recurrence policy ordinal: " + policyOrdinal);
+                }
+                record.nullableRecurrencePolicy = RECURRENCE_POLICY_ARR[(int) policyOrdinal];
+                record.requestId = _readRequestId();
+                break;
+            }
+            case TraceRecord.TYPE_SCHEDULE_IN_GROUP: {
+                record.epochMillis = _readEpochMillis();
+                record.key = TraceFormat.zigZagDecode(_readVarLong());
+                record.requestId = _readRequestId();
+                break;
+            }
+            case TraceRecord.TYPE_CANCEL_GROUP: {
+                record.key = TraceFormat.zigZagDecode(_readVarLong());
+                record.count = (int) _readVarLong();
+                break;
+            }
+            default: {
+                throw new IOException("Unknown trace record type: " + type);
+            }
+        }
+        return true;
+    }
+
+    private long _readEpochMillis()
+    throws IOException {
+
+        prevEpochMillis += TraceFormat.zigZagDecode(_readVarLong());
+        return prevEpochMillis;
+    }
+
+    private long _readRequestId()
+    throws IOException {
+
+        prevRequestId += TraceFormat.zigZagDecode(_readVarLong());
+        return prevRequestId;
+    }
+
+    private long _readVarLong()
+    throws IOException {
+
+        long x = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+
+            final int b = inputStream.read();
+            if (-1 == b) {
+                throw new EOFException("Trace is truncated");
+            }
+            x |= ((long) (b & 0x7F)) << shift;
+            if (0 == (b & 0x80)) {
+                return x;
+            }
+        }
+        throw new IOException("Invalid varint in trace");
+    }
+
+    @Override
+    public void close()
+    throws IOException {
+
+        inputStream.close();
+    }
+}
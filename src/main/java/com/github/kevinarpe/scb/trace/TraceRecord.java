@@ -0,0 +1,105 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.scheduler.RecurrencePolicy;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * NotThreadSafe?  Correct.  This is a mutable holder, so {@link TraceReader#next(TraceRecord)} can read a whole trace
+ * without allocation.
+ * <p>
+ * A single operation from a trace.  Which fields are valid depends upon {@link #type()}:
+ * <ul>
+ *     <li>{@link #TYPE_SCHEDULE}: {@link #epochMillis()} is deadline, {@link #slackMs()} is slack (zero if none),
+ *     {@link #requestId()} is result</li>
+ *     <li>{@link #TYPE_CANCEL}: {@link #requestId()}, {@link #count()} is result (one if cancelled, else zero)</li>
+ *     <li>{@link #TYPE_RESCHEDULE}: {@link #requestId()}, {@link #epochMillis()} is new deadline, {@link #count()} is
+ *     result (one if rescheduled, else zero)</li>
+ *     <li>{@link #TYPE_POLL}: {@link #epochMillis()} is {@code nowMs}, {@link #maxPoll()}, {@link #count()} is
+ *     result</li>
+ *     <li>{@link #TYPE_CACHE_GET}: {@link #key()} is key encoded as {@code long}</li>
+ *     <li>{@link #TYPE_SCHEDULE_RECURRING}: {@link #epochMillis()} is first deadline, {@link #periodMillis()},
+ *     {@link #nullableRecurrencePolicy()}, {@link #requestId()} is result</li>
+ *     <li>{@link #TYPE_SCHEDULE_IN_GROUP}: {@link #epochMillis()} is deadline, {@link #key()} is group key,
+ *     {@link #requestId()} is result</li>
+ *     <li>{@link #TYPE_CANCEL_GROUP}: {@link #key()} is group key, {@link #count()} is result</li>
+ * </ul>
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see TraceWriter
+ * @see TraceReader
+ */
+@NotThreadSafe
+public final class TraceRecord {
+
+    public static final byte TYPE_SCHEDULE = 1;
+    public static final byte TYPE_CANCEL = 2;
+    public static final byte TYPE_RESCHEDULE = 3;
+    public static final byte TYPE_POLL = 4;
+    public static final byte TYPE_CACHE_GET = 5;
+    public static final byte TYPE_SCHEDULE_RECURRING = 6;
+    public static final byte TYPE_SCHEDULE_IN_GROUP = 7;
+    public static final byte TYPE_CANCEL_GROUP = 8;
+
+    // package-private for TraceReader
+    byte type;
+    long timestampNanos;
+    long requestId;
+    long epochMillis;
+    long slackMs;
+    int maxPoll;
+    int count;
+    long key;
+    long periodMillis;
+    @Nullable
+    RecurrencePolicy nullableRecurrencePolicy;
+
+    public byte type() {
+        return type;
+    }
+
+    /**
+     * @return nanoseconds since the trace was started
+     */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    public long requestId() {
+        return requestId;
+    }
+
+    public long epochMillis() {
+        return epochMillis;
+    }
+
+    public long slackMs() {
+        return slackMs;
+    }
+
+    public int maxPoll() {
+        return maxPoll;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    public long periodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * @return null unless type is {@link #TYPE_SCHEDULE_RECURRING}
+     */
+    @Nullable
+    public RecurrencePolicy nullableRecurrencePolicy() {
+        return nullableRecurrencePolicy;
+    }
+}
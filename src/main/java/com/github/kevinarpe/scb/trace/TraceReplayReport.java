@@ -0,0 +1,81 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.metrics.LogLinearHistogram;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * Immutable result of {@link TraceReplayer}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+@Immutable
+public final class TraceReplayReport {
+
+    /**
+     * Number of records replayed.  Records for another kind of target are skipped and not counted, e.g., cache records
+     * when replaying into a deadline engine.
+     */
+    public final long recordCount;
+    public final long elapsedNanos;
+    /**
+     * Latency of each replayed operation in nanoseconds
+     */
+    public final LogLinearHistogram.Snapshot latencyNanosHistogram;
+    public final long firedCount;
+    /**
+     * Number of operations where the result from replay does not match the result in the trace, e.g., cancel returns
+     * false instead of true, or poll returns a different count.  If zero, the replay target behaves the same as the
+     * recorded target.
+     */
+    public final long mismatchCount;
+    public final long cacheGetCount;
+    public final long cacheMissCount;
+
+    public TraceReplayReport(long recordCount,
+                             long elapsedNanos,
+                             LogLinearHistogram.Snapshot latencyNanosHistogram,
+                             long firedCount,
+                             long mismatchCount,
+                             long cacheGetCount,
+                             long cacheMissCount) {
+
+        this.recordCount = recordCount;
+        this.elapsedNanos = elapsedNanos;
+        this.latencyNanosHistogram = Objects.requireNonNull(latencyNanosHistogram);
+        this.firedCount = firedCount;
+        this.mismatchCount = mismatchCount;
+        this.cacheGetCount = cacheGetCount;
+        this.cacheMissCount = cacheMissCount;
+    }
+
+    /**
+     * @return zero if elapsed time is zero
+     */
+    public double opsPerSecond() {
+
+        final double x = (0 == elapsedNanos) ? 0.0 : (recordCount * 1_000_000_000.0) / elapsedNanos;
+        return x;
+    }
+
+    /**
+     * @return from 0.0 to 1.0, or zero if no cache gets were replayed
+     */
+    public double cacheHitRate() {
+
+        final double x = (0 == cacheGetCount) ? 0.0 : (cacheGetCount - cacheMissCount) / (double) cacheGetCount;
+        return x;
+    }
+
+    @Override
+    public String toString() {
+
+        final String x = String.format(
+            "records=%d, elapsedNanos=%d, opsPerSecond=%.1f, fired=%d, mismatches=%d, cacheGets=%d, cacheHitRate=%.4f"
+                + ", latencyNanos=[%s]",
+            recordCount, elapsedNanos, opsPerSecond(), firedCount, mismatchCount, cacheGetCount, cacheHitRate(),
+            latencyNanosHistogram);
+        return x;
+    }
+}
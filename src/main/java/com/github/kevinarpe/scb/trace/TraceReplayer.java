@@ -0,0 +1,265 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.github.kevinarpe.scb.cache.Cache;
+import com.github.kevinarpe.scb.metrics.LogLinearHistogram;
+import com.github.kevinarpe.scb.scheduler.DeadlineEngine;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Feeds a trace from {@link RecordingDeadlineEngineImp} or {@link RecordingCacheImp} into any implementation, then
+ * reports throughput, latency, and cache hit rate.  Replay is single-threaded, even if the trace was recorded by many
+ * threads.
+ * <p>
+ * Speed factor:
+ * <ul>
+ *     <li>0.0: As fast as possible -- ignore timestamps</li>
+ *     <li>1.0: Original speed</li>
+ *     <li>10.0: Ten times faster than original speed</li>
+ * </ul>
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public final class TraceReplayer {
+
+    // Intentional: No engine returns a negative request ID, so this is never found.
+    private static final long UNKNOWN_REQUEST_ID = -1;
+    // Shorter waits spin, as park is not precise enough.
+    private static final long MIN_PARK_NANOS = 50_000;
+
+    private TraceReplayer() {
+        // Empty
+    }
+
+    /**
+     * Request IDs from the trace are mapped to request IDs from {@code engine}, so any implementation may be used.
+     *
+     * @param engine
+     *        usually empty
+     */
+    public static TraceReplayReport replay(final TraceReader traceReader,
+                                           final DeadlineEngine engine,
+                                           final double speedFactor)
+    throws IOException {
+
+        Objects.requireNonNull(traceReader);
+        Objects.requireNonNull(engine);
+        _checkSpeedFactor(speedFactor);
+
+        final LongLongHashMap tracedRequestId_To_RequestId_Map = new LongLongHashMap();
+        final LongLongHashMap requestId_To_TracedRequestId_Map = new LongLongHashMap();
+        // Intentional: A recurring request ID is re-armed after it fires, so its mapping is kept until it is cancelled.
+        final LongHashSet recurringRequestIdSet = new LongHashSet();
+        // Intentional: Members that fired or were cancelled are not removed.  Their mappings are already gone.
+        final LongObjectHashMap<LongArrayList> groupKey_To_RequestIdList_Map = new LongObjectHashMap<>();
+        final long[] firedCountRef = {0};
+        final Consumer<Long> handler = (Long requestId) -> {
+            if (false == recurringRequestIdSet.contains(requestId)) {
+                final long tracedRequestId = requestId_To_TracedRequestId_Map.remove(requestId);
+                tracedRequestId_To_RequestId_Map.remove(tracedRequestId);
+            }
+            ++firedCountRef[0];
+        };
+        final LogLinearHistogram latencyNanosHistogram = new LogLinearHistogram();
+        final TraceRecord record = new TraceRecord();
+        long recordCount = 0;
+        long mismatchCount = 0;
+        final long startNanoTime = System.nanoTime();
+        while (traceReader.next(record)) {
+
+            if (TraceRecord.TYPE_CACHE_GET == record.type()) {
+                continue;
+            }
+            _awaitTimestamp(startNanoTime, record.timestampNanos(), speedFactor);
+            final long beginNanoTime = System.nanoTime();
+            final boolean isMatch;
+            switch (record.type()) {
+                case TraceRecord.TYPE_SCHEDULE: {
+                    final long requestId =
+                        (0 == record.slackMs())
+                            ? engine.schedule(record.epochMillis())
+                            : engine.schedule(record.epochMillis(), record.slackMs());
+                    tracedRequestId_To_RequestId_Map.put(record.requestId(), requestId);
+                    requestId_To_TracedRequestId_Map.put(requestId, record.requestId());
+                    isMatch = true;
+                    break;
+                }
+                case TraceRecord.TYPE_SCHEDULE_RECURRING: {
+                    final long requestId =
+                        engine.scheduleRecurring(
+                            record.epochMillis(), record.periodMillis(), record.nullableRecurrencePolicy());
+                    tracedRequestId_To_RequestId_Map.put(record.requestId(), requestId);
+                    requestId_To_TracedRequestId_Map.put(requestId, record.requestId());
+                    recurringRequestIdSet.add(requestId);
+                    isMatch = true;
+                    break;
+                }
+                case TraceRecord.TYPE_SCHEDULE_IN_GROUP: {
+                    final long requestId = engine.scheduleInGroup(record.epochMillis(), record.key());
+                    tracedRequestId_To_RequestId_Map.put(record.requestId(), requestId);
+                    requestId_To_TracedRequestId_Map.put(requestId, record.requestId());
+                    LongArrayList requestIdList = groupKey_To_RequestIdList_Map.get(record.key());
+                    if (null == requestIdList) {
+                        requestIdList = new LongArrayList();
+                        groupKey_To_RequestIdList_Map.put(record.key(), requestIdList);
+                    }
+                    requestIdList.add(requestId);
+                    isMatch = true;
+                    break;
+                }
+                case TraceRecord.TYPE_CANCEL_GROUP: {
+                    final int count = engine.cancelGroup(record.key());
+                    @Nullable
+                    final LongArrayList nullableRequestIdList = groupKey_To_RequestIdList_Map.remove(record.key());
+                    if (null != nullableRequestIdList) {
+                        for (final LongCursor cursor : nullableRequestIdList) {
+
+                            final int index = requestId_To_TracedRequestId_Map.indexOf(cursor.value);
+                            if (requestId_To_TracedRequestId_Map.indexExists(index)) {
+                                tracedRequestId_To_RequestId_Map.remove(
+                                    requestId_To_TracedRequestId_Map.indexGet(index));
+                                requestId_To_TracedRequestId_Map.remove(cursor.value);
+                            }
+                        }
+                    }
+                    isMatch = (count == record.count());
+                    break;
+                }
+                case TraceRecord.TYPE_CANCEL: {
+                    final long requestId =
+                        tracedRequestId_To_RequestId_Map.getOrDefault(record.requestId(), UNKNOWN_REQUEST_ID);
+                    final boolean isCancelled = engine.cancel(requestId);
+                    if (isCancelled) {
+                        tracedRequestId_To_RequestId_Map.remove(record.requestId());
+                        requestId_To_TracedRequestId_Map.remove(requestId);
+                        recurringRequestIdSet.remove(requestId);
+                    }
+                    isMatch = (isCancelled == (1 == record.count()));
+                    break;
+                }
+                case TraceRecord.TYPE_RESCHEDULE: {
+                    final long requestId =
+                        tracedRequestId_To_RequestId_Map.getOrDefault(record.requestId(), UNKNOWN_REQUEST_ID);
+                    final boolean isRescheduled = engine.reschedule(requestId, record.epochMillis());
+                    isMatch = (isRescheduled == (1 == record.count()));
+                    break;
+                }
+                case TraceRecord.TYPE_POLL: {
+                    final int count = engine.poll(record.epochMillis(), handler, record.maxPoll());
+                    isMatch = (count == record.count());
+                    break;
+                }
+                default: {
+                    throw new IllegalStateException("Unexpected record type: " + record.type());
+                }
+            }
+            latencyNanosHistogram.record(System.nanoTime() - beginNanoTime);
+            ++recordCount;
+            if (false == isMatch) {
+                ++mismatchCount;
+            }
+        }
+        final long elapsedNanos = System.nanoTime() - startNanoTime;
+        final TraceReplayReport x =
+            new TraceReplayReport(recordCount, elapsedNanos, latencyNanosHistogram.snapshot(), firedCountRef[0],
+                mismatchCount, 0, 0);
+        return x;
+    }
+
+    /**
+     * A miss is counted each time the cache calls {@code valueLoader}.
+     *
+     * @param cacheFactory
+     *        creates a new, empty cache from a value loader, e.g., {@code ConcurrentHashMapCacheImp::new}
+     *
+     * @param keyDecoder
+     *        converts each key code from the trace to a key
+     *
+     * @param valueLoader
+     *        loads value for a key on cache miss
+     */
+    public static <TKey, TValue>
+    TraceReplayReport replay(final TraceReader traceReader,
+                             final Function<Function<TKey, TValue>, ? extends Cache<TKey, TValue>> cacheFactory,
+                             final LongFunction<? extends TKey> keyDecoder,
+                             final Function<TKey, TValue> valueLoader,
+                             final double speedFactor)
+    throws IOException {
+
+        Objects.requireNonNull(traceReader);
+        Objects.requireNonNull(keyDecoder);
+        Objects.requireNonNull(valueLoader);
+        _checkSpeedFactor(speedFactor);
+
+        final LongAdder missCount = new LongAdder();
+        final Cache<TKey, TValue> cache =
+            Objects.requireNonNull(
+                cacheFactory.apply((TKey key) -> {
+                    missCount.increment();
+                    final TValue value = valueLoader.apply(key);
+                    return value;
+                }));
+        final LogLinearHistogram latencyNanosHistogram = new LogLinearHistogram();
+        final TraceRecord record = new TraceRecord();
+        long recordCount = 0;
+        final long startNanoTime = System.nanoTime();
+        while (traceReader.next(record)) {
+
+            if (TraceRecord.TYPE_CACHE_GET != record.type()) {
+                continue;
+            }
+            final TKey key = keyDecoder.apply(record.key());
+            _awaitTimestamp(startNanoTime, record.timestampNanos(), speedFactor);
+            final long beginNanoTime = System.nanoTime();
+            cache.get(key);
+            latencyNanosHistogram.record(System.nanoTime() - beginNanoTime);
+            ++recordCount;
+        }
+        final long elapsedNanos = System.nanoTime() - startNanoTime;
+        final TraceReplayReport x =
+            new TraceReplayReport(recordCount, elapsedNanos, latencyNanosHistogram.snapshot(), 0, 0, recordCount,
+                missCount.sum());
+        return x;
+    }
+
+    private static void _checkSpeedFactor(final double speedFactor) {
+
+        // Intentional: Negated compare also rejects NaN.
+        if (false == (speedFactor >= 0.0) || Double.isInfinite(speedFactor)) {
+            throw new IllegalArgumentException("Argument 'speedFactor' must be finite and >= 0.0: " + speedFactor);
+        }
+    }
+
+    private static void _awaitTimestamp(final long startNanoTime,
+                                        final long timestampNanos,
+                                        final double speedFactor) {
+
+        if (0.0 == speedFactor) {
+            return;
+        }
+        final long targetNanoTime = startNanoTime + (long) (timestampNanos / speedFactor);
+        for (long remainNanos = targetNanoTime - System.nanoTime();
+             remainNanos > 0;
+             remainNanos = targetNanoTime - System.nanoTime()) {
+
+            if (remainNanos >= MIN_PARK_NANOS) {
+                LockSupport.parkNanos(remainNanos - MIN_PARK_NANOS / 2);
+            }
+            else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.scheduler.RecurrencePolicy;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * ThreadSafe?  Yes.  Each record is written while holding a lock, so records from many threads are never mixed, and
+ * timestamps are always in order.
+ * <p>
+ * Writes a compact binary trace of operations.  Records are buffered in memory, then written in large chunks.  Usually,
+ * this class is not used directly.  Instead, wrap an engine or cache with {@link RecordingDeadlineEngineImp} or
+ * {@link RecordingCacheImp}.
+ * <p>
+ * See {@link TraceFormat} for the file format.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see TraceReader
+ * @see TraceReplayer
+ */
+@ThreadSafe
+public final class TraceWriter
+implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE_BYTES = 64 * 1024;
+
+    private final Object lock;
+    @GuardedBy("lock")
+    private final OutputStream outputStream;
+    @GuardedBy("lock")
+    private final byte[] bufferArr;
+    @GuardedBy("lock")
+    private int bufferSize;
+    @GuardedBy("lock")
+    private long prevNanoTime;
+    @GuardedBy("lock")
+    private long prevEpochMillis;
+    @GuardedBy("lock")
+    private long prevRequestId;
+    @GuardedBy("lock")
+    private boolean isClosed;
+
+    /**
+     * Creates a new trace file, or replaces an existing file.
+     */
+    public TraceWriter(Path filePath)
+    throws IOException {
+
+        this(Files.newOutputStream(filePath));
+    }
+
+    /**
+     * @param outputStream
+     *        closed by {@link #close()}
+     */
+    public TraceWriter(OutputStream outputStream)
+    throws IOException {
+
+        this.lock = new Object();
+        this.outputStream = Objects.requireNonNull(outputStream);
+        this.bufferArr = new byte[DEFAULT_BUFFER_SIZE_BYTES];
+        this.bufferSize = 0;
+        this.prevNanoTime = System.nanoTime();
+        this.prevEpochMillis = System.currentTimeMillis();
+        this.prevRequestId = 0;
+        this.isClosed = false;
+
+        final ByteBuffer header = ByteBuffer.allocate(TraceFormat.HEADER_SIZE_BYTES);
+        header.putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION).putLong(prevEpochMillis);
+        outputStream.write(header.array());
+    }
+
+    // package-private for recording decorators
+    void writeSchedule(final long deadlineEpochMillis, final long slackMs, final long requestId) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_SCHEDULE);
+            _putEpochMillis(deadlineEpochMillis);
+            _putVarLong(slackMs);
+            _putRequestId(requestId);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeScheduleRecurring(final long firstDeadlineEpochMillis,
+                                final long periodMillis,
+                                final RecurrencePolicy policy,
+                                final long requestId) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_SCHEDULE_RECURRING);
+            _putEpochMillis(firstDeadlineEpochMillis);
+            _putVarLong(periodMillis);
+            _putVarLong(policy.ordinal());
+            _putRequestId(requestId);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeScheduleInGroup(final long deadlineEpochMillis, final long groupKey, final long requestId) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_SCHEDULE_IN_GROUP);
+            _putEpochMillis(deadlineEpochMillis);
+            _putVarLong(TraceFormat.zigZagEncode(groupKey));
+            _putRequestId(requestId);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeCancelGroup(final long groupKey, final int count) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_CANCEL_GROUP);
+            _putVarLong(TraceFormat.zigZagEncode(groupKey));
+            _putVarLong(count);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeCancel(final long requestId, final boolean isCancelled) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_CANCEL);
+            _putRequestId(requestId);
+            _putVarLong(isCancelled ? 1 : 0);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeReschedule(final long requestId, final long newDeadlineEpochMillis, final boolean isRescheduled) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_RESCHEDULE);
+            _putRequestId(requestId);
+            _putEpochMillis(newDeadlineEpochMillis);
+            _putVarLong(isRescheduled ? 1 : 0);
+        }
+    }
+
+    // package-private for recording decorators
+    void writePoll(final long nowEpochMillis, final int maxPollCount, final int count) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_POLL);
+            _putEpochMillis(nowEpochMillis);
+            _putVarLong(maxPollCount);
+            _putVarLong(count);
+        }
+    }
+
+    // package-private for recording decorators
+    void writeCacheGet(final long key) {
+
+        synchronized (lock) {
+            _beginRecord(TraceRecord.TYPE_CACHE_GET);
+            _putVarLong(TraceFormat.zigZagEncode(key));
+        }
+    }
+
+    @GuardedBy("lock")
+    private void _beginRecord(final byte type) {
+
+        if (isClosed) {
+            throw new IllegalStateException("Trace is closed");
+        }
+        // Intentional: Make sure the largest possible record will fit, so each field does not need to check.
+        // Largest: TYPE_SCHEDULE_RECURRING has a timestamp and four fields.
+        if (bufferArr.length - bufferSize < 1 + 5 * TraceFormat.MAX_VARINT_SIZE_BYTES) {
+            _flushBuffer();
+        }
+        final long nanoTime = System.nanoTime();
+        bufferArr[bufferSize] = type;
+        ++bufferSize;
+        _putVarLong(Math.max(0, nanoTime - prevNanoTime));
+        prevNanoTime = nanoTime;
+    }
+
+    @GuardedBy("lock")
+    private void _putEpochMillis(final long epochMillis) {
+
+        _putVarLong(TraceFormat.zigZagEncode(epochMillis - prevEpochMillis));
+        prevEpochMillis = epochMillis;
+    }
+
+    @GuardedBy("lock")
+    private void _putRequestId(final long requestId) {
+
+        _putVarLong(TraceFormat.zigZagEncode(requestId - prevRequestId));
+        prevRequestId = requestId;
+    }
+
+    @GuardedBy("lock")
+    private void _putVarLong(long value) {
+
+        while ((value & ~0x7FL) != 0) {
+            bufferArr[bufferSize] = (byte) ((value & 0x7F) | 0x80);
+            ++bufferSize;
+            value >>>= 7;
+        }
+        bufferArr[bufferSize] = (byte) value;
+        ++bufferSize;
+    }
+
+    @GuardedBy("lock")
+    private void _flushBuffer() {
+
+        try {
+            outputStream.write(bufferArr, 0, bufferSize);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to write trace", e);
+        }
+        bufferSize = 0;
+    }
+
+    /**
+     * Writes all buffered records.
+     */
+    public void flush()
+    throws IOException {
+
+        synchronized (lock) {
+            if (false == isClosed) {
+                outputStream.write(bufferArr, 0, bufferSize);
+                bufferSize = 0;
+                outputStream.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered records, then closes the output stream.  Safe to call more than once.
+     */
+    @Override
+    public void close()
+    throws IOException {
+
+        synchronized (lock) {
+            if (isClosed) {
+                return;
+            }
+            try {
+                outputStream.write(bufferArr, 0, bufferSize);
+                bufferSize = 0;
+            }
+            finally {
+                isClosed = true;
+                outputStream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.kevinarpe.scb;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures bytes allocated and nanoseconds per operation on the current thread for hot-path regression tests.
+ * <p>
+ * Allocation is counted exactly by {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, so budgets
+ * can be tight.  Latency is the median of many batch averages, so budgets must be coarse: they catch an operation that
+ * becomes much slower, e.g., linear instead of logarithmic, not a few percent.
+ * <p>
+ * Tests that use this class are in TestNG group {@value #GROUP}, which is excluded by default.
+ * Run: mvn -P regression test
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public final class HotPathMeter {
+
+    public static final String GROUP = "regression";
+
+    /**
+     * Measurement noise is well below one byte per operation.  A single boxed value costs at least 16 bytes, so this
+     * tolerance still catches it.
+     */
+    public static final double ALLOCATION_TOLERANCE_BYTES = 1.0;
+
+    // Intentional: Enough calls for C2 to compile and apply escape analysis before measurement.
+    public static final int DEFAULT_WARMUP_COUNT = 200_000;
+    public static final int DEFAULT_MEASURE_COUNT = 200_000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private HotPathMeter() {
+        // Empty
+    }
+
+    /**
+     * @return true if this JVM counts bytes allocated per thread
+     */
+    public static boolean isAllocationMeasurementSupported() {
+
+        final boolean x =
+            THREAD_MX_BEAN.isThreadAllocatedMemorySupported() && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled();
+        return x;
+    }
+
+    /**
+     * @param operation
+     *        called with indices {@code 0 .. warmupCount + measureCount - 1}
+     *
+     * @return average bytes allocated per call of {@code operation} after warmup
+     */
+    public static double allocatedBytesPerOperation(final int warmupCount,
+                                                    final int measureCount,
+                                                    final IntConsumer operation) {
+        _checkPositive(measureCount, "measureCount");
+        for (int i = 0; i < warmupCount; ++i) {
+            operation.accept(i);
+        }
+        final long threadId = Thread.currentThread().getId();
+        // Intentional: The meter may allocate itself, e.g., an array inside the MXBean.  Subtract that cost.
+        final long meterBytes =
+            -THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) + THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+
+        final long beforeBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        for (int i = warmupCount; i < warmupCount + measureCount; ++i) {
+            operation.accept(i);
+        }
+        final long afterBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        final double x = (double) Math.max(0L, afterBytes - beforeBytes - meterBytes) / measureCount;
+        return x;
+    }
+
+    /**
+     * @see #allocatedBytesPerOperation(int, int, IntConsumer)
+     */
+    public static double allocatedBytesPerOperation(final IntConsumer operation) {
+
+        final double x = allocatedBytesPerOperation(DEFAULT_WARMUP_COUNT, DEFAULT_MEASURE_COUNT, operation);
+        return x;
+    }
+
+    /**
+     * @param operation
+     *        called with indices {@code 0 .. warmupCount + batchCount * batchSize - 1}
+     *
+     * @return median of batch averages in nanoseconds per call of {@code operation} after warmup
+     */
+    public static double nanosPerOperation(final int warmupCount,
+                                           final int batchCount,
+                                           final int batchSize,
+                                           final IntConsumer operation) {
+        _checkPositive(batchCount, "batchCount");
+        _checkPositive(batchSize, "batchSize");
+        for (int i = 0; i < warmupCount; ++i) {
+            operation.accept(i);
+        }
+        final double[] batchNanosPerOpArr = new double[batchCount];
+        int index = warmupCount;
+        for (int batch = 0; batch < batchCount; ++batch) {
+
+            final long startNanos = System.nanoTime();
+            for (int i = 0; i < batchSize; ++i, ++index) {
+                operation.accept(index);
+            }
+            batchNanosPerOpArr[batch] = (double) (System.nanoTime() - startNanos) / batchSize;
+        }
+        // Intentional: Median, so a GC pause or a context switch in one batch does not fail the test.
+        Arrays.sort(batchNanosPerOpArr);
+        final double x = batchNanosPerOpArr[batchCount / 2];
+        return x;
+    }
+
+    /**
+     * @see #nanosPerOperation(int, int, int, IntConsumer)
+     */
+    public static double nanosPerOperation(final IntConsumer operation) {
+
+        final double x = nanosPerOperation(DEFAULT_WARMUP_COUNT, 21, 10_000, operation);
+        return x;
+    }
+
+    private static void _checkPositive(final int value, final String argName) {
+
+        if (value <= 0) {
+            throw new IllegalArgumentException("Argument '" + argName + "' must be > 0: " + value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.kevinarpe.scb.cache;
+
+import com.github.kevinarpe.scb.HotPathMeter;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fails when a hot path in a {@link Cache} allocates more, or runs much slower, than its budget.
+ * <p>
+ * Allocation budgets exclude keys and values, which are created by the caller.  Latency budgets are at least 10x
+ * normal on a laptop, so only large regressions fail.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see HotPathMeter
+ */
+@Test(groups = HotPathMeter.GROUP)
+public class CacheHotPathRegressionTest {
+
+    private static final String VALUE = "value";
+    private static final Function<Long, String> GET_FUNC = key -> VALUE;
+    private static final int HIT_KEY_COUNT = 1024;
+
+    public enum CacheType {
+
+        // Miss: One LinkedHashMap.Entry (40 bytes), plus table growth, amortized over all inserts
+        CACHE_IMP(() -> new CacheImp<>(GET_FUNC), 0, 64, 500, 1_000),
+        // Miss: One ConcurrentHashMap.Node (32 bytes), plus table growth, which copies more than HashMap
+        CONCURRENT_HASH_MAP(() -> new ConcurrentHashMapCacheImp<>(GET_FUNC), 0, 88, 500, 1_000),
+        LINKED_HASH_MAP(() -> new LinkedHashMapCacheImp<>(GET_FUNC), 0, 64, 500, 1_000),
+        LINKED_HASH_MAP_2(() -> new LinkedHashMapCacheImp2<>(GET_FUNC), 0, 64, 500, 1_000),
+        PROBABLY_SLOWER(() -> new ProbablySlowerCacheImp<>(GET_FUNC), 0, 64, 500, 1_000),
+        // Hit: From the hot set.  Miss: One ConcurrentHashMap.Node, two small arrays to encode, a new String to decode,
+        // and one hot set entry (about 200 bytes)
+        COMPRESSED_VALUE(() -> new CompressedValueCacheImp<>(new CompressingCacheCodec<>(StringCacheCodec.INSTANCE),
+            HIT_KEY_COUNT, GET_FUNC), 0, 224, 500, 2_000),
+        ;
+
+        private final Supplier<Cache<Long, String>> factory;
+        // Budgets per call of Cache.get()
+        public final double hitBytesBudget;
+        public final double missBytesBudget;
+        public final double hitNanosBudget;
+        public final double missNanosBudget;
+
+        CacheType(Supplier<Cache<Long, String>> factory,
+                  double hitBytesBudget,
+                  double missBytesBudget,
+                  double hitNanosBudget,
+                  double missNanosBudget) {
+
+            this.factory = factory;
+            this.hitBytesBudget = hitBytesBudget;
+            this.missBytesBudget = missBytesBudget;
+            this.hitNanosBudget = hitNanosBudget;
+            this.missNanosBudget = missNanosBudget;
+        }
+
+        public Cache<Long, String> newCache() {
+            final Cache<Long, String> x = factory.get();
+            return x;
+        }
+    }
+
+    private Long[] missKeyArr;
+
+    @BeforeClass
+    public void beforeClass() {
+
+        if (false == HotPathMeter.isAllocationMeasurementSupported()) {
+            throw new SkipException("Per-thread allocation is not measured by this JVM");
+        }
+        // Intentional: Keys are created before measurement, so they are not counted.
+        missKeyArr = new Long[HotPathMeter.DEFAULT_WARMUP_COUNT + HotPathMeter.DEFAULT_MEASURE_COUNT];
+        for (int i = 0; i < missKeyArr.length; ++i) {
+            missKeyArr[i] = (long) i;
+        }
+    }
+
+    @Test
+    public void passWhenGetHitIsWithinBudget() {
+
+        for (final CacheType cacheType : CacheType.values()) {
+
+            final Cache<Long, String> cache = cacheType.newCache();
+            for (int i = 0; i < HIT_KEY_COUNT; ++i) {
+                cache.get(missKeyArr[i]);
+            }
+            final double bytesPerOp =
+                HotPathMeter.allocatedBytesPerOperation(i -> cache.get(missKeyArr[i & (HIT_KEY_COUNT - 1)]));
+            final double nanosPerOp =
+                HotPathMeter.nanosPerOperation(i -> cache.get(missKeyArr[i & (HIT_KEY_COUNT - 1)]));
+            _assertWithinBudget(cacheType + ": get() hit", bytesPerOp, cacheType.hitBytesBudget, nanosPerOp,
+                cacheType.hitNanosBudget);
+        }
+    }
+
+    @Test
+    public void passWhenGetMissIsWithinBudget() {
+
+        for (final CacheType cacheType : CacheType.values()) {
+
+            final Cache<Long, String> cache = cacheType.newCache();
+            final double bytesPerOp = HotPathMeter.allocatedBytesPerOperation(i -> cache.get(missKeyArr[i]));
+
+            // Intentional: New cache, so every key is a miss again.
+            final Cache<Long, String> cache2 = cacheType.newCache();
+            final int warmupCount = HotPathMeter.DEFAULT_WARMUP_COUNT;
+            final double nanosPerOp =
+                HotPathMeter.nanosPerOperation(warmupCount, 21, (missKeyArr.length - warmupCount) / 21,
+                    i -> cache2.get(missKeyArr[i]));
+            _assertWithinBudget(cacheType + ": get() miss", bytesPerOp, cacheType.missBytesBudget, nanosPerOp,
+                cacheType.missNanosBudget);
+        }
+    }
+
+    private static void _assertWithinBudget(final String description,
+                                            final double bytesPerOp,
+                                            final double bytesBudget,
+                                            final double nanosPerOp,
+                                            final double nanosBudget) {
+
+        Assert.assertTrue(bytesPerOp <= bytesBudget + HotPathMeter.ALLOCATION_TOLERANCE_BYTES,
+            description + ": bytes per operation: " + bytesPerOp + " > budget: " + bytesBudget);
+        Assert.assertTrue(nanosPerOp <= nanosBudget,
+            description + ": nanoseconds per operation: " + nanosPerOp + " > budget: " + nanosBudget);
+    }
+}
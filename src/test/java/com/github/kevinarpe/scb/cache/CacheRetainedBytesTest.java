@@ -0,0 +1,67 @@
+package com.github.kevinarpe.scb.cache;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Estimates are checked against JOL (Java Object Layout), which reads the actual layout from the running JVM.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class CacheRetainedBytesTest {
+
+    private static final String VALUE = "value";
+
+    private static final class _GetFunc
+    implements Function<Long, String> {
+
+        @Override
+        public String apply(Long key) {
+            return VALUE;
+        }
+    }
+
+    private static final _GetFunc GET_FUNC = new _GetFunc();
+
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJol() {
+
+        for (final int size : new int[]{0, 1, 13, 10_000}) {
+
+            final List<Cache<Long, String>> cacheList =
+                List.of(new CacheImp<>(GET_FUNC),
+                    new ConcurrentHashMapCacheImp<>(GET_FUNC),
+                    new LinkedHashMapCacheImp<>(GET_FUNC),
+                    new LinkedHashMapCacheImp2<>(GET_FUNC),
+                    new ProbablySlowerCacheImp<>(GET_FUNC));
+
+            for (final Cache<Long, String> cache : cacheList) {
+
+                for (int i = 0; i < size; ++i) {
+                    // Intentional: Keys are not cached by Long.valueOf(), so each key is a distinct object.
+                    cache.get(Long.valueOf(1_000_000 + i));
+                }
+                Assert.assertEquals(cache.estimatedRetainedBytes(), _retainedBytes(cache, size),
+                    cache.getClass().getSimpleName() + ": size: " + size);
+            }
+        }
+    }
+
+    // Keys, values, and objects owned by the caller are excluded, as Cache.estimatedRetainedBytes().
+    private static long _retainedBytes(final Cache<Long, String> cache, final int size) {
+
+        final long keyBytes = size * JvmMemoryLayout.boxedLongBytes();
+        final long valueBytes = (0 == size) ? 0 : GraphLayout.parseInstance(VALUE).totalSize();
+        final long getFuncBytes = GraphLayout.parseInstance(GET_FUNC).totalSize();
+        // Intentional: Enum constants are shared.
+        final long isFairLockBytes =
+            (cache instanceof ProbablySlowerCacheImp) ? GraphLayout.parseInstance(IsFairLock.JAVA_DEFAULT).totalSize() : 0;
+        final long x = GraphLayout.parseInstance(cache).totalSize() - keyBytes - valueBytes - getFuncBytes - isFairLockBytes;
+        return x;
+    }
+}
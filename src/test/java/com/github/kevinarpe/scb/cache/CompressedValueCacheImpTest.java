@@ -0,0 +1,121 @@
+package com.github.kevinarpe.scb.cache;
+
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class CompressedValueCacheImpTest {
+
+    private static final int KEY_COUNT = 100;
+    private static final String VALUE = LzCompressorTest.newJson(200);
+
+    private static final class _GetFunc
+    implements Function<Long, String> {
+
+        private final AtomicInteger loadCount = new AtomicInteger(0);
+
+        @Override
+        public String apply(Long key) {
+            loadCount.incrementAndGet();
+            return VALUE;
+        }
+    }
+
+    private static CompressedValueCacheImp<Long, String> _newCache(final int hotSetCapacity, final _GetFunc getFunc) {
+
+        final CompressedValueCacheImp<Long, String> x =
+            new CompressedValueCacheImp<>(new CompressingCacheCodec<>(StringCacheCodec.INSTANCE), hotSetCapacity,
+                getFunc);
+        return x;
+    }
+
+    @Test
+    public void passWhenGetLoadsOnce() {
+
+        for (final int hotSetCapacity : new int[]{0, 1, 10, 1000}) {
+
+            final _GetFunc getFunc = new _GetFunc();
+            final CompressedValueCacheImp<Long, String> classUnderTest = _newCache(hotSetCapacity, getFunc);
+            for (int k = 0; k < 3; ++k) {
+                for (long key = 0; key < KEY_COUNT; ++key) {
+                    Assert.assertEquals(classUnderTest.get(key), VALUE);
+                }
+            }
+            Assert.assertEquals(getFunc.loadCount.get(), KEY_COUNT);
+        }
+    }
+
+    @Test
+    public void passWhenHotHitReturnsSameInstance() {
+
+        final CompressedValueCacheImp<Long, String> classUnderTest = _newCache(2, new _GetFunc());
+        final String value = classUnderTest.get(1L);
+        Assert.assertSame(classUnderTest.get(1L), value);
+        classUnderTest.get(2L);
+        classUnderTest.get(3L);
+        // Intentional: Key 1 was evicted from the hot set, so it is decoded again.
+        final String value2 = classUnderTest.get(1L);
+        Assert.assertNotSame(value2, value);
+        Assert.assertEquals(value2, value);
+    }
+
+    @Test
+    public void passWhenRetainedBytesIsMuchLessThanValues() {
+
+        final CompressedValueCacheImp<Long, String> classUnderTest = _newCache(0, new _GetFunc());
+        for (long key = 0; key < KEY_COUNT; ++key) {
+            classUnderTest.get(key);
+        }
+        final long valueBytes = KEY_COUNT * GraphLayout.parseInstance(VALUE).totalSize();
+        Assert.assertTrue(classUnderTest.estimatedRetainedBytes() * 4 < valueBytes,
+            "Retained: " + classUnderTest.estimatedRetainedBytes() + ", values: " + valueBytes);
+    }
+
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJol() {
+
+        for (final int hotSetCapacity : new int[]{0, 1, 10, 1000}) {
+            for (final int size : new int[]{0, 1, 13, 1000}) {
+
+                final _GetFunc getFunc = new _GetFunc();
+                final CompressedValueCacheImp<Long, String> classUnderTest = _newCache(hotSetCapacity, getFunc);
+                for (int i = 0; i < size; ++i) {
+                    // Intentional: Keys are not cached by Long.valueOf(), so each key is a distinct object.
+                    classUnderTest.get(Long.valueOf(1_000_000 + i));
+                }
+                // Keys, decoded values in the hot set, the codecs, and 'getFunc' are excluded.
+                final long hotValueBytes =
+                    Math.min(size, hotSetCapacity) * GraphLayout.parseInstance(VALUE).totalSize();
+                final long expected = GraphLayout.parseInstance(classUnderTest).totalSize()
+                    - size * JvmMemoryLayout.boxedLongBytes()
+                    - hotValueBytes
+                    - GraphLayout.parseInstance(getFunc).totalSize()
+                    - GraphLayout.parseInstance(StringCacheCodec.INSTANCE).totalSize()
+                    - JvmMemoryLayout.objectBytes(1, Integer.BYTES);
+                Assert.assertEquals(classUnderTest.estimatedRetainedBytes(), expected,
+                    "hotSetCapacity: " + hotSetCapacity + ", size: " + size);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenHotSetCapacityIsNegative() {
+
+        _newCache(-1, new _GetFunc());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void failWhenValueIsNull() {
+
+        final CompressedValueCacheImp<Long, String> classUnderTest =
+            new CompressedValueCacheImp<>(StringCacheCodec.INSTANCE, 0, key -> null);
+        classUnderTest.get(1L);
+    }
+}
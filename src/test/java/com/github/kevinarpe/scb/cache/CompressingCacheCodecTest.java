@@ -0,0 +1,92 @@
+package com.github.kevinarpe.scb.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class CompressingCacheCodecTest {
+
+    private CompressingCacheCodec<String> classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new CompressingCacheCodec<>(StringCacheCodec.INSTANCE);
+    }
+
+    private void _assertRoundTrip(final String value) {
+
+        final byte[] byteArr = classUnderTest.encode(value);
+        Assert.assertEquals(classUnderTest.decode(byteArr, 0, byteArr.length), value);
+
+        // Intentional: Decode from the middle of a larger array.
+        final byte[] paddedByteArr = new byte[3 + byteArr.length + 5];
+        System.arraycopy(byteArr, 0, paddedByteArr, 3, byteArr.length);
+        Assert.assertEquals(classUnderTest.decode(paddedByteArr, 3, byteArr.length), value);
+    }
+
+    @Test
+    public void passWhenSmallValueIsNotCompressed() {
+
+        final String value = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+        Assert.assertTrue(value.length() < classUnderTest.minCompressBytes());
+        final byte[] byteArr = classUnderTest.encode(value);
+        Assert.assertFalse(CompressingCacheCodec.isCompressed(byteArr));
+        Assert.assertEquals(byteArr.length, 1 + value.length());
+        _assertRoundTrip(value);
+        _assertRoundTrip("");
+    }
+
+    @Test
+    public void passWhenLargeValueIsCompressed() {
+
+        final String value = LzCompressorTest.newJson(1000);
+        final byte[] byteArr = classUnderTest.encode(value);
+        Assert.assertTrue(CompressingCacheCodec.isCompressed(byteArr));
+        Assert.assertTrue(byteArr.length * 4 < value.length(),
+            "Encoded: " + byteArr.length + ", raw: " + value.length());
+        _assertRoundTrip(value);
+    }
+
+    @Test
+    public void passWhenValueDoesNotShrink() {
+
+        final Random random = new Random(12345);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            sb.append((char) ('!' + random.nextInt(90)));
+        }
+        final String value = sb.toString();
+        final byte[] byteArr = classUnderTest.encode(value);
+        Assert.assertFalse(CompressingCacheCodec.isCompressed(byteArr));
+        Assert.assertEquals(byteArr.length, 1 + value.length());
+        _assertRoundTrip(value);
+    }
+
+    @Test
+    public void passWhenMinCompressBytesIsZero() {
+
+        classUnderTest = new CompressingCacheCodec<>(StringCacheCodec.INSTANCE, 0);
+        _assertRoundTrip("");
+        _assertRoundTrip("abcabcabcabcabcabcabcabcabcabcabcabcabc");
+        Assert.assertTrue(CompressingCacheCodec.isCompressed(
+            classUnderTest.encode("abcabcabcabcabcabcabcabcabcabcabcabcabc")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenFlagIsUnknown() {
+
+        classUnderTest.decode(new byte[]{7, 'a'}, 0, 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenMinCompressBytesIsNegative() {
+
+        new CompressingCacheCodec<>(StringCacheCodec.INSTANCE, -1);
+    }
+}
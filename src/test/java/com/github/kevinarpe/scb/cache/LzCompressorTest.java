@@ -0,0 +1,120 @@
+package com.github.kevinarpe.scb.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class LzCompressorTest {
+
+    // package-private for testing
+    static String newJson(final int recordCount) {
+
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < recordCount; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i)
+                .append(",\"name\":\"instrument-").append(i % 97)
+                .append("\",\"currency\":\"").append((0 == i % 3) ? "USD" : "EUR")
+                .append("\",\"price\":").append(100 + (i * 7) % 13).append(".25")
+                .append(",\"isActive\":").append(0 == i % 2)
+                .append('}');
+        }
+        final String x = sb.append(']').toString();
+        return x;
+    }
+
+    private static void _assertRoundTrip(final byte[] byteArr, final int offset, final int length) {
+
+        final byte[] compressedByteArr = LzCompressor.compress(byteArr, offset, length);
+        Assert.assertTrue(compressedByteArr.length <= LzCompressor.maxCompressedLength(length));
+        final byte[] decompressedByteArr =
+            LzCompressor.decompress(compressedByteArr, 0, compressedByteArr.length, length);
+        Assert.assertEquals(decompressedByteArr, Arrays.copyOfRange(byteArr, offset, offset + length));
+    }
+
+    @Test
+    public void passWhenRoundTrip() {
+
+        final Random random = new Random(12345);
+        // Intentional: Include lengths near 15 and 15 + 255, where extra length bytes begin.
+        for (final int length : new int[]{0, 1, 3, 4, 5, 14, 15, 16, 100, 269, 270, 271, 1000, 70_000, 200_000}) {
+
+            final byte[] randomByteArr = new byte[length];
+            random.nextBytes(randomByteArr);
+            _assertRoundTrip(randomByteArr, 0, length);
+
+            // Intentional: Small alphabet, so there are many short matches.
+            final byte[] smallAlphabetByteArr = new byte[length];
+            for (int i = 0; i < length; ++i) {
+                smallAlphabetByteArr[i] = (byte) ('a' + random.nextInt(4));
+            }
+            _assertRoundTrip(smallAlphabetByteArr, 0, length);
+
+            // Intentional: Runs of one byte, so matches overlap output.
+            final byte[] zeroByteArr = new byte[length];
+            _assertRoundTrip(zeroByteArr, 0, length);
+        }
+    }
+
+    @Test
+    public void passWhenRoundTripWithOffset() {
+
+        final byte[] byteArr = newJson(100).getBytes(StandardCharsets.UTF_8);
+        _assertRoundTrip(byteArr, 17, byteArr.length - 17 - 29);
+    }
+
+    @Test
+    public void passWhenJsonCompresses() {
+
+        final byte[] byteArr = newJson(1000).getBytes(StandardCharsets.UTF_8);
+        final byte[] compressedByteArr = LzCompressor.compress(byteArr, 0, byteArr.length);
+        Assert.assertTrue(compressedByteArr.length * 4 < byteArr.length,
+            "Compressed: " + compressedByteArr.length + ", raw: " + byteArr.length);
+    }
+
+    @Test
+    public void passWhenDeterministic() {
+
+        final byte[] byteArr = newJson(100).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(LzCompressor.compress(byteArr, 0, byteArr.length),
+            LzCompressor.compress(byteArr.clone(), 0, byteArr.length));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenDecompressedLengthIsWrong() {
+
+        final byte[] byteArr = newJson(100).getBytes(StandardCharsets.UTF_8);
+        final byte[] compressedByteArr = LzCompressor.compress(byteArr, 0, byteArr.length);
+        LzCompressor.decompress(compressedByteArr, 0, compressedByteArr.length, 1 + byteArr.length);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenMatchOffsetIsZero() {
+
+        // Token: zero literals, match length four, then offset zero
+        final byte[] compressedByteArr = new byte[]{0, 0, 0};
+        LzCompressor.decompress(compressedByteArr, 0, compressedByteArr.length, 4);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenLiteralsAreTruncated() {
+
+        final byte[] byteArr = newJson(100).getBytes(StandardCharsets.UTF_8);
+        final byte[] compressedByteArr = LzCompressor.compress(byteArr, 0, byteArr.length);
+        LzCompressor.decompress(compressedByteArr, 0, compressedByteArr.length - 1, byteArr.length);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void failWhenOutOfBounds() {
+
+        LzCompressor.compress(new byte[10], 5, 6);
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.kevinarpe.scb.cache;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class SharedMemoryCacheImpTest {
+
+    private static final int KEY_COUNT = 2000;
+
+    private Path dirPath;
+    private Path filePath;
+
+    @BeforeMethod
+    public void beforeEachTestMethod()
+    throws IOException {
+
+        dirPath = Files.createTempDirectory(getClass().getSimpleName());
+        filePath = dirPath.resolve("cache.bin");
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod() {
+
+        final File[] fileArr = dirPath.toFile().listFiles();
+        if (null != fileArr) {
+            for (final File file : fileArr) {
+                file.delete();
+            }
+        }
+        dirPath.toFile().delete();
+    }
+
+    private static String _value(final Long key) {
+
+        final String x = "value-" + key;
+        return x;
+    }
+
+    private static SharedMemoryCacheImp<Long, String> _newCache(final Path filePath, final AtomicInteger loadCount)
+    throws IOException {
+
+        final SharedMemoryCacheImp<Long, String> x =
+            new SharedMemoryCacheImp<>(filePath, 2 * KEY_COUNT, 1024 * 1024,
+                LongCacheCodec.INSTANCE, StringCacheCodec.INSTANCE,
+                (Long key) -> {
+                    loadCount.incrementAndGet();
+                    return _value(key);
+                });
+        return x;
+    }
+
+    @Test
+    public void passWhenGetLoadsOnce()
+    throws IOException {
+
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest = _newCache(filePath, loadCount)) {
+
+            for (int k = 0; k < 3; ++k) {
+                for (long key = 0; key < KEY_COUNT; ++key) {
+                    Assert.assertEquals(classUnderTest.get(key), _value(key));
+                }
+            }
+            Assert.assertEquals(loadCount.get(), KEY_COUNT);
+            Assert.assertEquals(classUnderTest.entryCount(), KEY_COUNT);
+        }
+    }
+
+    @Test
+    public void passWhenFileIsSharedAndReopened()
+    throws IOException {
+
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        final AtomicInteger loadCount2 = new AtomicInteger(0);
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest = _newCache(filePath, loadCount);
+             final SharedMemoryCacheImp<Long, String> classUnderTest2 = _newCache(filePath, loadCount2)) {
+
+            for (long key = 0; key < KEY_COUNT; ++key) {
+                Assert.assertEquals(classUnderTest.get(key), _value(key));
+                Assert.assertEquals(classUnderTest2.get(key), _value(key));
+            }
+            Assert.assertEquals(loadCount.get(), KEY_COUNT);
+            Assert.assertEquals(loadCount2.get(), 0);
+        }
+        final AtomicInteger loadCount3 = new AtomicInteger(0);
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest3 = _newCache(filePath, loadCount3)) {
+
+            Assert.assertEquals(classUnderTest3.entryCount(), KEY_COUNT);
+            for (long key = 0; key < KEY_COUNT; ++key) {
+                Assert.assertEquals(classUnderTest3.get(key), _value(key));
+            }
+            Assert.assertEquals(loadCount3.get(), 0);
+        }
+    }
+
+    /**
+     * Entry point for the child process in {@link #passWhenTwoProcessesLoadEachKeyOnce()}.  Prints its load count.
+     */
+    public static void main(String[] argArr)
+    throws IOException {
+
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        try (final SharedMemoryCacheImp<Long, String> cache = _newCache(Paths.get(argArr[0]), loadCount)) {
+
+            for (long key = 0; key < KEY_COUNT; ++key) {
+                if (false == _value(key).equals(cache.get(key))) {
+                    throw new IllegalStateException("Unexpected value for key: " + key);
+                }
+            }
+        }
+        System.out.println(loadCount.get());
+    }
+
+    @Test
+    public void passWhenTwoProcessesLoadEachKeyOnce()
+    throws Exception {
+
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest = _newCache(filePath, loadCount)) {
+
+            final Path javaPath = Paths.get(System.getProperty("java.home"), "bin", "java");
+            final Process process =
+                new ProcessBuilder(javaPath.toString(), "-cp", System.getProperty("java.class.path"),
+                    getClass().getName(), filePath.toString())
+                    .redirectErrorStream(true)
+                    .start();
+
+            // Intentional: Both processes load the same keys at the same time.
+            for (long key = 0; key < KEY_COUNT; ++key) {
+                Assert.assertEquals(classUnderTest.get(key), _value(key));
+            }
+            Assert.assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+            final String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            Assert.assertEquals(process.exitValue(), 0, output);
+            final int childLoadCount = Integer.parseInt(output);
+            Assert.assertEquals(loadCount.get() + childLoadCount, KEY_COUNT);
+            Assert.assertEquals(classUnderTest.entryCount(), KEY_COUNT);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failWhenFull()
+    throws IOException {
+
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest =
+                 new SharedMemoryCacheImp<>(filePath, 8, 64, LongCacheCodec.INSTANCE, StringCacheCodec.INSTANCE,
+                     SharedMemoryCacheImpTest::_value)) {
+
+            for (long key = 0; key < KEY_COUNT; ++key) {
+                classUnderTest.get(key);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void failWhenNotCacheFile()
+    throws IOException {
+
+        Files.write(filePath, "not a cache file, but long enough to have a header ......................".getBytes());
+        _newCache(filePath, new AtomicInteger(0));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failWhenClosed()
+    throws IOException {
+
+        final SharedMemoryCacheImp<Long, String> classUnderTest = _newCache(filePath, new AtomicInteger(0));
+        classUnderTest.close();
+        classUnderTest.get(1L);
+    }
+
+    @Test
+    public void passWhenValuesAreCompressed()
+    throws IOException {
+
+        final String value = LzCompressorTest.newJson(200);
+        try (final SharedMemoryCacheImp<Long, String> classUnderTest =
+                 new SharedMemoryCacheImp<>(filePath, 16, 4 * value.length(), LongCacheCodec.INSTANCE,
+                     new CompressingCacheCodec<>(StringCacheCodec.INSTANCE), key -> value)) {
+
+            // Intentional: Without compression, only four values would fit.
+            for (long key = 0; key < 8; ++key) {
+                Assert.assertEquals(classUnderTest.get(key), value);
+            }
+        }
+    }
+
+    @Test
+    public void passWhenLongCacheCodecRoundTrip() {
+
+        for (final long value : new long[]{0, 1, -1, 255, 256, Long.MIN_VALUE, Long.MAX_VALUE}) {
+
+            final byte[] byteArr = LongCacheCodec.INSTANCE.encode(value);
+            Assert.assertEquals(LongCacheCodec.INSTANCE.decode(byteArr, 0, byteArr.length).longValue(), value);
+        }
+    }
+}
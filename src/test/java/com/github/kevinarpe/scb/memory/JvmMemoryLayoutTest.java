@@ -0,0 +1,155 @@
+package com.github.kevinarpe.scb.memory;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
+import com.carrotsearch.hppc.RandomizedHashOrderMixer;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates are checked against JOL (Java Object Layout), which reads the actual layout from the running JVM.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class JvmMemoryLayoutTest {
+
+    private static final int[] SIZE_ARR = {0, 1, 12, 13, 1000, 100_000};
+    private static final String VALUE = "value";
+
+    @Test
+    public void passWhenShallowSizesMatchJol() {
+
+        Assert.assertEquals(JvmMemoryLayout.boxedLongBytes(), ClassLayout.parseClass(Long.class).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.hashMapBytes(0), ClassLayout.parseClass(HashMap.class).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.linkedHashMapBytes(0),
+            ClassLayout.parseClass(LinkedHashMap.class).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.treeMapBytes(0), ClassLayout.parseClass(TreeMap.class).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.concurrentHashMapBytes(0),
+            ClassLayout.parseClass(ConcurrentHashMap.class).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.referenceArrayBytes(3),
+            ClassLayout.parseInstance(new Object[3]).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.arrayBytes(3, Long.BYTES),
+            ClassLayout.parseInstance(new long[3]).instanceSize());
+        Assert.assertEquals(JvmMemoryLayout.arrayBytes(0, Byte.BYTES),
+            ClassLayout.parseInstance(new byte[0]).instanceSize());
+    }
+
+    @Test
+    public void passWhenMapSizesMatchJol() {
+
+        for (final int size : SIZE_ARR) {
+
+            Assert.assertEquals(JvmMemoryLayout.hashMapBytes(size), _retainedBytes(_fill(new HashMap<>(), size), size),
+                "size: " + size);
+            Assert.assertEquals(JvmMemoryLayout.linkedHashMapBytes(size),
+                _retainedBytes(_fill(new LinkedHashMap<>(), size), size), "size: " + size);
+            Assert.assertEquals(JvmMemoryLayout.treeMapBytes(size), _retainedBytes(_fill(new TreeMap<>(), size), size),
+                "size: " + size);
+            Assert.assertEquals(JvmMemoryLayout.concurrentHashMapBytes(size),
+                _retainedBytes(_fill(new ConcurrentHashMap<>(), size), size), "size: " + size);
+        }
+    }
+
+    @Test
+    public void passWhenHashSetSizeMatchesJol() {
+
+        for (final int size : SIZE_ARR) {
+
+            final HashSet<Long> set = new HashSet<>();
+            for (int i = 0; i < size; ++i) {
+                set.add(_newKey(i));
+            }
+            // Intentional: All values are the same shared dummy object.
+            final long presentBytes = (0 == size) ? 0 : JvmMemoryLayout.objectBytes(0, 0);
+            final long actual =
+                GraphLayout.parseInstance(set).totalSize() - size * JvmMemoryLayout.boxedLongBytes() - presentBytes;
+            Assert.assertEquals(JvmMemoryLayout.hashSetBytes(size), actual, "size: " + size);
+        }
+    }
+
+    @Test
+    public void passWhenLongIntHashMapSizeMatchesJol() {
+
+        final LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, i);
+        }
+        // Intentional: The default order mixer is a shared singleton.
+        final long actual = GraphLayout.parseInstance(map).totalSize()
+            - GraphLayout.parseInstance(RandomizedHashOrderMixer.INSTANCE).totalSize();
+        Assert.assertEquals(JvmMemoryLayout.longIntHashMapBytes(map), actual);
+    }
+
+    @Test
+    public void passWhenOtherHppcSizesMatchJol() {
+
+        final LongLongHashMap map = new LongLongHashMap();
+        final LongObjectHashMap<String> map2 = new LongObjectHashMap<>();
+        final LongHashSet set = new LongHashSet();
+        for (int i = 0; i < 1000; ++i) {
+            map.put(i, i);
+            map2.put(i, VALUE);
+            set.add(i);
+        }
+        // Intentional: The default order mixer is a shared singleton.
+        final long mixerBytes = GraphLayout.parseInstance(RandomizedHashOrderMixer.INSTANCE).totalSize();
+        Assert.assertEquals(JvmMemoryLayout.longLongHashMapBytes(map),
+            GraphLayout.parseInstance(map).totalSize() - mixerBytes);
+        Assert.assertEquals(JvmMemoryLayout.longObjectHashMapBytes(map2),
+            GraphLayout.parseInstance(map2).totalSize() - mixerBytes - GraphLayout.parseInstance(VALUE).totalSize());
+        Assert.assertEquals(JvmMemoryLayout.longHashSetBytes(set),
+            GraphLayout.parseInstance(set).totalSize() - mixerBytes);
+    }
+
+    @Test
+    public void passWhenHashTableLength() {
+
+        Assert.assertEquals(JvmMemoryLayout.hashTableLength(0), 0);
+        Assert.assertEquals(JvmMemoryLayout.hashTableLength(1), 16);
+        Assert.assertEquals(JvmMemoryLayout.hashTableLength(12), 16);
+        Assert.assertEquals(JvmMemoryLayout.hashTableLength(13), 32);
+        Assert.assertEquals(JvmMemoryLayout.hashTableLength(1000), 2048);
+        Assert.assertEquals(JvmMemoryLayout.computeIfAbsentHashTableLength(0), 0);
+        Assert.assertEquals(JvmMemoryLayout.computeIfAbsentHashTableLength(1), 16);
+        Assert.assertEquals(JvmMemoryLayout.computeIfAbsentHashTableLength(13), 16);
+        Assert.assertEquals(JvmMemoryLayout.computeIfAbsentHashTableLength(14), 32);
+        Assert.assertEquals(JvmMemoryLayout.concurrentHashTableLength(0), 0);
+        Assert.assertEquals(JvmMemoryLayout.concurrentHashTableLength(11), 16);
+        Assert.assertEquals(JvmMemoryLayout.concurrentHashTableLength(12), 32);
+    }
+
+    // Intentional: Keys are not cached by Long.valueOf(), so each key is a distinct object.
+    private static Long _newKey(final int i) {
+
+        final Long x = Long.valueOf(1_000_000 + i);
+        return x;
+    }
+
+    private static Map<Long, String> _fill(final Map<Long, String> map, final int size) {
+
+        for (int i = 0; i < size; ++i) {
+            map.put(_newKey(i), VALUE);
+        }
+        return map;
+    }
+
+    // Keys and values are excluded, as JvmMemoryLayout.
+    private static long _retainedBytes(final Map<Long, String> map, final int size) {
+
+        final long keyBytes = size * JvmMemoryLayout.boxedLongBytes();
+        final long valueBytes = (0 == size) ? 0 : GraphLayout.parseInstance(VALUE).totalSize();
+        final long x = GraphLayout.parseInstance(map).totalSize() - keyBytes - valueBytes;
+        return x;
+    }
+}
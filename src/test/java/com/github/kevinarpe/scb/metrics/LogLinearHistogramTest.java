@@ -0,0 +1,45 @@
+package com.github.kevinarpe.scb.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class LogLinearHistogramTest {
+
+    @Test
+    public void passWhenBucketBoundsContainValue() {
+
+        final long[] valueArr = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (final long value : valueArr) {
+
+            final int index = LogLinearHistogram._bucketIndex(value);
+            Assert.assertTrue(LogLinearHistogram._bucketLowerBound(index) <= value, "value: " + value);
+            Assert.assertTrue(LogLinearHistogram._bucketUpperBound(index) >= value, "value: " + value);
+        }
+    }
+
+    @Test
+    public void passWhenPercentile() {
+
+        final LogLinearHistogram classUnderTest = new LogLinearHistogram();
+        Assert.assertEquals(classUnderTest.snapshot().valueAtPercentile(99.0), 0);
+        for (int i = 1; i <= 10; ++i) {
+            classUnderTest.record(i);
+        }
+        classUnderTest.record(-1);
+        final LogLinearHistogram.Snapshot x = classUnderTest.snapshot();
+        Assert.assertEquals(x.totalCount, 11);
+        Assert.assertEquals(x.min(), 0);
+        Assert.assertEquals(x.max(), 10);
+        Assert.assertEquals(x.valueAtPercentile(50.0), 5);
+        Assert.assertEquals(x.valueAtPercentile(100.0), 10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenPercentileIsInvalid() {
+
+        new LogLinearHistogram().snapshot().valueAtPercentile(100.1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongLongCursor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class CalendarQueueDeadlineEngineImpTest {
+
+    private CalendarQueueDeadlineEngineImp classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new CalendarQueueDeadlineEngineImp();
+    }
+
+    @Test
+    public void passWhenPollInDeadlineOrder() {
+
+        final long requestId = classUnderTest.schedule(5000);
+        final long requestId2 = classUnderTest.schedule(1234);
+        final long requestId3 = classUnderTest.schedule(1234);
+        // Intentional: Far beyond one "year" of buckets, so the direct search is used.
+        final long requestId4 = classUnderTest.schedule(1_000_000_000);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1234);
+        final LongArrayList requestIdList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(5000, (Long id) -> requestIdList.add(id), 999), 3);
+        // Intentional: Equal deadlines are polled in schedule order.
+        Assert.assertEquals(requestIdList.toArray(), new long[]{requestId2, requestId3, requestId});
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1_000_000_000);
+        Assert.assertTrue(classUnderTest.reschedule(requestId4, 7));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 7);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertTrue(classUnderTest.cancel(requestId4));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), DeadlineEngine.NO_DEADLINE_MS);
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenCancelGroup() {
+
+        final LongArrayList requestIdList = new LongArrayList();
+        for (int i = 0; i < 10_000; ++i) {
+            requestIdList.add(classUnderTest.scheduleInGroup(1000 + i, i % 3));
+        }
+        final long requestId = classUnderTest.schedule(1000);
+        // Fired and cancelled members leave their group.
+        Assert.assertEquals(classUnderTest.poll(1001, (Long id) -> {}, 999), 3);
+        Assert.assertTrue(classUnderTest.cancel(requestIdList.get(2)));
+        Assert.assertTrue(classUnderTest.cancel(requestIdList.get(9999)));
+        Assert.assertEquals(classUnderTest.cancelGroup(0), 3332);
+        Assert.assertEquals(classUnderTest.cancelGroup(0), 0);
+        Assert.assertEquals(classUnderTest.cancelGroup(1), 3332);
+        Assert.assertEquals(classUnderTest.cancelGroup(2), 3332);
+        Assert.assertFalse(classUnderTest.cancel(requestIdList.get(5)));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.size(), 0);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), DeadlineEngine.NO_DEADLINE_MS);
+    }
+
+    @Test
+    public void passWhenBucketWidthAdaptsToDistribution() {
+
+        // Gap is 1000 ms
+        for (int i = 0; i < 1000; ++i) {
+            classUnderTest.schedule(1000L * i);
+        }
+        Assert.assertTrue(classUnderTest.bucketCount() >= 1000 / 2);
+        Assert.assertEquals(classUnderTest.bucketWidthMillis(), 3000);
+        Assert.assertEquals(classUnderTest.poll(Long.MAX_VALUE, (Long id) -> {}, Integer.MAX_VALUE), 1000);
+        Assert.assertEquals(classUnderTest.bucketCount(), CalendarQueueDeadlineEngineImp.MIN_BUCKET_COUNT);
+
+        // Gap is 2 ms
+        for (int i = 0; i < 1000; ++i) {
+            classUnderTest.schedule(2L * i);
+        }
+        Assert.assertEquals(classUnderTest.bucketWidthMillis(), 6);
+    }
+
+    // Compare behaviour against a trivial reference model with random operations.  Every 50,000 operations, the
+    // distribution shifts between short and long timeouts, so buckets are resized and re-estimated many times.
+    @Test
+    public void passWhenRandomOperationsMatchReferenceModel() {
+
+        final LongLongHashMap requestId_To_DeadlineEpochMillis_Map = new LongLongHashMap();
+        final Random random = new Random(12345);
+        final LongArrayList requestIdList = new LongArrayList();
+        long nowEpochMillis = 1000;
+        for (int i = 0; i < 200_000; ++i) {
+
+            final int maxTimeoutMillis = (0 == (i / 50_000) % 2) ? 1000 : 3_600_000;
+            final int op = random.nextInt(10);
+            if (op < 6) {
+                final long deadlineEpochMillis = nowEpochMillis + random.nextInt(maxTimeoutMillis);
+                final long requestId = classUnderTest.schedule(deadlineEpochMillis);
+                requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+                requestIdList.add(requestId);
+            }
+            else if (op < 7) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final boolean isCancelled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+                    Assert.assertEquals(classUnderTest.cancel(requestId), isCancelled);
+                }
+            }
+            else if (op < 9) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final long newDeadlineEpochMillis = nowEpochMillis + random.nextInt(maxTimeoutMillis);
+                    final boolean isRescheduled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    if (isRescheduled) {
+                        requestId_To_DeadlineEpochMillis_Map.put(requestId, newDeadlineEpochMillis);
+                    }
+                    Assert.assertEquals(classUnderTest.reschedule(requestId, newDeadlineEpochMillis), isRescheduled);
+                }
+            }
+            else {
+                nowEpochMillis += random.nextInt(maxTimeoutMillis / 20);
+                final LongHashSet expectedRequestIdSet = new LongHashSet();
+                long expectedNextDeadlineEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+                for (final LongLongCursor cursor : requestId_To_DeadlineEpochMillis_Map) {
+                    if (cursor.value <= nowEpochMillis) {
+                        expectedRequestIdSet.add(cursor.key);
+                    }
+                    else {
+                        expectedNextDeadlineEpochMillis = Math.min(expectedNextDeadlineEpochMillis, cursor.value);
+                    }
+                }
+                requestId_To_DeadlineEpochMillis_Map.removeAll(expectedRequestIdSet);
+                // Intentional: Use a large max poll, so all expired deadlines must fire.
+                final LongHashSet requestIdSet = new LongHashSet();
+                final int count;
+                // Intentional: Alternate between poll and drain.  Both must behave the same.
+                if (random.nextBoolean()) {
+                    count = classUnderTest.poll(nowEpochMillis, (Long id) -> requestIdSet.add(id), Integer.MAX_VALUE);
+                }
+                else {
+                    final int maxCount = Math.max(1, expectedRequestIdSet.size());
+                    final long[] requestIdArr = new long[1 + maxCount];
+                    count = classUnderTest.drainTo(nowEpochMillis, requestIdArr, 1, maxCount);
+                    for (int k = 1; k <= count; ++k) {
+                        requestIdSet.add(requestIdArr[k]);
+                    }
+                }
+                Assert.assertEquals(count, expectedRequestIdSet.size());
+                Assert.assertTrue(requestIdSet.equals(expectedRequestIdSet));
+                Assert.assertEquals(classUnderTest.nextDeadlineMs(), expectedNextDeadlineEpochMillis);
+            }
+            Assert.assertEquals(classUnderTest.size(), requestId_To_DeadlineEpochMillis_Map.size());
+        }
+    }
+}
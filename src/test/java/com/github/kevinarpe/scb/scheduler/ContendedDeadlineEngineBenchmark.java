@@ -0,0 +1,163 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * JMH benchmark for thread-safe {@link DeadlineEngine} implementations with contended access: Three request threads
+ * schedule and cancel timeouts (as {@link DeadlineEngineBenchmark}), while one timer thread polls.
+ * <p>
+ * Compares {@link SynchronizedDeadlineEngineImp} against {@link FlatCombiningDeadlineEngineImp} with the same
+ * delegates.
+ * <p>
+ * Intentional: The shared clock is a counter, not {@link System#currentTimeMillis()}, so each run is repeatable.  As in
+ * {@link DeadlineEngineBenchmark}, the clock advances one millisecond every {@code opsPerMillis} request operations
+ * (summed over all request threads), where {@code opsPerMillis = max(1, 2 * pendingCount / TIMEOUT_MILLIS)}.  Thus,
+ * each ring of outstanding requests cycles in half of the timeout, and most requests are cancelled before they fire.
+ * The poll thread only reads the clock.  If each poll advanced the clock, the timeout horizon would be crossed within
+ * seconds, and the benchmark would measure a workload of mostly fires.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see DeadlineEngineBenchmark
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ContendedDeadlineEngineBenchmark {
+
+    private static final long START_EPOCH_MILLIS = 1_600_000_000_000L;
+    private static final int REQUEST_THREAD_COUNT = 3;
+
+    public enum EngineType {
+
+        SYNCHRONIZED_DEADLINE_ENGINE_IMP(() -> new SynchronizedDeadlineEngineImp(new DeadlineEngineImp())),
+        SYNCHRONIZED_USING_EXTERNAL_LIBRARIES(
+            () -> new SynchronizedDeadlineEngineImp(new UsingExternalLibrariesDeadlineEngineImp())),
+        SYNCHRONIZED_GENERATIONAL_HANDLE(
+            () -> new SynchronizedDeadlineEngineImp(new GenerationalHandleDeadlineEngineImp())),
+        FLAT_COMBINING_DEADLINE_ENGINE_IMP(() -> new FlatCombiningDeadlineEngineImp(new DeadlineEngineImp())),
+        FLAT_COMBINING_GENERATIONAL_HANDLE(
+            () -> new FlatCombiningDeadlineEngineImp(new GenerationalHandleDeadlineEngineImp())),
+        ;
+
+        private final Supplier<DeadlineEngine> factory;
+
+        EngineType(Supplier<DeadlineEngine> factory) {
+            this.factory = factory;
+        }
+
+        public DeadlineEngine newEngine() {
+            final DeadlineEngine x = factory.get();
+            return x;
+        }
+    }
+
+    @Param({"SYNCHRONIZED_DEADLINE_ENGINE_IMP", "SYNCHRONIZED_USING_EXTERNAL_LIBRARIES",
+            "SYNCHRONIZED_GENERATIONAL_HANDLE", "FLAT_COMBINING_DEADLINE_ENGINE_IMP",
+            "FLAT_COMBINING_GENERATIONAL_HANDLE"})
+    public EngineType engineType;
+
+    @Param({"1000", "1000000"})
+    public int pendingCount;
+
+    private DeadlineEngine engine;
+    private AtomicLong nowMs;
+    private int opsPerMillis;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        engine = engineType.newEngine();
+        nowMs = new AtomicLong(START_EPOCH_MILLIS);
+        // Intentional: The ring cycles in half of the timeout, so cancelled requests are always cancelled in time.
+        opsPerMillis = (int) Math.max(1L, (2L * pendingCount) / DeadlineEngineBenchmark.TIMEOUT_MILLIS);
+        for (int i = 0; i < pendingCount; ++i) {
+            engine.schedule(START_EPOCH_MILLIS + DeadlineEngineBenchmark.TIMEOUT_MILLIS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RequestThreadState {
+
+        private long[] requestIdRing;
+        private int ringIndex;
+        private SplittableRandom random;
+        private int opsThisMillis;
+
+        @Setup(Level.Trial)
+        public void setup(ContendedDeadlineEngineBenchmark benchmark) {
+
+            // Intentional: Each request thread owns a share of the outstanding requests.
+            requestIdRing = new long[Math.max(1, benchmark.pendingCount / REQUEST_THREAD_COUNT)];
+            ringIndex = 0;
+            random = new SplittableRandom(Thread.currentThread().getId());
+            opsThisMillis = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PollThreadState {
+
+        private long firedCount;
+        private final Consumer<Long> handler = (Long requestId) -> ++firedCount;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(REQUEST_THREAD_COUNT)
+    public long scheduleCancel(RequestThreadState state) {
+
+        final long oldRequestId = state.requestIdRing[state.ringIndex];
+        if (state.random.nextInt(100) < DeadlineEngineBenchmark.CANCEL_PERCENT) {
+            engine.cancel(oldRequestId);
+        }
+        final long requestId = engine.schedule(nowMs.get() + DeadlineEngineBenchmark.TIMEOUT_MILLIS);
+        state.requestIdRing[state.ringIndex] = requestId;
+        state.ringIndex = (1 + state.ringIndex) % state.requestIdRing.length;
+        _tick(state);
+        return requestId;
+    }
+
+    // Intentional: Each request thread counts its own operations, so the request threads do not contend on a shared
+    // counter.  Together, they advance the clock one millisecond every 'opsPerMillis' operations.
+    private void _tick(RequestThreadState state) {
+
+        ++state.opsThisMillis;
+        if (state.opsThisMillis == REQUEST_THREAD_COUNT * opsPerMillis) {
+            state.opsThisMillis = 0;
+            nowMs.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int poll(PollThreadState state) {
+
+        // Intentional: Do not advance the clock.  See class doc.
+        final int x = engine.poll(nowMs.get(), state.handler, Integer.MAX_VALUE);
+        return x;
+    }
+}
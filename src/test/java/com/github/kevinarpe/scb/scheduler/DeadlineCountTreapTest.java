@@ -0,0 +1,74 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineCountTreapTest {
+
+    private DeadlineCountTreap classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new DeadlineCountTreap();
+    }
+
+    @Test
+    public void passWhenEmpty() {
+
+        Assert.assertEquals(classUnderTest.size(), 0);
+        Assert.assertEquals(classUnderTest.countLessThan(Long.MAX_VALUE), 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failWhenRemoveMissingDeadline() {
+
+        classUnderTest.add(1000);
+        classUnderTest.remove(1001);
+    }
+
+    // Compare against a sorted array with random operations.  Small range of deadlines, so many are equal.
+    @Test
+    public void passWhenRandomOperationsMatchReferenceModel() {
+
+        final LongArrayList deadlineList = new LongArrayList();
+        final Random random = new Random(12345);
+        for (int i = 0; i < 20_000; ++i) {
+
+            if (deadlineList.isEmpty() || random.nextInt(10) < 6) {
+                final long deadlineEpochMillis = random.nextInt(2000);
+                classUnderTest.add(deadlineEpochMillis);
+                deadlineList.add(deadlineEpochMillis);
+            }
+            else {
+                final int index = random.nextInt(deadlineList.size());
+                classUnderTest.remove(deadlineList.get(index));
+                deadlineList.set(index, deadlineList.get(deadlineList.size() - 1));
+                deadlineList.remove(deadlineList.size() - 1);
+            }
+            if (0 == i % 100) {
+                final long[] sortedDeadlineArr = deadlineList.toArray();
+                Arrays.sort(sortedDeadlineArr);
+                for (int k = 0; k < 10; ++k) {
+
+                    final long deadlineEpochMillis = random.nextInt(2100) - 50;
+                    int expectedCount = 0;
+                    while (expectedCount < sortedDeadlineArr.length
+                           && sortedDeadlineArr[expectedCount] < deadlineEpochMillis) {
+                        ++expectedCount;
+                    }
+                    Assert.assertEquals(classUnderTest.countLessThan(deadlineEpochMillis), expectedCount);
+                }
+            }
+            Assert.assertEquals(classUnderTest.size(), deadlineList.size());
+        }
+    }
+}
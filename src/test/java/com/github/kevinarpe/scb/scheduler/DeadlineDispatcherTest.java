@@ -0,0 +1,212 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.carrotsearch.hppc.LongArrayList;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineDispatcherTest {
+
+    private ScheduledExecutorService scheduledExecutor;
+    private DeadlinePublisher publisher;
+    private BlockingQueue<Long> startedQueue;
+    private CountDownLatch releaseLatch;
+    private DeadlineDispatcher classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+        publisher =
+            new DeadlinePublisher(new DeadlineEngineImp(), () -> 1000L, scheduledExecutor,
+                DeadlinePublisher.DEFAULT_MAX_BATCH_SIZE, DeadlinePublisher.DEFAULT_MAX_DELAY_MILLIS);
+        startedQueue = new LinkedBlockingQueue<>();
+        releaseLatch = new CountDownLatch(1);
+        classUnderTest = new DeadlineDispatcher(this::_blockingHandler, 2);
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod() {
+
+        classUnderTest.close();
+        publisher.close();
+        scheduledExecutor.shutdownNow();
+    }
+
+    private void _blockingHandler(final long requestId) {
+
+        startedQueue.add(requestId);
+        try {
+            releaseLatch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void passWhenInFlightHandlersAreBounded()
+    throws InterruptedException {
+
+        for (int i = 0; i < 10; ++i) {
+            publisher.schedule(900);
+        }
+        publisher.subscribe(classUnderTest);
+        Assert.assertNotNull(startedQueue.poll(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(startedQueue.poll(5, TimeUnit.SECONDS));
+        // Intentional: Give the publisher a chance to (wrongly) dispatch more than two.
+        Assert.assertNull(startedQueue.poll(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(classUnderTest.inFlightCount(), 2);
+        // Intentional: The rest stay in the engine, not in a queue.
+        Assert.assertEquals(publisher.size(), 8);
+
+        releaseLatch.countDown();
+        for (int i = 0; i < 8; ++i) {
+            Assert.assertNotNull(startedQueue.poll(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(publisher.size(), 0);
+    }
+
+    @Test
+    public void passWhenNewDefaultExecutorService()
+    throws Exception {
+
+        final ExecutorService executorService = DeadlineDispatcher.newDefaultExecutorService(1);
+        try {
+            final Boolean isDaemon = executorService.submit(() -> Thread.currentThread().isDaemon()).get();
+            // Intentional: Virtual threads and fallback platform threads are both daemon.
+            Assert.assertTrue(isDaemon);
+        }
+        finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenMaxInFlightCountIsZero() {
+
+        new DeadlineDispatcher((long requestId) -> {}, 0);
+    }
+
+    private static final class _ErrorHandler
+    implements DeadlineDispatcher.ErrorHandler {
+
+        private final BlockingQueue<Throwable> causeQueue = new LinkedBlockingQueue<>();
+        private final LongArrayList requestIdList = new LongArrayList();
+
+        @Override
+        public synchronized void onError(final Throwable cause,
+                                         final long[] requestIdArr,
+                                         final int offset,
+                                         final int count) {
+
+            requestIdList.add(requestIdArr, offset, count);
+            causeQueue.add(cause);
+        }
+    }
+
+    private static final class _Subscription
+    implements Flow.Subscription {
+
+        private boolean isCancelled = false;
+
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+        }
+    }
+
+    @Test
+    public void passWhenRejectedRequestIdsArePassedToErrorHandler()
+    throws InterruptedException {
+
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        // Intentional: A shut down executor rejects each task.
+        executorService.shutdown();
+        final _ErrorHandler errorHandler = new _ErrorHandler();
+        final DeadlineDispatcher dispatcher =
+            new DeadlineDispatcher(this::_blockingHandler, 2, executorService, errorHandler);
+        final long requestId = publisher.schedule(900);
+        final long requestId2 = publisher.schedule(900);
+        publisher.schedule(900);
+        publisher.subscribe(dispatcher);
+
+        final Throwable cause = errorHandler.causeQueue.poll(5, TimeUnit.SECONDS);
+        Assert.assertTrue(cause instanceof RejectedExecutionException);
+        Assert.assertSame(dispatcher.nullableError(), cause);
+        synchronized (errorHandler) {
+            Assert.assertEquals(errorHandler.requestIdList.size(), 2);
+            Assert.assertEquals(errorHandler.requestIdList.get(0), requestId);
+            Assert.assertEquals(errorHandler.requestIdList.get(1), requestId2);
+        }
+        Assert.assertEquals(dispatcher.inFlightCount(), 0);
+        // Intentional: The subscription is cancelled, so the last request ID stays in the engine.
+        Assert.assertNull(errorHandler.causeQueue.poll(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(publisher.size(), 1);
+    }
+
+    @Test
+    public void passWhenPublisherSignalsMoreThanRequested()
+    throws InterruptedException {
+
+        final _ErrorHandler errorHandler = new _ErrorHandler();
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final DeadlineDispatcher dispatcher =
+                new DeadlineDispatcher(this::_blockingHandler, 2, executorService, errorHandler);
+            final _Subscription subscription = new _Subscription();
+            dispatcher.onSubscribe(subscription);
+
+            // Intentional: Must not throw.  Ref: Reactive Streams rule 2.13
+            dispatcher.onNextBatch(new long[] {7, 8, 9}, 0, 3);
+            Assert.assertTrue(subscription.isCancelled);
+            Assert.assertTrue(errorHandler.causeQueue.poll() instanceof IllegalStateException);
+            Assert.assertEquals(errorHandler.requestIdList.size(), 1);
+            Assert.assertEquals(errorHandler.requestIdList.get(0), 9);
+            Assert.assertEquals(dispatcher.inFlightCount(), 2);
+
+            dispatcher.onNext(10L);
+            Assert.assertTrue(errorHandler.causeQueue.poll() instanceof IllegalStateException);
+            Assert.assertEquals(errorHandler.requestIdList.get(1), 10);
+        }
+        finally {
+            releaseLatch.countDown();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void passWhenOnErrorIsPassedToErrorHandler() {
+
+        final _ErrorHandler errorHandler = new _ErrorHandler();
+        final DeadlineDispatcher dispatcher =
+            new DeadlineDispatcher(this::_blockingHandler, 2, scheduledExecutor, errorHandler);
+        dispatcher.onSubscribe(new _Subscription());
+        final IOException cause = new IOException();
+        dispatcher.onError(cause);
+
+        Assert.assertSame(errorHandler.causeQueue.poll(), cause);
+        Assert.assertTrue(errorHandler.requestIdList.isEmpty());
+        Assert.assertSame(dispatcher.nullableError(), cause);
+    }
+}
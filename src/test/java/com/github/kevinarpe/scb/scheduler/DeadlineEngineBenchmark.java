@@ -0,0 +1,175 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * JMH benchmark for single-threaded {@link DeadlineEngine} implementations with a realistic timeout workload:
+ * <ul>
+ *     <li>Each operation schedules a new timeout for a request.</li>
+ *     <li>Each operation also completes the oldest outstanding request: {@value #CANCEL_PERCENT}% are cancelled before
+ *     they fire (the response arrived in time), and the rest are left to fire.</li>
+ *     <li>The clock advances one millisecond every {@code opsPerMillis} operations, then expired deadlines are
+ *     polled.  Thus, the engine stays in steady state near {@code pendingCount} entries.</li>
+ * </ul>
+ * <p>
+ * Timeouts are either {@link DeadlineDistribution#CLUSTERED} (the same timeout, so many requests share a deadline) or
+ * {@link DeadlineDistribution#UNIFORM} (spread over a window).
+ * <p>
+ * Reports throughput and latency percentiles ({@link Mode#SampleTime}).  Run with {@code -prof gc} to report bytes
+ * allocated per operation.  See profile 'benchmark' in pom.xml.
+ * <p>
+ * Warning: {@code pendingCount=10000000} needs a large heap for engines that box, e.g.,
+ * {@link UsingExternalLibrariesDeadlineEngineImp}.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see ContendedDeadlineEngineBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class DeadlineEngineBenchmark {
+
+    public static final int CANCEL_PERCENT = 95;
+    public static final long TIMEOUT_MILLIS = 30_000;
+    private static final long START_EPOCH_MILLIS = 1_600_000_000_000L;
+    // Intentional: Power of two, so the index mask is cheap.
+    private static final int RANDOM_COUNT = 1 << 16;
+
+    public enum EngineType {
+
+        DEADLINE_ENGINE_IMP(DeadlineEngineImp::new),
+        USING_EXTERNAL_LIBRARIES(UsingExternalLibrariesDeadlineEngineImp::new),
+        SYNCHRONIZED(() -> new SynchronizedDeadlineEngineImp(new DeadlineEngineImp())),
+        OFF_HEAP(OffHeapDeadlineEngineImp::new),
+        GENERATIONAL_HANDLE(GenerationalHandleDeadlineEngineImp::new),
+        CALENDAR_QUEUE(CalendarQueueDeadlineEngineImp::new),
+        ;
+
+        private final Supplier<DeadlineEngine> factory;
+
+        EngineType(Supplier<DeadlineEngine> factory) {
+            this.factory = factory;
+        }
+
+        public DeadlineEngine newEngine() {
+            final DeadlineEngine x = factory.get();
+            return x;
+        }
+    }
+
+    public enum DeadlineDistribution {
+
+        /** All timeouts are equal, so each millisecond has {@code opsPerMillis} requests with the same deadline. */
+        CLUSTERED,
+        /** Timeouts are uniform from 50% to 150% of {@link #TIMEOUT_MILLIS}. */
+        UNIFORM,
+    }
+
+    @Param({"DEADLINE_ENGINE_IMP", "USING_EXTERNAL_LIBRARIES", "SYNCHRONIZED", "CALENDAR_QUEUE"})
+    public EngineType engineType;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int pendingCount;
+
+    @Param({"CLUSTERED", "UNIFORM"})
+    public DeadlineDistribution deadlineDistribution;
+
+    private DeadlineEngine engine;
+    // Ring buffer of outstanding requests.  The oldest is replaced by each operation.
+    private long[] requestIdRing;
+    private int ringIndex;
+    private long[] timeoutMillisArr;
+    private boolean[] isCancelArr;
+    private int randomIndex;
+    private int opsPerMillis;
+    private int opsThisMillis;
+    private long nowMs;
+    private long firedCount;
+    private final Consumer<Long> handler = (Long requestId) -> ++firedCount;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        engine = engineType.newEngine();
+        requestIdRing = new long[pendingCount];
+        ringIndex = 0;
+        // Intentional: The ring cycles in half of the timeout, so cancelled requests are always cancelled in time.
+        opsPerMillis = (int) Math.max(1L, (2L * pendingCount) / TIMEOUT_MILLIS);
+        opsThisMillis = 0;
+        nowMs = START_EPOCH_MILLIS;
+        firedCount = 0;
+
+        // Intentional: Pre-compute random values, so the cost of a random number generator is not measured.
+        final SplittableRandom random = new SplittableRandom(12345);
+        timeoutMillisArr = new long[RANDOM_COUNT];
+        isCancelArr = new boolean[RANDOM_COUNT];
+        for (int i = 0; i < RANDOM_COUNT; ++i) {
+
+            timeoutMillisArr[i] =
+                (DeadlineDistribution.CLUSTERED == deadlineDistribution)
+                    ? TIMEOUT_MILLIS
+                    : random.nextLong(TIMEOUT_MILLIS / 2, (3 * TIMEOUT_MILLIS) / 2);
+            isCancelArr[i] = random.nextInt(100) < CANCEL_PERCENT;
+        }
+        randomIndex = 0;
+
+        for (int i = 0; i < pendingCount; ++i) {
+            requestIdRing[i] = engine.schedule(_nextDeadlineMs());
+            _tick();
+        }
+    }
+
+    private long _nextDeadlineMs() {
+
+        final long x = nowMs + timeoutMillisArr[randomIndex];
+        randomIndex = (1 + randomIndex) & (RANDOM_COUNT - 1);
+        return x;
+    }
+
+    private void _tick() {
+
+        ++opsThisMillis;
+        if (opsThisMillis == opsPerMillis) {
+            opsThisMillis = 0;
+            ++nowMs;
+            engine.poll(nowMs, handler, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * One request: schedule its timeout, complete the oldest request, and maybe poll.
+     */
+    @Benchmark
+    public long scheduleCancelPoll() {
+
+        final long oldRequestId = requestIdRing[ringIndex];
+        if (isCancelArr[randomIndex]) {
+            engine.cancel(oldRequestId);
+        }
+        final long requestId = engine.schedule(_nextDeadlineMs());
+        requestIdRing[ringIndex] = requestId;
+        ringIndex = (1 + ringIndex) % requestIdRing.length;
+        _tick();
+        return requestId;
+    }
+}
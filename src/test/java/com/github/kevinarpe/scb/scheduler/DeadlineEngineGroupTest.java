@@ -0,0 +1,78 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.function.Supplier;
+
+/**
+ * Groups must behave the same for each implementation and decorator.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineEngineGroupTest {
+
+    @DataProvider
+    public Object[][] engineFactoryArr() {
+
+        final Object[][] x = {
+            {(Supplier<DeadlineEngine>) DeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) UsingExternalLibrariesDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) OffHeapDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) CalendarQueueDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) GenerationalHandleDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) () -> new TenantFairDeadlineEngineImp(2)},
+            {(Supplier<DeadlineEngine>)
+                () -> new InstrumentedDeadlineEngineImp(new UsingExternalLibrariesDeadlineEngineImp())},
+        };
+        return x;
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenCancelGroup(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        final long requestId = classUnderTest.scheduleInGroup(1000, 7);
+        final long requestId2 = classUnderTest.scheduleInGroup(2000, 7);
+        final long requestId3 = classUnderTest.scheduleInGroup(3000, 7);
+        final long requestId4 = classUnderTest.scheduleInGroup(3000, 0);
+        final long requestId5 = classUnderTest.schedule(3000);
+        Assert.assertEquals(classUnderTest.size(), 5);
+        Assert.assertEquals(classUnderTest.cancelGroup(6), 0);
+
+        // A member leaves its group when it fires or is cancelled.
+        final LongArrayList firedList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(1000, firedList::add, 999), 1);
+        Assert.assertEquals(firedList.get(0), requestId);
+        Assert.assertTrue(classUnderTest.cancel(requestId2));
+        Assert.assertTrue(classUnderTest.reschedule(requestId3, 4000));
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId3));
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 0);
+
+        // Group key zero is valid.  Deadlines outside a group are not cancelled.
+        Assert.assertEquals(classUnderTest.cancelGroup(0), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId4));
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertTrue(classUnderTest.cancel(requestId5));
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenGroupKeyIsReusedAfterCancelGroup(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.scheduleInGroup(1000 + i, i % 2);
+        }
+        Assert.assertEquals(classUnderTest.cancelGroup(1), 50);
+        final long requestId = classUnderTest.scheduleInGroup(500, 1);
+        Assert.assertEquals(classUnderTest.size(), 51);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 500);
+        Assert.assertEquals(classUnderTest.cancelGroup(1), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.drainTo(Long.MAX_VALUE, new long[50], 0, 50), 50);
+        Assert.assertEquals(classUnderTest.cancelGroup(0), 0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.HotPathMeter;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fails when a hot path in a {@link DeadlineEngine} allocates more, or runs much slower, than its budget.
+ * <p>
+ * The workload matches {@link DeadlineEngineBenchmark} in steady state: Each operation schedules a new timeout, cancels
+ * the oldest outstanding request {@value DeadlineEngineBenchmark#CANCEL_PERCENT}% of the time, and sometimes advances
+ * the clock, then removes expired deadlines.  Latency budgets are at least 10x normal on a laptop, so only large
+ * regressions fail, e.g., a linear scan of {@value #PENDING_COUNT} pending deadlines.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ *
+ * @see HotPathMeter
+ */
+@Test(groups = HotPathMeter.GROUP)
+public class DeadlineEngineHotPathRegressionTest {
+
+    private static final int PENDING_COUNT = 100_000;
+    private static final long TIMEOUT_MILLIS = 10_000;
+    private static final long START_EPOCH_MILLIS = 1_600_000_000_000L;
+    // Intentional: Power of two, so the index mask is cheap.
+    private static final int RANDOM_COUNT = 1 << 12;
+
+    public enum EngineType {
+
+        // Boxes each deadline and request ID, and allocates map entries
+        DEADLINE_ENGINE_IMP(DeadlineEngineImp::new, 240, 240, 50_000),
+        // Intentional: Measured 147 to 188 bytes, depending on whether the JIT removes iterators and map views by escape
+        // analysis.  Thus, the budget is above the worst case.
+        USING_EXTERNAL_LIBRARIES(UsingExternalLibrariesDeadlineEngineImp::new, 224, 224, 50_000),
+        // Intentional: Only poll() allocates: It boxes each fired request ID for its handler.
+        SYNCHRONIZED(() -> new SynchronizedDeadlineEngineImp(new GenerationalHandleDeadlineEngineImp()), 0, 2, 10_000),
+        OFF_HEAP(OffHeapDeadlineEngineImp::new, 0, 2, 10_000),
+        GENERATIONAL_HANDLE(GenerationalHandleDeadlineEngineImp::new, 0, 2, 10_000),
+        CALENDAR_QUEUE(CalendarQueueDeadlineEngineImp::new, 0, 2, 10_000),
+        ;
+
+        private final Supplier<DeadlineEngine> factory;
+        // Budgets per operation: schedule, maybe cancel, maybe advance the clock and remove expired deadlines
+        public final double drainToBytesBudget;
+        public final double pollBytesBudget;
+        public final double nanosBudget;
+
+        EngineType(Supplier<DeadlineEngine> factory,
+                   double drainToBytesBudget,
+                   double pollBytesBudget,
+                   double nanosBudget) {
+
+            this.factory = factory;
+            this.drainToBytesBudget = drainToBytesBudget;
+            this.pollBytesBudget = pollBytesBudget;
+            this.nanosBudget = nanosBudget;
+        }
+
+        public DeadlineEngine newEngine() {
+            final DeadlineEngine x = factory.get();
+            return x;
+        }
+    }
+
+    private static final class _Workload {
+
+        private final DeadlineEngine engine;
+        private final boolean isDrainTo;
+        // Ring buffer of outstanding requests.  The oldest is replaced by each operation.
+        private final long[] requestIdRing;
+        private int ringIndex;
+        private final long[] timeoutMillisArr;
+        private final boolean[] isCancelArr;
+        private int randomIndex;
+        private final int opsPerMillis;
+        private int opsThisMillis;
+        private long nowMs;
+        private final long[] drainToArr;
+        private long firedCount;
+        private final Consumer<Long> handler = (Long requestId) -> ++firedCount;
+
+        private _Workload(final DeadlineEngine engine, final boolean isDrainTo) {
+
+            this.engine = engine;
+            this.isDrainTo = isDrainTo;
+            this.requestIdRing = new long[PENDING_COUNT];
+            this.ringIndex = 0;
+            // Intentional: The ring cycles in half of the timeout, so cancelled requests are always cancelled in time.
+            this.opsPerMillis = (int) Math.max(1L, (2L * PENDING_COUNT) / TIMEOUT_MILLIS);
+            this.opsThisMillis = 0;
+            this.nowMs = START_EPOCH_MILLIS;
+            this.drainToArr = new long[256];
+            this.firedCount = 0;
+
+            // Intentional: Pre-compute random values, so the cost of a random number generator is not measured.
+            final SplittableRandom random = new SplittableRandom(12345);
+            this.timeoutMillisArr = new long[RANDOM_COUNT];
+            this.isCancelArr = new boolean[RANDOM_COUNT];
+            for (int i = 0; i < RANDOM_COUNT; ++i) {
+
+                timeoutMillisArr[i] = random.nextLong(TIMEOUT_MILLIS / 2, (3 * TIMEOUT_MILLIS) / 2);
+                isCancelArr[i] = random.nextInt(100) < DeadlineEngineBenchmark.CANCEL_PERCENT;
+            }
+            this.randomIndex = 0;
+
+            for (int i = 0; i < PENDING_COUNT; ++i) {
+                requestIdRing[i] = engine.schedule(_nextDeadlineMs());
+                _tick();
+            }
+        }
+
+        private long _nextDeadlineMs() {
+
+            final long x = nowMs + timeoutMillisArr[randomIndex];
+            randomIndex = (1 + randomIndex) & (RANDOM_COUNT - 1);
+            return x;
+        }
+
+        private void _tick() {
+
+            ++opsThisMillis;
+            if (opsThisMillis == opsPerMillis) {
+                opsThisMillis = 0;
+                ++nowMs;
+                if (isDrainTo) {
+                    while (drainToArr.length == engine.drainTo(nowMs, drainToArr, 0, drainToArr.length)) {
+                        // Empty
+                    }
+                }
+                else {
+                    engine.poll(nowMs, handler, Integer.MAX_VALUE);
+                }
+            }
+        }
+
+        // Intentional: Parameter 'index' is unused.  It matches IntConsumer.
+        private void operation(final int index) {
+
+            final long oldRequestId = requestIdRing[ringIndex];
+            if (isCancelArr[randomIndex]) {
+                engine.cancel(oldRequestId);
+            }
+            requestIdRing[ringIndex] = engine.schedule(_nextDeadlineMs());
+            ringIndex = (1 + ringIndex) % requestIdRing.length;
+            _tick();
+        }
+    }
+
+    @BeforeClass
+    public void beforeClass() {
+
+        if (false == HotPathMeter.isAllocationMeasurementSupported()) {
+            throw new SkipException("Per-thread allocation is not measured by this JVM");
+        }
+    }
+
+    @Test
+    public void passWhenScheduleCancelDrainToIsWithinBudget() {
+
+        for (final EngineType engineType : EngineType.values()) {
+
+            final _Workload workload = new _Workload(engineType.newEngine(), true);
+            final double bytesPerOp = HotPathMeter.allocatedBytesPerOperation(workload::operation);
+            final double nanosPerOp = HotPathMeter.nanosPerOperation(workload::operation);
+            _assertWithinBudget(engineType + ": drainTo()", bytesPerOp, engineType.drainToBytesBudget, nanosPerOp,
+                engineType.nanosBudget);
+        }
+    }
+
+    @Test
+    public void passWhenScheduleCancelPollIsWithinBudget() {
+
+        for (final EngineType engineType : EngineType.values()) {
+
+            final _Workload workload = new _Workload(engineType.newEngine(), false);
+            final double bytesPerOp = HotPathMeter.allocatedBytesPerOperation(workload::operation);
+            final double nanosPerOp = HotPathMeter.nanosPerOperation(workload::operation);
+            _assertWithinBudget(engineType + ": poll()", bytesPerOp, engineType.pollBytesBudget, nanosPerOp,
+                engineType.nanosBudget);
+        }
+    }
+
+    private static void _assertWithinBudget(final String description,
+                                            final double bytesPerOp,
+                                            final double bytesBudget,
+                                            final double nanosPerOp,
+                                            final double nanosBudget) {
+
+        Assert.assertTrue(bytesPerOp <= bytesBudget + HotPathMeter.ALLOCATION_TOLERANCE_BYTES,
+            description + ": bytes per operation: " + bytesPerOp + " > budget: " + bytesBudget);
+        Assert.assertTrue(nanosPerOp <= nanosBudget,
+            description + ": nanoseconds per operation: " + nanosPerOp + " > budget: " + nanosBudget);
+    }
+}
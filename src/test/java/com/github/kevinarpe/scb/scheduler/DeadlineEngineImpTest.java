@@ -1,5 +1,6 @@
 package com.github.kevinarpe.scb.scheduler;
 
+import com.carrotsearch.hppc.LongArrayList;
 import com.carrotsearch.hppc.LongHashSet;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -281,4 +282,337 @@ public class DeadlineEngineImpTest {
         Assert.assertTrue(requestIdSet.contains(requestId2));
         Assert.assertEquals(classUnderTest.size(), 0);
     }
+
+    @Test
+    public void passWhenScheduleAllThenCancelAll() {
+
+        // Intentional: Sorted with duplicates, so runs of equal deadlines are grouped.
+        final long[] deadlineEpochMillisArr = {1234, 1234, 1234, 1235, 1236, 1236};
+        final long[] requestIdArr = new long[deadlineEpochMillisArr.length];
+        classUnderTest.scheduleAll(deadlineEpochMillisArr, requestIdArr);
+        Assert.assertEquals(classUnderTest.size(), deadlineEpochMillisArr.length);
+        for (int i = 0; i < requestIdArr.length; ++i) {
+            Assert.assertEquals(requestIdArr[i], DeadlineEngineImp.MIN_REQUEST_ID + i);
+        }
+
+        // Cancel first two at 1234 and first at 1236, plus one unknown request ID
+        final int cancelCount = classUnderTest.cancelAll(new long[]{requestIdArr[0], requestIdArr[1], requestIdArr[4], 999});
+        Assert.assertEquals(cancelCount, 3);
+        Assert.assertEquals(classUnderTest.size(), 3);
+
+        final LongHashSet requestIdSet = new LongHashSet();
+        final int count = classUnderTest.poll(1236, (Long id) -> requestIdSet.add(id), 999);
+        Assert.assertEquals(count, 3);
+        Assert.assertTrue(requestIdSet.contains(requestIdArr[2]));
+        Assert.assertTrue(requestIdSet.contains(requestIdArr[3]));
+        Assert.assertTrue(requestIdSet.contains(requestIdArr[5]));
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenScheduleAllWithShortOutputArray() {
+
+        classUnderTest.scheduleAll(new long[]{1234, 1235}, new long[1]);
+    }
+
+    @Test
+    public void passWhenScheduleWithSlackThenCoalesce() {
+
+        // Slack 7 -> coarse granularity 8 -> 1001 and 1003 both round up to 1008
+        final long requestId = classUnderTest.schedule(1001, 7);
+        final long requestId2 = classUnderTest.schedule(1003, 7);
+        // Slack 3 -> coarse granularity 4 -> 1005 rounds up to 1008, which is also a multiple of 8
+        final long requestId3 = classUnderTest.schedule(1005, 3);
+        Assert.assertEquals(classUnderTest.size(), 3);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1008);
+
+        // Never early
+        Assert.assertEquals(classUnderTest.poll(1007, any -> {}, 999), 0);
+
+        final LongHashSet requestIdSet = new LongHashSet();
+        final int count = classUnderTest.poll(1008, (Long id) -> requestIdSet.add(id), 999);
+        Assert.assertEquals(count, 3);
+        Assert.assertTrue(requestIdSet.contains(requestId));
+        Assert.assertTrue(requestIdSet.contains(requestId2));
+        Assert.assertTrue(requestIdSet.contains(requestId3));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), DeadlineEngine.NO_DEADLINE_MS);
+    }
+
+    @Test
+    public void passWhenCoarsenDeadline() {
+
+        Assert.assertEquals(DeadlineEngine.coarsenDeadlineMs(1001, 0), 1001);
+        Assert.assertEquals(DeadlineEngine.coarsenDeadlineMs(1001, 1), 1002);
+        Assert.assertEquals(DeadlineEngine.coarsenDeadlineMs(1002, 1), 1002);
+        Assert.assertEquals(DeadlineEngine.coarsenDeadlineMs(1001, 1000), 1024);
+        Assert.assertEquals(DeadlineEngine.coarsenDeadlineMs(Long.MAX_VALUE - 1, 1000), Long.MAX_VALUE - 1);
+    }
+
+    @Test
+    public void passWhenReschedule() {
+
+        final long requestId = classUnderTest.schedule(1234);
+        final long requestId2 = classUnderTest.schedule(1234);
+
+        // Later
+        Assert.assertTrue(classUnderTest.reschedule(requestId, 1240));
+        // Unchanged
+        Assert.assertTrue(classUnderTest.reschedule(requestId2, 1234));
+        Assert.assertEquals(classUnderTest.size(), 2);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1234);
+        {
+            final LongHashSet requestIdSet = new LongHashSet();
+            Assert.assertEquals(classUnderTest.poll(1239, (Long id) -> requestIdSet.add(id), 999), 1);
+            Assert.assertTrue(requestIdSet.contains(requestId2));
+        }
+        Assert.assertFalse(classUnderTest.reschedule(requestId2, 1250));
+
+        // Earlier
+        Assert.assertTrue(classUnderTest.reschedule(requestId, 1235));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1235);
+        {
+            final LongHashSet requestIdSet = new LongHashSet();
+            Assert.assertEquals(classUnderTest.poll(1239, (Long id) -> requestIdSet.add(id), 999), 1);
+            Assert.assertTrue(requestIdSet.contains(requestId));
+        }
+        Assert.assertEquals(classUnderTest.size(), 0);
+        Assert.assertFalse(classUnderTest.reschedule(requestId, 1250));
+    }
+
+    @Test
+    public void passWhenDrainTo() {
+
+        final long requestId = classUnderTest.schedule(1234);
+        final long requestId2 = classUnderTest.schedule(1235);
+        classUnderTest.schedule(1236);
+        classUnderTest.schedule(9999);
+
+        final long[] requestIdArr = new long[5];
+        Assert.assertEquals(classUnderTest.drainTo(1233, requestIdArr, 1, 4), 0);
+        Assert.assertEquals(classUnderTest.drainTo(1236, requestIdArr, 1, 2), 2);
+        Assert.assertEquals(requestIdArr[0], 0);
+        Assert.assertEquals(requestIdArr[1], requestId);
+        Assert.assertEquals(requestIdArr[2], requestId2);
+        Assert.assertEquals(requestIdArr[3], 0);
+        Assert.assertEquals(classUnderTest.size(), 2);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+
+        Assert.assertEquals(classUnderTest.drainTo(1236, requestIdArr, 0, 5), 1);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 9999);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenDrainToWithShortOutputArray() {
+
+        classUnderTest.drainTo(1234, new long[4], 2, 3);
+    }
+
+    @Test
+    public void passWhenScheduleRecurring() {
+
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId2 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.SKIP);
+        final long requestId3 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.FIXED_DELAY);
+        final LongHashSet requestIdSet = new LongHashSet();
+        // Intentional: Each fires at most once per poll, even if far behind.
+        Assert.assertEquals(classUnderTest.poll(1250, (Long id) -> requestIdSet.add(id), 999), 3);
+        Assert.assertEquals(requestIdSet.size(), 3);
+        Assert.assertEquals(classUnderTest.size(), 3);
+        // CATCH_UP -> 1100, SKIP -> 1300, FIXED_DELAY -> 1350
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1100);
+
+        final long[] requestIdArr = new long[3];
+        Assert.assertEquals(classUnderTest.drainTo(1250, requestIdArr, 0, 3), 1);
+        Assert.assertEquals(requestIdArr[0], requestId);
+        Assert.assertEquals(classUnderTest.drainTo(1250, requestIdArr, 0, 3), 1);
+        Assert.assertEquals(requestIdArr[0], requestId);
+        // CATCH_UP is now at 1300
+        Assert.assertEquals(classUnderTest.drainTo(1300, requestIdArr, 0, 3), 2);
+        Assert.assertTrue(classUnderTest.reschedule(requestId3, 5000));
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        Assert.assertTrue(classUnderTest.cancel(requestId2));
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertEquals(classUnderTest.poll(5000, (Long id) -> {}, 999), 1);
+        // Intentional: The same request ID is still valid after each fire.
+        Assert.assertTrue(classUnderTest.cancel(requestId3));
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenRecurringIsRearmedAfterHandlerThrows() {
+
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100);
+        classUnderTest.schedule(1001);
+        final int[] countRef = {0};
+        try {
+            classUnderTest.poll(2000,
+                (Long id) -> {
+                    ++countRef[0];
+                    if (id != requestId) {
+                        throw new IllegalStateException();
+                    }
+                },
+                999);
+        }
+        catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals(countRef[0], 2);
+        Assert.assertEquals(classUnderTest.size(), 2);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1001);
+    }
+
+    @Test
+    public void passWhenRecurringIsCancelledByItsOwnHandler() {
+
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100);
+        final long requestId2 = classUnderTest.scheduleRecurring(1000, 100);
+        final boolean[] isCancelledRef = {false};
+        Assert.assertEquals(
+            classUnderTest.poll(1000,
+                (Long id) -> {
+                    if (id == requestId) {
+                        isCancelledRef[0] = classUnderTest.cancel(requestId);
+                    }
+                },
+                999),
+            2);
+        Assert.assertTrue(isCancelledRef[0]);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1100);
+        Assert.assertTrue(classUnderTest.cancel(requestId2));
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenRecurringIsCancelledByLaterHandlerInSamePoll() {
+
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100);
+        final long requestId2 = classUnderTest.scheduleRecurring(1000, 100);
+        classUnderTest.schedule(1001);
+        final int[] sizeRef = {0};
+        Assert.assertEquals(
+            classUnderTest.poll(1001,
+                (Long id) -> {
+                    if (id != requestId && id != requestId2) {
+                        // Intentional: Both recurring deadlines already fired, but wait to be re-armed.
+                        sizeRef[0] = classUnderTest.size();
+                        Assert.assertTrue(classUnderTest.cancel(requestId));
+                        Assert.assertTrue(classUnderTest.reschedule(requestId2, 5000));
+                    }
+                },
+                999),
+            3);
+        Assert.assertEquals(sizeRef[0], 3);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 5000);
+        Assert.assertEquals(classUnderTest.countBetween(0, Long.MAX_VALUE), 1);
+    }
+
+    @Test
+    public void passWhenEmptyRequestIdSetsAreRemoved() {
+
+        final DeadlineEngineImp classUnderTest = new DeadlineEngineImp();
+        final long[] requestIdArr = new long[10];
+        classUnderTest.scheduleAll(new long[]{1001, 1001, 1002, 1003, 1004, 1005, 1006, 1007, 1008, 9999}, requestIdArr);
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 9);
+
+        Assert.assertTrue(classUnderTest.cancel(requestIdArr[0]));
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 9);
+        Assert.assertTrue(classUnderTest.cancel(requestIdArr[1]));
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 8);
+        Assert.assertEquals(classUnderTest.pooledRequestIdSetCount(), 1);
+        Assert.assertEquals(classUnderTest.cancelAll(new long[]{requestIdArr[2], requestIdArr[3]}), 2);
+        Assert.assertTrue(classUnderTest.reschedule(requestIdArr[4], 2000));
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 6);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1005);
+
+        // Intentional: Handler cancels a later deadline during poll.  Poll removes its empty set as it passes.
+        Assert.assertEquals(
+            classUnderTest.poll(1006,
+                (Long id) -> {
+                    if (id == requestIdArr[5]) {
+                        Assert.assertTrue(classUnderTest.cancel(requestIdArr[7]));
+                    }
+                },
+                999),
+            2);
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 4);
+        Assert.assertEquals(classUnderTest.poll(1008, (Long id) -> {}, 999), 1);
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 2);
+        final long[] outRequestIdArr = new long[2];
+        Assert.assertEquals(classUnderTest.drainTo(9999, outRequestIdArr, 0, 2), 2);
+        Assert.assertEquals(classUnderTest.requestIdSetCount(), 0);
+        Assert.assertEquals(classUnderTest.pooledRequestIdSetCount(), 9);
+        Assert.assertEquals(classUnderTest.size(), 0);
+
+        // Pooled sets are reused.  (Reschedule above reused the set it emptied.)
+        classUnderTest.schedule(5000);
+        Assert.assertEquals(classUnderTest.pooledRequestIdSetCount(), 8);
+    }
+
+    @Test
+    public void passWhenCountBetween() {
+
+        _assertCountBetween(classUnderTest);
+    }
+
+    @Test
+    public void passWhenCountBetweenIsIndexed() {
+
+        _assertCountBetween(new DeadlineEngineImp(true));
+    }
+
+    private static void _assertCountBetween(final DeadlineEngine classUnderTest) {
+
+        final long[] requestIdArr = new long[6];
+        classUnderTest.scheduleAll(new long[]{1000, 1000, 1005, 1010, 1020, 5000}, requestIdArr);
+        Assert.assertEquals(classUnderTest.countBetween(1000, 1000), 0);
+        Assert.assertEquals(classUnderTest.countBetween(1000, 1001), 2);
+        Assert.assertEquals(classUnderTest.countBetween(1001, 1010), 1);
+        Assert.assertEquals(classUnderTest.countBetween(0, Long.MAX_VALUE), 6);
+
+        final int[] countArr = new int[4];
+        classUnderTest.countHistogram(1000, 10, countArr);
+        Assert.assertEquals(countArr, new int[]{3, 1, 1, 0});
+
+        // Counts follow cancel, reschedule, and poll.
+        Assert.assertTrue(classUnderTest.cancel(requestIdArr[0]));
+        Assert.assertTrue(classUnderTest.reschedule(requestIdArr[5], 1025));
+        Assert.assertEquals(classUnderTest.poll(1005, (Long id) -> {}, 999), 2);
+        classUnderTest.countHistogram(1000, 10, countArr);
+        Assert.assertEquals(countArr, new int[]{0, 1, 2, 0});
+        Assert.assertEquals(classUnderTest.countBetween(0, Long.MAX_VALUE), classUnderTest.size());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenCountBetweenWithToBeforeFrom() {
+
+        classUnderTest.countBetween(1000, 999);
+    }
+
+    @Test
+    public void passWhenForEachPendingInDeadlineOrder() {
+
+        final long requestId = classUnderTest.schedule(3000);
+        final long requestId2 = classUnderTest.schedule(1000);
+        final long requestId3 = classUnderTest.schedule(2000);
+        final LongArrayList requestIdList = new LongArrayList();
+        final LongArrayList deadlineList = new LongArrayList();
+        classUnderTest.forEachPending((long id, long deadlineMs) -> {
+            requestIdList.add(id);
+            deadlineList.add(deadlineMs);
+        });
+        Assert.assertEquals(requestIdList.toArray(), new long[]{requestId2, requestId3, requestId});
+        Assert.assertEquals(deadlineList.toArray(), new long[]{1000, 2000, 3000});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenScheduleRecurringWithZeroPeriod() {
+
+        classUnderTest.scheduleRecurring(1000, 0);
+    }
 }
@@ -0,0 +1,125 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.github.kevinarpe.scb.trace.RecordingDeadlineEngineImp;
+import com.github.kevinarpe.scb.trace.TraceWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Range counts and iteration must behave the same for each implementation and decorator.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineEngineRangeQueryTest {
+
+    @DataProvider
+    public Object[][] engineFactoryArr() {
+
+        final Supplier<DeadlineEngine> recordingEngineFactory = () -> {
+            try {
+                return new RecordingDeadlineEngineImp(
+                    new OffHeapDeadlineEngineImp(), new TraceWriter(new ByteArrayOutputStream()));
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        final Object[][] x = {
+            {(Supplier<DeadlineEngine>) DeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) () -> new DeadlineEngineImp(true)},
+            {(Supplier<DeadlineEngine>) UsingExternalLibrariesDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) OffHeapDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) CalendarQueueDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) GenerationalHandleDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) () -> new TenantFairDeadlineEngineImp(2)},
+            {(Supplier<DeadlineEngine>)
+                () -> new InstrumentedDeadlineEngineImp(new UsingExternalLibrariesDeadlineEngineImp())},
+            {recordingEngineFactory},
+        };
+        return x;
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenCountBetween(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        final long[] requestIdArr = new long[6];
+        classUnderTest.scheduleAll(new long[]{1000, 1000, 1005, 1010, 1020, 5000}, requestIdArr);
+        Assert.assertEquals(classUnderTest.countBetween(1000, 1000), 0);
+        Assert.assertEquals(classUnderTest.countBetween(1000, 1001), 2);
+        Assert.assertEquals(classUnderTest.countBetween(1001, 1010), 1);
+        Assert.assertEquals(classUnderTest.countBetween(0, Long.MAX_VALUE), 6);
+
+        // Counts follow cancel, reschedule, and poll.
+        Assert.assertTrue(classUnderTest.cancel(requestIdArr[0]));
+        Assert.assertTrue(classUnderTest.reschedule(requestIdArr[5], 1025));
+        Assert.assertEquals(classUnderTest.poll(1005, (Long id) -> {}, 999), 2);
+        final int[] countArr = new int[4];
+        classUnderTest.countHistogram(1000, 10, countArr);
+        Assert.assertEquals(countArr, new int[]{0, 1, 2, 0});
+        Assert.assertEquals(classUnderTest.countBetween(0, Long.MAX_VALUE), classUnderTest.size());
+    }
+
+    @Test(dataProvider = "engineFactoryArr", expectedExceptions = IllegalArgumentException.class)
+    public void failWhenCountBetweenWithToBeforeFrom(final Supplier<DeadlineEngine> engineFactory) {
+
+        engineFactory.get().countBetween(1000, 999);
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenForEachPendingInDeadlineOrder(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        // Intentional: More than the initial frontier capacity of the off-heap implementation.
+        final int size = 5000;
+        final long[] deadlineArr = new long[size];
+        final Random random = new Random(size);
+        for (int i = 0; i < size; ++i) {
+            deadlineArr[i] = 1 + random.nextInt(2000);
+        }
+        final long[] requestIdArr = new long[size];
+        classUnderTest.scheduleAll(deadlineArr, requestIdArr);
+
+        final LongArrayList requestIdList = new LongArrayList();
+        final LongArrayList deadlineList = new LongArrayList();
+        classUnderTest.forEachPending((long id, long deadlineMs) -> {
+            requestIdList.add(id);
+            deadlineList.add(deadlineMs);
+        });
+        final long[] sortedDeadlineArr = deadlineArr.clone();
+        Arrays.sort(sortedDeadlineArr);
+        Assert.assertEquals(deadlineList.toArray(), sortedDeadlineArr);
+        final LongHashSet requestIdSet = new LongHashSet();
+        requestIdSet.addAll(requestIdList);
+        Assert.assertEquals(requestIdSet.size(), size);
+        for (int i = 0; i < size; ++i) {
+            Assert.assertTrue(requestIdSet.contains(requestIdArr[i]));
+        }
+        // Random deadlines are dense, so this is also a wide range count.
+        Assert.assertEquals(classUnderTest.countBetween(500, 1500),
+            Arrays.stream(deadlineArr).filter(d -> d >= 500 && d < 1500).count());
+    }
+
+    @Test
+    public void passWhenForEachPendingMergesTenants() {
+
+        final TenantFairDeadlineEngineImp classUnderTest = new TenantFairDeadlineEngineImp(3);
+        final long requestId = classUnderTest.scheduleForTenant(3000, 2);
+        final long requestId2 = classUnderTest.scheduleForTenant(1000, 0);
+        final long requestId3 = classUnderTest.scheduleForTenant(2000, 1);
+        final long requestId4 = classUnderTest.scheduleForTenant(500, 2);
+        final LongArrayList requestIdList = new LongArrayList();
+        classUnderTest.forEachPending((long id, long deadlineMs) -> requestIdList.add(id));
+        Assert.assertEquals(requestIdList.toArray(), new long[]{requestId4, requestId2, requestId3, requestId});
+        Assert.assertEquals(classUnderTest.countBetween(1000, 3000), 2);
+    }
+}
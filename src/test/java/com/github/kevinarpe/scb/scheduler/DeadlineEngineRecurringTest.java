@@ -0,0 +1,118 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.trace.RecordingDeadlineEngineImp;
+import com.github.kevinarpe.scb.trace.TraceWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Recurring deadlines must behave the same for each implementation and decorator.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineEngineRecurringTest {
+
+    @DataProvider
+    public Object[][] engineFactoryArr() {
+
+        final Supplier<DeadlineEngine> recordingEngineFactory = () -> {
+            try {
+                return new RecordingDeadlineEngineImp(
+                    new DeadlineEngineImp(), new TraceWriter(new ByteArrayOutputStream()));
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        final Object[][] x = {
+            {(Supplier<DeadlineEngine>) DeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) UsingExternalLibrariesDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) OffHeapDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) CalendarQueueDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) GenerationalHandleDeadlineEngineImp::new},
+            {(Supplier<DeadlineEngine>) () -> new TenantFairDeadlineEngineImp(2)},
+            {(Supplier<DeadlineEngine>) () -> new InstrumentedDeadlineEngineImp(new DeadlineEngineImp())},
+            {recordingEngineFactory},
+        };
+        return x;
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenRecurringIsCancelledOrRescheduledByHandler(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId2 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId3 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId4 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId5 = classUnderTest.schedule(1001);
+        Assert.assertEquals(
+            classUnderTest.poll(1001,
+                (Long id) -> {
+                    if (id == requestId) {
+                        // Intentional: Recurring deadlines waiting to be re-armed are still pending.
+                        Assert.assertEquals(classUnderTest.size(), 5);
+                        Assert.assertTrue(classUnderTest.cancel(requestId));
+                        Assert.assertFalse(classUnderTest.cancel(requestId));
+                    }
+                    else if (id == requestId5) {
+                        // Intentional: Both already fired during this poll.
+                        Assert.assertTrue(classUnderTest.cancel(requestId2));
+                        Assert.assertTrue(classUnderTest.reschedule(requestId3, 7777));
+                    }
+                },
+                999),
+            5);
+        Assert.assertEquals(classUnderTest.size(), 2);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.cancel(requestId2));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1100);
+        // Intentional: The request ID is unchanged after each re-arm.
+        Assert.assertEquals(classUnderTest.poll(1100, (Long id) -> Assert.assertEquals((long) id, requestId4), 999), 1);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1200);
+        Assert.assertTrue(classUnderTest.cancel(requestId4));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 7777);
+        Assert.assertEquals(classUnderTest.size(), 1);
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenRecurringIsRearmedByDrainTo(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.SKIP);
+        final long[] requestIdArr = new long[4];
+        Assert.assertEquals(classUnderTest.drainTo(1250, requestIdArr, 1, 3), 1);
+        Assert.assertEquals(requestIdArr[1], requestId);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1300);
+    }
+
+    @Test(dataProvider = "engineFactoryArr")
+    public void passWhenRecurringIsRearmedAfterHandlerThrows(final Supplier<DeadlineEngine> engineFactory) {
+
+        final DeadlineEngine classUnderTest = engineFactory.get();
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        classUnderTest.schedule(1001);
+        try {
+            classUnderTest.poll(1001,
+                (Long id) -> {
+                    if (id != requestId) {
+                        throw new IllegalStateException("Expected");
+                    }
+                },
+                999);
+            Assert.fail();
+        }
+        catch (IllegalStateException e) {
+            // Expected
+        }
+        // Intentional: The recurring deadline fired before the handler threw, so it must be re-armed.
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.RandomizedHashOrderMixer;
+import com.github.kevinarpe.scb.memory.JvmMemoryLayout;
+import com.google.common.collect.Ordering;
+import org.openjdk.jol.info.GraphLayout;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Estimates are checked against JOL (Java Object Layout), which reads the actual layout from the running JVM.
+ *
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineEngineRetainedBytesTest {
+
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJol() {
+
+        for (final int size : new int[]{0, 1, 13, 10_000}) {
+
+            final List<DeadlineEngine> engineList =
+                List.of(new DeadlineEngineImp(),
+                    new DeadlineEngineImp(true),
+                    new GenerationalHandleDeadlineEngineImp(),
+                    new CalendarQueueDeadlineEngineImp());
+
+            for (final DeadlineEngine engine : engineList) {
+
+                final Random random = new Random(size);
+                for (int i = 0; i < size; ++i) {
+                    final long requestId = engine.schedule(1000 + random.nextInt(5000));
+                    if (0 == i % 3) {
+                        engine.reschedule(requestId, 1000 + random.nextInt(5000));
+                    }
+                }
+                Assert.assertEquals(engine.estimatedRetainedBytes(), _retainedBytes(engine, size),
+                    engine.getClass().getSimpleName() + ": size: " + size);
+            }
+        }
+    }
+
+    // Slot arrays are never shrunk, so the estimate stays exact after removals.
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJolAfterPoll() {
+
+        final List<DeadlineEngine> engineList =
+            List.of(new GenerationalHandleDeadlineEngineImp(), new CalendarQueueDeadlineEngineImp());
+
+        for (final DeadlineEngine engine : engineList) {
+
+            final Random random = new Random(1);
+            for (int i = 0; i < 10_000; ++i) {
+                final long requestId = engine.schedule(1000 + random.nextInt(5000));
+                if (0 == i % 3) {
+                    engine.cancel(requestId);
+                }
+            }
+            engine.poll(3000, requestId -> {}, Integer.MAX_VALUE);
+            Assert.assertEquals(engine.estimatedRetainedBytes(), _retainedBytes(engine, 0),
+                engine.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJolWithExternalLibraries() {
+
+        for (final int size : new int[]{0, 1, 13, 10_000}) {
+
+            final UsingExternalLibrariesDeadlineEngineImp engine = new UsingExternalLibrariesDeadlineEngineImp();
+            final Random random = new Random(size);
+            for (int i = 0; i < size; ++i) {
+                final long requestId =
+                    (0 == i % 5)
+                        ? engine.scheduleRecurring(1000 + random.nextInt(5000), 100, RecurrencePolicy.SKIP)
+                        : engine.scheduleInGroup(1000 + random.nextInt(5000), i % 7);
+                if (0 == i % 3) {
+                    engine.reschedule(requestId, 1000 + random.nextInt(5000));
+                }
+            }
+            // Intentional: Do not stop in the middle of a request ID set.  See estimatedRetainedBytes().
+            engine.poll(2000, requestId -> {}, Integer.MAX_VALUE);
+            // Intentional: Recurrence policies are shared enum constants.
+            final long policyBytes = (0 == size) ? 0 : GraphLayout.parseInstance(RecurrencePolicy.SKIP).totalSize();
+            Assert.assertEquals(engine.estimatedRetainedBytes(), _retainedBytes(engine, engine.size()) - policyBytes,
+                "size: " + size);
+        }
+    }
+
+    // Intentional: Tenant engines do not box, so each tenant can reuse request IDs without sharing Long.valueOf().
+    @Test
+    public void passWhenEstimatedRetainedBytesMatchesJolForTenants() {
+
+        final TenantFairDeadlineEngineImp engine =
+            new TenantFairDeadlineEngineImp(GenerationalHandleDeadlineEngineImp::new, 1, 2, 3);
+        for (int i = 0; i < 10_000; ++i) {
+            engine.scheduleForTenant(1000 + i, i % 3);
+        }
+        engine.poll(2000, requestId -> {}, 100);
+        Assert.assertEquals(engine.estimatedRetainedBytes(), _retainedBytes(engine, 0));
+    }
+
+    // Direct buffers and their cleaners are linked to all other direct buffers, so JOL cannot measure this engine.
+    @Test
+    public void passWhenEstimatedRetainedBytesExcludesOffHeap() {
+
+        final OffHeapDeadlineEngineImp engine = new OffHeapDeadlineEngineImp();
+        final long emptyBytes = engine.estimatedRetainedBytes();
+        final long emptyOffHeapBytes = engine.offHeapBytes();
+        for (int i = 0; i < 100; ++i) {
+            engine.schedule(1000 + i);
+        }
+        Assert.assertEquals(engine.estimatedRetainedBytes(), emptyBytes);
+        Assert.assertEquals(engine.offHeapBytes(), emptyOffHeapBytes);
+
+        // Only recurring deadlines and group members have on-heap entries.
+        final RecurrenceTable recurrenceTable = new RecurrenceTable();
+        final DeadlineGroupTable groupTable = new DeadlineGroupTable();
+        for (int i = 0; i < 100; ++i) {
+            recurrenceTable.add(engine.scheduleRecurring(1000 + i, 100, RecurrencePolicy.SKIP), 100,
+                RecurrencePolicy.SKIP);
+            final long requestId = engine.scheduleInGroup(1000 + i, i % 7);
+            groupTable.add(requestId, i % 7);
+        }
+        Assert.assertEquals(engine.estimatedRetainedBytes() - emptyBytes,
+            recurrenceTable.estimatedRetainedBytes() - new RecurrenceTable().estimatedRetainedBytes()
+                + groupTable.estimatedRetainedBytes() - new DeadlineGroupTable().estimatedRetainedBytes());
+    }
+
+    @Test
+    public void passWhenTableEstimatedRetainedBytesMatchesJol() {
+
+        final RecurrenceTable recurrenceTable = new RecurrenceTable();
+        final DeadlineGroupTable groupTable = new DeadlineGroupTable();
+        for (int i = 0; i < 1000; ++i) {
+            recurrenceTable.add(i, 100, RecurrencePolicy.values()[i % RecurrencePolicy.values().length]);
+            recurrenceTable.deferRearm(i, 1000 + i);
+            groupTable.add(i, i % 7);
+        }
+        groupTable.removeGroup(3);
+        final long mixerBytes = GraphLayout.parseInstance(RandomizedHashOrderMixer.INSTANCE).totalSize();
+        // Intentional: Recurrence policies are shared enum constants.  Each array element is a root, so the array
+        // itself is not included.
+        final long policyBytes = GraphLayout.parseInstance((Object[]) RecurrencePolicy.values()).totalSize();
+        Assert.assertEquals(recurrenceTable.estimatedRetainedBytes(),
+            GraphLayout.parseInstance(recurrenceTable).totalSize() - mixerBytes - policyBytes);
+        Assert.assertEquals(groupTable.estimatedRetainedBytes(),
+            GraphLayout.parseInstance(groupTable).totalSize() - mixerBytes);
+    }
+
+    // Intentional: Shared singletons are excluded.
+    private static long _retainedBytes(final DeadlineEngine engine, final int scheduleCount) {
+
+        final long x;
+        if (engine instanceof DeadlineEngineImp) {
+            // Request IDs start at one, so the first 127 are shared by the Long.valueOf() cache.  Each is in a request
+            // ID set and is a hash map key, but the estimate counts each box separately.
+            final long cachedRequestIdBytes = Math.min(scheduleCount, 127) * JvmMemoryLayout.boxedLongBytes();
+            // All hash set values are the same shared dummy object.
+            final long presentBytes = (0 == scheduleCount) ? 0 : JvmMemoryLayout.objectBytes(0, 0);
+            x = GraphLayout.parseInstance(engine).totalSize() + cachedRequestIdBytes - presentBytes
+                - GraphLayout.parseInstance(Comparator.naturalOrder()).totalSize();
+        }
+        else if (engine instanceof UsingExternalLibrariesDeadlineEngineImp) {
+            // Intentional: Each request ID is boxed only once, so the Long.valueOf() cache does not matter.
+            // All tree set values are the same shared dummy object.
+            final long presentBytes = (0 == scheduleCount) ? 0 : JvmMemoryLayout.objectBytes(0, 0);
+            x = GraphLayout.parseInstance(engine).totalSize() - presentBytes
+                - GraphLayout.parseInstance(Ordering.natural()).totalSize()
+                - GraphLayout.parseInstance(RandomizedHashOrderMixer.INSTANCE).totalSize();
+        }
+        else {
+            x = GraphLayout.parseInstance(engine).totalSize()
+                - GraphLayout.parseInstance(RandomizedHashOrderMixer.INSTANCE).totalSize();
+        }
+        return x;
+    }
+}
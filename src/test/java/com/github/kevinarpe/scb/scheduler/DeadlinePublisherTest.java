@@ -0,0 +1,195 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlinePublisherTest {
+
+    private AtomicLong nowEpochMillis;
+    private ScheduledExecutorService scheduledExecutor;
+    private DeadlinePublisher classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        nowEpochMillis = new AtomicLong(1000);
+        scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+        classUnderTest =
+            new DeadlinePublisher(new DeadlineEngineImp(), nowEpochMillis::get, scheduledExecutor,
+                DeadlinePublisher.DEFAULT_MAX_BATCH_SIZE, DeadlinePublisher.DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod() {
+
+        classUnderTest.close();
+        scheduledExecutor.shutdownNow();
+    }
+
+    private static final class _TestSubscriber
+    implements DeadlineBatchSubscriber {
+
+        private final BlockingQueue<Object> signalQueue = new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile int batchCount;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNextBatch(long[] requestIdArr, int offset, int count) {
+            ++batchCount;
+            DeadlineBatchSubscriber.super.onNextBatch(requestIdArr, offset, count);
+        }
+
+        @Override
+        public void onNext(Long requestId) {
+            signalQueue.add(requestId);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signalQueue.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            signalQueue.add("complete");
+        }
+
+        private Object take()
+        throws InterruptedException {
+
+            final Object x = signalQueue.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(x);
+            return x;
+        }
+    }
+
+    @Test
+    public void passWhenDemandLimitsEmittedDeadlines()
+    throws InterruptedException {
+
+        for (int i = 0; i < 10; ++i) {
+            classUnderTest.schedule(900);
+        }
+        final _TestSubscriber subscriber = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber);
+        subscriber.subscription.request(3);
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertTrue(subscriber.take() instanceof Long);
+        }
+        Assert.assertEquals(subscriber.batchCount, 1);
+        // Intentional: Give the publisher a chance to (wrongly) emit more than demand.
+        Assert.assertNull(subscriber.signalQueue.poll(100, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(classUnderTest.size(), 7);
+
+        subscriber.subscription.request(100);
+        for (int i = 0; i < 7; ++i) {
+            Assert.assertTrue(subscriber.take() instanceof Long);
+        }
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenTimerEmitsFutureDeadline()
+    throws InterruptedException {
+
+        final _TestSubscriber subscriber = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        final long requestId = classUnderTest.schedule(1050);
+        Assert.assertNull(subscriber.signalQueue.poll(100, TimeUnit.MILLISECONDS));
+        // Fake clock moves past deadline.  The armed timer will find it.
+        nowEpochMillis.set(1050);
+        Assert.assertEquals(subscriber.take(), requestId);
+    }
+
+    @Test
+    public void passWhenSecondSubscriberReceivesError()
+    throws InterruptedException {
+
+        classUnderTest.subscribe(new _TestSubscriber());
+        final _TestSubscriber subscriber2 = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber2);
+        Assert.assertTrue(subscriber2.take() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void passWhenRequestZeroThenError()
+    throws InterruptedException {
+
+        final _TestSubscriber subscriber = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Assert.assertTrue(subscriber.take() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void passWhenCloseThenComplete()
+    throws InterruptedException {
+
+        final _TestSubscriber subscriber = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber);
+        classUnderTest.close();
+        Assert.assertEquals(subscriber.take(), "complete");
+    }
+
+    @Test
+    public void passWhenSubscriberThrowsThenBatchIsLost()
+    throws Exception {
+
+        final BlockingQueue<Long> signalQueue = new LinkedBlockingQueue<>();
+        final Flow.Subscriber<Long> subscriber =
+            new Flow.Subscriber<>() {
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(2);
+                }
+
+                @Override
+                public void onNext(Long requestId) {
+                    signalQueue.add(requestId);
+                    throw new IllegalStateException();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {}
+
+                @Override
+                public void onComplete() {}
+            };
+        final long requestId = classUnderTest.schedule(900);
+        classUnderTest.schedule(900);
+        classUnderTest.schedule(900);
+        classUnderTest.subscribe(subscriber);
+
+        Assert.assertEquals(signalQueue.poll(5, TimeUnit.SECONDS), Long.valueOf(requestId));
+        // Intentional: Wait for the single signal thread to cancel the subscription.
+        scheduledExecutor.submit(() -> {}).get();
+        // Intentional: At-most-once: The second request ID was drained, but never signalled.
+        final _TestSubscriber subscriber2 = new _TestSubscriber();
+        classUnderTest.subscribe(subscriber2);
+        subscriber2.subscription.request(10);
+        Assert.assertTrue(subscriber2.take() instanceof Long);
+        Assert.assertNull(subscriber2.signalQueue.poll(100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(signalQueue.isEmpty());
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DeadlineSchedulerTest {
+
+    private BlockingQueue<Long> firedRequestIdQueue;
+    private DeadlineScheduler classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        firedRequestIdQueue = new LinkedBlockingQueue<>();
+        // Intentional: Use a caller-runs executor, so handler is called on the poller thread.
+        classUnderTest =
+            new DeadlineScheduler(new DeadlineEngineImp(), Runnable::run, (long id) -> firedRequestIdQueue.add(id));
+        classUnderTest.start();
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod() {
+
+        classUnderTest.close();
+    }
+
+    @Test
+    public void passWhenEarlierDeadlineWakesParkedPoller()
+    throws InterruptedException {
+
+        final long nowEpochMillis = System.currentTimeMillis();
+        // Poller will park until (at most) max park millis.
+        final long laterRequestId = classUnderTest.schedule(nowEpochMillis + 60_000);
+        Thread.sleep(50);
+        final long requestId = classUnderTest.schedule(nowEpochMillis + 100);
+
+        // Intentional: Timeout is much less than default max park millis, so we know the poller was woken.
+        final Long firedRequestId = firedRequestIdQueue.poll(900, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(firedRequestId, Long.valueOf(requestId));
+        Assert.assertTrue(System.currentTimeMillis() >= nowEpochMillis + 100);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), nowEpochMillis + 60_000);
+        Assert.assertTrue(classUnderTest.cancel(laterRequestId));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), DeadlineEngine.NO_DEADLINE_MS);
+    }
+
+    @Test
+    public void passWhenCancelBeforeDeadline()
+    throws InterruptedException {
+
+        final long nowEpochMillis = System.currentTimeMillis();
+        final long requestId = classUnderTest.schedule(nowEpochMillis + 100);
+        final long requestId2 = classUnderTest.schedule(nowEpochMillis + 150);
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+
+        final Long firedRequestId = firedRequestIdQueue.poll(900, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(firedRequestId, Long.valueOf(requestId2));
+        Assert.assertTrue(firedRequestIdQueue.isEmpty());
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenRejectedRequestIdIsDispatchedAgain()
+    throws InterruptedException {
+
+        final BlockingQueue<Long> rejectedRequestIdQueue = new LinkedBlockingQueue<>();
+        final AtomicInteger rejectCount = new AtomicInteger(2);
+        final Executor rejectingExecutor =
+            (Runnable task) -> {
+                if (rejectCount.getAndDecrement() > 0) {
+                    throw new RejectedExecutionException();
+                }
+                task.run();
+            };
+        try (final DeadlineScheduler scheduler =
+                 new DeadlineScheduler(
+                     new DeadlineEngineImp(),
+                     MillisClock.SYSTEM,
+                     rejectingExecutor,
+                     (long id) -> firedRequestIdQueue.add(id),
+                     (Throwable cause, long[] requestIdArr, int offset, int count) -> {
+                         Assert.assertTrue(cause instanceof RejectedExecutionException);
+                         for (int i = offset; i < offset + count; ++i) {
+                             rejectedRequestIdQueue.add(requestIdArr[i]);
+                         }
+                     },
+                     DeadlineScheduler.DEFAULT_MAX_POLL_COUNT,
+                     10)) {
+
+            // Intentional: Schedule before start, so both request IDs are in the same batch.
+            final long nowEpochMillis = System.currentTimeMillis();
+            final long requestId = scheduler.schedule(nowEpochMillis);
+            final long requestId2 = scheduler.schedule(nowEpochMillis);
+            scheduler.start();
+
+            // Each rejection is retried.  Nothing is lost.
+            Assert.assertEquals(firedRequestIdQueue.poll(900, TimeUnit.MILLISECONDS), Long.valueOf(requestId));
+            Assert.assertEquals(firedRequestIdQueue.poll(900, TimeUnit.MILLISECONDS), Long.valueOf(requestId2));
+            Assert.assertEquals(rejectedRequestIdQueue.poll(), Long.valueOf(requestId));
+            Assert.assertEquals(rejectedRequestIdQueue.poll(), Long.valueOf(requestId2));
+            Assert.assertEquals(rejectedRequestIdQueue.poll(), Long.valueOf(requestId));
+            Assert.assertEquals(rejectedRequestIdQueue.poll(), Long.valueOf(requestId2));
+            Assert.assertTrue(rejectedRequestIdQueue.isEmpty());
+            Assert.assertEquals(scheduler.size(), 0);
+        }
+    }
+
+    @Test
+    public void passWhenCloseReportsRejectedRequestId()
+    throws InterruptedException {
+
+        final BlockingQueue<Throwable> errorQueue = new LinkedBlockingQueue<>();
+        final BlockingQueue<Long> rejectedRequestIdQueue = new LinkedBlockingQueue<>();
+        final DeadlineScheduler scheduler =
+            new DeadlineScheduler(
+                new DeadlineEngineImp(),
+                MillisClock.SYSTEM,
+                (Runnable task) -> { throw new RejectedExecutionException(); },
+                (long id) -> firedRequestIdQueue.add(id),
+                (Throwable cause, long[] requestIdArr, int offset, int count) -> {
+                    errorQueue.add(cause);
+                    rejectedRequestIdQueue.add(requestIdArr[offset]);
+                },
+                DeadlineScheduler.DEFAULT_MAX_POLL_COUNT,
+                10);
+        scheduler.start();
+        final long requestId = scheduler.schedule(System.currentTimeMillis());
+        Assert.assertTrue(errorQueue.poll(900, TimeUnit.MILLISECONDS) instanceof RejectedExecutionException);
+        scheduler.close();
+
+        // The poller thread is still alive until close.  Then, the last rejected request ID is reported.
+        Throwable lastError = null;
+        for (Throwable error; null != (error = errorQueue.poll()); ) {
+            lastError = error;
+        }
+        Assert.assertTrue(lastError instanceof IllegalStateException);
+        Assert.assertTrue(rejectedRequestIdQueue.stream().allMatch(x -> x == requestId));
+        Assert.assertTrue(firedRequestIdQueue.isEmpty());
+    }
+}
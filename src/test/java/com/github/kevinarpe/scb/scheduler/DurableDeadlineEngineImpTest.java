@@ -0,0 +1,288 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongHashSet;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class DurableDeadlineEngineImpTest {
+
+    private Path dirPath;
+
+    @BeforeMethod
+    public void beforeEachTestMethod()
+    throws IOException {
+
+        dirPath = Files.createTempDirectory(getClass().getSimpleName());
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod() {
+
+        final File[] fileArr = dirPath.toFile().listFiles();
+        if (null != fileArr) {
+            for (final File file : fileArr) {
+                file.delete();
+            }
+        }
+        dirPath.toFile().delete();
+    }
+
+    @Test
+    public void passWhenRecoverFromLogOnly()
+    throws IOException {
+
+        final long requestId;
+        final long requestId2;
+        final long requestId3;
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            requestId = classUnderTest.schedule(1234);
+            requestId2 = classUnderTest.schedule(1235);
+            requestId3 = classUnderTest.schedule(1236);
+            Assert.assertTrue(classUnderTest.cancel(requestId2));
+            final int count = classUnderTest.poll(1234, any -> {}, 999);
+            Assert.assertEquals(count, 1);
+            Assert.assertEquals(classUnderTest.size(), 1);
+        }
+        Assert.assertTrue(Files.notExists(dirPath.resolve(DurableDeadlineEngineImp.SNAPSHOT_FILE_NAME)));
+
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 1);
+            // Request IDs are never reused after recovery.
+            Assert.assertEquals(classUnderTest.schedule(1237), 1 + requestId3);
+
+            final LongHashSet requestIdSet = new LongHashSet();
+            final int count = classUnderTest.poll(1236, (Long id) -> requestIdSet.add(id), 999);
+            Assert.assertEquals(count, 1);
+            Assert.assertTrue(requestIdSet.contains(requestId3));
+            Assert.assertFalse(requestIdSet.contains(requestId));
+        }
+    }
+
+    @Test
+    public void passWhenRecoverFromSnapshotAndLog()
+    throws IOException {
+
+        final int logCapacityRecordCount = 8;
+        final int requestIdCount = 100;
+        final LongHashSet expectedRequestIdSet = new LongHashSet();
+        try (final DurableDeadlineEngineImp classUnderTest =
+                 new DurableDeadlineEngineImp(dirPath, logCapacityRecordCount, 1)) {
+
+            for (int i = 0; i < requestIdCount; ++i) {
+
+                final long requestId = classUnderTest.schedule(1000 + i);
+                // Cancel every odd request ID
+                if (1 == (i % 2)) {
+                    Assert.assertTrue(classUnderTest.cancel(requestId));
+                }
+                else {
+                    expectedRequestIdSet.add(requestId);
+                }
+            }
+        }
+        Assert.assertTrue(Files.exists(dirPath.resolve(DurableDeadlineEngineImp.SNAPSHOT_FILE_NAME)));
+
+        try (final DurableDeadlineEngineImp classUnderTest =
+                 new DurableDeadlineEngineImp(dirPath, logCapacityRecordCount, 1)) {
+
+            Assert.assertEquals(classUnderTest.size(), expectedRequestIdSet.size());
+            final LongHashSet requestIdSet = new LongHashSet();
+            final int count = classUnderTest.poll(Long.MAX_VALUE, (Long id) -> requestIdSet.add(id), 999);
+            Assert.assertEquals(count, expectedRequestIdSet.size());
+            Assert.assertTrue(requestIdSet.equals(expectedRequestIdSet));
+        }
+        // Fires are also recovered.
+        try (final DurableDeadlineEngineImp classUnderTest =
+                 new DurableDeadlineEngineImp(dirPath, logCapacityRecordCount, 1)) {
+
+            Assert.assertEquals(classUnderTest.size(), 0);
+        }
+    }
+
+    @Test
+    public void passWhenRescheduledByHandlerIsRecovered()
+    throws IOException {
+
+        final long requestId;
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            requestId = classUnderTest.schedule(1234);
+            final int count = classUnderTest.poll(1234, (Long id) -> classUnderTest.reschedule(id, 2000), 999);
+            Assert.assertEquals(count, 1);
+            Assert.assertEquals(classUnderTest.size(), 1);
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 1);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 2000);
+            Assert.assertEquals(classUnderTest.poll(1999, any -> {}, 999), 0);
+
+            final LongHashSet requestIdSet = new LongHashSet();
+            final int count = classUnderTest.poll(2000, (Long id) -> requestIdSet.add(id), 999);
+            Assert.assertEquals(count, 1);
+            Assert.assertTrue(requestIdSet.contains(requestId));
+        }
+    }
+
+    @Test
+    public void passWhenLogIsFullDuringPoll()
+    throws IOException {
+
+        final int logCapacityRecordCount = 8;
+        final LongHashSet expectedRequestIdSet = new LongHashSet();
+        try (final DurableDeadlineEngineImp classUnderTest =
+                 new DurableDeadlineEngineImp(dirPath, logCapacityRecordCount, 1)) {
+
+            classUnderTest.schedule(1000);
+            classUnderTest.schedule(1001);
+            // Intentional: Each handler appends many more records than the log holds.
+            final int count =
+                classUnderTest.poll(1001,
+                    (Long id) -> {
+                        for (int i = 0; i < 3 * logCapacityRecordCount; ++i) {
+                            expectedRequestIdSet.add(classUnderTest.schedule(2000 + i));
+                        }
+                        // Deferred until poll returns
+                        classUnderTest.snapshot();
+                    },
+                    999);
+            Assert.assertEquals(count, 2);
+            Assert.assertEquals(classUnderTest.size(), expectedRequestIdSet.size());
+        }
+        try (final DurableDeadlineEngineImp classUnderTest =
+                 new DurableDeadlineEngineImp(dirPath, logCapacityRecordCount, 1)) {
+
+            Assert.assertEquals(classUnderTest.size(), expectedRequestIdSet.size());
+            final LongHashSet requestIdSet = new LongHashSet();
+            classUnderTest.poll(Long.MAX_VALUE, (Long id) -> requestIdSet.add(id), 999);
+            Assert.assertTrue(requestIdSet.equals(expectedRequestIdSet));
+        }
+    }
+
+    @Test
+    public void passWhenRecurringIsRecoveredFromLogThenSnapshot()
+    throws IOException {
+
+        final long requestId;
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.SKIP);
+            final long requestId2 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+            Assert.assertEquals(classUnderTest.poll(1000, any -> {}, 999), 2);
+            Assert.assertTrue(classUnderTest.cancel(requestId2));
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            // Intentional: The fire is logged as a reschedule, so the recurrence is not lost.
+            Assert.assertEquals(classUnderTest.size(), 1);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1100);
+            Assert.assertEquals(classUnderTest.poll(1250, (Long id) -> Assert.assertEquals((long) id, requestId), 999), 1);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1300);
+            classUnderTest.snapshot();
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 1);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1300);
+            Assert.assertEquals(classUnderTest.poll(1300, (Long id) -> Assert.assertEquals((long) id, requestId), 999), 1);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1400);
+        }
+    }
+
+    @Test
+    public void passWhenGroupIsRecoveredFromLogThenSnapshot()
+    throws IOException {
+
+        final long requestId;
+        final long requestId2;
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            requestId = classUnderTest.scheduleInGroup(1000, 7);
+            requestId2 = classUnderTest.scheduleInGroup(2000, 7);
+            classUnderTest.scheduleInGroup(3000, 8);
+            classUnderTest.scheduleInGroup(4000, 8);
+            Assert.assertEquals(classUnderTest.cancelGroup(8), 2);
+            Assert.assertEquals(classUnderTest.cancelGroup(9), 0);
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 2);
+            Assert.assertEquals(classUnderTest.cancelGroup(8), 0);
+            classUnderTest.snapshot();
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 2);
+            Assert.assertEquals(classUnderTest.poll(1000, (Long id) -> Assert.assertEquals((long) id, requestId), 999),
+                1);
+            Assert.assertEquals(classUnderTest.cancelGroup(7), 1);
+            Assert.assertFalse(classUnderTest.cancel(requestId2));
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+
+            Assert.assertEquals(classUnderTest.size(), 0);
+        }
+    }
+
+    @Test
+    public void passWhenRecurringIsRecoveredFromTinyLog()
+    throws IOException {
+
+        // Intentional: A schedule and its recurrence are written as a pair, which does not fit in this log.
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath, 1, 1)) {
+
+            for (int i = 0; i < 3; ++i) {
+                classUnderTest.scheduleRecurring(1000 + i, 100, RecurrencePolicy.FIXED_DELAY);
+            }
+            Assert.assertEquals(classUnderTest.drainTo(1001, new long[3], 0, 3), 2);
+        }
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath, 1, 1)) {
+
+            Assert.assertEquals(classUnderTest.size(), 3);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1002);
+            Assert.assertEquals(classUnderTest.poll(1101, any -> {}, 999), 3);
+            Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1201);
+        }
+    }
+
+    @Test
+    public void passWhenLockIsReleasedAfterRecoveryFails()
+    throws IOException {
+
+        final Path snapshotFilePath = dirPath.resolve(DurableDeadlineEngineImp.SNAPSHOT_FILE_NAME);
+        Files.write(snapshotFilePath, new byte[64]);
+        try {
+            new DurableDeadlineEngineImp(dirPath);
+            Assert.fail();
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Invalid snapshot file"), e.getMessage());
+        }
+        Files.delete(snapshotFilePath);
+        // Intentional: Without release, this throws, as if another instance were using the directory.
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+            Assert.assertEquals(classUnderTest.size(), 0);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void failWhenDirectoryAlreadyInUse()
+    throws IOException {
+
+        try (final DurableDeadlineEngineImp classUnderTest = new DurableDeadlineEngineImp(dirPath)) {
+            new DurableDeadlineEngineImp(dirPath);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class FlatCombiningDeadlineEngineImpTest {
+
+    private FlatCombiningDeadlineEngineImp classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new FlatCombiningDeadlineEngineImp(new GenerationalHandleDeadlineEngineImp());
+    }
+
+    @Test
+    public void passWhenSingleThread() {
+
+        final long requestId = classUnderTest.schedule(1234);
+        final long requestId2 = classUnderTest.schedule(1235);
+        Assert.assertTrue(classUnderTest.reschedule(requestId2, 1233));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1233);
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        final long[] requestIdArr = new long[2];
+        classUnderTest.scheduleAll(new long[]{2000, 2001}, requestIdArr);
+        Assert.assertEquals(classUnderTest.cancelAll(requestIdArr), 2);
+        final LongArrayList requestIdList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(9999, (Long id) -> requestIdList.add(id), 999), 1);
+        Assert.assertEquals(requestIdList.get(0), requestId2);
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void failWhenDelegateThrows() {
+
+        // Intentional: The exception is thrown by the delegate, possibly in the combiner, but must be rethrown here.
+        classUnderTest.schedule(-1);
+    }
+
+    // Four threads each schedule, then cancel half of their own request IDs, while one thread drains.  Each request ID
+    // must be returned exactly once: by schedule, then either by cancel or drain.
+    @Test
+    public void passWhenManyThreadsScheduleCancelAndDrain()
+    throws InterruptedException {
+
+        final int threadCount = 4;
+        final int requestIdCountPerThread = 200_000;
+        final List<Throwable> exceptionList = Collections.synchronizedList(new ArrayList<>());
+        final LongHashSet cancelledRequestIdSet = new LongHashSet();
+        final LongHashSet drainedRequestIdSet = new LongHashSet();
+        final AtomicLong nowEpochMillis = new AtomicLong(1000);
+        final List<Thread> threadList = new ArrayList<>();
+        for (int t = 0; t < threadCount; ++t) {
+
+            final Thread thread = new Thread(() -> {
+                final LongArrayList requestIdList = new LongArrayList();
+                for (int i = 0; i < requestIdCountPerThread; ++i) {
+
+                    requestIdList.add(classUnderTest.schedule(nowEpochMillis.get() + (i % 100)));
+                    if (1 == i % 2 && classUnderTest.cancel(requestIdList.get(i - 1))) {
+                        synchronized (cancelledRequestIdSet) {
+                            Assert.assertTrue(cancelledRequestIdSet.add(requestIdList.get(i - 1)));
+                        }
+                    }
+                }
+            });
+            thread.setUncaughtExceptionHandler((Thread x, Throwable e) -> exceptionList.add(e));
+            threadList.add(thread);
+        }
+        final Thread drainThread = new Thread(() -> {
+            final long[] requestIdArr = new long[1024];
+            while (threadList.stream().anyMatch(Thread::isAlive)) {
+
+                final int count = classUnderTest.drainTo(nowEpochMillis.incrementAndGet(), requestIdArr, 0, 1024);
+                for (int i = 0; i < count; ++i) {
+                    Assert.assertTrue(drainedRequestIdSet.add(requestIdArr[i]));
+                }
+            }
+        });
+        drainThread.setUncaughtExceptionHandler((Thread x, Throwable e) -> exceptionList.add(e));
+        threadList.forEach(Thread::start);
+        drainThread.start();
+        for (final Thread thread : threadList) {
+            thread.join();
+        }
+        drainThread.join();
+        Assert.assertEquals(exceptionList, Collections.emptyList());
+
+        final long[] requestIdArr = new long[threadCount * requestIdCountPerThread];
+        final int count = classUnderTest.drainTo(Long.MAX_VALUE / 2, requestIdArr, 0, requestIdArr.length);
+        for (int i = 0; i < count; ++i) {
+            Assert.assertTrue(drainedRequestIdSet.add(requestIdArr[i]));
+        }
+        Assert.assertEquals(classUnderTest.size(), 0);
+        for (final LongCursor cursor : cancelledRequestIdSet) {
+            Assert.assertFalse(drainedRequestIdSet.contains(cursor.value));
+        }
+        Assert.assertEquals(cancelledRequestIdSet.size() + drainedRequestIdSet.size(),
+            threadCount * requestIdCountPerThread);
+    }
+}
@@ -0,0 +1,198 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongLongCursor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class GenerationalHandleDeadlineEngineImpTest {
+
+    private GenerationalHandleDeadlineEngineImp classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new GenerationalHandleDeadlineEngineImp();
+    }
+
+    @Test
+    public void passWhenStaleRequestIdIsRejectedAfterSlotIsReused() {
+
+        final long requestId = classUnderTest.schedule(1234);
+        Assert.assertEquals(requestId >>> 32, GenerationalHandleDeadlineEngineImp.MIN_GENERATION);
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+
+        // Intentional: Most recently freed slot is reused first.
+        final long requestId2 = classUnderTest.schedule(1235);
+        Assert.assertEquals((int) requestId2, (int) requestId);
+        Assert.assertNotEquals(requestId2, requestId);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.reschedule(requestId, 999));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1235);
+
+        final LongArrayList requestIdList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(2000, (Long id) -> requestIdList.add(id), 999), 1);
+        Assert.assertEquals(requestIdList.get(0), requestId2);
+        Assert.assertFalse(classUnderTest.cancel(requestId2));
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenCancelRandomRequestId() {
+
+        classUnderTest.schedule(1234);
+        Assert.assertFalse(classUnderTest.cancel(0));
+        Assert.assertFalse(classUnderTest.cancel(-1));
+        Assert.assertFalse(classUnderTest.cancel(Long.MAX_VALUE));
+        Assert.assertFalse(classUnderTest.cancel(Long.MIN_VALUE));
+        // Slot is valid, but was never used.
+        Assert.assertFalse(classUnderTest.cancel((((long) GenerationalHandleDeadlineEngineImp.MIN_GENERATION) << 32) | 7));
+        Assert.assertEquals(classUnderTest.size(), 1);
+    }
+
+    @Test
+    public void passWhenRecurringIsCancelledOrRescheduledByHandler() {
+
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId2 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long requestId3 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final int[] cancelCountRef = {0};
+        Assert.assertEquals(
+            classUnderTest.poll(1000,
+                (Long id) -> {
+                    // Intentional: Recurring deadlines waiting to be re-armed are still pending.
+                    Assert.assertEquals(classUnderTest.size(), 3 - cancelCountRef[0]);
+                    if (id == requestId) {
+                        Assert.assertTrue(classUnderTest.cancel(requestId));
+                        ++cancelCountRef[0];
+                    }
+                    else if (id == requestId2) {
+                        Assert.assertTrue(classUnderTest.reschedule(requestId2, 7777));
+                    }
+                },
+                999),
+            3);
+        Assert.assertEquals(classUnderTest.size(), 2);
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1100);
+        // Intentional: No slot allocation on re-arm, so the request ID is unchanged.
+        Assert.assertEquals(classUnderTest.poll(1100, (Long id) -> Assert.assertEquals((long) id, requestId3), 999), 1);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1200);
+        Assert.assertTrue(classUnderTest.cancel(requestId3));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 7777);
+    }
+
+    @Test
+    public void passWhenCancelGroup() {
+
+        final long requestId = classUnderTest.scheduleInGroup(1000, 7);
+        final long requestId2 = classUnderTest.scheduleInGroup(2000, 7);
+        final long requestId3 = classUnderTest.scheduleInGroup(3000, 7);
+        final long requestId4 = classUnderTest.scheduleInGroup(3000, 8);
+        final long requestId5 = classUnderTest.schedule(3000);
+        // Intentional: Recurring members stay in their group after each fire.
+        final long requestId6 = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.SKIP);
+        Assert.assertEquals(classUnderTest.cancelGroup(6), 0);
+
+        // Fired and cancelled members leave their group.
+        Assert.assertEquals(classUnderTest.poll(1000, (Long id) -> {}, 999), 2);
+        Assert.assertTrue(classUnderTest.cancel(requestId3));
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId2));
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 0);
+        Assert.assertEquals(classUnderTest.size(), 3);
+
+        // Slots are reused by the next group.
+        final long requestId7 = classUnderTest.scheduleInGroup(4000, 7);
+        Assert.assertEquals(classUnderTest.cancelGroup(8), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId4));
+        Assert.assertEquals(classUnderTest.size(), 3);
+        Assert.assertTrue(classUnderTest.cancel(requestId5));
+        Assert.assertTrue(classUnderTest.cancel(requestId6));
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 1);
+        Assert.assertFalse(classUnderTest.cancel(requestId7));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    // Compare behaviour against a trivial reference model with random operations.  Volume is enough to force the
+    // slot arrays to grow, and each slot to be reused many times.
+    @Test
+    public void passWhenRandomOperationsMatchReferenceModel() {
+
+        final LongLongHashMap requestId_To_DeadlineEpochMillis_Map = new LongLongHashMap();
+        final Random random = new Random(12345);
+        final LongArrayList requestIdList = new LongArrayList();
+        long nowEpochMillis = 1000;
+        for (int i = 0; i < 200_000; ++i) {
+
+            final int op = random.nextInt(10);
+            if (op < 6) {
+                final long deadlineEpochMillis = nowEpochMillis + random.nextInt(1000);
+                final long requestId = classUnderTest.schedule(deadlineEpochMillis);
+                requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+                requestIdList.add(requestId);
+            }
+            else if (op < 7) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final boolean isCancelled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+                    Assert.assertEquals(classUnderTest.cancel(requestId), isCancelled);
+                }
+            }
+            else if (op < 9) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final long newDeadlineEpochMillis = nowEpochMillis + random.nextInt(1000);
+                    final boolean isRescheduled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    if (isRescheduled) {
+                        requestId_To_DeadlineEpochMillis_Map.put(requestId, newDeadlineEpochMillis);
+                    }
+                    Assert.assertEquals(classUnderTest.reschedule(requestId, newDeadlineEpochMillis), isRescheduled);
+                }
+            }
+            else {
+                nowEpochMillis += random.nextInt(50);
+                final LongHashSet expectedRequestIdSet = new LongHashSet();
+                long expectedNextDeadlineEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+                for (final LongLongCursor cursor : requestId_To_DeadlineEpochMillis_Map) {
+                    if (cursor.value <= nowEpochMillis) {
+                        expectedRequestIdSet.add(cursor.key);
+                    }
+                    else {
+                        expectedNextDeadlineEpochMillis = Math.min(expectedNextDeadlineEpochMillis, cursor.value);
+                    }
+                }
+                requestId_To_DeadlineEpochMillis_Map.removeAll(expectedRequestIdSet);
+                // Intentional: Use a large max poll, so all expired deadlines must fire.
+                final LongHashSet requestIdSet = new LongHashSet();
+                final int count;
+                // Intentional: Alternate between poll and drain.  Both must behave the same.
+                if (random.nextBoolean()) {
+                    count = classUnderTest.poll(nowEpochMillis, (Long id) -> requestIdSet.add(id), Integer.MAX_VALUE);
+                }
+                else {
+                    final int maxCount = Math.max(1, expectedRequestIdSet.size());
+                    final long[] requestIdArr = new long[1 + maxCount];
+                    count = classUnderTest.drainTo(nowEpochMillis, requestIdArr, 1, maxCount);
+                    for (int k = 1; k <= count; ++k) {
+                        requestIdSet.add(requestIdArr[k]);
+                    }
+                }
+                Assert.assertEquals(count, expectedRequestIdSet.size());
+                Assert.assertTrue(requestIdSet.equals(expectedRequestIdSet));
+                Assert.assertEquals(classUnderTest.nextDeadlineMs(), expectedNextDeadlineEpochMillis);
+            }
+            Assert.assertEquals(classUnderTest.size(), requestId_To_DeadlineEpochMillis_Map.size());
+        }
+    }
+}
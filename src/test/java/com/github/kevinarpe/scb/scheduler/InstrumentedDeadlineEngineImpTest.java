@@ -0,0 +1,114 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.github.kevinarpe.scb.metrics.LogLinearHistogram;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class InstrumentedDeadlineEngineImpTest {
+
+    private InstrumentedDeadlineEngineImp classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+        classUnderTest = new InstrumentedDeadlineEngineImp(new DeadlineEngineImp());
+    }
+
+    @Test
+    public void passWhenCountScheduleCancelRescheduleAndFire() {
+
+        final long requestId1 = classUnderTest.schedule(1000);
+        final long requestId2 = classUnderTest.schedule(2000);
+        classUnderTest.schedule(3000);
+        Assert.assertTrue(classUnderTest.cancel(requestId1));
+        Assert.assertFalse(classUnderTest.cancel(requestId1));
+        Assert.assertTrue(classUnderTest.reschedule(requestId2, 1500));
+
+        final DeadlineEngineMetricsSnapshot x = classUnderTest.metricsSnapshot();
+        Assert.assertEquals(x.scheduledCount, 3);
+        Assert.assertEquals(x.cancelledCount, 1);
+        Assert.assertEquals(x.rescheduledCount, 1);
+        Assert.assertEquals(x.firedCount, 0);
+        Assert.assertEquals(x.pendingCount, 2);
+
+        Assert.assertEquals(classUnderTest.poll(5000, any -> {}, 10), 2);
+        final DeadlineEngineMetricsSnapshot y = classUnderTest.metricsSnapshot();
+        Assert.assertEquals(y.firedCount, 2);
+        Assert.assertEquals(y.pollCount, 1);
+        Assert.assertEquals(y.backlogCount, 0);
+        Assert.assertEquals(y.pendingCount, 0);
+        // Intentional: Lateness is recorded once per poll.
+        Assert.assertEquals(y.latenessMsHistogram.totalCount, 1);
+        Assert.assertTrue(y.latenessMsHistogram.max() >= 5000 - 1500);
+    }
+
+    @Test
+    public void passWhenLatenessIsRecorded() {
+
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.schedule(1000 + i);
+        }
+        // Lateness for each poll: 100, 90, ..., 10
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(classUnderTest.poll(1100, any -> {}, 10), 10);
+        }
+        // Intentional: Nothing is expired, so nothing is recorded.
+        Assert.assertEquals(classUnderTest.poll(1100, any -> {}, 10), 0);
+        final LogLinearHistogram.Snapshot x = classUnderTest.metricsSnapshot().latenessMsHistogram;
+        Assert.assertEquals(x.totalCount, 10);
+        Assert.assertEquals(x.min(), 10);
+        Assert.assertTrue(x.max() >= 100);
+        final long p50 = x.valueAtPercentile(50.0);
+        Assert.assertTrue(p50 >= 50 && p50 <= 50 + 50 / LogLinearHistogram.SUB_BUCKET_COUNT, "p50: " + p50);
+    }
+
+    @Test
+    public void passWhenBacklog() {
+
+        for (int i = 0; i < 10; ++i) {
+            classUnderTest.schedule(1000 + i);
+        }
+        Assert.assertEquals(classUnderTest.poll(2000, any -> {}, 4), 4);
+        final DeadlineEngineMetricsSnapshot x = classUnderTest.metricsSnapshot();
+        Assert.assertEquals(x.backlogCount, 6);
+        Assert.assertEquals(x.backlogLatenessMs, 2000 - 1004);
+
+        Assert.assertEquals(classUnderTest.poll(2000, any -> {}, 6), 6);
+        final DeadlineEngineMetricsSnapshot y = classUnderTest.metricsSnapshot();
+        Assert.assertEquals(y.backlogCount, 0);
+        Assert.assertEquals(y.backlogLatenessMs, 0);
+    }
+
+    @Test
+    public void passWhenBacklogIsLeftByRecurringCatchUp() {
+
+        classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        final long[] outRequestIdArr = new long[10];
+        Assert.assertEquals(classUnderTest.drainTo(1250, outRequestIdArr, 0, 10), 1);
+        // Intentional: Re-armed to 1100, which is already expired.
+        final DeadlineEngineMetricsSnapshot x = classUnderTest.metricsSnapshot();
+        Assert.assertEquals(x.firedCount, 1);
+        Assert.assertEquals(x.backlogCount, 1);
+        Assert.assertEquals(x.backlogLatenessMs, 1250 - 1100);
+        Assert.assertEquals(x.pendingCount, 1);
+    }
+
+    @Test
+    public void passWhenHandlerThrows() {
+
+        classUnderTest.schedule(1000);
+        try {
+            classUnderTest.poll(2000, any -> { throw new IllegalStateException(); }, 1);
+            Assert.fail();
+        }
+        catch (IllegalStateException ignore) {
+            // empty
+        }
+        Assert.assertEquals(classUnderTest.metricsSnapshot().firedCount, 0);
+        Assert.assertEquals(classUnderTest.poll(2000, any -> {}, 1), 1);
+        Assert.assertEquals(classUnderTest.metricsSnapshot().firedCount, 1);
+    }
+}
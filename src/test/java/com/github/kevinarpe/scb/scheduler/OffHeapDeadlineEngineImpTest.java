@@ -0,0 +1,145 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongLongHashMap;
+import com.carrotsearch.hppc.cursors.LongLongCursor;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class OffHeapDeadlineEngineImpTest {
+
+    private OffHeapDeadlineEngineImp classUnderTest;
+
+    @BeforeMethod
+    public void beforeEachTestMethod() {
+
+        classUnderTest = new OffHeapDeadlineEngineImp();
+    }
+
+    @Test
+    public void passWhenScheduleThenPollInDeadlineOrder() {
+
+        final long requestId = classUnderTest.schedule(1236);
+        final long requestId2 = classUnderTest.schedule(1234);
+        final long requestId3 = classUnderTest.schedule(1235);
+        Assert.assertEquals(requestId, OffHeapDeadlineEngineImp.MIN_REQUEST_ID);
+        Assert.assertEquals(classUnderTest.size(), 3);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1234);
+
+        final LongArrayList requestIdList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(1233, (Long id) -> requestIdList.add(id), 999), 0);
+        Assert.assertEquals(classUnderTest.poll(1235, (Long id) -> requestIdList.add(id), 999), 2);
+        Assert.assertEquals(requestIdList.get(0), requestId2);
+        Assert.assertEquals(requestIdList.get(1), requestId3);
+        Assert.assertEquals(classUnderTest.size(), 1);
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        Assert.assertEquals(classUnderTest.size(), 0);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), DeadlineEngine.NO_DEADLINE_MS);
+    }
+
+    // Compare behaviour against a trivial reference model with random operations.  Volume is enough to force the
+    // off-heap arrays to grow and trim many times.
+    @Test
+    public void passWhenRandomOperationsMatchReferenceModel() {
+
+        final LongLongHashMap requestId_To_DeadlineEpochMillis_Map = new LongLongHashMap();
+        final Random random = new Random(12345);
+        final LongArrayList requestIdList = new LongArrayList();
+        long nowEpochMillis = 1000;
+        for (int i = 0; i < 200_000; ++i) {
+
+            final int op = random.nextInt(10);
+            if (op < 6) {
+                final long deadlineEpochMillis = nowEpochMillis + random.nextInt(1000);
+                final long requestId = classUnderTest.schedule(deadlineEpochMillis);
+                requestId_To_DeadlineEpochMillis_Map.put(requestId, deadlineEpochMillis);
+                requestIdList.add(requestId);
+            }
+            else if (op < 7) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final boolean isCancelled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    requestId_To_DeadlineEpochMillis_Map.remove(requestId);
+                    Assert.assertEquals(classUnderTest.cancel(requestId), isCancelled);
+                }
+            }
+            else if (op < 9) {
+                if (false == requestIdList.isEmpty()) {
+                    final long requestId = requestIdList.get(random.nextInt(requestIdList.size()));
+                    final long newDeadlineEpochMillis = nowEpochMillis + random.nextInt(1000);
+                    final boolean isRescheduled = requestId_To_DeadlineEpochMillis_Map.containsKey(requestId);
+                    if (isRescheduled) {
+                        requestId_To_DeadlineEpochMillis_Map.put(requestId, newDeadlineEpochMillis);
+                    }
+                    Assert.assertEquals(classUnderTest.reschedule(requestId, newDeadlineEpochMillis), isRescheduled);
+                }
+            }
+            else {
+                nowEpochMillis += random.nextInt(50);
+                final LongHashSet expectedRequestIdSet = new LongHashSet();
+                long expectedNextDeadlineEpochMillis = DeadlineEngine.NO_DEADLINE_MS;
+                for (final LongLongCursor cursor : requestId_To_DeadlineEpochMillis_Map) {
+                    if (cursor.value <= nowEpochMillis) {
+                        expectedRequestIdSet.add(cursor.key);
+                    }
+                    else {
+                        expectedNextDeadlineEpochMillis = Math.min(expectedNextDeadlineEpochMillis, cursor.value);
+                    }
+                }
+                requestId_To_DeadlineEpochMillis_Map.removeAll(expectedRequestIdSet);
+                // Intentional: Use a large max poll, so all expired deadlines must fire.
+                final LongHashSet requestIdSet = new LongHashSet();
+                final int count = classUnderTest.poll(nowEpochMillis, (Long id) -> requestIdSet.add(id), Integer.MAX_VALUE);
+                Assert.assertEquals(count, expectedRequestIdSet.size());
+                Assert.assertTrue(requestIdSet.equals(expectedRequestIdSet));
+                Assert.assertEquals(classUnderTest.nextDeadlineMs(), expectedNextDeadlineEpochMillis);
+            }
+            Assert.assertEquals(classUnderTest.size(), requestId_To_DeadlineEpochMillis_Map.size());
+        }
+    }
+
+    @Test
+    public void passWhenBytesPerPendingDeadlineIsSmall() {
+
+        for (int i = 0; i < 1_000_000; ++i) {
+            classUnderTest.schedule(1000 + (i % 10_000));
+        }
+        // Heap: 16 bytes.  Hash: 16 bytes per slot / load factor.  Compare: DeadlineEngineImp is ~200 bytes.
+        Assert.assertTrue(classUnderTest.bytesPerPendingDeadline() < 64, "" + classUnderTest.bytesPerPendingDeadline());
+
+        final int count = classUnderTest.poll(Long.MAX_VALUE, any -> {}, Integer.MAX_VALUE);
+        Assert.assertEquals(count, 1_000_000);
+        Assert.assertEquals(classUnderTest.size(), 0);
+    }
+
+    @Test
+    public void passWhenHashIndexShrinksAfterCancel() {
+
+        final long[] requestIdArr = new long[100_000];
+        for (int i = 0; i < requestIdArr.length; ++i) {
+            requestIdArr[i] = classUnderTest.schedule(1000 + i);
+        }
+        final long offHeapBytes = classUnderTest.offHeapBytes();
+        for (int i = 10; i < requestIdArr.length; ++i) {
+            Assert.assertTrue(classUnderTest.cancel(requestIdArr[i]));
+        }
+        // Intentional: The ordered index is smaller than one chunk, so only the hash index releases memory.
+        Assert.assertTrue(classUnderTest.offHeapBytes() < offHeapBytes / 2,
+            classUnderTest.offHeapBytes() + " vs " + offHeapBytes);
+        // Each remaining deadline is still found after the rehash.
+        Assert.assertTrue(classUnderTest.reschedule(requestIdArr[9], 999));
+        Assert.assertTrue(classUnderTest.cancel(requestIdArr[0]));
+        final LongArrayList firedList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(Long.MAX_VALUE, firedList::add, 999), 9);
+        Assert.assertEquals(firedList.get(0), requestIdArr[9]);
+        Assert.assertEquals(firedList.get(8), requestIdArr[8]);
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class ReplicatedDeadlineEngineImpTest {
+
+    private ServerSocketChannel serverSocketChannel;
+
+    @BeforeMethod
+    public void beforeEachTestMethod()
+    throws IOException {
+
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterMethod
+    public void afterEachTestMethod()
+    throws IOException {
+
+        serverSocketChannel.close();
+    }
+
+    private SocketChannel _connect()
+    throws IOException {
+
+        final SocketChannel x = SocketChannel.open(serverSocketChannel.getLocalAddress());
+        return x;
+    }
+
+    private static void _awaitAppliedRecordCount(final DeadlineEngineFollower follower, final long recordCount)
+    throws InterruptedException {
+
+        final long stopNanos = System.nanoTime() + 5_000_000_000L;
+        while (follower.appliedRecordCount() < recordCount && System.nanoTime() < stopNanos) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(follower.appliedRecordCount(), recordCount);
+    }
+
+    @Test
+    public void passWhenFollowerIsPromoted()
+    throws Exception {
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        final ReplicatedDeadlineEngineImp classUnderTest = new ReplicatedDeadlineEngineImp(primaryChannel);
+        final long requestId = classUnderTest.schedule(1234);
+        final long requestId2 = classUnderTest.schedule(1235);
+        final long requestId3 = classUnderTest.schedule(1236);
+        Assert.assertTrue(classUnderTest.cancel(requestId2));
+        Assert.assertTrue(classUnderTest.reschedule(requestId3, 2000));
+        final LongArrayList firedList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(1234, firedList::add, 999), 1);
+        Assert.assertEquals(firedList.get(0), requestId);
+        Assert.assertTrue(classUnderTest.isReplicating());
+        // 1 x next request ID + 3 x schedule + 1 x cancel + 1 x reschedule + 1 x fire
+        _awaitAppliedRecordCount(follower, 7);
+
+        // Simulate primary crash
+        primaryChannel.close();
+        final DeadlineEngineImp engine = follower.promote();
+        Assert.assertNull(follower.nullableError());
+        Assert.assertFalse(follower.isConnected());
+        Assert.assertEquals(engine.size(), 1);
+        Assert.assertEquals(engine.nextDeadlineMs(), 2000);
+        Assert.assertFalse(engine.cancel(requestId));
+        Assert.assertFalse(engine.cancel(requestId2));
+        // Intentional: Request IDs are never reused after failover.
+        Assert.assertTrue(engine.schedule(3000) > requestId3);
+        Assert.assertTrue(engine.cancel(requestId3));
+    }
+
+    @Test
+    public void passWhenRescheduledByHandlerIsReplicated()
+    throws Exception {
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        final ReplicatedDeadlineEngineImp classUnderTest = new ReplicatedDeadlineEngineImp(primaryChannel);
+        final long requestId = classUnderTest.schedule(1234);
+        final long requestId2 = classUnderTest.schedule(1235);
+        Assert.assertEquals(
+            classUnderTest.poll(1235,
+                (Long id) -> {
+                    if (id == requestId) {
+                        Assert.assertTrue(classUnderTest.reschedule(id, 2000));
+                    }
+                },
+                999),
+            2);
+        classUnderTest.flush();
+        // 1 x next request ID + 2 x schedule + 1 x reschedule + 1 x fire (not for the rescheduled request ID)
+        _awaitAppliedRecordCount(follower, 5);
+        Assert.assertEquals(follower.size(), classUnderTest.size());
+
+        primaryChannel.close();
+        final DeadlineEngineImp engine = follower.promote();
+        Assert.assertEquals(engine.size(), 1);
+        Assert.assertEquals(engine.nextDeadlineMs(), 2000);
+        Assert.assertFalse(engine.cancel(requestId2));
+        Assert.assertTrue(engine.cancel(requestId));
+    }
+
+    @Test
+    public void passWhenRecurringIsReplicated()
+    throws Exception {
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        final ReplicatedDeadlineEngineImp classUnderTest = new ReplicatedDeadlineEngineImp(primaryChannel);
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.CATCH_UP);
+        Assert.assertEquals(classUnderTest.poll(1000, any -> {}, 999), 1);
+        // 1 x next request ID + 1 x schedule + 1 x recurrence + 1 x reschedule (re-arm, not fire)
+        _awaitAppliedRecordCount(follower, 4);
+
+        primaryChannel.close();
+        final DeadlineEngineImp engine = follower.promote();
+        Assert.assertEquals(engine.size(), 1);
+        Assert.assertEquals(engine.nextDeadlineMs(), 1100);
+        Assert.assertEquals(engine.poll(1100, (Long id) -> Assert.assertEquals((long) id, requestId), 999), 1);
+        Assert.assertEquals(engine.nextDeadlineMs(), 1200);
+
+        // Intentional: The promoted engine sends its recurrences to the next follower.
+        final SocketChannel primaryChannel2 = _connect();
+        final DeadlineEngineFollower follower2 = new DeadlineEngineFollower(serverSocketChannel.accept());
+        try (final ReplicatedDeadlineEngineImp classUnderTest2 =
+                 new ReplicatedDeadlineEngineImp(engine, primaryChannel2, 2)) {
+
+            // 1 x schedule + 1 x recurrence + 1 x next request ID
+            _awaitAppliedRecordCount(follower2, 3);
+        }
+        final DeadlineEngineImp engine2 = follower2.promote();
+        Assert.assertEquals(engine2.poll(1200, any -> {}, 999), 1);
+        Assert.assertEquals(engine2.nextDeadlineMs(), 1300);
+    }
+
+    @Test
+    public void passWhenGroupIsReplicated()
+    throws Exception {
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        final ReplicatedDeadlineEngineImp classUnderTest = new ReplicatedDeadlineEngineImp(primaryChannel);
+        classUnderTest.scheduleInGroup(1000, 7);
+        classUnderTest.scheduleInGroup(2000, 7);
+        final long requestId3 = classUnderTest.scheduleInGroup(3000, 8);
+        Assert.assertEquals(classUnderTest.cancelGroup(7), 2);
+        classUnderTest.flush();
+        // 1 x next request ID + 3 x (schedule + group) + 1 x cancel group
+        _awaitAppliedRecordCount(follower, 8);
+
+        primaryChannel.close();
+        final DeadlineEngineImp engine = follower.promote();
+        Assert.assertEquals(engine.size(), 1);
+        Assert.assertEquals(engine.nextDeadlineMs(), 3000);
+
+        // Intentional: The promoted engine sends its group members to the next follower.
+        final SocketChannel primaryChannel2 = _connect();
+        final DeadlineEngineFollower follower2 = new DeadlineEngineFollower(serverSocketChannel.accept());
+        try (final ReplicatedDeadlineEngineImp classUnderTest2 =
+                 new ReplicatedDeadlineEngineImp(engine, primaryChannel2, 2)) {
+
+            // 1 x schedule + 1 x group + 1 x next request ID
+            _awaitAppliedRecordCount(follower2, 3);
+        }
+        final DeadlineEngineImp engine2 = follower2.promote();
+        Assert.assertEquals(engine2.cancelGroup(8), 1);
+        Assert.assertFalse(engine2.cancel(requestId3));
+    }
+
+    @Test
+    public void passWhenPromotedFollowerBecomesPrimary()
+    throws Exception {
+
+        final DeadlineEngineImp engine = new DeadlineEngineImp();
+        final long requestId = engine.schedule(1234);
+        final long requestId2 = engine.schedule(1235);
+        Assert.assertTrue(engine.cancel(requestId2));
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        try (final ReplicatedDeadlineEngineImp classUnderTest =
+                 new ReplicatedDeadlineEngineImp(engine, primaryChannel, 2)) {
+
+            // 1 x schedule + 1 x next request ID
+            _awaitAppliedRecordCount(follower, 2);
+            Assert.assertEquals(follower.size(), 1);
+            for (int i = 0; i < 5; ++i) {
+                classUnderTest.schedule(5000 + i);
+            }
+        }
+        _awaitAppliedRecordCount(follower, 7);
+        final DeadlineEngineImp engine2 = follower.promote();
+        Assert.assertEquals(engine2.size(), 6);
+        Assert.assertTrue(engine2.cancel(requestId));
+        Assert.assertTrue(engine2.schedule(6000) > 2 + requestId2);
+    }
+
+    @Test
+    public void passWhenPrimarySurvivesFollowerLoss()
+    throws Exception {
+
+        final SocketChannel primaryChannel = _connect();
+        final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+        final ReplicatedDeadlineEngineImp classUnderTest = new ReplicatedDeadlineEngineImp(primaryChannel);
+        follower.close();
+        Assert.assertFalse(follower.isConnected());
+        // Intentional: The first write after the peer closes may succeed.  Retry until the failure is detected.
+        for (int i = 0; i < 1000 && classUnderTest.isReplicating(); ++i) {
+            classUnderTest.schedule(1234);
+            classUnderTest.flush();
+            Thread.sleep(1);
+        }
+        Assert.assertFalse(classUnderTest.isReplicating());
+        final int size = classUnderTest.size();
+        classUnderTest.schedule(1234);
+        Assert.assertEquals(classUnderTest.size(), 1 + size);
+        classUnderTest.close();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failWhenPromoteTwice()
+    throws IOException {
+
+        try (final SocketChannel primaryChannel = _connect()) {
+
+            final DeadlineEngineFollower follower = new DeadlineEngineFollower(serverSocketChannel.accept());
+            follower.promote();
+            follower.promote();
+        }
+    }
+}
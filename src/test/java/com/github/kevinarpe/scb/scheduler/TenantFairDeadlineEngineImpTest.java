@@ -0,0 +1,149 @@
+package com.github.kevinarpe.scb.scheduler;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.cursors.LongCursor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class TenantFairDeadlineEngineImpTest {
+
+    @Test
+    public void passWhenNoisyTenantDoesNotStarveOtherTenant() {
+
+        final TenantFairDeadlineEngineImp classUnderTest = new TenantFairDeadlineEngineImp(2);
+        final int noisyTenantIndex = 0;
+        final int quietTenantIndex = 1;
+        // Intentional: Noisy tenant's deadlines are all *earlier*, so strict deadline order would fire them first.
+        for (int i = 0; i < 1000; ++i) {
+            classUnderTest.scheduleForTenant(1000, noisyTenantIndex);
+        }
+        final LongHashSet quietRequestIdSet = new LongHashSet();
+        for (int i = 0; i < 10; ++i) {
+            quietRequestIdSet.add(classUnderTest.scheduleForTenant(1001, quietTenantIndex));
+        }
+        Assert.assertEquals(classUnderTest.size(), 1010);
+
+        final LongHashSet requestIdSet = new LongHashSet();
+        final int count = classUnderTest.poll(2000, (Long id) -> requestIdSet.add(id), 20);
+        Assert.assertEquals(count, 20);
+        // Quiet tenant has share of 10, and uses all of it.
+        for (final LongCursor cursor : quietRequestIdSet) {
+            Assert.assertTrue(requestIdSet.contains(cursor.value));
+        }
+        Assert.assertEquals(classUnderTest.sizeForTenant(noisyTenantIndex), 990);
+        Assert.assertEquals(classUnderTest.sizeForTenant(quietTenantIndex), 0);
+
+        // Quiet tenant has nothing left, so noisy tenant may use whole poll.
+        Assert.assertEquals(classUnderTest.poll(2000, any -> {}, 100), 100);
+        Assert.assertEquals(classUnderTest.sizeForTenant(noisyTenantIndex), 890);
+    }
+
+    @Test
+    public void passWhenPollIsSharedByWeight() {
+
+        final TenantFairDeadlineEngineImp classUnderTest =
+            new TenantFairDeadlineEngineImp(DeadlineEngineImp::new, 3, 1);
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.scheduleForTenant(1000, 0);
+            classUnderTest.scheduleForTenant(1000, 1);
+        }
+        Assert.assertEquals(classUnderTest.poll(1000, any -> {}, 40), 40);
+        Assert.assertEquals(classUnderTest.sizeForTenant(0), 100 - 30);
+        Assert.assertEquals(classUnderTest.sizeForTenant(1), 100 - 10);
+    }
+
+    @Test
+    public void passWhenCancelAndRescheduleRouteToTenant() {
+
+        final TenantFairDeadlineEngineImp classUnderTest = new TenantFairDeadlineEngineImp(3);
+        final long requestId = classUnderTest.scheduleForTenant(1000, 2);
+        final long requestId2 = classUnderTest.schedule(1000);
+        Assert.assertNotEquals(requestId, requestId2);
+        Assert.assertEquals(classUnderTest.sizeForTenant(2), 1);
+        Assert.assertEquals(classUnderTest.sizeForTenant(TenantFairDeadlineEngineImp.DEFAULT_TENANT_INDEX), 1);
+
+        Assert.assertTrue(classUnderTest.reschedule(requestId, 900));
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 900);
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        Assert.assertFalse(classUnderTest.cancel(requestId));
+        // Unknown tenant index
+        Assert.assertFalse(classUnderTest.cancel(requestId2 + 7));
+        Assert.assertEquals(classUnderTest.size(), 1);
+    }
+
+    @Test
+    public void passWhenDrainToIsSharedByWeight() {
+
+        final TenantFairDeadlineEngineImp classUnderTest =
+            new TenantFairDeadlineEngineImp(DeadlineEngineImp::new, 3, 1);
+        final LongHashSet tenant1RequestIdSet = new LongHashSet();
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.scheduleForTenant(1000, 0);
+            tenant1RequestIdSet.add(classUnderTest.scheduleForTenant(1000, 1));
+        }
+        final long[] requestIdArr = new long[40];
+        Assert.assertEquals(classUnderTest.drainTo(1000, requestIdArr, 0, 40), 40);
+        Assert.assertEquals(classUnderTest.sizeForTenant(0), 100 - 30);
+        Assert.assertEquals(classUnderTest.sizeForTenant(1), 100 - 10);
+        int tenant1Count = 0;
+        for (final long requestId : requestIdArr) {
+            if (tenant1RequestIdSet.contains(requestId)) {
+                ++tenant1Count;
+            }
+        }
+        Assert.assertEquals(tenant1Count, 10);
+    }
+
+    @Test
+    public void passWhenLeftoverIsSharedRoundRobin() {
+
+        final TenantFairDeadlineEngineImp classUnderTest = new TenantFairDeadlineEngineImp(3);
+        classUnderTest.scheduleForTenant(1000, 0);
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.scheduleForTenant(1000, 1);
+            classUnderTest.scheduleForTenant(1000, 2);
+        }
+        // Each share is 10.  Tenant 0 uses only one, so nine are left over.
+        Assert.assertEquals(classUnderTest.poll(1000, any -> {}, 30), 30);
+        Assert.assertEquals(classUnderTest.sizeForTenant(0), 0);
+        // Intentional: Leftover is split between tenants 1 and 2, not given to the first one only.
+        final int tenant1Count = 100 - classUnderTest.sizeForTenant(1);
+        final int tenant2Count = 100 - classUnderTest.sizeForTenant(2);
+        Assert.assertEquals(tenant1Count + tenant2Count, 29);
+        Assert.assertTrue(Math.abs(tenant1Count - tenant2Count) <= 1, tenant1Count + " vs " + tenant2Count);
+
+        final long[] requestIdArr = new long[31];
+        Assert.assertEquals(classUnderTest.drainTo(1000, requestIdArr, 0, 31), 31);
+        final int tenant1Count2 = 100 - classUnderTest.sizeForTenant(1) - tenant1Count;
+        final int tenant2Count2 = 100 - classUnderTest.sizeForTenant(2) - tenant2Count;
+        Assert.assertTrue(Math.abs(tenant1Count2 - tenant2Count2) <= 1, tenant1Count2 + " vs " + tenant2Count2);
+    }
+
+    @Test
+    public void passWhenCatchUpRecurringFiresOncePerPoll() {
+
+        final TenantFairDeadlineEngineImp classUnderTest = new TenantFairDeadlineEngineImp(2);
+        final long recurringRequestId =
+            classUnderTest.scheduleRecurringForTenant(1000, 10, RecurrencePolicy.CATCH_UP, 0);
+        final long requestId = classUnderTest.scheduleForTenant(1000, 1);
+        // Intentional: 'nowMs' is 100 periods ahead, so each re-arm is still expired.
+        final LongArrayList requestIdList = new LongArrayList();
+        Assert.assertEquals(classUnderTest.poll(2000, requestIdList::add, 100), 2);
+        Assert.assertEquals(requestIdList.size(), 2);
+        Assert.assertTrue(requestIdList.contains(recurringRequestId));
+        Assert.assertTrue(requestIdList.contains(requestId));
+
+        requestIdList.clear();
+        Assert.assertEquals(classUnderTest.poll(2000, requestIdList::add, 100), 1);
+        Assert.assertEquals(requestIdList.get(0), recurringRequestId);
+
+        final long[] requestIdArr = new long[100];
+        Assert.assertEquals(classUnderTest.drainTo(2000, requestIdArr, 0, 100), 1);
+        Assert.assertEquals(requestIdArr[0], recurringRequestId);
+        Assert.assertEquals(classUnderTest.nextDeadlineMs(), 1030);
+    }
+}
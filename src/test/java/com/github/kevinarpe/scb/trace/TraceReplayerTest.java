@@ -0,0 +1,203 @@
+package com.github.kevinarpe.scb.trace;
+
+import com.github.kevinarpe.scb.cache.Cache;
+import com.github.kevinarpe.scb.cache.ConcurrentHashMapCacheImp;
+import com.github.kevinarpe.scb.cache.LinkedHashMapCacheImp;
+import com.github.kevinarpe.scb.scheduler.DeadlineEngine;
+import com.github.kevinarpe.scb.scheduler.DeadlineEngineImp;
+import com.github.kevinarpe.scb.scheduler.OffHeapDeadlineEngineImp;
+import com.github.kevinarpe.scb.scheduler.RecurrencePolicy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * @author Kevin Connor ARPE (kevinarpe@gmail.com)
+ */
+public class TraceReplayerTest {
+
+    @Test
+    public void passWhenRecordThenReplayDeadlineEngine()
+    throws IOException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TraceWriter traceWriter = new TraceWriter(outputStream);
+        final DeadlineEngine classUnderTest = new RecordingDeadlineEngineImp(new DeadlineEngineImp(), traceWriter);
+        final SplittableRandom random = new SplittableRandom(12345);
+        final long[] requestIdArr = new long[100];
+        long nowMs = 1_000_000;
+        long recordCount = 0;
+        for (int i = 0; i < 10_000; ++i) {
+
+            final int index = random.nextInt(requestIdArr.length);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    requestIdArr[index] = classUnderTest.schedule(nowMs + random.nextInt(100));
+                    break;
+                }
+                case 1: {
+                    classUnderTest.cancel(requestIdArr[index]);
+                    break;
+                }
+                case 2: {
+                    classUnderTest.reschedule(requestIdArr[index], nowMs + random.nextInt(100));
+                    break;
+                }
+                default: {
+                    nowMs += random.nextInt(10);
+                    classUnderTest.poll(nowMs, any -> {}, 1 + random.nextInt(5));
+                    break;
+                }
+            }
+            ++recordCount;
+        }
+        traceWriter.close();
+        // Intentional: A compact trace is only a few bytes per record.
+        Assert.assertTrue(outputStream.size() < 8 * recordCount, "size: " + outputStream.size());
+
+        try (final TraceReader traceReader = new TraceReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+
+            final OffHeapDeadlineEngineImp replayEngine = new OffHeapDeadlineEngineImp();
+            final TraceReplayReport report = TraceReplayer.replay(traceReader, replayEngine, 0.0);
+            Assert.assertEquals(report.recordCount, recordCount);
+            Assert.assertEquals(report.mismatchCount, 0, report.toString());
+            Assert.assertEquals(replayEngine.size(), classUnderTest.size());
+            Assert.assertEquals(report.latencyNanosHistogram.totalCount, recordCount);
+            Assert.assertTrue(report.opsPerSecond() > 0.0);
+        }
+    }
+
+    @Test
+    public void passWhenRecordThenReplayRecurring()
+    throws IOException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TraceWriter traceWriter = new TraceWriter(outputStream);
+        final DeadlineEngine classUnderTest = new RecordingDeadlineEngineImp(new DeadlineEngineImp(), traceWriter);
+        final long requestId = classUnderTest.scheduleRecurring(1000, 100, RecurrencePolicy.FIXED_DELAY);
+        classUnderTest.scheduleRecurring(1000, 30, RecurrencePolicy.SKIP);
+        for (long nowMs = 1000; nowMs < 2000; nowMs += 10) {
+            classUnderTest.poll(nowMs, any -> {}, 999);
+        }
+        Assert.assertTrue(classUnderTest.cancel(requestId));
+        classUnderTest.poll(3000, any -> {}, 999);
+        traceWriter.close();
+
+        try (final TraceReader traceReader = new TraceReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+
+            final OffHeapDeadlineEngineImp replayEngine = new OffHeapDeadlineEngineImp();
+            final TraceReplayReport report = TraceReplayer.replay(traceReader, replayEngine, 0.0);
+            // Intentional: Each fire of a recurring deadline keeps its request ID mapping, so cancel matches.
+            Assert.assertEquals(report.mismatchCount, 0, report.toString());
+            Assert.assertEquals(replayEngine.size(), 1);
+            Assert.assertEquals(replayEngine.nextDeadlineMs(), classUnderTest.nextDeadlineMs());
+        }
+    }
+
+    @Test
+    public void passWhenRecordThenReplayGroups()
+    throws IOException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TraceWriter traceWriter = new TraceWriter(outputStream);
+        final DeadlineEngineImp engine = new DeadlineEngineImp();
+        final DeadlineEngine classUnderTest = new RecordingDeadlineEngineImp(engine, traceWriter);
+        final SplittableRandom random = new SplittableRandom(12345);
+        final long[] requestIdArr = new long[100];
+        long nowMs = 1_000_000;
+        for (int i = 0; i < 10_000; ++i) {
+
+            final int index = random.nextInt(requestIdArr.length);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    // Intentional: Negative group keys must survive zig-zag encoding.
+                    requestIdArr[index] = classUnderTest.scheduleInGroup(nowMs + random.nextInt(100), index % 5 - 2);
+                    break;
+                }
+                case 1: {
+                    classUnderTest.cancel(requestIdArr[index]);
+                    break;
+                }
+                case 2: {
+                    classUnderTest.cancelGroup(index % 5 - 2);
+                    break;
+                }
+                default: {
+                    nowMs += random.nextInt(10);
+                    // Intentional: Fire all expired deadlines.  Equal deadlines may fire in a different order during
+                    // replay, so a partial poll may fire other group members.
+                    classUnderTest.poll(nowMs, any -> {}, 999);
+                    break;
+                }
+            }
+        }
+        traceWriter.close();
+
+        try (final TraceReader traceReader = new TraceReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+
+            final OffHeapDeadlineEngineImp replayEngine = new OffHeapDeadlineEngineImp();
+            final TraceReplayReport report = TraceReplayer.replay(traceReader, replayEngine, 0.0);
+            Assert.assertEquals(report.recordCount, 10_000);
+            Assert.assertEquals(report.mismatchCount, 0, report.toString());
+            Assert.assertEquals(replayEngine.size(), classUnderTest.size());
+            for (long groupKey = -2; groupKey <= 2; ++groupKey) {
+                Assert.assertEquals(replayEngine.cancelGroup(groupKey), engine.cancelGroup(groupKey));
+            }
+        }
+    }
+
+    @Test
+    public void passWhenRecordThenReplayCache()
+    throws IOException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TraceWriter traceWriter = new TraceWriter(outputStream);
+        final Cache<String, Integer> classUnderTest =
+            new RecordingCacheImp<>(new ConcurrentHashMapCacheImp<>(String::length), Long::parseLong, traceWriter);
+        // 10 distinct keys, each read 10 times
+        for (int i = 0; i < 100; ++i) {
+            classUnderTest.get(String.valueOf(i % 10));
+        }
+        traceWriter.close();
+
+        try (final TraceReader traceReader = new TraceReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+
+            final TraceReplayReport report =
+                TraceReplayer.replay(traceReader, LinkedHashMapCacheImp::new, String::valueOf, String::length, 0.0);
+            Assert.assertEquals(report.cacheGetCount, 100);
+            Assert.assertEquals(report.cacheMissCount, 10);
+            Assert.assertEquals(report.cacheHitRate(), 0.9, 1e-9);
+        }
+    }
+
+    @Test
+    public void passWhenReplayAtOriginalSpeed()
+    throws IOException, InterruptedException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final TraceWriter traceWriter = new TraceWriter(outputStream);
+        final DeadlineEngine classUnderTest = new RecordingDeadlineEngineImp(new DeadlineEngineImp(), traceWriter);
+        classUnderTest.schedule(1000);
+        Thread.sleep(50);
+        classUnderTest.poll(2000, any -> {}, 1);
+        traceWriter.close();
+
+        try (final TraceReader traceReader = new TraceReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+
+            final TraceReplayReport report = TraceReplayer.replay(traceReader, new DeadlineEngineImp(), 1.0);
+            Assert.assertEquals(report.firedCount, 1);
+            Assert.assertTrue(report.elapsedNanos >= 50_000_000L, "elapsedNanos: " + report.elapsedNanos);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void failWhenHeaderIsInvalid()
+    throws IOException {
+
+        new TraceReader(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+    }
+}